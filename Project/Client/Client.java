@@ -1,15 +1,23 @@
 package Project.Client;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.Socket;
 import java.net.UnknownHostException;
-import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.logging.Level;
@@ -21,12 +29,17 @@ import Project.Client.Interfaces.IMessageEvents;
 import Project.Client.Interfaces.IPhaseEvent;
 import Project.Client.Interfaces.IPointsEvent;
 import Project.Client.Interfaces.IReadyEvent;
+import Project.Client.Interfaces.ILobbyEvents;
 import Project.Client.Interfaces.IRoomEvents;
 import Project.Client.Interfaces.ITimeEvents;
 import Project.Client.Interfaces.ITurnEvent;
+import Project.Client.Interfaces.IUserListEvent;
 import Project.Common.Command;
 import Project.Common.ConnectionPayload;
+import Project.Common.LetterGuessedPayload;
 import Project.Common.Constants;
+import Project.Common.FrameCodec;
+import Project.Common.LobbyPresencePayload;
 import Project.Common.LoggerUtil;
 import Project.Common.Payload;
 import Project.Common.PayloadType;
@@ -34,10 +47,18 @@ import Project.Common.Phase;
 import Project.Common.ReadyPayload;
 import Project.Common.RoomAction;
 import Project.Common.RoomResultPayload;
+import Project.Common.RosterPayload;
+import Project.Common.RoundResultPayload;
+import Project.Common.StrikesPayload;
 import Project.Common.TextFX;
 import Project.Common.User;
 import Project.Common.TextFX.Color;
+import Project.Common.TimedEvent;
 import Project.Common.TimerPayload;
+import Project.Common.TimerType;
+import Project.Common.WireFormat;
+import Project.Common.WordMaskPayload;
+import Project.Common.BinaryCodec;
 import java.util.logging.Level;
 import Project.Client.Interfaces.IGameStateEvent;
 import Project.Common.AwayStatusPayload;
@@ -51,8 +72,10 @@ public enum Client {
     INSTANCE;
 
     private Socket server = null;
-    private ObjectOutputStream out = null;
-    private ObjectInputStream in = null;
+    private DataOutputStream out = null;
+    private DataInputStream in = null;
+    // JAVA until the server accepts the BinaryCodec offer in CLIENT_ID
+    private volatile WireFormat wireFormat = WireFormat.JAVA;
     final Pattern ipAddressPattern = Pattern
             .compile("/connect\\s+(\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}:\\d{3,5})");
     final Pattern localhostPattern = Pattern.compile("/connect\\s+(localhost:\\d{3,5})");
@@ -60,9 +83,46 @@ public enum Client {
     private final ConcurrentHashMap<Long, User> knownClients = new ConcurrentHashMap<Long, User>();
     private User myUser = new User();
     private Phase currentPhase = Phase.READY;
-
-    // callback that updates the UI
-    private static List<IClientEvents> events = new ArrayList<IClientEvents>();
+    // server timers counted down locally; the server only sends start/cancel/resync
+    private final ConcurrentHashMap<TimerType, TimedEvent> localTimers = new ConcurrentHashMap<>();
+    // last room list page; its query and cursor are reused by /morerooms
+    private volatile RoomResultPayload lastRoomPage = null;
+    // from our own ROOM_JOIN; lobby presence that arrives after we left is ignored
+    private volatile String currentRoomName = null;
+    private long rosterVersion = 0; // of the current room, only touched by the listener thread
+    // last room broadcast applied (-1 until a ROOM_SNAPSHOT); anything that
+    // doesn't follow it is held back until a CATCH_UP fills the gap. Only
+    // touched by the listener thread
+    private long roomSequence = -1;
+    private boolean catchingUp = false;
+    // Session resume: if the connection drops, reconnect with the token from
+    // CLIENT_ID and the number of frames (other than TIME) received since, and
+    // the server replays what we missed instead of starting over
+    private volatile String resumeToken = null;
+    private long received = 0; // only touched by the listener thread
+    private volatile boolean leaving = false; // we asked to disconnect, don't resume
+    private String host;
+    private int port;
+    private static final long RESUME_SECONDS = Long.getLong("client.resume.seconds", 30);
+    // the listener thread sends too (CATCH_UP), frames mustn't interleave
+    private final ReentrantLock sendLock = new ReentrantLock();
+    // process*() method for each PayloadType the server sends (filled in by the
+    // constructor)
+    private final Map<PayloadType, Consumer<Payload>> handlers = new EnumMap<>(PayloadType.class);
+
+    // callbacks that update the UI, split up by interface in addCallback() so each
+    // event only goes to the listeners that implement it
+    private static final List<IConnectionEvents> connectionEvents = new CopyOnWriteArrayList<>();
+    private static final List<IMessageEvents> messageEvents = new CopyOnWriteArrayList<>();
+    private static final List<IRoomEvents> roomEvents = new CopyOnWriteArrayList<>();
+    private static final List<ILobbyEvents> lobbyEvents = new CopyOnWriteArrayList<>();
+    private static final List<IReadyEvent> readyEvents = new CopyOnWriteArrayList<>();
+    private static final List<ITurnEvent> turnEvents = new CopyOnWriteArrayList<>();
+    private static final List<IPointsEvent> pointsEvents = new CopyOnWriteArrayList<>();
+    private static final List<IPhaseEvent> phaseEvents = new CopyOnWriteArrayList<>();
+    private static final List<ITimeEvents> timeEvents = new CopyOnWriteArrayList<>();
+    private static final List<IUserListEvent> userListEvents = new CopyOnWriteArrayList<>();
+    private static final List<IGameStateEvent> gameStateEvents = new CopyOnWriteArrayList<>();
 
     // Add a static reference to the current GamePanel
     public static Project.Client.Views.GamePanel currentGamePanel = null;
@@ -71,7 +131,39 @@ public enum Client {
     public static boolean hardMode = false;
 
     public void addCallback(IClientEvents e) {
-        events.add(e);
+        if (e instanceof IConnectionEvents connection) {
+            connectionEvents.add(connection);
+        }
+        if (e instanceof IMessageEvents message) {
+            messageEvents.add(message);
+        }
+        if (e instanceof IRoomEvents room) {
+            roomEvents.add(room);
+        }
+        if (e instanceof ILobbyEvents lobby) {
+            lobbyEvents.add(lobby);
+        }
+        if (e instanceof IReadyEvent ready) {
+            readyEvents.add(ready);
+        }
+        if (e instanceof ITurnEvent turn) {
+            turnEvents.add(turn);
+        }
+        if (e instanceof IPointsEvent points) {
+            pointsEvents.add(points);
+        }
+        if (e instanceof IPhaseEvent phase) {
+            phaseEvents.add(phase);
+        }
+        if (e instanceof ITimeEvents time) {
+            timeEvents.add(time);
+        }
+        if (e instanceof IUserListEvent userList) {
+            userListEvents.add(userList);
+        }
+        if (e instanceof IGameStateEvent gameState) {
+            gameStateEvents.add(gameState);
+        }
     }
 
     private void error(String message) {
@@ -81,6 +173,38 @@ public enum Client {
     // needs to be private now that the enum logic is handling this
     private Client() {
         // Logger initialization moved to main()
+        handlers.put(PayloadType.CLIENT_CONNECT, payload -> {
+        }); // unused
+        handlers.put(PayloadType.CLIENT_ID, this::processClientData);
+        handlers.put(PayloadType.DISCONNECT, this::processDisconnect);
+        handlers.put(PayloadType.MESSAGE, this::processMessage);
+        handlers.put(PayloadType.REVERSE, this::processReverse);
+        handlers.put(PayloadType.ROOM_CREATE, payload -> {
+        }); // unused
+        handlers.put(PayloadType.ROOM_JOIN, this::processRoomAction);
+        handlers.put(PayloadType.ROOM_LEAVE, this::processRoomAction);
+        handlers.put(PayloadType.SYNC_CLIENT, this::processRoomAction);
+        handlers.put(PayloadType.ROOM_LIST, this::processRoomsList);
+        handlers.put(PayloadType.READY, payload -> processReadyStatus(payload, false));
+        handlers.put(PayloadType.SYNC_READY, payload -> processReadyStatus(payload, true));
+        // note no data necessary as this is just a trigger
+        handlers.put(PayloadType.RESET_READY, payload -> processResetReady());
+        handlers.put(PayloadType.PHASE, this::processPhase);
+        handlers.put(PayloadType.TURN, this::processTurn);
+        handlers.put(PayloadType.SYNC_TURN, this::processTurn);
+        // note no data necessary as this is just a trigger
+        handlers.put(PayloadType.RESET_TURN, payload -> processResetTurn());
+        handlers.put(PayloadType.TIME, this::processCurrentTimer);
+        handlers.put(PayloadType.POINTS, this::processPoints);
+        handlers.put(PayloadType.SESSION_OPTIONS, this::processSessionOptions);
+        handlers.put(PayloadType.AWAY_STATUS, this::processAwayStatus);
+        handlers.put(PayloadType.LOBBY_PRESENCE, this::processLobbyPresence);
+        handlers.put(PayloadType.ROOM_SNAPSHOT, this::processRoomSnapshot);
+        handlers.put(PayloadType.ROOM_DIFF, this::processRoomDiff);
+        handlers.put(PayloadType.WORD_MASK, this::processWordMask);
+        handlers.put(PayloadType.STRIKES, this::processStrikes);
+        handlers.put(PayloadType.LETTER_GUESSED, this::processLetterGuessed);
+        handlers.put(PayloadType.ROUND_RESULT, this::processRoundResult);
     }
 
     public boolean isConnected() {
@@ -103,12 +227,14 @@ public enum Client {
      */
     @Deprecated
     private boolean connect(String address, int port) {
+        host = address;
+        this.port = port;
         try {
             server = new Socket(address, port);
             // channel to send to server
-            out = new ObjectOutputStream(server.getOutputStream());
+            out = new DataOutputStream(new BufferedOutputStream(server.getOutputStream()));
             // channel to listen to server
-            in = new ObjectInputStream(server.getInputStream());
+            in = new DataInputStream(new BufferedInputStream(server.getInputStream()));
             LoggerUtil.INSTANCE.info("Client connected");
             // Use CompletableFuture to run listenToServer() in a separate thread
             CompletableFuture.runAsync(this::listenToServer);
@@ -132,12 +258,16 @@ public enum Client {
     public boolean connect(String address, int port, String username, IClientEvents callback) {
         myUser.setClientName(username);
         addCallback(callback);
+        host = address;
+        this.port = port;
+        resumeToken = null; // a new session
+        leaving = false;
         try {
             server = new Socket(address, port);
             // channel to send to server
-            out = new ObjectOutputStream(server.getOutputStream());
+            out = new DataOutputStream(new BufferedOutputStream(server.getOutputStream()));
             // channel to listen to server
-            in = new ObjectInputStream(server.getInputStream());
+            in = new DataInputStream(new BufferedInputStream(server.getInputStream()));
             LoggerUtil.INSTANCE.info("Client connected");
             // Use CompletableFuture to run listenToServer() in a separate thread
             CompletableFuture.runAsync(this::listenToServer);
@@ -155,12 +285,8 @@ public enum Client {
     }
 
     public void clientSideGameEvent(String str) {
-        events.forEach(event -> {
-            if (event instanceof IMessageEvents) {
-                // Note: using -2 to target GameEventPanel
-                ((IMessageEvents) event).onMessageReceive(Constants.GAME_EVENT_CHANNEL, str);
-            }
-        });
+        // Note: using -2 to target GameEventPanel
+        messageEvents.forEach(event -> event.onMessageReceive(Constants.GAME_EVENT_CHANNEL, str));
     }
 
     /**
@@ -237,6 +363,8 @@ public enum Client {
                 // splits on the space after connect (gives us host and port)
                 // splits on : to get host as index 0 and port as index 1
                 String[] parts = text.trim().replaceAll(" +", " ").split(" ")[1].split(":");
+                resumeToken = null; // a new session
+                leaving = false;
                 connect(parts[0].trim(), Integer.parseInt(parts[1].trim()));
                 sendClientName(myUser.getClientName());// sync follow-up data (handshake)
                 wasCommand = true;
@@ -301,6 +429,14 @@ public enum Client {
                 // /leave)
                 sendRoomAction(text, RoomAction.LEAVE);
                 wasCommand = true;
+            } else if (text.equalsIgnoreCase(Command.MORE_ROOMS.command)) {
+                RoomResultPayload page = lastRoomPage;
+                if (page == null || page.getCursor() == null) {
+                    LoggerUtil.INSTANCE.warning(TextFX.colorize("No more rooms to show", Color.RED));
+                    return true;
+                }
+                sendRoomListRequest(page.getMessage(), page.isPrefix(), page.getCursor());
+                wasCommand = true;
             } else if (text.startsWith(Command.LIST_ROOMS.command)) {
                 text = text.replace(Command.LIST_ROOMS.command, "").trim();
 
@@ -362,9 +498,12 @@ public enum Client {
             case RoomAction.LEAVE:
                 payload.setPayloadType(PayloadType.ROOM_LEAVE);
                 break;
-            case RoomAction.LIST:
-                payload.setPayloadType(PayloadType.ROOM_LIST);
-                break;
+            case RoomAction.LIST: {
+                // "name*" searches by prefix, anything else matches part of the name
+                boolean prefix = roomName.endsWith("*");
+                sendRoomListRequest(prefix ? roomName.substring(0, roomName.length() - 1) : roomName, prefix, null);
+                return;
+            }
             default:
                 LoggerUtil.INSTANCE.warning(TextFX.colorize("Invalid room action", Color.RED));
                 break;
@@ -372,6 +511,22 @@ public enum Client {
         sendToServer(payload);
     }
 
+    /**
+     * Asks the server for one page of rooms
+     * 
+     * @param query
+     * @param prefix true to match names starting with query
+     * @param cursor from the previous page, null for the first one
+     * @throws IOException
+     */
+    private void sendRoomListRequest(String query, boolean prefix, String cursor) throws IOException {
+        RoomResultPayload payload = new RoomResultPayload();
+        payload.setMessage(query);
+        payload.setPrefix(prefix);
+        payload.setCursor(cursor);
+        sendToServer(payload);
+    }
+
     /**
      * Sends a reverse message action to the server
      * 
@@ -392,6 +547,8 @@ public enum Client {
      * @throws IOException
      */
     void sendDisconnect() throws IOException {
+        leaving = true;
+        resumeToken = null;
         Payload payload = new Payload();
         payload.setPayloadType(PayloadType.DISCONNECT);
         sendToServer(payload);
@@ -428,6 +585,10 @@ public enum Client {
         ConnectionPayload payload = new ConnectionPayload();
         payload.setClientName(name);
         payload.setPayloadType(PayloadType.CLIENT_CONNECT);
+        payload.setCodecVersion(BinaryCodec.VERSION);// offer the binary codec, the server replies in CLIENT_ID
+        payload.setResumeToken(resumeToken);// null unless reconnecting
+        payload.setReceived(received);
+        wireFormat = WireFormat.JAVA;// the handshake is always Java serialized
         sendToServer(payload);
     }
 
@@ -438,10 +599,35 @@ public enum Client {
         sendToServer(payload);
     }
 
+    /**
+     * Asks the room for the broadcasts after the last one we applied (replayed
+     * from its log, or a resync if it doesn't have them anymore)
+     */
+    private void sendCatchUp() {
+        if (catchingUp) {
+            return; // already asked, the replay covers anything sent since
+        }
+        catchingUp = true;
+        Payload payload = new Payload();
+        payload.setPayloadType(PayloadType.CATCH_UP);
+        payload.setMessage(currentRoomName);
+        payload.setSequence(roomSequence);
+        try {
+            sendToServer(payload);
+        } catch (IOException e) {
+            catchingUp = false; // the connection dropped, the resume asks again
+        }
+    }
+
     public void sendToServer(Payload payload) throws IOException {
         if (isConnected()) {
-            out.writeObject(payload);
-            out.flush(); // good practice to ensure data is written out immediately
+            sendLock.lock();
+            try {
+                FrameCodec.write(out, payload, wireFormat);
+                out.flush(); // good practice to ensure data is written out immediately
+            } finally {
+                sendLock.unlock();
+            }
         } else {
             LoggerUtil.INSTANCE.warning(
                     "Not connected to server (hint: type `/connect host:port` without the quotes and replace host/port with the necessary info)");
@@ -465,7 +651,7 @@ public enum Client {
     private void listenToServer() {
         try {
             while (isRunning && isConnected()) {
-                Payload fromServer = (Payload) in.readObject(); // blocking read
+                Payload fromServer = FrameCodec.read(in); // blocking read
                 if (fromServer != null) {
                     processPayload(fromServer);
 
@@ -477,6 +663,8 @@ public enum Client {
         } catch (ClassCastException | ClassNotFoundException cce) {
             LoggerUtil.INSTANCE.severe("Error reading object as specified type:", cce);
             // cce.printStackTrace();
+        } catch (EOFException e) {
+            LoggerUtil.INSTANCE.info("Server disconnected");
         } catch (IOException e) {
             if (isRunning) {
                 LoggerUtil.INSTANCE.warning("Connection dropped");
@@ -486,103 +674,100 @@ public enum Client {
             closeServerConnection();
         }
         LoggerUtil.INSTANCE.info("listenToServer thread stopped");
+        if (isRunning && !leaving && resumeToken != null) {
+            resumeSession();
+        }
+    }
+
+    /**
+     * Reconnects after the connection dropped and asks to resume the session;
+     * retries every second for -Dclient.resume.seconds (default 30, the
+     * server's grace period)
+     */
+    private void resumeSession() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(RESUME_SECONDS);
+        while (isRunning && !leaving && resumeToken != null && System.nanoTime() < deadline) {
+            LoggerUtil.INSTANCE.info(TextFX.colorize("Connection lost, reconnecting...", Color.YELLOW));
+            try {
+                server = new Socket(host, port);
+                out = new DataOutputStream(new BufferedOutputStream(server.getOutputStream()));
+                in = new DataInputStream(new BufferedInputStream(server.getInputStream()));
+                sendClientName(myUser.getClientName()); // carries the token and what we got
+                CompletableFuture.runAsync(this::listenToServer);
+                return;
+            } catch (IOException e) {
+                closeServerConnection();
+            }
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        LoggerUtil.INSTANCE.warning(TextFX.colorize("Couldn't reconnect", Color.RED));
     }
 
     private void processPayload(Payload payload) {
         LoggerUtil.INSTANCE.info("Received from server: " + payload.toString());
-        switch (payload.getPayloadType()) {
-            case CLIENT_CONNECT:// unused
-                break;
-            case CLIENT_ID:
-                processClientData(payload);
-                break;
-            case DISCONNECT:
-                processDisconnect(payload);
-                break;
-            case MESSAGE:
-                processMessage(payload);
-                break;
-            case REVERSE:
-                processReverse(payload);
-                break;
-            case ROOM_CREATE: // unused
-                break;
-            case ROOM_JOIN:
-                processRoomAction(payload);
-                break;
-            case ROOM_LEAVE:
-                processRoomAction(payload);
-                break;
-            case SYNC_CLIENT:
-                processRoomAction(payload);
-                break;
-            case ROOM_LIST:
-                processRoomsList(payload);
-                break;
-            case PayloadType.READY:
-                processReadyStatus(payload, false);
-                break;
-            case PayloadType.SYNC_READY:
-                processReadyStatus(payload, true);
-                break;
-            case PayloadType.RESET_READY:
-                // note no data necessary as this is just a trigger
-                processResetReady();
-                break;
-            case PayloadType.PHASE:
-                processPhase(payload);
-                break;
-            case PayloadType.TURN:
-            case PayloadType.SYNC_TURN:
-                processTurn(payload);
-                break;
-            case PayloadType.RESET_TURN:
-                // note no data necessary as this is just a trigger
-                processResetTurn();
-                break;
-            case PayloadType.TIME:
-                processCurrentTimer(payload);
-                break;
-            case PayloadType.POINTS:
-                processPoints(payload);
-                break;
-            case SESSION_OPTIONS:
-                if (payload instanceof Project.Common.SessionOptionsPayload) {
-                    Project.Common.SessionOptionsPayload options = (Project.Common.SessionOptionsPayload) payload;
-                    hardMode = options.isHardMode();
-                    // Optionally, notify GamePanel to update UI if needed
-                    if (currentGamePanel != null) {
-                        currentGamePanel.setHardMode(hardMode);
-                    }
-                }
-                break;
-            case AWAY_STATUS:
-                if (payload instanceof AwayStatusPayload) {
-                    AwayStatusPayload asp = (AwayStatusPayload) payload;
-                    long clientId = asp.getClientId();
-                    boolean isAway = asp.isAway();
-                    if (knownClients.containsKey(clientId)) {
-                        knownClients.get(clientId).setAway(isAway); // You may need to add setAway to User
-                    }
-                    // Notify UI callbacks (user list, etc.)
-                    events.forEach(event -> {
-                        if (event instanceof IClientEvents) {
-                            if (event instanceof Project.Client.Interfaces.IUserListEvent) {
-                                ((Project.Client.Interfaces.IUserListEvent) event).onUserAwayStatus(clientId, isAway);
-                            }
-                        }
-                    });
-                }
-
-                break;
-            default:
-                LoggerUtil.INSTANCE.warning(TextFX.colorize("Unhandled payload type", Color.YELLOW));
-                break;
+        PayloadType type = payload.getPayloadType();
+        if (type != PayloadType.TIME && type != PayloadType.CLIENT_ID) {
+            received++; // the server numbers the same frames (TIME may be dropped)
+        }
+        if (!inSequence(payload)) {
+            return;
+        }
+        Consumer<Payload> handler = handlers.get(payload.getPayloadType());
+        if (handler == null) {
+            LoggerUtil.INSTANCE.warning(TextFX.colorize("Unhandled payload type", Color.YELLOW));
+            return;
+        }
+        handler.accept(payload);
+    }
 
+    /**
+     * Checks a payload's place in the current room's broadcast stream
+     * 
+     * @param payload
+     * @return false if it should be skipped (already applied, or there's a gap
+     *         before it and the catch-up will bring it again)
+     */
+    private boolean inSequence(Payload payload) {
+        long sequence = payload.getSequence();
+        if (payload.getPayloadType() == PayloadType.ROOM_SNAPSHOT) {
+            roomSequence = sequence; // a new room, or a resync
+            catchingUp = false;
+            return true;
+        }
+        if (sequence == 0 || roomSequence < 0) {
+            return true; // not part of the stream
         }
+        if (sequence <= roomSequence) {
+            return false;
+        }
+        if (sequence != roomSequence + 1) {
+            LoggerUtil.INSTANCE.warning(String.format("Missed room broadcasts %s to %s, catching up",
+                    roomSequence + 1, sequence - 1));
+            sendCatchUp();
+            return false;
+        }
+        roomSequence = sequence;
+        catchingUp = false;
+        return true;
     }
 
     // Start process*() methods
+    private void processSessionOptions(Payload payload) {
+        if (payload instanceof Project.Common.SessionOptionsPayload) {
+            Project.Common.SessionOptionsPayload options = (Project.Common.SessionOptionsPayload) payload;
+            hardMode = options.isHardMode();
+            // Optionally, notify GamePanel to update UI if needed
+            if (currentGamePanel != null) {
+                currentGamePanel.setHardMode(hardMode);
+            }
+        }
+    }
+
     private void processPoints(Payload payload) {
         if (!(payload instanceof PointsPayload)) {
             error("Invalid payload subclass for processCardAdd");
@@ -594,11 +779,7 @@ public enum Client {
         if (knownClients.containsKey(targetId)) {
             knownClients.get(targetId).setPoints(points);
             try {
-                events.stream().forEach(event -> {
-                    if (event instanceof IPointsEvent) {
-                        ((IPointsEvent) event).onPointsUpdate(targetId, points);
-                    }
-                });
+                pointsEvents.forEach(event -> event.onPointsUpdate(targetId, points));
             } catch (Exception e) {
                 LoggerUtil.INSTANCE.severe("Error processing points", e);
             }
@@ -611,26 +792,44 @@ public enum Client {
             return;
         }
         TimerPayload timerPayload = (TimerPayload) payload;
-        try {
-            events.forEach(event -> {
-                if (event instanceof ITimeEvents) {
-                    ((ITimeEvents) event).onTimerUpdate(timerPayload.getTimerType(), timerPayload.getTime());
+        TimerType timerType = timerPayload.getTimerType();
+        TimedEvent previous = localTimers.remove(timerType);
+        if (previous != null) {
+            previous.cancel();
+        }
+        if (timerPayload.getTime() > 0 && timerPayload.getDuration() > 0) {
+            // started or resynced: count down from here until told otherwise
+            final TimedEvent countdown = new TimedEvent(timerPayload.getTime());
+            countdown.setTickCallback(time -> {
+                if (localTimers.get(timerType) == countdown) {
+                    notifyTimerUpdate(timerType, time);
                 }
             });
+            localTimers.put(timerType, countdown);
+        }
+        notifyTimerUpdate(timerType, timerPayload.getTime());
+    }
+
+    private void notifyTimerUpdate(TimerType timerType, int time) {
+        try {
+            timeEvents.forEach(event -> event.onTimerUpdate(timerType, time));
         } catch (Exception e) {
             LoggerUtil.INSTANCE.severe("Error processing current timer", e);
         }
     }
 
+    private void cancelLocalTimers() {
+        localTimers.values().removeIf(timer -> {
+            timer.cancel();
+            return true;
+        });
+    }
+
     private void processResetTurn() {
         knownClients.values().forEach(cp -> cp.setTookTurn(false));
         System.out.println("Turn status reset for everyone");
         try {
-            events.forEach(event -> {
-                if (event instanceof ITurnEvent) {
-                    ((ITurnEvent) event).onTookTurn(Constants.DEFAULT_CLIENT_ID, false);
-                }
-            });
+            turnEvents.forEach(event -> event.onTookTurn(Constants.DEFAULT_CLIENT_ID, false));
         } catch (Exception e) {
             LoggerUtil.INSTANCE.severe("Error processing reset turn", e);
         }
@@ -654,19 +853,11 @@ public enum Client {
             String message = String.format("%s %s their turn", cp.getDisplayName(),
                     cp.didTakeTurn() ? "took" : "reset");
             LoggerUtil.INSTANCE.info(message);
-            events.forEach(event -> {
-                if (event instanceof IMessageEvents) {
-                    ((IMessageEvents) event).onMessageReceive(Constants.GAME_EVENT_CHANNEL,
-                            String.format("%s finished their turn", cp.getDisplayName()));
-                }
-            });
+            messageEvents.forEach(event -> event.onMessageReceive(Constants.GAME_EVENT_CHANNEL,
+                    String.format("%s finished their turn", cp.getDisplayName())));
         }
         try {
-            events.forEach(event -> {
-                if (event instanceof ITurnEvent) {
-                    ((ITurnEvent) event).onTookTurn(cp.getClientId(), cp.didTakeTurn());
-                }
-            });
+            turnEvents.forEach(event -> event.onTookTurn(cp.getClientId(), cp.didTakeTurn()));
         } catch (Exception e) {
             LoggerUtil.INSTANCE.severe("Error processing turn", e);
         }
@@ -676,11 +867,7 @@ public enum Client {
         currentPhase = Enum.valueOf(Phase.class, payload.getMessage());
         System.out.println(TextFX.colorize("Current phase is " + currentPhase.name(), Color.YELLOW));
         try {
-            events.forEach(event -> {
-                if (event instanceof IPhaseEvent) {
-                    ((IPhaseEvent) event).onReceivePhase(currentPhase);
-                }
-            });
+            phaseEvents.forEach(event -> event.onReceivePhase(currentPhase));
         } catch (Exception e) {
             LoggerUtil.INSTANCE.severe("Error processing phase", e);
         }
@@ -694,15 +881,9 @@ public enum Client {
             cp.setTookTurn(false);
         });
         try {
-            events.forEach(event -> {
-                if (event instanceof IReadyEvent) {
-                    ((IReadyEvent) event).onReceiveReady(Constants.DEFAULT_CLIENT_ID, false, true);
-                } else if (event instanceof ITurnEvent) {
-                    ((ITurnEvent) event).onTookTurn(Constants.DEFAULT_CLIENT_ID, false);
-                } else if (event instanceof IPointsEvent) {
-                    ((IPointsEvent) event).onPointsUpdate(Constants.DEFAULT_CLIENT_ID, -1);
-                }
-            });
+            readyEvents.forEach(event -> event.onReceiveReady(Constants.DEFAULT_CLIENT_ID, false, true));
+            turnEvents.forEach(event -> event.onTookTurn(Constants.DEFAULT_CLIENT_ID, false));
+            pointsEvents.forEach(event -> event.onPointsUpdate(Constants.DEFAULT_CLIENT_ID, -1));
         } catch (Exception e) {
             LoggerUtil.INSTANCE.severe("Error processing reset ready", e);
         }
@@ -728,11 +909,7 @@ public enum Client {
                             rp.isReady() ? "ready" : "not ready"));
         }
         try {
-            events.forEach(event -> {
-                if (event instanceof IReadyEvent) {
-                    ((IReadyEvent) event).onReceiveReady(cp.getClientId(), cp.isReady(), isQuiet);
-                }
-            });
+            readyEvents.forEach(event -> event.onReceiveReady(cp.getClientId(), cp.isReady(), isQuiet));
 
         } catch (Exception e) {
             LoggerUtil.INSTANCE.severe("Error processing ready status", e);
@@ -745,13 +922,10 @@ public enum Client {
             return;
         }
         RoomResultPayload rrp = (RoomResultPayload) payload;
+        lastRoomPage = rrp;
         List<String> rooms = rrp.getRooms();
         try {
-            events.forEach(event -> {
-                if (event instanceof IRoomEvents) {
-                    ((IRoomEvents) event).onReceiveRoomList(rooms, rrp.getMessage());
-                }
-            });
+            roomEvents.forEach(event -> event.onReceiveRoomList(rooms, rrp.getMessage()));
         } catch (Exception e) {
             LoggerUtil.INSTANCE.severe("Error processing room list", e);
         }
@@ -762,25 +936,59 @@ public enum Client {
             return;
         }
         LoggerUtil.INSTANCE.info(TextFX.colorize("Room Results:", Color.PURPLE));
-        LoggerUtil.INSTANCE.info(
-                String.join("\n", rooms));
+        List<Integer> counts = rrp.getPlayerCounts();
+        List<Phase> phases = rrp.getPhases();
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < rooms.size(); i++) {
+            lines.append(rooms.get(i));
+            if (counts != null && i < counts.size()) {
+                lines.append(String.format(" (%s players", counts.get(i)));
+                Phase phase = phases != null && i < phases.size() ? phases.get(i) : null;
+                lines.append(phase == null ? ")" : String.format(", %s)", phase));
+            }
+            lines.append('\n');
+        }
+        if (rrp.getCursor() != null) {
+            lines.append("More rooms: /").append(Command.MORE_ROOMS.command);
+        }
+        LoggerUtil.INSTANCE.info(lines.toString().trim());
     }
 
     private void processClientData(Payload payload) {
+        ConnectionPayload cp = (ConnectionPayload) payload;
+        boolean resumed = cp.getResumeToken() != null && cp.getResumeToken().equals(resumeToken)
+                && cp.getClientId() == myUser.getClientId();
+        resumeToken = cp.getResumeToken();
+        boolean behind = cp.getReceived() != received;
+        received = cp.getReceived(); // what the server continues from
+        if (resumed) {
+            // same id, room and seat; missed payloads follow
+            wireFormat = WireFormat.BINARY;
+            LoggerUtil.INSTANCE.info(TextFX.colorize("Reconnected", Color.GREEN));
+            if (behind) {
+                catchingUp = false; // the one in flight (if any) was lost with the connection
+                sendCatchUp(); // more was missed than the server kept for us, ask the room
+            }
+            return;
+        }
+        roomSequence = -1; // until the lobby's snapshot
         if (myUser.getClientId() != Constants.DEFAULT_CLIENT_ID) {
-            LoggerUtil.INSTANCE.warning(TextFX.colorize("Client ID already set, this shouldn't happen", Color.YELLOW));
-
+            // reconnected too late, we're a new client now
+            LoggerUtil.INSTANCE.warning(TextFX.colorize("Session couldn't be resumed, starting over", Color.YELLOW));
+            knownClients.clear();
+            cancelLocalTimers();
         }
         myUser.setClientId(payload.getClientId());
         myUser.setClientName(((ConnectionPayload) payload).getClientName());// confirmation from Server
+        // the server accepted our exact codec version, anything else (0 = declined)
+        // stays on Java serialization
+        if (((ConnectionPayload) payload).getCodecVersion() == BinaryCodec.VERSION) {
+            wireFormat = WireFormat.BINARY;
+        }
         knownClients.put(myUser.getClientId(), myUser);
         LoggerUtil.INSTANCE.info(TextFX.colorize("Connected", Color.GREEN));
         try {
-            events.forEach(event -> {
-                if (event instanceof IConnectionEvents) {
-                    ((IConnectionEvents) event).onReceiveClientId(myUser.getClientId());
-                }
-            });
+            connectionEvents.forEach(event -> event.onReceiveClientId(myUser.getClientId()));
         } catch (Exception e) {
             LoggerUtil.INSTANCE.severe("Error processing client data", e);
         }
@@ -788,16 +996,14 @@ public enum Client {
 
     private void processDisconnect(Payload payload) {
         try {
-            events.forEach(event -> {
-                if (event instanceof IConnectionEvents) {
-                    ((IConnectionEvents) event).onClientDisconnect(payload.getClientId());
-                }
-            });
+            connectionEvents.forEach(event -> event.onClientDisconnect(payload.getClientId()));
         } catch (Exception e) {
             LoggerUtil.INSTANCE.severe("Error processing disconnect", e);
         }
         if (payload.getClientId() == myUser.getClientId()) {
+            resumeToken = null; // the server ended the session
             knownClients.clear();
+            cancelLocalTimers();
             myUser.reset();
             LoggerUtil.INSTANCE.info(TextFX.colorize("You disconnected", Color.RED));
         } else if (knownClients.containsKey(payload.getClientId())) {
@@ -811,6 +1017,157 @@ public enum Client {
 
     }
 
+    private void processLobbyPresence(Payload payload) {
+        if (!(payload instanceof LobbyPresencePayload)) {
+            error("Invalid payload subclass for processLobbyPresence");
+            return;
+        }
+        if (!Constants.LOBBY.equalsIgnoreCase(currentRoomName)) {
+            return; // sent before we left the lobby
+        }
+        int online = ((LobbyPresencePayload) payload).getOnline();
+        LoggerUtil.INSTANCE.info(String.format("%s in the lobby", online));
+        try {
+            lobbyEvents.forEach(event -> event.onLobbyPresence(online));
+        } catch (Exception e) {
+            LoggerUtil.INSTANCE.severe("Error processing lobby presence", e);
+        }
+    }
+
+    private void processAwayStatus(Payload payload) {
+        if (payload instanceof AwayStatusPayload) {
+            AwayStatusPayload asp = (AwayStatusPayload) payload;
+            long clientId = asp.getClientId();
+            boolean isAway = asp.isAway();
+            if (knownClients.containsKey(clientId)) {
+                knownClients.get(clientId).setAway(isAway); // You may need to add setAway to User
+            }
+            // Notify UI callbacks (user list, etc.)
+            userListEvents.forEach(event -> event.onUserAwayStatus(clientId, isAway));
+        }
+    }
+
+    /**
+     * Replaces knownClients with everyone already in the room we just joined
+     * (our own join follows as a ROOM_DIFF)
+     * 
+     * @param payload
+     */
+    private void processRoomSnapshot(Payload payload) {
+        if (!(payload instanceof RosterPayload)) {
+            error("Invalid payload subclass for processRoomSnapshot");
+            return;
+        }
+        RosterPayload roster = (RosterPayload) payload;
+        // same reset as a DEFAULT_CLIENT_ID ROOM_JOIN
+        ConnectionPayload reset = new ConnectionPayload();
+        reset.setPayloadType(PayloadType.ROOM_JOIN);
+        reset.setClientId(Constants.DEFAULT_CLIENT_ID);
+        reset.setMessage(roster.getMessage());
+        processRoomAction(reset);
+        for (int i = 0; i < roster.size(); i++) {
+            User user = new User();
+            user.setClientId(roster.getMemberId(i));
+            user.setClientName(roster.getMemberName(i));
+            user.setPoints(roster.getMemberPoints(i));
+            user.setReady(roster.hasFlag(i, RosterPayload.READY));
+            user.setTookTurn(roster.hasFlag(i, RosterPayload.TOOK_TURN));
+            user.setAway(roster.hasFlag(i, RosterPayload.AWAY));
+            user.setSpectator(roster.hasFlag(i, RosterPayload.SPECTATOR));
+            knownClients.put(user.getClientId(), user);
+        }
+        rosterVersion = roster.getVersion();
+        try {
+            for (int i = 0; i < roster.size(); i++) {
+                long id = roster.getMemberId(i);
+                int points = roster.getMemberPoints(i);
+                roomEvents.forEach(event -> event.onRoomAction(id, roster.getMessage(), true, true));
+                if (roster.hasFlag(i, RosterPayload.READY)) {
+                    readyEvents.forEach(event -> event.onReceiveReady(id, true, true));
+                }
+                if (roster.hasFlag(i, RosterPayload.TOOK_TURN)) {
+                    turnEvents.forEach(event -> event.onTookTurn(id, true));
+                }
+                if (points != 0) {
+                    pointsEvents.forEach(event -> event.onPointsUpdate(id, points));
+                }
+                if (roster.hasFlag(i, RosterPayload.AWAY)) {
+                    userListEvents.forEach(event -> event.onUserAwayStatus(id, true));
+                }
+            }
+        } catch (Exception e) {
+            LoggerUtil.INSTANCE.severe("Error processing room snapshot", e);
+        }
+    }
+
+    /**
+     * Applies member changes by handing whatever differs from knownClients to
+     * the same process*() methods the individual payloads use
+     * 
+     * @param payload
+     */
+    private void processRoomDiff(Payload payload) {
+        if (!(payload instanceof RosterPayload)) {
+            error("Invalid payload subclass for processRoomDiff");
+            return;
+        }
+        RosterPayload roster = (RosterPayload) payload;
+        if (roster.getVersion() != rosterVersion + 1) {
+            LoggerUtil.INSTANCE.warning(String.format("Room roster jumped from version %s to %s",
+                    rosterVersion, roster.getVersion()));
+        }
+        rosterVersion = roster.getVersion();
+        for (int i = 0; i < roster.size(); i++) {
+            long id = roster.getMemberId(i);
+            boolean joined = roster.hasFlag(i, RosterPayload.JOINED);
+            if (joined || roster.hasFlag(i, RosterPayload.LEFT)) {
+                ConnectionPayload cp = new ConnectionPayload();
+                cp.setPayloadType(joined ? PayloadType.ROOM_JOIN : PayloadType.ROOM_LEAVE);
+                cp.setClientId(id);
+                cp.setClientName(roster.getMemberName(i));
+                cp.setMessage(roster.getMessage());
+                processRoomAction(cp);
+                if (!joined) {
+                    continue;
+                }
+            }
+            User user = knownClients.get(id);
+            if (user == null) {
+                LoggerUtil.INSTANCE.severe(String.format("Received roster update for client id %s who is not known", id));
+                continue;
+            }
+            boolean ready = roster.hasFlag(i, RosterPayload.READY);
+            if (user.isReady() != ready) {
+                ReadyPayload rp = new ReadyPayload();
+                rp.setClientId(id);
+                rp.setReady(ready);
+                processReadyStatus(rp, joined);
+            }
+            boolean tookTurn = roster.hasFlag(i, RosterPayload.TOOK_TURN);
+            if (user.didTakeTurn() != tookTurn) {
+                ReadyPayload rp = new ReadyPayload();
+                rp.setPayloadType(joined ? PayloadType.SYNC_TURN : PayloadType.TURN);
+                rp.setClientId(id);
+                rp.setReady(tookTurn);
+                processTurn(rp);
+            }
+            if (user.getPoints() != roster.getMemberPoints(i)) {
+                PointsPayload pp = new PointsPayload();
+                pp.setClientId(id);
+                pp.setPoints(roster.getMemberPoints(i));
+                processPoints(pp);
+            }
+            boolean away = roster.hasFlag(i, RosterPayload.AWAY);
+            if (user.isAway() != away) {
+                AwayStatusPayload asp = new AwayStatusPayload();
+                asp.setClientId(id);
+                asp.setAway(away);
+                processAwayStatus(asp);
+            }
+            user.setSpectator(roster.hasFlag(i, RosterPayload.SPECTATOR));
+        }
+    }
+
     private void processRoomAction(Payload payload) {
         if (!(payload instanceof ConnectionPayload)) {
             error("Invalid payload subclass for processRoomAction");
@@ -821,16 +1178,13 @@ public enum Client {
         // transitions)
         if (connectionPayload.getClientId() == Constants.DEFAULT_CLIENT_ID) {
             knownClients.clear();
+            cancelLocalTimers(); // the old room's timers don't apply anymore
             try {
-                events.forEach(event -> {
-                    if (event instanceof IRoomEvents) {
-                        ((IRoomEvents) event).onRoomAction(
-                                Constants.DEFAULT_CLIENT_ID, // reset
-                                connectionPayload.getMessage(), // room name
-                                false, // is join
-                                true);
-                    }
-                });
+                roomEvents.forEach(event -> event.onRoomAction(
+                        Constants.DEFAULT_CLIENT_ID, // reset
+                        connectionPayload.getMessage(), // room name
+                        false, // is join
+                        true));
             } catch (Exception e) {
                 LoggerUtil.INSTANCE.severe("Error processing room reset action", e);
             }
@@ -844,15 +1198,11 @@ public enum Client {
                     // inform UI of user leaving (do this first before removal since UI side uses a
                     // lookup method to fetch display name)
                     try {
-                        events.forEach(event -> {
-                            if (event instanceof IRoomEvents) {
-                                ((IRoomEvents) event).onRoomAction(
-                                        connectionPayload.getClientId(),
-                                        connectionPayload.getMessage(),
-                                        false,
-                                        false);
-                            }
-                        });
+                        roomEvents.forEach(event -> event.onRoomAction(
+                                connectionPayload.getClientId(),
+                                connectionPayload.getMessage(),
+                                false,
+                                false));
                     } catch (Exception e) {
                         LoggerUtil.INSTANCE.severe("Error processing room leave action", e);
                     }
@@ -867,6 +1217,9 @@ public enum Client {
                 if (connectionPayload.getMessage() != null) {
                     LoggerUtil.INSTANCE.info(TextFX.colorize(connectionPayload.getMessage(), Color.GREEN));
                 }
+                if (connectionPayload.getClientId() == myUser.getClientId()) {
+                    currentRoomName = connectionPayload.getMessage();
+                }
 
                 // cascade to manage knownClients
             case SYNC_CLIENT:
@@ -878,16 +1231,12 @@ public enum Client {
                     knownClients.put(connectionPayload.getClientId(), user);
                     // inform UI of user joining
                     try {
-                        events.forEach(event -> {
-                            if (event instanceof IRoomEvents) {
-                                ((IRoomEvents) event).onRoomAction(
-                                        connectionPayload.getClientId(), // who
-                                        connectionPayload.getMessage(), // room name
-                                        true, // is join
-                                        connectionPayload.getPayloadType() == PayloadType.SYNC_CLIENT // isQuiet if sync
-                                );
-                            }
-                        });
+                        roomEvents.forEach(event -> event.onRoomAction(
+                                connectionPayload.getClientId(), // who
+                                connectionPayload.getMessage(), // room name
+                                true, // is join
+                                connectionPayload.getPayloadType() == PayloadType.SYNC_CLIENT // isQuiet if sync
+                                ));
                     } catch (Exception e) {
                         LoggerUtil.INSTANCE.severe("Error processing room join action", e);
                     }
@@ -906,52 +1255,80 @@ public enum Client {
         String message = payload.getMessage();
         LoggerUtil.INSTANCE.info(TextFX.colorize(message, Color.BLUE));
         try {
-            // Always process game events
-            processGameEvent(message);
+            // older servers (no BinaryCodec) send game state as game event strings
+            if (wireFormat != WireFormat.BINARY && payload.getClientId() == Constants.GAME_EVENT_CHANNEL) {
+                processGameEvent(message);
+            }
 
-            events.forEach(event -> {
-                if (event instanceof IMessageEvents) {
-                    ((IMessageEvents) event).onMessageReceive(payload.getClientId(), message);
-                }
-            });
+            messageEvents.forEach(event -> event.onMessageReceive(payload.getClientId(), message));
         } catch (Exception e) {
             LoggerUtil.INSTANCE.severe("Error processing message", e);
         }
     }
 
+    private void processWordMask(Payload payload) {
+        if (!(payload instanceof WordMaskPayload)) {
+            error("Invalid payload subclass for processWordMask");
+            return;
+        }
+        String wordDisplay = ((WordMaskPayload) payload).getMask();
+        gameStateEvents.forEach(event -> event.onWordUpdate(wordDisplay));
+    }
+
+    private void processStrikes(Payload payload) {
+        if (!(payload instanceof StrikesPayload)) {
+            error("Invalid payload subclass for processStrikes");
+            return;
+        }
+        int strikes = ((StrikesPayload) payload).getStrikes();
+        gameStateEvents.forEach(event -> event.onStrikesUpdate(strikes));
+    }
+
+    private void processLetterGuessed(Payload payload) {
+        if (!(payload instanceof LetterGuessedPayload)) {
+            error("Invalid payload subclass for processLetterGuessed");
+            return;
+        }
+        if (currentGamePanel != null) {
+            currentGamePanel.disableLetterButton(((LetterGuessedPayload) payload).getLetter());
+        }
+    }
+
+    private void processRoundResult(Payload payload) {
+        if (!(payload instanceof RoundResultPayload)) {
+            error("Invalid payload subclass for processRoundResult");
+            return;
+        }
+        // the narrative (who solved it, scoreboard) arrives as game event messages
+        RoundResultPayload rrp = (RoundResultPayload) payload;
+        LoggerUtil.INSTANCE.info(String.format("Round %s %s, the word was %s", rrp.getRound(),
+                rrp.isSolved() ? "solved by " + getDisplayNameFromId(rrp.getClientId()) : "not solved",
+                rrp.getWord()));
+    }
+
+    /**
+     * Recovers game state from game event strings (servers without typed game
+     * state payloads)
+     * 
+     * @param message
+     */
     private void processGameEvent(String message) {
         // Update game state based on message content
         if (message.contains("Word:")) {
             String wordDisplay = message.substring(message.indexOf("Word:") + 6).trim();
-            events.forEach(event -> {
-                if (event instanceof IGameStateEvent) {
-                    ((IGameStateEvent) event).onWordUpdate(wordDisplay);
-                }
-            });
+            gameStateEvents.forEach(event -> event.onWordUpdate(wordDisplay));
         } else if (message.startsWith("Current word:")) {
             String wordDisplay = message.substring("Current word:".length()).trim();
-            events.forEach(event -> {
-                if (event instanceof IGameStateEvent) {
-                    ((IGameStateEvent) event).onWordUpdate(wordDisplay);
-                }
-            });
+            gameStateEvents.forEach(event -> event.onWordUpdate(wordDisplay));
         } else if (message.contains("Strikes:")) {
             String strikesText = message.substring(message.indexOf("Strikes:") + 8).trim();
             int strikes = Integer.parseInt(strikesText.split("/")[0]);
-            events.forEach(event -> {
-                if (event instanceof IGameStateEvent) {
-                    ((IGameStateEvent) event).onStrikesUpdate(strikes);
-                }
-            });
+            gameStateEvents.forEach(event -> event.onStrikesUpdate(strikes));
         } else if (message.startsWith("STRIKES:")) {
             // NEW: handle STRIKES:<count> event from server
             try {
                 int strikes = Integer.parseInt(message.substring("STRIKES:".length()).trim());
-                events.forEach(event -> {
-                    if (event instanceof IGameStateEvent) {
-                        ((IGameStateEvent) event).onStrikesUpdate(strikes);
-                    }
-                });
+                gameStateEvents.forEach(event -> event.onStrikesUpdate(strikes));
             } catch (Exception e) {
                 LoggerUtil.INSTANCE.warning("Failed to parse STRIKES message: " + message);
             }
@@ -971,11 +1348,7 @@ public enum Client {
     private void processReverse(Payload payload) {
         LoggerUtil.INSTANCE.info(TextFX.colorize(payload.getMessage(), Color.PURPLE));
         try {
-            events.forEach(event -> {
-                if (event instanceof IMessageEvents) {
-                    ((IMessageEvents) event).onMessageReceive(payload.getClientId(), payload.getMessage());
-                }
-            });
+            messageEvents.forEach(event -> event.onMessageReceive(payload.getClientId(), payload.getMessage()));
         } catch (Exception e) {
             LoggerUtil.INSTANCE.severe("Error processing reverse message", e);
         }
@@ -20,6 +20,7 @@ import javax.swing.SwingUtilities;
 
 import Project.Client.Interfaces.ICardControls;
 import Project.Client.Interfaces.IConnectionEvents;
+import Project.Client.Interfaces.ILobbyEvents;
 import Project.Client.Interfaces.IMessageEvents;
 import Project.Client.Interfaces.IRoomEvents;
 import Project.Client.Views.ChatGamePanel;
@@ -34,7 +35,8 @@ import Project.Common.LoggerUtil;
  * ClientUI is the main application window that manages different screens and
  * handles client events.
  */
-public class ClientUI extends JFrame implements IConnectionEvents, IMessageEvents, IRoomEvents, ICardControls {
+public class ClientUI extends JFrame implements IConnectionEvents, IMessageEvents, IRoomEvents, ILobbyEvents,
+        ICardControls {
     private CardLayout card = new CardLayout(); // Layout manager to switch between different screens
     private Container container; // Container to hold different panels
     private JPanel cardContainer;
@@ -239,6 +241,11 @@ public class ClientUI extends JFrame implements IConnectionEvents, IMessageEvent
         chatGamePanel.getChatPanel().clearUserList();
     }
 
+    @Override
+    public void onLobbyPresence(int online) {
+        roomLabel.setText(String.format("Room: %s (%s online)", Constants.LOBBY, online));
+    }
+
     @Override
     public void onReceiveRoomList(List<String> rooms, String message) {
         roomsPanel.removeAllRooms();
@@ -0,0 +1,14 @@
+package Project.Client.Interfaces;
+
+/**
+ * Interface for handling lobby events.
+ */
+public interface ILobbyEvents extends IClientEvents {
+    /**
+     * Received the number of clients in the lobby (the user list only shows
+     * the part of the lobby we were seated in).
+     *
+     * @param online Clients in the lobby, us included.
+     */
+    void onLobbyPresence(int online);
+}
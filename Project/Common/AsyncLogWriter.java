@@ -0,0 +1,189 @@
+package Project.Common;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Background writer behind LoggerUtil's async mode.
+ * <p>
+ * Logging threads only put the LogRecord in a lock-free ring buffer. One
+ * daemon thread drains it in batches, formats each record once and hands each
+ * handler a single combined write per batch (FileHandler and ConsoleHandler
+ * otherwise flush after every record). When the buffer is full the caller
+ * writes a batch itself, so records are never dropped and a flood of logging
+ * degrades to roughly synchronous speed instead of stalling.
+ * </p>
+ * After close() records are written on the calling thread, so late logging
+ * from shutdown hooks still reaches the file.
+ */
+final class AsyncLogWriter {
+    private static final int BATCH = 256;
+
+    /**
+     * A handler plus the text of the batch being built for it
+     */
+    private static class Sink {
+        final Handler handler;
+        final int level;
+        final StringBuilder batch = new StringBuilder(16 * 1024);
+
+        Sink(Handler handler, Level level) {
+            this.handler = handler;
+            this.level = level.intValue();
+        }
+
+        boolean accepts(LogRecord record) {
+            return level != Level.OFF.intValue() && record.getLevel().intValue() >= level;
+        }
+
+        void write() {
+            if (batch.length() == 0) {
+                return;
+            }
+            // SEVERE so the handler's own level check never filters a batch
+            handler.publish(new LogRecord(Level.SEVERE, batch.toString()));
+            batch.setLength(0);
+        }
+    }
+
+    /**
+     * Handlers fed by the writer get text that's already formatted
+     */
+    static class PassThroughFormatter extends Formatter {
+        @Override
+        public String format(LogRecord record) {
+            return record.getMessage();
+        }
+    }
+
+    private final MpscRingBuffer<LogRecord> ring;
+    private final LoggerUtil.CustomFormatter formatter;
+    private final Sink[] sinks;
+    private final StringBuilder line = new StringBuilder(512);
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean parked = false;
+    private volatile long written = 0; // records taken from the ring and written
+
+    AsyncLogWriter(int capacity, LoggerUtil.CustomFormatter formatter, Handler fileHandler, Level fileLevel,
+            Handler consoleHandler, Level consoleLevel) {
+        this.ring = new MpscRingBuffer<>(capacity);
+        this.formatter = formatter;
+        this.sinks = new Sink[] { new Sink(fileHandler, fileLevel), new Sink(consoleHandler, consoleLevel) };
+        this.thread = Thread.ofPlatform().name("LogWriter").daemon(true).start(this::run);
+    }
+
+    /**
+     * Queues a record; writes a batch on this thread if the buffer is full
+     *
+     * @param record
+     */
+    void submit(LogRecord record) {
+        if (!running) {
+            writeNow(record);
+            return;
+        }
+        while (!ring.offer(record)) {
+            // full: help write a batch instead of spinning against the writer for CPU
+            drainBatch();
+        }
+        if (!running) {
+            // the writer may have exited after we checked, don't strand the record
+            while (drainBatch() > 0) {
+            }
+        } else if (parked) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void run() {
+        while (running || !ring.isEmpty()) {
+            int count = 0;
+            try {
+                count = drainBatch();
+            } catch (Exception e) {
+                e.printStackTrace(); // can't log our own failure
+            }
+            if (count == 0) {
+                parked = true;
+                if (ring.isEmpty() && running) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+                }
+                parked = false;
+            }
+        }
+    }
+
+    // synchronized: callers drain too once the writer has stopped
+    private synchronized int drainBatch() {
+        int count = 0;
+        LogRecord record;
+        while (count < BATCH && (record = ring.poll()) != null) {
+            append(record);
+            count++;
+        }
+        if (count > 0) {
+            for (Sink sink : sinks) {
+                sink.write();
+            }
+            written += count;
+        }
+        return count;
+    }
+
+    private void append(LogRecord record) {
+        line.setLength(0);
+        formatter.appendTo(line, record);
+        for (Sink sink : sinks) {
+            if (sink.accepts(record)) {
+                sink.batch.append(line);
+            }
+        }
+    }
+
+    private synchronized void writeNow(LogRecord record) {
+        append(record);
+        for (Sink sink : sinks) {
+            sink.write();
+        }
+    }
+
+    /**
+     * Waits until everything queued so far has been written
+     *
+     * @param timeout
+     * @param unit
+     * @return false if it timed out
+     */
+    boolean flush(long timeout, TimeUnit unit) {
+        long target = ring.getOffered();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (written < target && thread.isAlive()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        return true;
+    }
+
+    /**
+     * Writes what's queued and stops the writer thread; later records are
+     * written directly
+     */
+    void close() {
+        flush(5, TimeUnit.SECONDS);
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,624 @@
+package Project.Common;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hand-written binary encoding for Payloads.
+ * <p>
+ * A body starts with the PayloadType ordinal followed by a fixed field layout
+ * for that type. Java serialized bodies always start with 0xAC (stream magic)
+ * so FrameCodec can tell the two apart per frame.
+ * </p>
+ * Field encodings: ids and ints are zigzag varints, strings are a varint
+ * (length + 1, 0 = null) followed by UTF-8 bytes, booleans are packed into a
+ * single flags byte.
+ */
+public final class BinaryCodec {
+    /**
+     * Version offered in the CLIENT_CONNECT handshake
+     */
+    public static final int VERSION = 8; // 2: TimerPayload duration, 3: paged room list, 4: lobby presence,
+                                        // 5: room snapshots/diffs, 6: typed game events, 7: session resume,
+                                        // 8: room broadcast sequence
+
+    private static final byte JAVA_STREAM_MAGIC = (byte) 0xAC;
+    private static final int NULL_ENUM = 0xFF;
+
+    /**
+     * Field layout (and concrete Payload class) used by each PayloadType
+     */
+    private enum Layout {
+        BASE, CONNECTION, READY, TIMER, POINTS, ROOM_RESULT, SESSION_OPTIONS, AWAY, PRESENCE, ROSTER, WORD_MASK,
+        STRIKES, LETTER, ROUND_RESULT
+    }
+
+    private static final Layout[] LAYOUTS = new Layout[PayloadType.values().length];
+    static {
+        for (PayloadType type : PayloadType.values()) {
+            LAYOUTS[type.ordinal()] = layoutOf(type);
+        }
+    }
+
+    private BinaryCodec() {
+    }
+
+    private static Layout layoutOf(PayloadType type) {
+        switch (type) {
+            case CLIENT_CONNECT:
+            case CLIENT_ID:
+            case SYNC_CLIENT:
+            case ROOM_JOIN:
+            case ROOM_LEAVE:
+                return Layout.CONNECTION;
+            case READY:
+            case SYNC_READY:
+            case RESET_READY:
+            case TURN:
+            case SYNC_TURN:
+            case RESET_TURN:
+                return Layout.READY;
+            case TIME:
+                return Layout.TIMER;
+            case POINTS:
+                return Layout.POINTS;
+            case ROOM_LIST:
+                return Layout.ROOM_RESULT;
+            case SESSION_OPTIONS:
+                return Layout.SESSION_OPTIONS;
+            case AWAY_STATUS:
+                return Layout.AWAY;
+            case LOBBY_PRESENCE:
+                return Layout.PRESENCE;
+            case ROOM_SNAPSHOT:
+            case ROOM_DIFF:
+                return Layout.ROSTER;
+            case WORD_MASK:
+                return Layout.WORD_MASK;
+            case STRIKES:
+                return Layout.STRIKES;
+            case LETTER_GUESSED:
+                return Layout.LETTER;
+            case ROUND_RESULT:
+                return Layout.ROUND_RESULT;
+            default:
+                return Layout.BASE;
+        }
+    }
+
+    /**
+     * @param body
+     * @param offset
+     * @return true if the body was written by this codec
+     */
+    public static boolean isBinary(byte[] body, int offset) {
+        return body[offset] != JAVA_STREAM_MAGIC;
+    }
+
+    /**
+     * Encodes a complete frame (FrameCodec header + binary body)
+     *
+     * @param payload
+     * @return the frame bytes
+     * @throws IOException if the payload can't be encoded
+     */
+    public static byte[] encodeFrame(Payload payload) throws IOException {
+        Writer w = new Writer(64);
+        w.pos = FrameCodec.HEADER_SIZE; // reserve room for the length
+        write(w, payload);
+        int length = w.pos - FrameCodec.HEADER_SIZE;
+        w.buf[0] = (byte) (length >>> 24);
+        w.buf[1] = (byte) (length >>> 16);
+        w.buf[2] = (byte) (length >>> 8);
+        w.buf[3] = (byte) length;
+        return Arrays.copyOf(w.buf, w.pos);
+    }
+
+    private static void write(Writer w, Payload payload) throws IOException {
+        PayloadType type = payload.getPayloadType();
+        if (type == null) {
+            throw new IOException("Payload is missing a PayloadType");
+        }
+        w.writeByte(type.ordinal());
+        w.writeVarLong(payload.getClientId());
+        w.writeString(payload.getMessage());
+        w.writeVarLong(payload.getSequence());
+        switch (LAYOUTS[type.ordinal()]) {
+            case CONNECTION: {
+                // other classes (i.e., a plain Payload for ROOM_JOIN) encode with defaults
+                ConnectionPayload cp = payload instanceof ConnectionPayload c ? c : null;
+                w.writeString(cp == null ? null : cp.getClientName());
+                w.writeVarLong(cp == null ? 0 : cp.getCodecVersion());
+                w.writeString(cp == null ? null : cp.getResumeToken());
+                w.writeVarLong(cp == null ? 0 : cp.getReceived());
+                break;
+            }
+            case READY:
+                w.writeByte(payload instanceof ReadyPayload rp && rp.isReady() ? 1 : 0);
+                break;
+            case TIMER: {
+                TimerPayload tp = payload instanceof TimerPayload t ? t : null;
+                w.writeByte(tp == null || tp.getTimerType() == null ? NULL_ENUM : tp.getTimerType().ordinal());
+                w.writeVarLong(tp == null ? 0 : tp.getTime());
+                w.writeVarLong(tp == null ? 0 : tp.getDuration());
+                break;
+            }
+            case POINTS:
+                w.writeVarLong(payload instanceof PointsPayload pp ? pp.getPoints() : 0);
+                break;
+            case ROOM_RESULT: {
+                RoomResultPayload rrp = payload instanceof RoomResultPayload r ? r : null;
+                List<String> rooms = rrp == null ? null : rrp.getRooms();
+                List<Integer> counts = rrp == null ? null : rrp.getPlayerCounts();
+                List<Phase> phases = rrp == null ? null : rrp.getPhases();
+                int count = rooms == null ? 0 : rooms.size();
+                w.writeVarLong(count);
+                for (int i = 0; i < count; i++) {
+                    w.writeString(rooms.get(i));
+                    Integer players = counts != null && i < counts.size() ? counts.get(i) : null;
+                    w.writeVarLong(players == null ? 0 : players);
+                    Phase phase = phases != null && i < phases.size() ? phases.get(i) : null;
+                    w.writeByte(phase == null ? NULL_ENUM : phase.ordinal());
+                }
+                w.writeString(rrp == null ? null : rrp.getCursor());
+                w.writeVarLong(rrp == null ? 0 : rrp.getLimit());
+                w.writeByte(rrp != null && rrp.isPrefix() ? 1 : 0);
+                break;
+            }
+            case SESSION_OPTIONS: {
+                SessionOptionsPayload sop = payload instanceof SessionOptionsPayload s ? s : null;
+                int flags = 0;
+                if (sop != null && sop.isRemoveStrikeOnCorrectGuess()) {
+                    flags |= 1;
+                }
+                if (sop != null && sop.isHardMode()) {
+                    flags |= 2;
+                }
+                w.writeByte(flags);
+                break;
+            }
+            case AWAY: {
+                AwayStatusPayload asp = payload instanceof AwayStatusPayload a ? a : null;
+                w.writeByte(asp != null && asp.isAway() ? 1 : 0);
+                w.writeString(asp == null ? null : asp.getClientName());
+                break;
+            }
+            case PRESENCE:
+                w.writeVarLong(payload instanceof LobbyPresencePayload lpp ? lpp.getOnline() : 0);
+                break;
+            case ROSTER: {
+                // column by column so ids, points and flags each pack tightly
+                RosterPayload rp = payload instanceof RosterPayload r ? r : null;
+                int count = rp == null ? 0 : rp.size();
+                w.writeVarLong(rp == null ? 0 : rp.getVersion());
+                w.writeVarLong(count);
+                for (int i = 0; i < count; i++) {
+                    w.writeVarLong(rp.getMemberId(i));
+                }
+                for (int i = 0; i < count; i++) {
+                    w.writeString(rp.getMemberName(i));
+                }
+                for (int i = 0; i < count; i++) {
+                    w.writeVarLong(rp.getMemberPoints(i));
+                }
+                for (int i = 0; i < count; i++) {
+                    w.writeByte(rp.getMemberFlags(i));
+                }
+                break;
+            }
+            case WORD_MASK: {
+                WordMaskPayload wmp = payload instanceof WordMaskPayload m ? m : null;
+                w.writeString(wmp == null ? null : wmp.getMask());
+                w.writeVarLong(wmp == null ? 0 : wmp.getRound());
+                break;
+            }
+            case STRIKES: {
+                StrikesPayload sp = payload instanceof StrikesPayload s ? s : null;
+                w.writeVarLong(sp == null ? 0 : sp.getStrikes());
+                w.writeVarLong(sp == null ? 0 : sp.getMaxStrikes());
+                break;
+            }
+            case LETTER:
+                w.writeVarLong(payload instanceof LetterGuessedPayload lgp ? lgp.getLetter() : 0);
+                break;
+            case ROUND_RESULT: {
+                RoundResultPayload rrp = payload instanceof RoundResultPayload r ? r : null;
+                w.writeVarLong(rrp == null ? 0 : rrp.getRound());
+                w.writeString(rrp == null ? null : rrp.getWord());
+                w.writeByte(rrp != null && rrp.isSolved() ? 1 : 0);
+                break;
+            }
+            case BASE:
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Decodes a binary body (without the frame header)
+     *
+     * @param body
+     * @param offset
+     * @param length
+     * @return the Payload, using the concrete class for its PayloadType
+     * @throws IOException on truncated or unknown data
+     */
+    public static Payload decode(byte[] body, int offset, int length) throws IOException {
+        Reader r = new Reader(body, offset, offset + length);
+        int ordinal = r.readByte();
+        if (ordinal >= LAYOUTS.length) {
+            throw new IOException(String.format("Unknown PayloadType ordinal %s", ordinal));
+        }
+        PayloadType type = PayloadType.values()[ordinal];
+        long clientId = r.readVarLong();
+        String message = r.readString();
+        long sequence = r.readVarLong();
+        Payload payload;
+        switch (LAYOUTS[ordinal]) {
+            case CONNECTION: {
+                ConnectionPayload cp = new ConnectionPayload();
+                cp.setClientName(r.readString());
+                cp.setCodecVersion((int) r.readVarLong());
+                cp.setResumeToken(r.readString());
+                cp.setReceived(r.readVarLong());
+                payload = cp;
+                break;
+            }
+            case READY: {
+                ReadyPayload rp = new ReadyPayload();
+                rp.setReady(r.readByte() == 1);
+                payload = rp;
+                break;
+            }
+            case TIMER: {
+                TimerPayload tp = new TimerPayload();
+                int timerType = r.readByte();
+                tp.setTimerType(timerType == NULL_ENUM ? null : TimerType.values()[timerType]);
+                tp.setTime((int) r.readVarLong());
+                tp.setDuration((int) r.readVarLong());
+                payload = tp;
+                break;
+            }
+            case POINTS: {
+                PointsPayload pp = new PointsPayload();
+                pp.setPoints((int) r.readVarLong());
+                payload = pp;
+                break;
+            }
+            case ROOM_RESULT: {
+                RoomResultPayload rrp = new RoomResultPayload();
+                int count = (int) r.readVarLong();
+                for (int i = 0; i < count; i++) {
+                    String name = r.readString();
+                    int players = (int) r.readVarLong();
+                    int phase = r.readByte();
+                    rrp.addRoom(name, players, phase == NULL_ENUM ? null : Phase.values()[phase]);
+                }
+                rrp.setCursor(r.readString());
+                rrp.setLimit((int) r.readVarLong());
+                rrp.setPrefix(r.readByte() == 1);
+                payload = rrp;
+                break;
+            }
+            case SESSION_OPTIONS: {
+                SessionOptionsPayload sop = new SessionOptionsPayload();
+                int flags = r.readByte();
+                sop.setRemoveStrikeOnCorrectGuess((flags & 1) != 0);
+                sop.setHardMode((flags & 2) != 0);
+                payload = sop;
+                break;
+            }
+            case AWAY: {
+                AwayStatusPayload asp = new AwayStatusPayload();
+                asp.setAway(r.readByte() == 1);
+                asp.setClientName(r.readString());
+                payload = asp;
+                break;
+            }
+            case PRESENCE: {
+                LobbyPresencePayload lpp = new LobbyPresencePayload();
+                lpp.setOnline((int) r.readVarLong());
+                payload = lpp;
+                break;
+            }
+            case ROSTER: {
+                RosterPayload rp = new RosterPayload();
+                rp.setVersion(r.readVarLong());
+                int count = (int) r.readVarLong();
+                if (count < 0 || count > r.limit - r.pos) {
+                    throw new IOException("Truncated binary payload");
+                }
+                long[] ids = new long[count];
+                String[] names = new String[count];
+                int[] points = new int[count];
+                for (int i = 0; i < count; i++) {
+                    ids[i] = r.readVarLong();
+                }
+                for (int i = 0; i < count; i++) {
+                    names[i] = r.readString();
+                }
+                for (int i = 0; i < count; i++) {
+                    points[i] = (int) r.readVarLong();
+                }
+                for (int i = 0; i < count; i++) {
+                    rp.addMember(ids[i], names[i], points[i], r.readByte());
+                }
+                payload = rp;
+                break;
+            }
+            case WORD_MASK: {
+                WordMaskPayload wmp = new WordMaskPayload();
+                wmp.setMask(r.readString());
+                wmp.setRound((int) r.readVarLong());
+                payload = wmp;
+                break;
+            }
+            case STRIKES: {
+                StrikesPayload sp = new StrikesPayload();
+                sp.setStrikes((int) r.readVarLong());
+                sp.setMaxStrikes((int) r.readVarLong());
+                payload = sp;
+                break;
+            }
+            case LETTER: {
+                LetterGuessedPayload lgp = new LetterGuessedPayload();
+                lgp.setLetter((char) r.readVarLong());
+                payload = lgp;
+                break;
+            }
+            case ROUND_RESULT: {
+                RoundResultPayload rrp = new RoundResultPayload();
+                rrp.setRound((int) r.readVarLong());
+                rrp.setWord(r.readString());
+                rrp.setSolved(r.readByte() == 1);
+                payload = rrp;
+                break;
+            }
+            case BASE:
+            default:
+                payload = new Payload();
+                break;
+        }
+        payload.setPayloadType(type);
+        payload.setClientId(clientId);
+        payload.setMessage(message);
+        payload.setSequence(sequence);
+        return payload;
+    }
+
+    /**
+     * Growable output buffer
+     */
+    private static class Writer {
+        byte[] buf;
+        int pos = 0;
+
+        Writer(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        private void ensure(int extra) {
+            if (pos + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + extra));
+            }
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            buf[pos++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            long zigzag = (value << 1) ^ (value >> 63);
+            ensure(10);
+            while ((zigzag & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buf[pos++] = (byte) zigzag;
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(utf8.length + 1L);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, buf, pos, utf8.length);
+            pos += utf8.length;
+        }
+    }
+
+    /**
+     * Bounds-checked input cursor
+     */
+    private static class Reader {
+        final byte[] buf;
+        int pos;
+        final int limit;
+
+        Reader(byte[] buf, int pos, int limit) {
+            this.buf = buf;
+            this.pos = pos;
+            this.limit = limit;
+        }
+
+        int readByte() throws IOException {
+            if (pos >= limit) {
+                throw new IOException("Truncated binary payload");
+            }
+            return buf[pos++] & 0xFF;
+        }
+
+        long readVarLong() throws IOException {
+            long zigzag = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                zigzag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        String readString() throws IOException {
+            long length = readVarLong() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (length > limit - pos) {
+                throw new IOException("Truncated binary payload");
+            }
+            String value = new String(buf, pos, (int) length, StandardCharsets.UTF_8);
+            pos += (int) length;
+            return value;
+        }
+    }
+
+    /**
+     * Round-trips a sample of every PayloadType through both formats and prints
+     * the frame sizes
+     *
+     * @param args
+     */
+    public static void main(String[] args) throws Exception {
+        System.out.println(String.format("%-16s %-22s %8s %8s %6s", "PayloadType", "Class", "java", "binary", "ok"));
+        boolean allOk = true;
+        for (PayloadType type : PayloadType.values()) {
+            Payload sample = sample(type);
+            byte[] javaFrame = FrameCodec.encode(sample, WireFormat.JAVA);
+            byte[] binaryFrame = FrameCodec.encode(sample, WireFormat.BINARY);
+            Payload fromJava = FrameCodec.decode(javaFrame, FrameCodec.HEADER_SIZE,
+                    javaFrame.length - FrameCodec.HEADER_SIZE);
+            Payload fromBinary = FrameCodec.decode(binaryFrame, FrameCodec.HEADER_SIZE,
+                    binaryFrame.length - FrameCodec.HEADER_SIZE);
+            // same class, same toString, and re-encoding gives identical bytes
+            boolean ok = fromBinary.getClass() == sample.getClass()
+                    && fromBinary.toString().equals(fromJava.toString())
+                    && Arrays.equals(binaryFrame, FrameCodec.encode(fromBinary, WireFormat.BINARY));
+            allOk &= ok;
+            System.out.println(String.format("%-16s %-22s %8d %8d %6s", type, sample.getClass().getSimpleName(),
+                    javaFrame.length, binaryFrame.length, ok));
+        }
+        System.out.println(allOk ? "All round trips passed" : "ROUND TRIP FAILURES");
+    }
+
+    /**
+     * @param type
+     * @return a filled in Payload of the class used for this type (round trip
+     *         checks, benchmarks)
+     */
+    public static Payload sample(PayloadType type) {
+        Payload payload;
+        switch (LAYOUTS[type.ordinal()]) {
+            case CONNECTION: {
+                ConnectionPayload cp = new ConnectionPayload();
+                cp.setClientName("Player");
+                cp.setCodecVersion(VERSION);
+                cp.setResumeToken("3q2-7w_x");
+                cp.setReceived(1234);
+                payload = cp;
+                break;
+            }
+            case READY: {
+                ReadyPayload rp = new ReadyPayload();
+                rp.setReady(true);
+                payload = rp;
+                break;
+            }
+            case TIMER: {
+                TimerPayload tp = new TimerPayload();
+                tp.setTimerType(TimerType.TURN);
+                tp.setTime(27);
+                tp.setDuration(30);
+                payload = tp;
+                break;
+            }
+            case POINTS: {
+                PointsPayload pp = new PointsPayload();
+                pp.setPoints(12);
+                payload = pp;
+                break;
+            }
+            case ROOM_RESULT: {
+                RoomResultPayload rrp = new RoomResultPayload();
+                rrp.addRoom("lobby", 12, null);
+                rrp.addRoom("room one", 3, Phase.IN_PROGRESS);
+                rrp.addRoom("r\u00e9sum\u00e9", 1, Phase.READY);
+                rrp.setCursor("r\u00e9sum\u00e9");
+                payload = rrp;
+                break;
+            }
+            case SESSION_OPTIONS: {
+                SessionOptionsPayload sop = new SessionOptionsPayload();
+                sop.setHardMode(true);
+                payload = sop;
+                break;
+            }
+            case AWAY: {
+                AwayStatusPayload asp = new AwayStatusPayload();
+                asp.setAway(true);
+                asp.setClientName("Player");
+                payload = asp;
+                break;
+            }
+            case PRESENCE: {
+                LobbyPresencePayload lpp = new LobbyPresencePayload();
+                lpp.setOnline(1234);
+                payload = lpp;
+                break;
+            }
+            case ROSTER: {
+                RosterPayload rp = new RosterPayload();
+                rp.setVersion(7);
+                rp.addMember(1, "Player", 12, RosterPayload.READY | RosterPayload.TOOK_TURN);
+                rp.addMember(2, "Spectator", 0, RosterPayload.SPECTATOR | RosterPayload.JOINED);
+                rp.addMember(3, "r\u00e9sum\u00e9", -3, RosterPayload.AWAY);
+                rp.setMessage("room one");
+                payload = rp;
+                break;
+            }
+            case WORD_MASK: {
+                WordMaskPayload wmp = new WordMaskPayload();
+                wmp.setMask("_ A _ _ \u00c9");
+                wmp.setRound(3);
+                payload = wmp;
+                break;
+            }
+            case STRIKES: {
+                StrikesPayload sp = new StrikesPayload();
+                sp.setStrikes(4);
+                sp.setMaxStrikes(6);
+                payload = sp;
+                break;
+            }
+            case LETTER: {
+                LetterGuessedPayload lgp = new LetterGuessedPayload();
+                lgp.setLetter('E');
+                payload = lgp;
+                break;
+            }
+            case ROUND_RESULT: {
+                RoundResultPayload rrp = new RoundResultPayload();
+                rrp.setRound(3);
+                rrp.setWord("CAF\u00c9");
+                rrp.setSolved(true);
+                payload = rrp;
+                break;
+            }
+            default:
+                payload = new Payload();
+                payload.setMessage("Hello there");
+                break;
+        }
+        payload.setPayloadType(type);
+        payload.setClientId(42);
+        payload.setSequence(300);
+        return payload;
+    }
+}
@@ -14,6 +14,7 @@ public enum Command {
     NAME("name"),
     LIST_USERS("users"),
     LIST_ROOMS("listrooms"),
+    MORE_ROOMS("morerooms"),
     READY("ready"),
     DO_SOMETHING("something"),
     USE("use"),;
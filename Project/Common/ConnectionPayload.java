@@ -1,7 +1,13 @@
 package Project.Common;
 
 public class ConnectionPayload extends Payload {
+    // pinned to the original computed value so clients built before codecVersion
+    // was added can still deserialize this class
+    private static final long serialVersionUID = -756471869261744869L;
     private String clientName;
+    private int codecVersion = 0; // 0 = Java serialization only
+    private String resumeToken; // null = new session
+    private long received = 0;
 
     /**
      * @return the clientName
@@ -17,6 +23,52 @@ public class ConnectionPayload extends Payload {
         this.clientName = clientName;
     }
 
+    /**
+     * @return highest BinaryCodec version offered (CLIENT_CONNECT) or accepted
+     *         (CLIENT_ID); 0 means Java serialization only
+     */
+    public int getCodecVersion() {
+        return codecVersion;
+    }
+
+    /**
+     * @param codecVersion the BinaryCodec version to offer/accept
+     */
+    public void setCodecVersion(int codecVersion) {
+        this.codecVersion = codecVersion;
+    }
+
+    /**
+     * @return the session to resume (CLIENT_CONNECT) or the token that resumes
+     *         this one later (CLIENT_ID); null if there's none
+     */
+    public String getResumeToken() {
+        return resumeToken;
+    }
+
+    /**
+     * @param resumeToken the resumeToken to set
+     */
+    public void setResumeToken(String resumeToken) {
+        this.resumeToken = resumeToken;
+    }
+
+    /**
+     * @return frames (other than TIME) the client got in the session so far
+     *         (CLIENT_CONNECT), or the count the server continues from (CLIENT_ID)
+     */
+    public long getReceived() {
+        return received;
+    }
+
+    /**
+     * @param received the received to set
+     */
+    public void setReceived(long received) {
+        this.received = received;
+    }
+
+    // the token is left out on purpose, it's as good as a password while valid
     @Override
     public String toString() {
         return super.toString() +
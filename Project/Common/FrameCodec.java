@@ -0,0 +1,165 @@
+package Project.Common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Length-prefixed framing for Payloads.
+ * <p>
+ * Each frame is a 4 byte big-endian body length followed by the body. Framing
+ * lets the server read a connection without blocking inside
+ * ObjectInputStream.readObject() since it knows where every Payload ends.
+ * </p>
+ * The body is either Java serialized or BinaryCodec encoded (see WireFormat);
+ * decode() detects which from the first byte.
+ * <p>
+ * Clients from before framing write Payloads straight to one long
+ * ObjectOutputStream. The engines recognize them by the stream header in
+ * place of the first length (OBJECT_STREAM_HEADER) and keep serving them
+ * unframed: reads go through a single ObjectInputStream and Java frames are
+ * written with writeUnframed() (see SocketConnection).
+ * </p>
+ */
+public final class FrameCodec {
+    public static final int HEADER_SIZE = 4;
+    // guards against garbage lengths allocating huge buffers
+    public static final int MAX_FRAME_SIZE = 1024 * 1024;
+    // what a pre-framing client's raw ObjectOutputStream starts with (stream
+    // magic + version), read as a length
+    public static final int OBJECT_STREAM_HEADER = 0xACED0005;
+
+    private FrameCodec() {
+    }
+
+    /**
+     * Serializes a Payload into a complete Java serialized frame (header + body)
+     *
+     * @param payload
+     * @return the frame bytes ready to be written to a socket
+     * @throws IOException
+     */
+    public static byte[] encode(Payload payload) throws IOException {
+        return encode(payload, WireFormat.JAVA);
+    }
+
+    /**
+     * Serializes a Payload into a complete frame (header + body)
+     *
+     * @param payload
+     * @param format  body encoding
+     * @return the frame bytes ready to be written to a socket
+     * @throws IOException
+     */
+    public static byte[] encode(Payload payload, WireFormat format) throws IOException {
+        if (format == WireFormat.BINARY) {
+            return BinaryCodec.encodeFrame(payload);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        bytes.write(new byte[HEADER_SIZE]); // reserve room for the length
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(payload);
+        }
+        byte[] frame = bytes.toByteArray();
+        ByteBuffer.wrap(frame).putInt(0, frame.length - HEADER_SIZE);
+        return frame;
+    }
+
+    /**
+     * Decodes a frame body (without the header), Java serialized or binary
+     *
+     * @param body
+     * @param offset
+     * @param length
+     * @return the Payload
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    public static Payload decode(byte[] body, int offset, int length) throws IOException, ClassNotFoundException {
+        if (length > 0 && BinaryCodec.isBinary(body, offset)) {
+            return BinaryCodec.decode(body, offset, length);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(body, offset, length))) {
+            return (Payload) in.readObject();
+        }
+    }
+
+    /**
+     * Validates a length read from a frame header
+     *
+     * @param length
+     * @throws IOException if the length can't be a valid frame
+     */
+    public static void checkLength(int length) throws IOException {
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException(String.format("Invalid frame length %s", length));
+        }
+    }
+
+    /**
+     * Writes a Java frame to a client that reads one long ObjectInputStream
+     * (from before framing) as the next object in that stream. Each frame is a
+     * complete stream of its own, so its header is swapped for a reset, which
+     * makes the reader forget the handles of earlier objects just like the
+     * frame never knew them. Doesn't flush.
+     *
+     * @param out   after the stream header has been written to it
+     * @param frame from encode() with WireFormat.JAVA
+     * @throws IOException if the frame isn't Java serialized
+     */
+    public static void writeUnframed(OutputStream out, byte[] frame) throws IOException {
+        int streamHeader = HEADER_SIZE + 4;
+        if (frame.length <= streamHeader || ByteBuffer.wrap(frame).getInt(HEADER_SIZE) != OBJECT_STREAM_HEADER) {
+            throw new IOException("Only Java serialized frames can be sent unframed");
+        }
+        out.write(ObjectStreamConstants.TC_RESET);
+        out.write(frame, streamHeader, frame.length - streamHeader);
+    }
+
+    /**
+     * Writes a single Payload as one frame. Doesn't flush.
+     *
+     * @param out
+     * @param payload
+     * @throws IOException
+     */
+    public static void write(DataOutputStream out, Payload payload) throws IOException {
+        write(out, payload, WireFormat.JAVA);
+    }
+
+    /**
+     * Writes a single Payload as one frame in the given format. Doesn't flush.
+     *
+     * @param out
+     * @param payload
+     * @param format
+     * @throws IOException
+     */
+    public static void write(DataOutputStream out, Payload payload, WireFormat format) throws IOException {
+        // single write() so concurrent senders can't interleave header and body
+        out.write(encode(payload, format));
+    }
+
+    /**
+     * Blocking read of the next frame
+     *
+     * @param in
+     * @return the decoded Payload
+     * @throws IOException (EOFException when the other side closed)
+     * @throws ClassNotFoundException
+     */
+    public static Payload read(DataInputStream in) throws IOException, ClassNotFoundException {
+        int length = in.readInt();
+        checkLength(length);
+        byte[] body = new byte[length];
+        in.readFully(body);
+        return decode(body, 0, length);
+    }
+}
@@ -0,0 +1,28 @@
+package Project.Common;
+
+public class LetterGuessedPayload extends Payload {
+    private char letter;
+
+    public LetterGuessedPayload() {
+        setPayloadType(PayloadType.LETTER_GUESSED);
+    }
+
+    /**
+     * @return the (uppercase) letter that was guessed
+     */
+    public char getLetter() {
+        return letter;
+    }
+
+    /**
+     * @param letter the letter to set
+     */
+    public void setLetter(char letter) {
+        this.letter = letter;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + String.format(" letter=%c", letter);
+    }
+}
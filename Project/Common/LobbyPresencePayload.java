@@ -0,0 +1,33 @@
+package Project.Common;
+
+/**
+ * Number of clients in the lobby across all of its shards. Lobby clients only
+ * get SYNC_CLIENT for the members of their own shard, so this is how they
+ * learn how busy the server is.
+ */
+public class LobbyPresencePayload extends Payload {
+    private int online;
+
+    public LobbyPresencePayload() {
+        setPayloadType(PayloadType.LOBBY_PRESENCE);
+    }
+
+    /**
+     * @return clients in the lobby
+     */
+    public int getOnline() {
+        return online;
+    }
+
+    /**
+     * @param online clients in the lobby
+     */
+    public void setOnline(int online) {
+        this.online = online;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + String.format(" online=%d", online);
+    }
+}
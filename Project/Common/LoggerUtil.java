@@ -1,8 +1,11 @@
 package Project.Common;
 
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.FileHandler;
 import java.util.logging.Formatter;
@@ -14,13 +17,21 @@ import java.util.logging.Logger;
  * Utility class for logging messages to a log file.
  * This class provides methods to log messages at various levels and ensures
  * thread-safe logging to an appropriate log file.
+ * With LoggerConfig.setAsync(true) records are handed to a background writer
+ * (AsyncLogWriter) instead of being formatted and written on the calling
+ * thread. The Supplier overloads skip building the message entirely when the
+ * level is disabled.
  */
 public enum LoggerUtil {
     INSTANCE;
 
+    private static final StackWalker WALKER = StackWalker.getInstance();
+
     private Logger logger;
     private LoggerConfig config;
-    private boolean isConfigured = false;
+    private volatile boolean isConfigured = false;
+    private volatile int minLevel = Level.ALL.intValue(); // lowest level any handler writes
+    private AsyncLogWriter asyncWriter; // null unless LoggerConfig.isAsync()
 
     LoggerUtil() {
     }
@@ -40,8 +51,9 @@ public enum LoggerUtil {
      * This class formats the log messages to include the date, log level, source,
      * and message.
      */
-    private static class CustomFormatter extends Formatter {
-        private static final String PATTERN = "MM/dd/yyyy HH:mm:ss";
+    static class CustomFormatter extends Formatter {
+        private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm:ss")
+                .withZone(ZoneId.systemDefault());
         private static final String RESET = "\u001B[0m";
         private static final String RED = "\u001B[31m";
         private static final String GREEN = "\u001B[32m";
@@ -53,43 +65,33 @@ public enum LoggerUtil {
 
         @Override
         public String format(LogRecord record) {
-            SimpleDateFormat dateFormat = new SimpleDateFormat(PATTERN);
-            String date = dateFormat.format(new Date(record.getMillis()));
-            String callingClass = getCallingClassName();
-            String source = callingClass != null ? callingClass
-                    : record.getSourceClassName() != null ? record.getSourceClassName() : "unknown";
-
-            String message = formatMessage(record);
-            if (message == null)
-                message = "null";
-            String level = getColoredLevel(record.getLevel());
-            String throwable = "";
-            if (record.getThrown() != null) {
-                // Use stackTraceLimit from LoggerConfig to truncate stack trace
-                throwable = "\n"
-                        + getFormattedStackTrace(record.getThrown(), LoggerUtil.INSTANCE.config.getStackTraceLimit());
-            }
-            return String.format("%s [%s] (%s):\n> %s%s\n", date, source, level, message, throwable);
+            StringBuilder sb = new StringBuilder(256);
+            appendTo(sb, record);
+            return sb.toString();
         }
 
         /**
-         * Determines the name of the class that called the logging method.
+         * Formats the record into the given builder (used by the async writer to
+         * batch records without an intermediate String each)
          * 
-         * @return the name of the calling class
+         * @param sb
+         * @param record
          */
-        private static String getCallingClassName() {
-            String loggerUtilPackage = LoggerUtil.class.getPackage().getName();
-            StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-            for (StackTraceElement element : stackTrace) {
-                String className = element.getClassName();
-                // Skip all classes in the logging framework and the package of LoggerUtil
-                if (!className.startsWith("java.util.logging") &&
-                        !className.startsWith(loggerUtilPackage) &&
-                        !className.equals(Thread.class.getName())) {
-                    return className;
-                }
+        void appendTo(StringBuilder sb, LogRecord record) {
+            // source is resolved by LoggerUtil when the record is created
+            String source = record.getSourceClassName() != null ? record.getSourceClassName() : "unknown";
+            String message = record.getMessage();
+            if (message == null)
+                message = "null";
+            DATE_FORMAT.formatTo(Instant.ofEpochMilli(record.getMillis()), sb);
+            sb.append(" [").append(source).append("] (").append(getColoredLevel(record.getLevel()))
+                    .append("):\n> ").append(message);
+            if (record.getThrown() != null) {
+                // Use stackTraceLimit from LoggerConfig to truncate stack trace
+                sb.append('\n').append(
+                        getFormattedStackTrace(record.getThrown(), LoggerUtil.INSTANCE.config.getStackTraceLimit()));
             }
-            return null;
+            sb.append('\n');
         }
 
         /**
@@ -195,23 +197,96 @@ public enum LoggerUtil {
                     config.getFileSizeLimit(),
                     config.getFileCount(),
                     true);
-            fileHandler.setFormatter(new CustomFormatter());
-            fileHandler.setLevel(config.getFileLogLevel());
-            logger.addHandler(fileHandler);
-
             // ConsoleHandler prints log messages to the console
             ConsoleHandler consoleHandler = new ConsoleHandler();
-            consoleHandler.setFormatter(new CustomFormatter());
-            consoleHandler.setLevel(config.getConsoleLogLevel());
-            logger.addHandler(consoleHandler);
-
             logger.setLevel(Level.ALL);
+            // OFF is the highest level value, so an OFF handler doesn't lower this
+            minLevel = Math.min(config.getFileLogLevel().intValue(), config.getConsoleLogLevel().intValue());
+
+            if (config.isAsync()) {
+                // the writer owns the handlers; leaving them off the JUL logger also keeps
+                // LogManager's shutdown reset from closing them under late log calls
+                fileHandler.setFormatter(new AsyncLogWriter.PassThroughFormatter());
+                consoleHandler.setFormatter(new AsyncLogWriter.PassThroughFormatter());
+                fileHandler.setLevel(Level.ALL);
+                consoleHandler.setLevel(Level.ALL);
+                logger.setUseParentHandlers(false);
+                asyncWriter = new AsyncLogWriter(config.getAsyncBufferSize(), new CustomFormatter(), fileHandler,
+                        config.getFileLogLevel(), consoleHandler, config.getConsoleLogLevel());
+                Runtime.getRuntime().addShutdownHook(new Thread(asyncWriter::close, "LogWriter-shutdown"));
+            } else {
+                fileHandler.setFormatter(new CustomFormatter());
+                fileHandler.setLevel(config.getFileLogLevel());
+                logger.addHandler(fileHandler);
+
+                consoleHandler.setFormatter(new CustomFormatter());
+                consoleHandler.setLevel(config.getConsoleLogLevel());
+                logger.addHandler(consoleHandler);
+            }
             isConfigured = true;
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * @param level
+     * @return true if any handler would write a record at this level
+     */
+    public boolean isLoggable(Level level) {
+        if (!isConfigured)
+            setupLogger();
+        int min = minLevel;
+        return min != Level.OFF.intValue() && level.intValue() >= min;
+    }
+
+    /**
+     * Builds the record on the calling thread (so the caller can still be
+     * found) and writes it directly or hands it to the async writer.
+     */
+    private void publish(Level level, String message, Throwable throwable) {
+        if (!isLoggable(level)) {
+            return;
+        }
+        LogRecord record = new LogRecord(level, message);
+        record.setThrown(throwable);
+        record.setLoggerName(logger.getName());
+        // setting a source also stops JUL from inferring one with its own stack walk
+        record.setSourceClassName(config.isCallerInfo() ? getCallingClassName() : Thread.currentThread().getName());
+        if (asyncWriter != null) {
+            asyncWriter.submit(record);
+        } else {
+            logger.log(record);
+        }
+    }
+
+    /**
+     * Determines the name of the class that called the logging method.
+     * Only walks as far as the first frame outside LoggerUtil.
+     * 
+     * @return the name of the calling class
+     */
+    private static String getCallingClassName() {
+        String loggerUtilClass = LoggerUtil.class.getName();
+        return WALKER.walk(frames -> frames
+                .map(StackWalker.StackFrame::getClassName)
+                .filter(className -> !className.startsWith(loggerUtilClass)
+                        && !className.startsWith("java.util.logging"))
+                .findFirst()
+                .orElse("unknown"));
+    }
+
+    /**
+     * Waits (up to 5 seconds) until records logged so far are written. Only
+     * needed in async mode, e.g. before the JVM exits.
+     */
+    public void flush() {
+        AsyncLogWriter writer = asyncWriter;
+        if (writer != null) {
+            writer.flush(5, TimeUnit.SECONDS);
+        }
+    }
+
     /**
      * Logs a message at the specified level.
      * 
@@ -219,9 +294,20 @@ public enum LoggerUtil {
      * @param message the log message
      */
     public void log(Level level, String message) {
-        if (!isConfigured)
-            setupLogger();
-        logger.log(level, message);
+        publish(level, message, null);
+    }
+
+    /**
+     * Logs a message at the specified level, only building it if the level is
+     * enabled.
+     * 
+     * @param level   the level of the log message
+     * @param message supplies the log message
+     */
+    public void log(Level level, Supplier<String> message) {
+        if (isLoggable(level)) {
+            publish(level, message.get(), null);
+        }
     }
 
     /**
@@ -234,27 +320,27 @@ public enum LoggerUtil {
      * @param message the Object to log
      */
     public void log(Level level, Object message) {
-        if (!isConfigured) {
-            setupLogger();
+        if (!isLoggable(level)) {
+            return;
         }
 
         if (message instanceof String) {
-            logger.log(level, (String) message);
+            publish(level, (String) message, null);
 
         } else if (message instanceof Throwable) {
             Throwable t = (Throwable) message;
             String msg = (t.getMessage() != null) ? t.getMessage() : t.getClass().getName();
-            logger.log(level, msg, t);
+            publish(level, msg, t);
 
         } else if (message != null) {
             try {
-                logger.log(level, message.toString());
+                publish(level, message.toString(), null);
             } catch (Exception ex) {
-                logger.log(level, "Error during toString(): " + ex.getMessage(), ex);
+                publish(level, "Error during toString(): " + ex.getMessage(), ex);
             }
 
         } else {
-            logger.log(level, "null");
+            publish(level, "null", null);
         }
     }
 
@@ -266,9 +352,7 @@ public enum LoggerUtil {
      * @param throwable the exception to log
      */
     public void log(Level level, String message, Throwable throwable) {
-        if (!isConfigured)
-            setupLogger();
-        logger.log(level, message, throwable);
+        publish(level, message, throwable);
     }
 
     /**
@@ -289,6 +373,15 @@ public enum LoggerUtil {
         log(Level.INFO, message);
     }
 
+    /**
+     * Logs an informational message, building it only if the level is enabled.
+     * 
+     * @param message supplies the log message
+     */
+    public void info(Supplier<String> message) {
+        log(Level.INFO, message);
+    }
+
     /**
      * Logs an exception with an INFO level.
      *
@@ -317,6 +410,15 @@ public enum LoggerUtil {
         log(Level.WARNING, message);
     }
 
+    /**
+     * Logs a warning message, building it only if the level is enabled.
+     * 
+     * @param message supplies the log message
+     */
+    public void warning(Supplier<String> message) {
+        log(Level.WARNING, message);
+    }
+
     /**
      * Logs an exception with a WARNING level.
      *
@@ -345,6 +447,15 @@ public enum LoggerUtil {
         log(Level.SEVERE, message);
     }
 
+    /**
+     * Logs a severe error message, building it only if the level is enabled.
+     * 
+     * @param message supplies the log message
+     */
+    public void severe(Supplier<String> message) {
+        log(Level.SEVERE, message);
+    }
+
     /**
      * Logs an exception with a SEVERE level.
      *
@@ -373,6 +484,15 @@ public enum LoggerUtil {
         log(Level.FINE, message);
     }
 
+    /**
+     * Logs a fine-grained informational message, building it only if the level is enabled.
+     * 
+     * @param message supplies the log message
+     */
+    public void fine(Supplier<String> message) {
+        log(Level.FINE, message);
+    }
+
     /**
      * Logs a finer-grained informational message.
      * 
@@ -391,6 +511,15 @@ public enum LoggerUtil {
         log(Level.FINER, message);
     }
 
+    /**
+     * Logs a finer-grained informational message, building it only if the level is enabled.
+     * 
+     * @param message supplies the log message
+     */
+    public void finer(Supplier<String> message) {
+        log(Level.FINER, message);
+    }
+
     /**
      * Logs the finest-grained informational message.
      * 
@@ -410,6 +539,15 @@ public enum LoggerUtil {
         log(Level.FINEST, message);
     }
 
+    /**
+     * Logs the finest-grained informational message, building it only if the level is enabled.
+     * 
+     * @param message supplies the log message
+     */
+    public void finest(Supplier<String> message) {
+        log(Level.FINEST, message);
+    }
+
     /**
      * Configuration class for the LoggerUtil.
      * This class encapsulates all the properties for configuring the logger.
@@ -421,6 +559,9 @@ public enum LoggerUtil {
         private Level fileLogLevel = Level.ALL; // default log level for file
         private Level consoleLogLevel = Level.ALL; // default log level for console
         private int stackTraceLimit = 10; // default maximum number of stack trace elements
+        private boolean async = false; // write from a background thread
+        private int asyncBufferSize = 8192; // records the async writer can fall behind by
+        private boolean callerInfo = true; // show the calling class, otherwise the thread name
 
         // Getters and Setters for each property
 
@@ -531,6 +672,63 @@ public enum LoggerUtil {
         public void setStackTraceLimit(int stackTraceLimit) {
             this.stackTraceLimit = stackTraceLimit;
         }
+
+        /**
+         * Checks whether records are written by a background thread.
+         * 
+         * @return true if logging is asynchronous
+         */
+        public boolean isAsync() {
+            return async;
+        }
+
+        /**
+         * Sets whether records are written by a background thread instead of
+         * the logging thread.
+         * 
+         * @param async true for asynchronous logging
+         */
+        public void setAsync(boolean async) {
+            this.async = async;
+        }
+
+        /**
+         * Gets the size of the async writer's ring buffer.
+         * 
+         * @return the number of records that can be queued
+         */
+        public int getAsyncBufferSize() {
+            return asyncBufferSize;
+        }
+
+        /**
+         * Sets the size of the async writer's ring buffer; loggers wait when it's
+         * full.
+         * 
+         * @param asyncBufferSize the number of records that can be queued
+         */
+        public void setAsyncBufferSize(int asyncBufferSize) {
+            this.asyncBufferSize = asyncBufferSize;
+        }
+
+        /**
+         * Checks whether the calling class is looked up for each record.
+         * 
+         * @return true if the calling class is shown
+         */
+        public boolean isCallerInfo() {
+            return callerInfo;
+        }
+
+        /**
+         * Sets whether each record shows the calling class (found with a short
+         * stack walk) or just the thread name.
+         * 
+         * @param callerInfo true to show the calling class
+         */
+        public void setCallerInfo(boolean callerInfo) {
+            this.callerInfo = callerInfo;
+        }
     }
 
     /**
@@ -0,0 +1,89 @@
+package Project.Common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free queue for many producers and a single consumer.
+ * <p>
+ * Each slot has a sequence number telling producers whether it's free for
+ * their position and the consumer whether it's been filled (the bounded queue
+ * design by Dmitry Vyukov). Producers only contend on one CAS of the tail;
+ * offer() fails instead of blocking when the buffer is full.
+ * </p>
+ * poll() must only ever be called from one thread at a time.
+ */
+public final class MpscRingBuffer<E> {
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong(); // next position to claim
+    private volatile long head; // next position to read, written by the consumer only
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public MpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        slots = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @param element
+     * @return false if the buffer is full
+     */
+    public boolean offer(E element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.lazySet(index, element);
+                    sequences.set(index, position + 1); // publishes the element
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false; // the consumer hasn't freed this slot yet
+            }
+            // else another producer claimed the position first, retry
+        }
+    }
+
+    /**
+     * @return the oldest element, or null if none is ready
+     */
+    public E poll() {
+        long position = head;
+        int index = (int) (position & mask);
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        E element = slots.get(index);
+        slots.lazySet(index, null);
+        sequences.set(index, position + mask + 1); // free for the next lap
+        head = position + 1;
+        return element;
+    }
+
+    public boolean isEmpty() {
+        return head == tail.get();
+    }
+
+    /**
+     * @return elements ever added
+     */
+    public long getOffered() {
+        return tail.get();
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
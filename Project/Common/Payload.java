@@ -3,9 +3,13 @@ package Project.Common;
 import java.io.Serializable;
 
 public class Payload implements Serializable {
+    // pinned to the original computed value so clients built before sequence
+    // was added can still deserialize this class
+    private static final long serialVersionUID = -2325651570813183523L;
     private PayloadType payloadType;
     private long clientId;
     private String message;
+    private long sequence = 0; // room broadcast number, 0 = not part of the room's stream
 
     /**
      * @return the payloadType
@@ -49,8 +53,27 @@ public class Payload implements Serializable {
         this.message = message;
     }
 
+    /**
+     * @return the room's broadcast number (see Room.sequenced()): one more than
+     *         the previous broadcast the client got from that room, or the
+     *         room's last one for a ROOM_SNAPSHOT (CATCH_UP: the last one the
+     *         client has); 0 if it isn't part of a room's stream
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @param sequence the sequence to set
+     */
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
     @Override
     public String toString() {
-        return String.format("Payload[%s] Client Id [%s] Message: [%s]", getPayloadType(), getClientId(), getMessage());
+        String text = String.format("Payload[%s] Client Id [%s] Message: [%s]", getPayloadType(), getClientId(),
+                getMessage());
+        return sequence == 0 ? text : text + String.format(" Sequence [%s]", sequence);
     }
 }
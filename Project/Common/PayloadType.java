@@ -29,4 +29,13 @@ public enum PayloadType {
        SESSION_OPTIONS,
        AWAY_STATUS,
        SPECTATE,
+       LOBBY_PRESENCE, // how many clients are in the lobby (instead of syncing every one of them)
+       ROOM_SNAPSHOT, // every member of the room and their state, sent once on join
+       ROOM_DIFF, // members that joined, left or changed since the last snapshot/diff
+       WORD_MASK, // current masked word (round start, letters revealed)
+       STRIKES, // strike count for the round
+       LETTER_GUESSED, // a letter is used up (not sent in hard mode)
+       ROUND_RESULT, // the word and who solved it, at the end of a round
+       CATCH_UP, // client missed room broadcasts after a sequence number; the server replays
+                 // them from the room's BroadcastLog or resyncs the client
 }
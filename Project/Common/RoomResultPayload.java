@@ -3,8 +3,23 @@ package Project.Common;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * ROOM_LIST request and reply.
+ * The request carries the query in message, whether it's a prefix (rather
+ * than substring) search, an optional page size and the cursor from the
+ * previous page. The reply holds one page of room names with the player count
+ * and Phase (null for the lobby) at the same index, plus the cursor for the
+ * next page (null on the last page).
+ */
 public class RoomResultPayload extends Payload {
+    // pinned to the pre-pagination value so older Java-serialized peers still read it
+    private static final long serialVersionUID = 8157013103153094048L;
     private List<String> rooms = new ArrayList<String>();
+    private List<Integer> playerCounts = new ArrayList<Integer>();
+    private List<Phase> phases = new ArrayList<Phase>();
+    private String cursor;
+    private int limit; // 0 = server default
+    private boolean prefix;
 
     public RoomResultPayload() {
         setPayloadType(PayloadType.ROOM_LIST);
@@ -18,8 +33,73 @@ public class RoomResultPayload extends Payload {
         this.rooms = rooms;
     }
 
+    /**
+     * @return players per room, same order as getRooms() (may be null from
+     *         older servers)
+     */
+    public List<Integer> getPlayerCounts() {
+        return playerCounts;
+    }
+
+    public void setPlayerCounts(List<Integer> playerCounts) {
+        this.playerCounts = playerCounts;
+    }
+
+    /**
+     * @return Phase per room, same order as getRooms(); null entries for rooms
+     *         without a game (may be null from older servers)
+     */
+    public List<Phase> getPhases() {
+        return phases;
+    }
+
+    public void setPhases(List<Phase> phases) {
+        this.phases = phases;
+    }
+
+    /**
+     * Adds one room to the page
+     *
+     * @param name
+     * @param playerCount
+     * @param phase       null if the room has no game
+     */
+    public void addRoom(String name, int playerCount, Phase phase) {
+        rooms.add(name);
+        playerCounts.add(playerCount);
+        phases.add(phase);
+    }
+
+    /**
+     * @return request: continue after this cursor; reply: cursor for the next
+     *         page, null if this was the last one
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public boolean isPrefix() {
+        return prefix;
+    }
+
+    public void setPrefix(boolean prefix) {
+        this.prefix = prefix;
+    }
+
     @Override
     public String toString() {
-        return super.toString() + "Rooms [" + String.join(",", rooms) + "]";
+        return super.toString() + "Rooms [" + String.join(",", rooms) + "] Cursor [" + cursor + "]";
     }
 }
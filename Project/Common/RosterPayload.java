@@ -0,0 +1,112 @@
+package Project.Common;
+
+import java.util.Arrays;
+
+/**
+ * Room membership in columns: one row per member with their id, name, points
+ * and state flags at the same index.
+ * <p>
+ * ROOM_SNAPSHOT carries every member and replaces the receiver's list;
+ * ROOM_DIFF carries only the members that changed (JOINED / LEFT rows for
+ * membership). Both carry the room's roster version, which goes up by one per
+ * diff, so a receiver can tell if it missed one. The room name is the message.
+ * </p>
+ */
+public class RosterPayload extends Payload {
+    public static final int READY = 1;
+    public static final int TOOK_TURN = 2;
+    public static final int AWAY = 4;
+    public static final int SPECTATOR = 8;
+    public static final int JOINED = 16; // diff only: new member
+    public static final int LEFT = 32; // diff only: member removed
+
+    private long version;
+    private int size;
+    private long[] ids = new long[4];
+    private String[] names = new String[4];
+    private int[] points = new int[4];
+    private byte[] flags = new byte[4];
+
+    public RosterPayload() {
+        setPayloadType(PayloadType.ROOM_SNAPSHOT);
+    }
+
+    /**
+     * @return the room's roster version after this snapshot/diff
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * @return rows in this payload
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds one row
+     *
+     * @param clientId
+     * @param clientName
+     * @param points
+     * @param flags      READY | TOOK_TURN | AWAY | SPECTATOR | JOINED | LEFT
+     */
+    public void addMember(long clientId, String clientName, int points, int flags) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            names = Arrays.copyOf(names, capacity);
+            this.points = Arrays.copyOf(this.points, capacity);
+            this.flags = Arrays.copyOf(this.flags, capacity);
+        }
+        ids[size] = clientId;
+        names[size] = clientName;
+        this.points[size] = points;
+        this.flags[size] = (byte) flags;
+        size++;
+    }
+
+    public long getMemberId(int index) {
+        return ids[index];
+    }
+
+    public String getMemberName(int index) {
+        return names[index];
+    }
+
+    public int getMemberPoints(int index) {
+        return points[index];
+    }
+
+    public int getMemberFlags(int index) {
+        return flags[index] & 0xFF;
+    }
+
+    /**
+     * @param index
+     * @param flag  one of the flag constants
+     * @return true if the row has the flag
+     */
+    public boolean hasFlag(int index, int flag) {
+        return (flags[index] & flag) != 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(super.toString());
+        sb.append(String.format(" version=%d members=[", version));
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(String.format("%d:%s:%d:%d", ids[i], names[i], points[i], flags[i] & 0xFF));
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,62 @@
+package Project.Common;
+
+/**
+ * How a round ended: the full word, and whether it was solved. The client id
+ * is whoever solved it (DEFAULT_CLIENT_ID if nobody did).
+ */
+public class RoundResultPayload extends Payload {
+    private int round;
+    private String word;
+    private boolean solved;
+
+    public RoundResultPayload() {
+        setPayloadType(PayloadType.ROUND_RESULT);
+    }
+
+    /**
+     * @return the round that ended
+     */
+    public int getRound() {
+        return round;
+    }
+
+    /**
+     * @param round the round to set
+     */
+    public void setRound(int round) {
+        this.round = round;
+    }
+
+    /**
+     * @return the word for the round
+     */
+    public String getWord() {
+        return word;
+    }
+
+    /**
+     * @param word the word to set
+     */
+    public void setWord(String word) {
+        this.word = word;
+    }
+
+    /**
+     * @return true if the word was completed or guessed
+     */
+    public boolean isSolved() {
+        return solved;
+    }
+
+    /**
+     * @param solved the solved to set
+     */
+    public void setSolved(boolean solved) {
+        this.solved = solved;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + String.format(" round=%d word=%s solved=%s", round, word, solved);
+    }
+}
@@ -0,0 +1,43 @@
+package Project.Common;
+
+public class StrikesPayload extends Payload {
+    private int strikes;
+    private int maxStrikes;
+
+    public StrikesPayload() {
+        setPayloadType(PayloadType.STRIKES);
+    }
+
+    /**
+     * @return the strikes so far this round
+     */
+    public int getStrikes() {
+        return strikes;
+    }
+
+    /**
+     * @param strikes the strikes to set
+     */
+    public void setStrikes(int strikes) {
+        this.strikes = strikes;
+    }
+
+    /**
+     * @return the strikes that end the round
+     */
+    public int getMaxStrikes() {
+        return maxStrikes;
+    }
+
+    /**
+     * @param maxStrikes the maxStrikes to set
+     */
+    public void setMaxStrikes(int maxStrikes) {
+        this.maxStrikes = maxStrikes;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + String.format(" strikes=%d/%d", strikes, maxStrikes);
+    }
+}
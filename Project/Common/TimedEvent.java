@@ -2,20 +2,26 @@ package Project.Common;
 
 /* Originally based off of https://gist.github.com/MattToegel/c55747f26c5092d6362678d5b1729ec6 */
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
- * Simple countdown timer demo of java.util.Timer facility.
- * Formerly called Countdown
+ * Simple countdown timer.
+ * Formerly called Countdown. Ticks run on the shared TimerScheduler so any
+ * number of TimedEvents only cost a handful of threads.
  */
 
 public class TimedEvent {
-    private int secondsRemaining;
-    private Runnable expireCallback = null;
-    private Consumer<Integer> tickCallback = null;
-    final private Timer timer;
+    private volatile int secondsRemaining;
+    private final int durationInSeconds;
+    // remaining time and instant of the last markSynced(), for getDriftMillis()
+    private volatile int syncedRemaining;
+    private volatile long syncedAtNanos;
+    private volatile Runnable expireCallback = null;
+    private volatile Consumer<Integer> tickCallback = null;
+    final private ScheduledFuture<?> timer;
 
     /**
      * Create a TimedEvent to trigger the passed in callback after a set duration
@@ -36,23 +42,35 @@ public class TimedEvent {
      * @param durationInSeconds
      */
     public TimedEvent(int durationInSeconds) {
-        timer = new Timer();
         secondsRemaining = durationInSeconds;
-        timer.scheduleAtFixedRate(new TimerTask() {
-            public void run() {
-                secondsRemaining--;
-                if (tickCallback != null) {
-                    tickCallback.accept(secondsRemaining);
-                }
-                if (secondsRemaining <= 0) {
-                    timer.cancel();
-                    secondsRemaining = 0;
-                    if (expireCallback != null) {
-                        expireCallback.run();
-                    }
-                }
+        this.durationInSeconds = durationInSeconds;
+        markSynced();
+        timer = TimerScheduler.INSTANCE.scheduleAtFixedRate(this::tick, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Runs once a second on a TimerScheduler thread
+     */
+    private void tick() {
+        // read once so a concurrent cancel() can't null them between check and use
+        Consumer<Integer> onTick = tickCallback;
+        int remaining = --secondsRemaining;
+        if (remaining <= 0) {
+            timer.cancel(false);
+            secondsRemaining = 0;
+        }
+        try {
+            if (onTick != null) {
+                onTick.accept(remaining);
+            }
+            Runnable onExpire = expireCallback;
+            if (remaining <= 0 && onExpire != null) {
+                onExpire.run();
             }
-        }, 1000, 1000);
+        } catch (Exception e) {
+            // an exception escaping would silently stop the scheduled task
+            LoggerUtil.INSTANCE.severe("TimedEvent callback failed", e);
+        }
     }
 
     /**
@@ -80,7 +98,7 @@ public class TimedEvent {
     public void cancel() {
         expireCallback = null;
         tickCallback = null;
-        timer.cancel();
+        timer.cancel(false);
     }
 
     /**
@@ -94,17 +112,48 @@ public class TimedEvent {
         return secondsRemaining;
     }
 
+    /**
+     * @return the duration this timer was created with
+     */
+    public int getDurationInSeconds() {
+        return durationInSeconds;
+    }
+
+    /**
+     * Records that someone (i.e., clients counting down locally) was just told
+     * the remaining time
+     */
+    public void markSynced() {
+        syncedRemaining = secondsRemaining;
+        syncedAtNanos = System.nanoTime();
+    }
+
+    /**
+     * How far this timer is from a countdown started at the last markSynced().
+     * Positive when ticks ran late; also large if setDurationInSeconds() changed
+     * the remaining time.
+     * 
+     * @return
+     */
+    public long getDriftMillis() {
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - syncedAtNanos);
+        return elapsedMillis - (syncedRemaining - secondsRemaining) * 1000L;
+    }
+
     /**
      * This is just for testing/demo
      * 
      * @param args
      */
-    public static void main(String args[]) {
+    public static void main(String args[]) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
         TimedEvent cd = new TimedEvent(30, () -> {
             System.out.println("Time expired");
+            done.countDown();
         });
         cd.setTickCallback((tick) -> {
             System.out.println("Tick: " + tick);
         });
+        done.await(); // scheduler threads are daemons, keep the demo alive
     }
 }
\ No newline at end of file
@@ -1,8 +1,18 @@
 package Project.Common;
 
+/**
+ * Timer state for one TimerType.
+ * time is the seconds remaining when sent (-1 cancels the timer). When
+ * duration is set the timer was just started (or resynced) and the client
+ * counts it down locally; the server only sends another update on cancel or
+ * if its timer drifted.
+ */
 public class TimerPayload extends Payload {
+    // pinned to the pre-duration value so older Java-serialized peers still read it
+    private static final long serialVersionUID = -1710824541991512537L;
     private int time;
     private TimerType timerType;
+    private int duration; // full length of the timer in seconds, 0 for a one-off update
 
     public TimerPayload() {
         setPayloadType(PayloadType.TIME);
@@ -23,4 +33,12 @@ public class TimerPayload extends Payload {
     public void setTime(int time) {
         this.time = time;
     }
+
+    public int getDuration() {
+        return duration;
+    }
+
+    public void setDuration(int duration) {
+        this.duration = duration;
+    }
 }
\ No newline at end of file
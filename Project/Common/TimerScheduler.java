@@ -0,0 +1,67 @@
+package Project.Common;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared scheduler behind every TimedEvent and server side timeout.
+ * A small pool of daemon threads serves all timers instead of one
+ * java.util.Timer thread per timer.
+ * Thread count can be set with -Dtimer.threads (default: half the cores, at
+ * least 2).
+ */
+public enum TimerScheduler {
+    INSTANCE;
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    TimerScheduler() {
+        int threads = Integer.getInteger("timer.threads",
+                Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+        ThreadFactory factory = Thread.ofPlatform().name("TimerScheduler-", 0).daemon(true).factory();
+        executor = new ScheduledThreadPoolExecutor(threads, factory);
+        // cancelled timers leave the queue right away instead of at their deadline
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Runs a task once after a delay
+     * 
+     * @param task
+     * @param delay
+     * @param unit
+     * @return handle used to cancel the task
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return executor.schedule(task, delay, unit);
+    }
+
+    /**
+     * Runs a task repeatedly; an exception thrown by the task stops further runs
+     * 
+     * @param task
+     * @param initialDelay
+     * @param period
+     * @param unit
+     * @return handle used to cancel the task
+     */
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        return executor.scheduleAtFixedRate(task, initialDelay, period, unit);
+    }
+
+    /**
+     * @return number of scheduled (not yet expired or cancelled) tasks
+     */
+    public int getPendingCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return number of threads currently in the pool
+     */
+    public int getThreadCount() {
+        return executor.getPoolSize();
+    }
+}
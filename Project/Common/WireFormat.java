@@ -0,0 +1,9 @@
+package Project.Common;
+
+/**
+ * How a frame body is encoded
+ */
+public enum WireFormat {
+    JAVA, // ObjectOutputStream, understood by every client
+    BINARY // BinaryCodec, only used once both sides agreed during the handshake
+}
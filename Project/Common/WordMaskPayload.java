@@ -0,0 +1,47 @@
+package Project.Common;
+
+/**
+ * The current word with unrevealed letters masked (i.e., "_ A _"), sent at the
+ * start of a round and whenever a letter is revealed.
+ */
+public class WordMaskPayload extends Payload {
+    private String mask;
+    private int round;
+
+    public WordMaskPayload() {
+        setPayloadType(PayloadType.WORD_MASK);
+    }
+
+    /**
+     * @return the masked word
+     */
+    public String getMask() {
+        return mask;
+    }
+
+    /**
+     * @param mask the masked word to set
+     */
+    public void setMask(String mask) {
+        this.mask = mask;
+    }
+
+    /**
+     * @return the round the mask belongs to
+     */
+    public int getRound() {
+        return round;
+    }
+
+    /**
+     * @param round the round to set
+     */
+    public void setRound(int round) {
+        this.round = round;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + String.format(" mask=%s round=%d", mask, round);
+    }
+}
@@ -2,8 +2,12 @@ package Project.Server;
 
 import Project.Common.Constants;
 import Project.Common.LoggerUtil;
+import Project.Common.Payload;
+import Project.Common.PayloadType;
 import Project.Common.Phase;
+import Project.Common.ReadyPayload;
 import Project.Common.TimedEvent;
+import Project.Common.TimerPayload;
 import Project.Common.TimerType;
 import Project.Exceptions.NotReadyException;
 import Project.Exceptions.PhaseMismatchException;
@@ -18,8 +22,14 @@ public abstract class BaseGameRoom extends Room {
     private TimedEvent readyTimer = null;
 
     protected final int MINIMUM_REQUIRED_TO_START = 2;
+    // -Dgame.ready.seconds, mostly for load/stress testing
+    protected static final int READY_SECONDS = Integer.getInteger("game.ready.seconds", 30);
+    // clients count timers down locally; resync once the server timer is this far off
+    protected static final long TIMER_DRIFT_MILLIS = Long.getLong("game.timer.drift.ms", 500);
+    // -Dgame.timer.ticks=true sends every tick like before (older clients, comparisons)
+    protected static final boolean TIMER_TICKS = Boolean.getBoolean("game.timer.ticks");
 
-    protected Phase currentPhase = Phase.READY;
+    protected volatile Phase currentPhase = Phase.READY; // changed on the mailbox, read by metrics
 
     protected boolean allowToggleReady = false;
 
@@ -76,31 +86,48 @@ public abstract class BaseGameRoom extends Room {
     protected abstract void onClientRemoved(ServerThread client);
 
     @Override
-    protected synchronized void addClient(ServerThread client) {
-        if (!isRunning()) { // block action if Room isn't running
-            return;
-        }
-        // do the base Room class logic
-        super.addClient(client);
-        onClientAdded(client);
+    protected void addClient(ServerThread client) {
+        execute(() -> {
+            if (!isRunning() || !client.isHeadedTo(this)) { // not running, or moved on before it was seated
+                return;
+            }
+            // do the base Room class logic
+            super.addClient(client);
+            onClientAdded(client);
+        });
     }
 
     @Override
-    protected synchronized void removeClient(ServerThread client) {
-        if (!isRunning()) { // block action if Room isn't running
-            return;
-        }
-        LoggerUtil.INSTANCE.info("Players in room: " + clientsInRoom.size());
-        // do the base-class logic
-        super.removeClient(client);
-        onClientRemoved(client);
+    protected void removeClient(ServerThread client) {
+        execute(() -> {
+            if (!isRunning()) { // block action if Room isn't running
+                return;
+            }
+            LoggerUtil.INSTANCE.info("Players in room: " + clientsInRoom.size());
+            // do the base-class logic
+            super.removeClient(client);
+            onClientRemoved(client);
+        });
+    }
+
+    @Override
+    protected void resync(ServerThread client) {
+        super.resync(client);
+        onClientAdded(client); // phase, timers and game state
     }
 
     @Override
-    protected synchronized void disconnect(ServerThread client) {
-        super.disconnect(client);
-        LoggerUtil.INSTANCE.info("Players in room: " + clientsInRoom.size());
-        onClientRemoved(client);
+    protected void onCaughtUp(ServerThread client) {
+        syncTimers(client); // TIME isn't kept in the BroadcastLog
+    }
+
+    @Override
+    protected void disconnect(ServerThread client) {
+        execute(() -> {
+            super.disconnect(client);
+            LoggerUtil.INSTANCE.info("Players in room: " + clientsInRoom.size());
+            onClientRemoved(client);
+        });
     }
 
     /**
@@ -124,14 +151,21 @@ public abstract class BaseGameRoom extends Room {
             resetReadyTimer();
         }
         if (readyTimer == null) {
-            readyTimer = new TimedEvent(30, () -> {
-                // callback to trigger when ready expires
-                checkReadyStatus();
-            });
-            readyTimer.setTickCallback((time) -> {
-                System.out.println("Ready Timer: " + time);
-                sendCurrentTime(TimerType.READY, time);
-            });
+            TimedEvent timer = new TimedEvent(READY_SECONDS);
+            // timer callbacks are posted to the mailbox; the identity check drops
+            // ticks/expirations that were already queued when the timer got reset
+            timer.setExpireCallback(() -> execute(() -> {
+                if (readyTimer == timer) {
+                    checkReadyStatus();
+                }
+            }));
+            timer.setTickCallback((time) -> execute(() -> {
+                if (readyTimer == timer) {
+                    onTimerTick(TimerType.READY, timer, time);
+                }
+            }));
+            readyTimer = timer;
+            sendTimerStart(TimerType.READY, timer);
         }
     }
 
@@ -160,6 +194,10 @@ public abstract class BaseGameRoom extends Room {
      * 
      * @param phase
      */
+    public Phase getPhase() {
+        return currentPhase;
+    }
+
     protected void changePhase(Phase phase) {
         if (currentPhase != phase) {
             currentPhase = phase;
@@ -175,13 +213,58 @@ public abstract class BaseGameRoom extends Room {
      * @param time      the remaining time or -1 to cancel
      */
     protected void sendCurrentTime(TimerType timerType, int time) {
-        clientsInRoom.values().removeIf(spInRoom -> {
-            boolean failedToSend = !spInRoom.sendCurrentTime(timerType, time);
-            if (failedToSend) {
-                removeClient(spInRoom);
-            }
-            return failedToSend;
-        });
+        TimerPayload tp = new TimerPayload();
+        tp.setTime(time);
+        tp.setTimerType(timerType);
+        broadcastPayload(tp);
+    }
+
+    /**
+     * Tells every client a timer (re)started so they can count it down locally
+     * 
+     * @param timerType
+     * @param timer
+     */
+    protected void sendTimerStart(TimerType timerType, TimedEvent timer) {
+        TimerPayload tp = new TimerPayload();
+        tp.setTime(timer.getRemainingTime());
+        tp.setDuration(timer.getDurationInSeconds());
+        tp.setTimerType(timerType);
+        timer.markSynced();
+        broadcastPayload(tp);
+    }
+
+    /**
+     * Called from the mailbox for every tick of an active timer. Clients already
+     * count down on their own, so this only resyncs them when the server timer
+     * drifted (late ticks, changed duration).
+     * 
+     * @param timerType
+     * @param timer
+     * @param time      the remaining time
+     */
+    protected void onTimerTick(TimerType timerType, TimedEvent timer, int time) {
+        if (TIMER_TICKS) {
+            sendCurrentTime(timerType, time);
+        } else if (time > 0 && Math.abs(timer.getDriftMillis()) > TIMER_DRIFT_MILLIS) {
+            WireStats.recordTimerResync();
+            sendTimerStart(timerType, timer);
+        }
+    }
+
+    /**
+     * Sends the running timers to a client that just joined
+     * 
+     * @param sp
+     */
+    protected void syncTimers(ServerThread sp) {
+        syncTimer(sp, TimerType.READY, readyTimer);
+    }
+
+    protected void syncTimer(ServerThread sp, TimerType timerType, TimedEvent timer) {
+        if (timer != null) {
+            sp.sendTimerStart(timerType, timer.getRemainingTime(), timer.getDurationInSeconds());
+        }
     }
 
     /**
@@ -197,13 +280,10 @@ public abstract class BaseGameRoom extends Room {
      * Sends the current phase to all clients
      */
     protected void sendCurrentPhase() {
-        clientsInRoom.values().removeIf(spInRoom -> {
-            boolean failedToSend = !spInRoom.sendCurrentPhase(currentPhase);
-            if (failedToSend) {
-                removeClient(spInRoom);
-            }
-            return failedToSend;
-        });
+        Payload p = new Payload();
+        p.setPayloadType(PayloadType.PHASE);
+        p.setMessage(currentPhase.name());
+        broadcastPayload(p);
     }
 
     /**
@@ -211,13 +291,9 @@ public abstract class BaseGameRoom extends Room {
      * status
      */
     protected void sendResetReadyTrigger() {
-        clientsInRoom.values().removeIf(spInRoom -> {
-            boolean failedToSend = !spInRoom.sendResetReady();
-            if (failedToSend) {
-                removeClient(spInRoom);
-            }
-            return failedToSend;
-        });
+        ReadyPayload rp = new ReadyPayload();
+        rp.setPayloadType(PayloadType.RESET_READY);
+        broadcastPayload(rp);
     }
 
     /**
@@ -229,6 +305,7 @@ public abstract class BaseGameRoom extends Room {
         clientsInRoom.values().removeIf(spInRoom -> {
             boolean failedToSend = !incomingSP.sendReadyStatus(spInRoom.getClientId(), spInRoom.isReady(), true);
             if (failedToSend) {
+                Metrics.recordSendFailure();
                 removeClient(spInRoom);
             }
             return failedToSend && spInRoom.getClientId() == incomingSP.getClientId();
@@ -242,18 +319,19 @@ public abstract class BaseGameRoom extends Room {
      * @param isReady
      */
     protected void sendReadyStatus(ServerThread incomingSP, boolean isReady) {
-        clientsInRoom.values().removeIf(spInRoom -> {
-            boolean failedToSend = !spInRoom.sendReadyStatus(incomingSP.getClientId(), incomingSP.isReady());
-            if (failedToSend) {
-                removeClient(spInRoom);
-            }
-            return failedToSend;
-        });
+        ReadyPayload rp = new ReadyPayload();
+        rp.setClientId(incomingSP.getClientId());
+        rp.setReady(incomingSP.isReady());
+        execute(() -> broadcastMemberState(incomingSP, 0, rp));
     }
     // end send data to ServerThread(s)
 
     // receive data from ServerThread (GameRoom specific)
     protected void handleReady(ServerThread sender) {
+        execute(() -> handleReadyCommand(sender));
+    }
+
+    private void handleReadyCommand(ServerThread sender) {
         try {
             // early exit checks
             checkPlayerInRoom(sender);
@@ -324,14 +402,32 @@ public abstract class BaseGameRoom extends Room {
     }
     // end Logic Checks
 
-    // Broadcast a payload to all clients
-    public void broadcastPayload(Project.Common.Payload payload) {
+    /**
+     * Broadcast a payload to all clients; it's serialized once and the same
+     * bytes are written to every recipient (numbered and kept for catch-ups,
+     * except TIME)
+     * 
+     * @param payload
+     */
+    public void broadcastPayload(Payload payload) {
+        execute(() -> broadcastPayloadCommand(payload));
+    }
+
+    private void broadcastPayloadCommand(Payload payload) {
+        if (payload.getPayloadType() != PayloadType.TIME) { // TIME is too spammy to log
+            LoggerUtil.INSTANCE.info(() -> String.format("Broadcasting to %s recipients: %s", clientsInRoom.size(), payload));
+        }
+        long start = System.nanoTime();
+        SharedFrame frame = payload.getPayloadType() == PayloadType.TIME ? new SharedFrame(payload)
+                : sequenced(payload);
         clientsInRoom.values().removeIf(serverThread -> {
-            boolean failedToSend = !serverThread.sendToClient(payload);
+            boolean failedToSend = !serverThread.sendFrame(frame);
             if (failedToSend) {
+                Metrics.recordSendFailure();
                 removeClient(serverThread);
             }
             return failedToSend;
         });
+        Metrics.BROADCAST.recordSince(start);
     }
 }
\ No newline at end of file
@@ -1,25 +1,44 @@
 package Project.Server;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 
+import Project.Common.FrameCodec;
+import Project.Common.LoggerUtil;
 import Project.Common.Payload;
 import Project.Common.PayloadType;
+import Project.Common.TimerScheduler;
 import Project.Common.User;
+import Project.Common.WireFormat;
 
 /**
  * Base class the handles the underlying connection between Client and
- * Server-side
+ * Server-side.
+ * It's a Runnable rather than a Thread so the engine decides what runs it
+ * (platform thread, virtual thread, or nothing at all for NIO).
  */
-public abstract class BaseServerThread extends Thread {
+public abstract class BaseServerThread implements Runnable {
 
-    protected boolean isRunning = false; // control variable to stop this thread
-    protected ObjectOutputStream out; // exposed here for send()
-    protected Socket client; // communication directly to "my" client
+    protected volatile boolean isRunning = false; // control variable to stop this thread
+    protected volatile ClientConnection connection; // communication directly to "my" client (see continueOn())
     protected User user = new User();
-    protected Room currentRoom;
+    protected volatile Room currentRoom; // set when a move starts (see moveTo()), read by the reader
+    private final ReentrantLock moveLock = new ReentrantLock(); // orders moveTo() and isHeadedTo()
+    private volatile Thread runner; // thread executing run(), null for NIO connections
+    private volatile ScheduledFuture<?> nameTimeout; // pending name check from onConnectionOpened()
+    // outgoing body encoding; switched to BINARY once the client offers it in
+    // CLIENT_CONNECT
+    protected volatile WireFormat wireFormat = WireFormat.JAVA;
+    // numbers and keeps what's sent so a reconnect can resume; null for clients
+    // that can't (older codecs) or before the handshake
+    protected volatile ResumeSession session;
+    // set once a reconnect took over this client's session and room membership
+    protected volatile boolean superseded = false;
 
     /**
      * Returns the current Room associated with this ServerThread
@@ -46,6 +65,45 @@ public abstract class BaseServerThread extends Thread {
         currentRoom = room;
     }
 
+    /**
+     * Points this client at the room it's moving to before that room has
+     * seated it, so anything it sends in the meantime (another join included)
+     * already goes to, and starts from, the new room
+     * 
+     * @param room
+     * @return the room it was pointing at before, null if none
+     */
+    protected Room moveTo(Room room) {
+        moveLock.lock();
+        try {
+            Room previous = currentRoom;
+            currentRoom = room;
+            return previous;
+        } finally {
+            moveLock.unlock();
+        }
+    }
+
+    /**
+     * Asked by a room about to seat this client; a later move may have pointed
+     * it somewhere else while the join waited in the room's mailbox. A client
+     * added without a move (not pointing anywhere yet) is pointed at the room.
+     * 
+     * @param room
+     * @return true if the client is still headed to this room
+     */
+    protected boolean isHeadedTo(Room room) {
+        moveLock.lock();
+        try {
+            if (currentRoom == null) {
+                currentRoom = room;
+            }
+            return currentRoom == room;
+        } finally {
+            moveLock.unlock();
+        }
+    }
+
     /**
      * Returns the status of this ServerThread
      * 
@@ -72,6 +130,10 @@ public abstract class BaseServerThread extends Thread {
      */
     protected void setClientName(String clientName) {
         this.user.setClientName(clientName);
+        ScheduledFuture<?> pendingTimeout = nameTimeout;
+        if (pendingTimeout != null) {
+            pendingTimeout.cancel(false); // name arrived, the check isn't needed anymore
+        }
         onInitialized();
     }
 
@@ -91,6 +153,18 @@ public abstract class BaseServerThread extends Thread {
      */
     protected abstract void info(String message);
 
+    /**
+     * Same as info(String) but only builds the message if INFO is enabled; used
+     * for the per-payload messages
+     * 
+     * @param message
+     */
+    protected void info(Supplier<String> message) {
+        if (LoggerUtil.INSTANCE.isLoggable(Level.INFO)) {
+            info(message.get());
+        }
+    }
+
     /**
      * Triggered when object is fully initialized
      */
@@ -117,19 +191,161 @@ public abstract class BaseServerThread extends Thread {
             // added to reduce log spam
             boolean ignoreTimePayloads = true;
             if (!(ignoreTimePayloads && payload.getPayloadType() == PayloadType.TIME)) {
-                info("Sending to client: " + payload);
+                info(() -> "Sending to client: " + payload);
             }
+            byte[] frame = FrameCodec.encode(payload, wireFormat);
+            WireStats.recordEncoded(frame.length);
+            Metrics.recordSent(payload.getPayloadType());
+            return writeFrame(frame, payload.getPayloadType() == PayloadType.TIME);
+        } catch (IOException e) {
+            // comment this out to inspect the stack trace
+            // e.printStackTrace();
+        }
+        return onSendFailed();
+    }
 
-            out.writeObject(payload);
-            out.flush();
+    /**
+     * Sends a broadcast frame that was already encoded for other recipients.
+     * The caller logs the broadcast once instead of per client.
+     * 
+     * @param frame
+     * @return true if no errors were encountered
+     */
+    protected boolean sendFrame(SharedFrame frame) {
+        if (!isRunning) {
             return true;
+        }
+        try {
+            PayloadType type = frame.getPayload().getPayloadType();
+            Metrics.recordSent(type);
+            return writeFrame(frame.get(wireFormat), type == PayloadType.TIME);
         } catch (IOException e) {
-            info("Error sending message to client (most likely disconnected)");
             // comment this out to inspect the stack trace
             // e.printStackTrace();
-            cleanup();
+        }
+        return onSendFailed();
+    }
+
+    /**
+     * Sends broadcasts a room kept in its BroadcastLog (see Room.handleCatchUp())
+     * 
+     * @param frames binary frames, only for clients on the current codec
+     * @return true if no errors were encountered
+     */
+    protected boolean sendLogged(List<byte[]> frames) {
+        if (!isRunning) {
+            return true;
+        }
+        for (byte[] frame : frames) {
+            if (!writeFrame(frame, false)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Queues the frame; never blocks on the socket. Inside a room command the
+     * socket write waits for the end of the command (see FlushBatch)
+     * 
+     * @param frame
+     * @param droppable TIME frames may be dropped for a lagging client
+     * @return false if the client is gone or fell too far behind
+     */
+    private boolean writeFrame(byte[] frame, boolean droppable) {
+        ResumeSession resumable = session;
+        if (resumable != null && !resumable.isEnded()) {
+            if (resumable.write(frame, droppable)) {
+                return true;
+            }
+            logOverflow();
+            // the frame is kept; the client stays in its room while it reconnects
+            return detach() || onSendFailed();
+        }
+        if (FlushBatch.write(connection, frame, droppable)) {
+            return true;
+        }
+        logOverflow();
+        return onSendFailed();
+    }
+
+    private void logOverflow() {
+        OutboundQueue outbound = connection.getOutbound();
+        if (outbound.isOverflowed()) {
+            WireStats.recordOverflowDisconnect();
+            info(String.format("Disconnecting lagging client, outbound queue full (%s frames, %s dropped)",
+                    outbound.getLimit(), outbound.getDropped()));
+        }
+    }
+
+    /**
+     * Holds this client's place while it reconnects instead of disconnecting it
+     * (see ResumeSession)
+     * 
+     * @return false if there's no session to hold
+     */
+    private boolean detach() {
+        ResumeSession resumable = session;
+        if (resumable == null || !resumable.detach(connection, this::expireSession)) {
             return false;
         }
+        if (connection.isOpen()) {
+            info("Connection lost, holding the session for a reconnect");
+            connection.close();
+        }
+        return true;
+    }
+
+    /**
+     * Nobody resumed the session in time: disconnect like the connection just
+     * closed
+     */
+    private void expireSession() {
+        ResumeSession resumable = session;
+        if (resumable == null || !resumable.end()) {
+            return;
+        }
+        Server.INSTANCE.removeSession(resumable.getToken());
+        Metrics.recordSessionExpired();
+        info("Session wasn't resumed in time");
+        leaveRoom();
+    }
+
+    /**
+     * Ends the session for good, i.e. the client left or was disconnected
+     */
+    private void endSession() {
+        ResumeSession resumable = session;
+        if (resumable != null && resumable.end()) {
+            Server.INSTANCE.removeSession(resumable.getToken());
+        }
+    }
+
+    /**
+     * @return frames queued for this client but not yet written
+     */
+    public int getOutboundDepth() {
+        return connection.getOutbound().getDepth();
+    }
+
+    /**
+     * @return the deepest the outbound queue has been
+     */
+    public int getOutboundHighWater() {
+        return connection.getOutbound().getHighWater();
+    }
+
+    /**
+     * @return TIME frames dropped because this client lagged behind
+     */
+    public long getDroppedFrames() {
+        return connection.getOutbound().getDropped();
+    }
+
+    private boolean onSendFailed() {
+        info("Error sending message to client (most likely disconnected)");
+        cleanup();
+        return false;
     }
 
     /**
@@ -141,41 +357,107 @@ public abstract class BaseServerThread extends Thread {
             return;
         }
         info("Thread being disconnected by server");
+        endSession();
         isRunning = false;
-        this.interrupt(); // breaks out of blocking read in the run() method
+        if (runner != null) {
+            runner.interrupt(); // breaks out of blocking read in the run() method
+        }
         cleanup(); // good practice to ensure data is written out immediately
     }
 
+    /**
+     * Called by the engine once the connection can send and receive
+     */
+    protected void onConnectionOpened() {
+        isRunning = true;
+        nameTimeout = TimerScheduler.INSTANCE.schedule(() -> {
+            if (getClientName() == null || getClientName().isBlank()) {
+                info("Client name not received. Disconnecting");
+                disconnect();
+            }
+        }, 3, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Called by the engine for every Payload read from the connection
+     * 
+     * @param fromClient
+     */
+    protected void onPayloadReceived(Payload fromClient) {
+        info(() -> "Received from my client: " + fromClient);
+        Metrics.recordReceived(fromClient.getPayloadType());
+        long start = System.nanoTime();
+        processPayload(fromClient);
+        Metrics.PROCESS_PAYLOAD.recordSince(start);
+    }
+
+    /**
+     * Called by the engine once the connection is gone (client or server closed
+     * it)
+     */
+    protected void onConnectionClosed() {
+        if (superseded || detach()) {
+            return; // resumed on another connection, or waiting for that
+        }
+        leaveRoom();
+    }
+
+    private void leaveRoom() {
+        Room room = currentRoom;
+        if (room != null) {
+            // the room removes us and then calls disconnect() on its own mailbox;
+            // cleaning up here would reset our id before the room used it
+            room.handleDisconnect(this);
+            return;
+        }
+        isRunning = false;
+        info("Exited thread loop. Cleaning up connection");
+        cleanup();
+    }
+
+    /**
+     * Blocking read loop, only used by the BlockingEngine
+     */
     @Override
     public void run() {
+        if (!(connection instanceof SocketConnection socketConnection)) {
+            throw new IllegalStateException("run() requires a blocking SocketConnection");
+        }
+        read(socketConnection, true);
+    }
+
+    /**
+     * Moves an already opened client onto a blocking connection and runs the
+     * read loop on the calling thread; for NIO clients that turned out to be
+     * from before framing (see NioConnection), before anything was sent to them
+     * 
+     * @param socketConnection
+     */
+    protected void continueOn(SocketConnection socketConnection) {
+        connection = socketConnection;
+        read(socketConnection, false);
+    }
+
+    private void read(SocketConnection socketConnection, boolean opening) {
+        runner = Thread.currentThread();
         info("Thread starting");
-        try (ObjectOutputStream out = new ObjectOutputStream(client.getOutputStream());
-                ObjectInputStream in = new ObjectInputStream(client.getInputStream());) {
-            this.out = out;
-            isRunning = true;
-            new java.util.Timer().schedule(new java.util.TimerTask() {
-                @Override
-                public void run() {
-                    if (getClientName() == null || getClientName().isBlank()) {
-                        info("Client name not received. Disconnecting");
-                        disconnect();
-                    }
-                }
-            }, 3000);
+        try {
+            if (opening) {
+                onConnectionOpened();
+            }
             Payload fromClient;
             /**
              * isRunning is a flag to let us manage the loop exit condition
-             * fromClient (in.readObject()) is a blocking method that waits until data is
+             * fromClient (read()) is a blocking method that waits until data is
              * received
              * - null would likely mean a disconnect so we use a "set and check" logic to
              * alternatively exit the loop
              */
             while (isRunning) {
                 try {
-                    fromClient = (Payload) in.readObject(); // blocking method
+                    fromClient = socketConnection.read(); // blocking method
                     if (fromClient != null) {
-                        info("Received from my client: " + fromClient);
-                        processPayload(fromClient);
+                        onPayloadReceived(fromClient);
                     } else {
                         throw new IOException("Connection interrupted"); // Specific exception for a clean break
                     }
@@ -183,7 +465,7 @@ public abstract class BaseServerThread extends Thread {
                     System.err.println("Error reading object as specified type: " + cce.getMessage());
                     cce.printStackTrace();
                 } catch (IOException e) {
-                    if (Thread.currentThread().isInterrupted()) {
+                    if (Thread.currentThread().isInterrupted() || !isRunning) {
                         info("Thread interrupted during read (likely from the disconnect() method)");
                         break;
                     }
@@ -198,12 +480,7 @@ public abstract class BaseServerThread extends Thread {
             e.printStackTrace();
             info("My Client disconnected");
         } finally {
-            if (currentRoom != null) {
-                currentRoom.handleDisconnect(this);
-            }
-            isRunning = false;
-            info("Exited thread loop. Cleaning up connection");
-            cleanup();
+            onConnectionClosed();
         }
     }
 
@@ -212,16 +489,24 @@ public abstract class BaseServerThread extends Thread {
      */
     protected void cleanup() {
         info("ServerThread cleanup() start");
-        try {
-            // close server-side end of connection
-            currentRoom = null;
-            out.close();
-            client.close();
-            user.reset();
+        ScheduledFuture<?> pendingTimeout = nameTimeout;
+        if (pendingTimeout != null) {
+            pendingTimeout.cancel(false);
+        }
+        if (!superseded) {
+            endSession();
+        }
+        // close server-side end of connection
+        currentRoom = null;
+        if (connection.isOpen()) {
+            connection.close();
             info("Closed Server-side Socket");
-        } catch (IOException e) {
+        } else {
             info("Client already closed");
         }
+        if (!superseded) {
+            user.reset(); // shared with the connection that took over otherwise
+        }
 
         info("ServerThread cleanup() end");
     }
@@ -0,0 +1,72 @@
+package Project.Server;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
+
+import Project.Common.LoggerUtil;
+import Project.Common.TextFX;
+import Project.Common.TextFX.Color;
+
+/**
+ * Thread-per-client engine: every accepted Socket gets its own ServerThread
+ * blocking on reads. The ThreadFactory decides whether those are platform
+ * threads (original behavior) or virtual threads.
+ */
+public class BlockingEngine implements ConnectionEngine {
+    private final ThreadFactory threadFactory;
+    private volatile boolean isRunning = true;
+    private ServerSocket serverSocket;
+
+    private void info(String message) {
+        LoggerUtil.INSTANCE.info(() -> TextFX.colorize(String.format("BlockingEngine: %s", message), Color.YELLOW));
+    }
+
+    /**
+     * @param threadFactory creates the thread that runs each ServerThread
+     */
+    public BlockingEngine(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+    }
+
+    @Override
+    public void listen(int port, Consumer<ServerThread> onInitialized) throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port)) {
+            this.serverSocket = serverSocket;
+            while (isRunning) {
+                info("Waiting for next client");
+                Socket incomingClient = serverSocket.accept(); // blocking action, waits for a client connection
+                info("Client connected");
+                // wrap socket in a ServerThread, pass a callback to notify the Server when
+                // they're initialized
+                ServerThread serverThread = new ServerThread(new SocketConnection(incomingClient, threadFactory),
+                        onInitialized);
+                // the engine owns the thread lifecycle, the ServerThread is just the Runnable
+                threadFactory.newThread(serverThread).start();
+                // Note: We don't yet add the ServerThread reference to our connectedClients map
+            }
+        } catch (SocketException e) {
+            if (isRunning) {
+                throw e;
+            }
+            info("Stopped accepting clients");
+        } finally {
+            isRunning = false;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        isRunning = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close(); // breaks out of accept()
+            }
+        } catch (IOException e) {
+            // ignore, closing anyway
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package Project.Server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A room's most recent broadcasts, kept as their binary frames in a fixed-size
+ * off-heap ring so a member that missed some can be sent just those instead of
+ * the whole room state again (see Room.handleCatchUp()).
+ * <p>
+ * Each room gets -Dserver.room.log.bytes (default 64 KiB) of direct memory,
+ * allocated on its first broadcast, and keeps at most -Dserver.room.log.frames
+ * (default 512) frames. New frames overwrite the oldest ones; asking for
+ * anything older than what's left returns null and the room resyncs the member
+ * instead.
+ * </p>
+ * Only touched on the room's mailbox, so there's no locking.
+ */
+public class BroadcastLog {
+    private static final int BYTES = Math.max(1024, Integer.getInteger("server.room.log.bytes", 64 * 1024));
+    private static final int FRAMES = Math.max(1, Integer.getInteger("server.room.log.frames", 512));
+
+    private ByteBuffer ring; // null until the first frame, freed with the room
+    private final long[] starts = new long[FRAMES]; // where each kept frame starts in written
+    private final int[] lengths = new int[FRAMES];
+    private long written = 0; // bytes ever appended
+    private long first = 1; // oldest sequence still kept
+    private long last = 0; // newest sequence appended
+
+    /**
+     * Keeps a broadcast's binary frame
+     *
+     * @param sequence the broadcast's number; anything before it is forgotten if
+     *                 it doesn't follow the last one
+     * @param frame    complete frame (header + body)
+     */
+    public void append(long sequence, byte[] frame) {
+        if (sequence != last + 1) {
+            first = sequence;
+        }
+        last = sequence;
+        if (frame.length > BYTES) {
+            first = sequence + 1; // doesn't fit, nothing before it can be replayed either
+            return;
+        }
+        if (ring == null) {
+            ring = ByteBuffer.allocateDirect(BYTES);
+        }
+        int at = (int) (written % BYTES);
+        int head = Math.min(frame.length, BYTES - at);
+        ring.put(at, frame, 0, head);
+        if (head < frame.length) {
+            ring.put(0, frame, head, frame.length - head);
+        }
+        int slot = (int) (sequence % FRAMES);
+        starts[slot] = written;
+        lengths[slot] = frame.length;
+        written += frame.length;
+        // drop whatever was overwritten or doesn't have a slot anymore
+        while (first < last && (last - first >= FRAMES || starts[(int) (first % FRAMES)] < written - BYTES)) {
+            first++;
+        }
+    }
+
+    /**
+     * Forgets everything up to a broadcast that couldn't be kept (i.e. it
+     * failed to encode)
+     *
+     * @param sequence
+     */
+    public void skip(long sequence) {
+        first = sequence + 1;
+        last = sequence;
+    }
+
+    /**
+     * Copies out every kept frame after a sequence number
+     *
+     * @param after the last broadcast the member got
+     * @return the frames in order (empty if it has them all), or null if some
+     *         of them aren't kept anymore
+     */
+    public List<byte[]> since(long after) {
+        if (after > last || after + 1 < first) {
+            return null;
+        }
+        List<byte[]> frames = new ArrayList<>((int) (last - after));
+        for (long sequence = after + 1; sequence <= last; sequence++) {
+            int slot = (int) (sequence % FRAMES);
+            byte[] frame = new byte[lengths[slot]];
+            int at = (int) (starts[slot] % BYTES);
+            int head = Math.min(frame.length, BYTES - at);
+            ring.get(at, frame, 0, head);
+            if (head < frame.length) {
+                ring.get(0, frame, head, frame.length - head);
+            }
+            frames.add(frame);
+        }
+        return frames;
+    }
+}
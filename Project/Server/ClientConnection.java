@@ -0,0 +1,51 @@
+package Project.Server;
+
+/**
+ * Transport-level view of a single client connection.
+ * ServerThread only deals with Payload logic; implementations decide how the
+ * frame bytes actually move (blocking streams or a Selector loop).
+ * Writes never block the caller: frames go into a bounded OutboundQueue that
+ * the connection drains on its own.
+ */
+public interface ClientConnection {
+
+    /**
+     * Queues a complete frame (see FrameCodec)
+     * 
+     * @param frame     header + body
+     * @param droppable true if the frame may be dropped when the client lags
+     *                  behind (i.e., TIME updates)
+     * @return false if the connection is no longer usable or overflowed
+     */
+    boolean write(byte[] frame, boolean droppable);
+
+    /**
+     * Queues a complete frame without starting to write it; it goes out with
+     * the next flush() or write(), together with anything else held by then
+     * 
+     * @param frame     header + body
+     * @param droppable see write()
+     * @return false if the connection is no longer usable or overflowed
+     */
+    default boolean writeHeld(byte[] frame, boolean droppable) {
+        return write(frame, droppable);
+    }
+
+    /**
+     * Starts writing the frames held by writeHeld()
+     */
+    default void flush() {
+    }
+
+    /**
+     * Closes the underlying socket; safe to call multiple times
+     */
+    void close();
+
+    boolean isOpen();
+
+    /**
+     * @return the outbound queue holding frames not yet written to the socket
+     */
+    OutboundQueue getOutbound();
+}
@@ -0,0 +1,26 @@
+package Project.Server;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Accepts client sockets and wires each one to a ServerThread.
+ * The Server picks one implementation at startup (see EngineType).
+ */
+public interface ConnectionEngine {
+
+    /**
+     * Binds the port and accepts clients until shutdown() is called.
+     * This call blocks the calling thread.
+     * 
+     * @param port
+     * @param onInitialized callback passed to every ServerThread
+     * @throws IOException
+     */
+    void listen(int port, Consumer<ServerThread> onInitialized) throws IOException;
+
+    /**
+     * Stops accepting clients and releases engine resources
+     */
+    void shutdown();
+}
@@ -0,0 +1,41 @@
+package Project.Server;
+
+/**
+ * Available ConnectionEngine implementations, selected at startup
+ */
+public enum EngineType {
+    NIO, // small pool of Selector loops owning non-blocking channels
+    VIRTUAL, // one virtual thread per client blocking on reads
+    BLOCKING; // fallback: one platform thread per client blocking on reads
+
+    /**
+     * Case-insensitive lookup with a fallback
+     * 
+     * @param value
+     * @param fallback returned if value is null or unknown
+     * @return
+     */
+    public static EngineType fromString(String value, EngineType fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        for (EngineType type : values()) {
+            if (type.name().equalsIgnoreCase(value.trim())) {
+                return type;
+            }
+        }
+        return fallback;
+    }
+
+    public ConnectionEngine create() {
+        switch (this) {
+            case BLOCKING:
+                return new BlockingEngine(Thread.ofPlatform().name("ServerThread-", 0).factory());
+            case VIRTUAL:
+                return new BlockingEngine(Thread.ofVirtual().name("ServerThread-", 0).factory());
+            case NIO:
+            default:
+                return new NioEngine(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package Project.Server;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds back socket writes while a room command runs, so everything one
+ * logical update sends a client (i.e., a turn's relay, game events, points and
+ * turn status) leaves in a single write instead of one per payload.
+ * <p>
+ * RoomMailbox opens a batch around every command it runs. Frames sent from
+ * that thread in the meantime are queued with ClientConnection.writeHeld() and
+ * every connection they went to is flushed once when the command ends. If a
+ * command is still sending -Dserver.flush.max.us (default 2000) after the
+ * first frame was held, what's held so far goes out with the next frame it
+ * sends (the clock is checked on every held frame) so a long update can't sit
+ * on its first payloads. -Dserver.flush.batch=false writes every frame on its
+ * own like before.
+ * </p>
+ */
+public final class FlushBatch {
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("server.flush.batch", "true"));
+    private static final long MAX_HOLD_NANOS = TimeUnit.MICROSECONDS
+            .toNanos(Long.getLong("server.flush.max.us", 2000));
+    private static final ThreadLocal<FlushBatch> CURRENT = new ThreadLocal<>();
+
+    private final Set<ClientConnection> held = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long heldSince;
+    private int heldFrames = 0;
+    private int depth = 0;
+
+    private FlushBatch() {
+    }
+
+    /**
+     * @return false if -Dserver.flush.batch=false
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Opens a batch on the calling thread (nested calls join the open one)
+     */
+    public static void begin() {
+        if (!ENABLED) {
+            return;
+        }
+        FlushBatch batch = CURRENT.get();
+        if (batch == null) {
+            batch = new FlushBatch();
+            CURRENT.set(batch);
+        }
+        batch.depth++;
+    }
+
+    /**
+     * Ends the calling thread's batch; the outermost end() flushes every
+     * connection written to since begin()
+     */
+    public static void end() {
+        if (!ENABLED) {
+            return;
+        }
+        FlushBatch batch = CURRENT.get();
+        if (batch != null && batch.depth > 0 && --batch.depth == 0) {
+            batch.flush();
+        }
+    }
+
+    /**
+     * Writes a frame, holding it until the end of the batch if the calling
+     * thread has one open
+     * 
+     * @param connection
+     * @param frame
+     * @param droppable
+     * @return see ClientConnection.write()
+     */
+    public static boolean write(ClientConnection connection, byte[] frame, boolean droppable) {
+        FlushBatch batch = ENABLED ? CURRENT.get() : null;
+        if (batch == null || batch.depth == 0) {
+            return connection.write(frame, droppable);
+        }
+        if (!connection.writeHeld(frame, droppable)) {
+            return false;
+        }
+        batch.held.add(connection);
+        long now = System.nanoTime();
+        if (batch.heldFrames++ == 0) {
+            batch.heldSince = now;
+        } else if (now - batch.heldSince > MAX_HOLD_NANOS) {
+            batch.flush(); // latency cap; the rest of the command starts a new hold
+        }
+        return true;
+    }
+
+    private void flush() {
+        for (ClientConnection connection : held) {
+            connection.flush();
+        }
+        held.clear();
+        heldFrames = 0;
+    }
+}
@@ -0,0 +1,534 @@
+package Project.Server;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+import Project.Common.LoggerUtil;
+import Project.Common.MpscRingBuffer;
+import Project.Common.Phase;
+
+/**
+ * Crash recovery for in-progress games.
+ * <p>
+ * GameRooms record every state transition (session start, round start,
+ * guessed letter, strikes, points, a player leaving, session end) with the
+ * record*() methods. Recording only puts a small entry in a lock-free ring
+ * buffer, so a room's mailbox never waits on the disk. One daemon thread
+ * drains it in batches into an append-only, memory-mapped file: a batch is a
+ * few puts into mapped memory, and the OS keeps those pages even if the JVM
+ * dies. The file is forced to disk every -Dserver.journal.sync.ms (default
+ * 1000) for machine crashes.
+ * </p>
+ * <p>
+ * Every -Dserver.journal.snapshot.seconds (default 60), or once the file is
+ * half full, the writer rolls over to a new file and every running game writes
+ * one compact snapshot of its whole state into it. Once they all have, the
+ * older files are deleted. Replay reads the files oldest first and a snapshot
+ * replaces whatever came before it for that room, so a crash in the middle of
+ * a roll loses nothing.
+ * </p>
+ * Records are [length][crc32][body]; replay stops at the first record that's
+ * empty or doesn't match its checksum (the tail being written when the process
+ * died). Turn off with -Dserver.journal=false.
+ */
+public enum GameJournal {
+    INSTANCE;
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("server.journal", "true"));
+    // files are <name>.<generation> next to each other
+    private static final String FILE = System.getProperty("server.journal.file", "rooms.journal");
+    private static final int FILE_BYTES = Integer.getInteger("server.journal.mb", 8) * 1024 * 1024;
+    private static final long SNAPSHOT_NANOS = TimeUnit.SECONDS
+            .toNanos(Long.getLong("server.journal.snapshot.seconds", 60));
+    private static final long SYNC_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("server.journal.sync.ms", 1000));
+    // rooms that haven't snapshotted by then are treated as gone
+    private static final long ROLL_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final int MAGIC = 0x484A4E4C; // "HJNL"
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 16; // magic, format, generation
+    private static final int RECORD_HEADER_BYTES = 8; // length, crc32
+    private static final int BATCH = 256;
+
+    enum Type {
+        SNAPSHOT, ROUND_START, LETTER, STRIKES, POINTS, LEFT, SESSION_END
+    }
+
+    private static final Type[] TYPES = Type.values();
+
+    /**
+     * Everything needed to resume one game: the body of a SNAPSHOT and what
+     * replay rebuilds. Not changed once it's been recorded.
+     */
+    static final class GameState {
+        final String room;
+        int round;
+        String word = "";
+        int guessedMask; // bit n for 'A' + n
+        int strikes;
+        boolean hardMode;
+        boolean removeStrikeOnCorrectGuess;
+        // client name -> points, in turn order
+        final LinkedHashMap<String, Integer> seats = new LinkedHashMap<>();
+
+        GameState(String room) {
+            this.room = room;
+        }
+    }
+
+    /**
+     * One transition; name and value depend on the type (the word and round
+     * for ROUND_START, a player and their points for POINTS, ...)
+     */
+    private record Entry(Type type, String room, String name, int value, GameState state) {
+    }
+
+    private MpscRingBuffer<Entry> ring;
+    private Thread thread;
+    private volatile boolean running = false;
+    private volatile boolean parked = false;
+    private final LongAdder dropped = new LongAdder();
+
+    // only touched by the writer thread (or start() before it runs)
+    private Path directory;
+    private String baseName;
+    private long generation;
+    private Path currentFile;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private final List<Path> superseded = new ArrayList<>(); // deleted once every game is in the current file
+    private final Set<String> awaitingSnapshot = new HashSet<>();
+    private long rollStarted;
+    private long lastRoll;
+    private long lastSync;
+    private boolean dirty = false;
+    private long droppedSeen = 0;
+    private final ByteBuffer scratch = ByteBuffer.allocate(64 * 1024);
+    private final CRC32 crc = new CRC32();
+
+    private static String key(String room) {
+        return room.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Replays the journal left by the last run and starts recording
+     *
+     * @return the games that were in progress (with at least one seat)
+     */
+    public synchronized List<GameState> start() {
+        if (!ENABLED || running) {
+            return List.of();
+        }
+        Path file = Path.of(FILE).toAbsolutePath();
+        directory = file.getParent();
+        baseName = file.getFileName().toString();
+        List<GameState> recovered = new ArrayList<>();
+        try {
+            long start = System.nanoTime();
+            List<Path> files = listGenerations();
+            Map<String, GameState> games = new LinkedHashMap<>();
+            int records = 0;
+            for (Path existing : files) {
+                records += replay(existing, games);
+            }
+            games.values().removeIf(state -> state.seats.isEmpty());
+            generation = files.isEmpty() ? 1 : generationOf(files.get(files.size() - 1)) + 1;
+            open(generation);
+            // the recovered games start the new file, so the old ones can go
+            for (GameState state : games.values()) {
+                write(new Entry(Type.SNAPSHOT, state.room, null, 0, state));
+            }
+            buffer.force();
+            for (Path existing : files) {
+                Files.deleteIfExists(existing);
+            }
+            superseded.clear();
+            recovered.addAll(games.values());
+            LoggerUtil.INSTANCE.info(String.format("Journal %s: replayed %s records from %s files in %s ms, %s games to resume",
+                    currentFile, records, files.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    recovered.size()));
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.severe("Journal unavailable, games won't survive a restart", e);
+            return List.of();
+        }
+        ring = new MpscRingBuffer<>(Integer.getInteger("server.journal.buffer", 64 * 1024));
+        lastRoll = lastSync = System.nanoTime();
+        running = true;
+        thread = Thread.ofPlatform().name("GameJournal").daemon(true).start(this::run);
+        return recovered;
+    }
+
+    /**
+     * Writes what's queued and stops recording. Called before the server
+     * disconnects everyone on shutdown, so games stay resumable after a planned
+     * restart too.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return true if transitions are being recorded
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return entries lost because the writer fell behind (repaired by the next
+     *         snapshot)
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    // record*() methods: called on the room's mailbox, never block
+
+    void recordSnapshot(GameState state) {
+        submit(new Entry(Type.SNAPSHOT, state.room, null, 0, state));
+    }
+
+    void recordRoundStart(String room, int round, String word) {
+        submit(new Entry(Type.ROUND_START, room, word, round, null));
+    }
+
+    void recordLetter(String room, char letter) {
+        submit(new Entry(Type.LETTER, room, null, letter, null));
+    }
+
+    void recordStrikes(String room, int strikes) {
+        submit(new Entry(Type.STRIKES, room, null, strikes, null));
+    }
+
+    void recordPoints(String room, String clientName, int points) {
+        submit(new Entry(Type.POINTS, room, clientName, points, null));
+    }
+
+    void recordLeft(String room, String clientName) {
+        submit(new Entry(Type.LEFT, room, clientName, 0, null));
+    }
+
+    void recordSessionEnd(String room) {
+        submit(new Entry(Type.SESSION_END, room, null, 0, null));
+    }
+
+    private void submit(Entry entry) {
+        if (!running) {
+            return;
+        }
+        if (!ring.offer(entry)) {
+            // the disk stalled for a whole buffer's worth; the writer rolls (and
+            // every game snapshots) as soon as it sees this
+            dropped.increment();
+            return;
+        }
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void run() {
+        while (running || !ring.isEmpty()) {
+            int count = 0;
+            try {
+                count = drainBatch();
+                maintain();
+            } catch (Exception e) {
+                LoggerUtil.INSTANCE.severe("Journal write failed", e);
+            }
+            if (count == 0) {
+                parked = true;
+                if (ring.isEmpty() && running) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+                }
+                parked = false;
+            }
+        }
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.warning("Couldn't close the journal: " + e);
+        }
+    }
+
+    private int drainBatch() throws IOException {
+        int count = 0;
+        Entry entry;
+        while (count < BATCH && (entry = ring.poll()) != null) {
+            write(entry);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Syncs, rolls over and cleans up old files when due
+     */
+    private void maintain() throws IOException {
+        long now = System.nanoTime();
+        if (!awaitingSnapshot.isEmpty() && now - rollStarted > ROLL_TIMEOUT_NANOS) {
+            LoggerUtil.INSTANCE.warning(String.format("Journal: no snapshot from %s, treating them as closed",
+                    awaitingSnapshot));
+            awaitingSnapshot.clear();
+        }
+        if (awaitingSnapshot.isEmpty() && !superseded.isEmpty()) {
+            buffer.force(); // the snapshots must be on disk before what they replace goes
+            for (Path old : superseded) {
+                Files.deleteIfExists(old);
+            }
+            superseded.clear();
+        }
+        boolean due = now - lastRoll > SNAPSHOT_NANOS && buffer.position() > HEADER_BYTES;
+        if (awaitingSnapshot.isEmpty() && (due || buffer.position() > FILE_BYTES / 2 || dropped.sum() != droppedSeen)) {
+            roll();
+        }
+        if (dirty && now - lastSync > SYNC_NANOS) {
+            buffer.force();
+            dirty = false;
+            lastSync = now;
+        }
+    }
+
+    /**
+     * Starts the next file and asks every running game for a snapshot
+     */
+    private void roll() throws IOException {
+        droppedSeen = dropped.sum();
+        open(generation + 1);
+        rollStarted = lastRoll = System.nanoTime();
+        for (Room room : Server.INSTANCE.getRooms()) {
+            if (room instanceof GameRoom game && game.getPhase() == Phase.IN_PROGRESS) {
+                awaitingSnapshot.add(key(game.getName()));
+                game.snapshotToJournal(); // answers with SNAPSHOT, or SESSION_END if it just ended
+            }
+        }
+    }
+
+    private void open(long generation) throws IOException {
+        Path file = directory.resolve(baseName + "." + generation);
+        FileChannel next = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        MappedByteBuffer mapped = next.map(FileChannel.MapMode.READ_WRITE, 0, FILE_BYTES);
+        mapped.putInt(MAGIC).putInt(FORMAT).putLong(generation);
+        if (channel != null) {
+            buffer.force();
+            channel.close(); // the mapping stays valid until it's collected
+            superseded.add(currentFile);
+        }
+        this.generation = generation;
+        channel = next;
+        buffer = mapped;
+        currentFile = file;
+    }
+
+    private void write(Entry entry) throws IOException {
+        scratch.clear();
+        try {
+            encode(entry, scratch);
+        } catch (BufferOverflowException e) {
+            LoggerUtil.INSTANCE.warning(String.format("Journal: %s record for %s is too big", entry.type, entry.room));
+            dropped.increment();
+            return;
+        }
+        int length = scratch.position();
+        if (buffer.remaining() < RECORD_HEADER_BYTES + length) {
+            roll();
+        }
+        crc.reset();
+        crc.update(scratch.array(), 0, length);
+        int at = buffer.position();
+        buffer.position(at + 4);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(scratch.array(), 0, length);
+        buffer.putInt(at, length); // last, so a torn record reads as the end
+        dirty = true;
+        if (entry.type == Type.SNAPSHOT || entry.type == Type.SESSION_END) {
+            awaitingSnapshot.remove(key(entry.room));
+        }
+    }
+
+    private static void encode(Entry entry, ByteBuffer out) {
+        out.put((byte) entry.type.ordinal());
+        putString(out, entry.room);
+        putString(out, entry.name);
+        out.putInt(entry.value);
+        if (entry.type == Type.SNAPSHOT) {
+            GameState state = entry.state;
+            out.putInt(state.round);
+            putString(out, state.word);
+            out.putInt(state.guessedMask);
+            out.putInt(state.strikes);
+            out.put((byte) ((state.hardMode ? 1 : 0) | (state.removeStrikeOnCorrectGuess ? 2 : 0)));
+            out.putInt(state.seats.size());
+            state.seats.forEach((name, points) -> {
+                putString(out, name);
+                out.putInt(points);
+            });
+        }
+    }
+
+    private static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.putInt(bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    // replay
+
+    private List<Path> listGenerations() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, baseName + ".*")) {
+            for (Path path : stream) {
+                if (generationOf(path) > 0) {
+                    files.add(path);
+                }
+            }
+        }
+        files.sort(Comparator.comparingLong(GameJournal::generationOf));
+        return files;
+    }
+
+    private static long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(name.lastIndexOf('.') + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Applies every intact record in one file
+     *
+     * @return records applied
+     */
+    private int replay(Path file, Map<String, GameState> games) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            if (mapped.remaining() < HEADER_BYTES || mapped.getInt() != MAGIC || mapped.getInt() != FORMAT) {
+                LoggerUtil.INSTANCE.warning("Journal: skipping unreadable file " + file);
+                return 0;
+            }
+            mapped.getLong(); // generation, already known from the name
+            int records = 0;
+            while (mapped.remaining() >= RECORD_HEADER_BYTES) {
+                int length = mapped.getInt();
+                if (length <= 0 || length > mapped.remaining() - 4) {
+                    break;
+                }
+                int checksum = mapped.getInt();
+                byte[] body = new byte[length];
+                mapped.get(body);
+                crc.reset();
+                crc.update(body);
+                if ((int) crc.getValue() != checksum) {
+                    LoggerUtil.INSTANCE.warning(String.format("Journal: torn record in %s after %s records", file,
+                            records));
+                    break;
+                }
+                apply(ByteBuffer.wrap(body), games);
+                records++;
+            }
+            return records;
+        }
+    }
+
+    private static void apply(ByteBuffer in, Map<String, GameState> games) {
+        Type type = TYPES[in.get()];
+        String room = getString(in);
+        String name = getString(in);
+        int value = in.getInt();
+        if (type == Type.SNAPSHOT) {
+            GameState state = new GameState(room);
+            state.round = in.getInt();
+            state.word = getString(in);
+            state.guessedMask = in.getInt();
+            state.strikes = in.getInt();
+            int flags = in.get();
+            state.hardMode = (flags & 1) != 0;
+            state.removeStrikeOnCorrectGuess = (flags & 2) != 0;
+            int seats = in.getInt();
+            for (int i = 0; i < seats; i++) {
+                String seat = getString(in);
+                state.seats.put(seat, in.getInt());
+            }
+            games.put(key(room), state);
+            return;
+        }
+        GameState state = games.get(key(room));
+        if (state == null) {
+            return; // from before this room's last snapshot
+        }
+        switch (type) {
+            case ROUND_START:
+                state.round = value;
+                state.word = name;
+                state.guessedMask = 0;
+                state.strikes = 0;
+                break;
+            case LETTER:
+                int letter = value - 'A';
+                if (letter >= 0 && letter < 26) {
+                    state.guessedMask |= 1 << letter;
+                }
+                break;
+            case STRIKES:
+                state.strikes = value;
+                break;
+            case POINTS:
+                state.seats.computeIfPresent(name, (seat, points) -> value);
+                break;
+            case LEFT:
+                state.seats.remove(name);
+                break;
+            case SESSION_END:
+                games.remove(key(room));
+                break;
+            default:
+                break;
+        }
+    }
+}
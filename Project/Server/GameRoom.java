@@ -3,27 +3,37 @@ package Project.Server;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Random;
 import java.util.stream.Collectors;
 
+import Project.Common.AwayStatusPayload;
 import Project.Common.Constants;
+import Project.Common.LetterGuessedPayload;
 import Project.Common.LoggerUtil;
+import Project.Common.Payload;
+import Project.Common.PayloadType;
 import Project.Common.Phase;
+import Project.Common.PointsPayload;
+import Project.Common.ReadyPayload;
+import Project.Common.RosterPayload;
+import Project.Common.RoundResultPayload;
+import Project.Common.StrikesPayload;
 import Project.Common.TimedEvent;
+import Project.Common.TimerScheduler;
 import Project.Common.TimerType;
+import Project.Common.WordMaskPayload;
 import Project.Exceptions.MissingCurrentPlayerException;
 import Project.Exceptions.NotPlayersTurnException;
 import Project.Exceptions.NotReadyException;
 import Project.Exceptions.PlayerNotFoundException;
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Random;
-import java.util.Scanner;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 
@@ -39,92 +49,72 @@ public class GameRoom extends BaseGameRoom {
     private int round = 0;
     
     // Word management
-    private List<String> wordList = new ArrayList<>();
-    private String currentWord;
-    private Set<Character> guessedLetters = new HashSet<>();
+    // per-room walks over the shared corpus, replaced when a new word list is loaded
+    private WordCorpus.Cursor words;
+    private WordCorpus.Cursor hardWords;
+    private final HangmanState hangman = new HangmanState(); // current word, guesses and reveals
     private int strikes = 0;
+    private long roundSolvedBy = Constants.DEFAULT_CLIENT_ID;
     private static final int MAX_STRIKES = 6;
     private static final int MAX_ROUNDS = 5;
-    private static final String WORDS_FILE = "Project/words.txt";
+    // -Dgame.turn.seconds / -Dgame.round.seconds, mostly for load/stress testing
+    private static final int TURN_SECONDS = Integer.getInteger("game.turn.seconds", 30);
+    private static final int ROUND_SECONDS = Integer.getInteger("game.round.seconds", 30);
 
     // Session options
+    // Note: plain fields/HashSets are fine, they're only touched from the mailbox
     private boolean removeStrikeOnCorrectGuess = false;
     private boolean hardMode = false;
 
     private Set<Long> awayPlayers = new HashSet<>();
     private Set<Long> spectators = new HashSet<>();
 
+    // Crash recovery (see GameJournal)
+    // seats of a recovered game nobody has reconnected to yet: client name -> points
+    private final Map<String, Integer> vacantSeats = new LinkedHashMap<>();
+    private final List<String> seatOrder = new ArrayList<>(); // turn order of the recovered game
+    private static final int RECLAIM_SECONDS = Integer.getInteger("server.journal.reclaim.seconds", 120);
+
 
     public GameRoom(String name) {
         super(name);
-        loadWordList();
     }
 
-
-    private void loadWordList() {
-        try (Scanner scanner = new Scanner(new File(WORDS_FILE))) {
-            while (scanner.hasNextLine()) {
-                String word = scanner.nextLine().trim().toUpperCase();
-                if (!word.isEmpty()) {
-                    wordList.add(word);
-                }
+    private String selectRandomWord() {
+        WordCorpus corpus = WordCorpus.get();
+        if (hardMode) {
+            if (hardWords == null || hardWords.getCorpus() != corpus) {
+                hardWords = corpus.cursor(WordCorpus.Difficulty.HARD);
             }
-            LoggerUtil.INSTANCE.info("Loaded " + wordList.size() + " words");
-        } catch (FileNotFoundException e) {
-            LoggerUtil.INSTANCE.severe("Could not load words file: " + e.getMessage());
+            return hardWords.next();
         }
-    }
-
-    private String selectRandomWord() {
-        if (wordList.isEmpty()) {
-            loadWordList(); // Reload if empty
+        if (words == null || words.getCorpus() != corpus) {
+            words = corpus.cursor();
         }
-        int index = new Random().nextInt(wordList.size());
-        String word = wordList.get(index);
-        wordList.remove(index); // Remove used word
-        return word;
+        return words.next(); // each word once before any repeats
     }
 
     private String getWordDisplay() {
-        StringBuilder display = new StringBuilder();
-        for (char c : currentWord.toCharArray()) {
-            if (guessedLetters.contains(c)) {
-                display.append(c);
-            } else {
-                display.append('_');
-            }
-            display.append(' ');
-        }
-        return display.toString().trim();
+        return hangman.getDisplay();
+    }
+
+    /**
+     * @return id of the player whose turn it is (read on the room's mailbox)
+     */
+    long getCurrentTurnClientId() {
+        return currentTurnClientId;
     }
 
     private boolean isWordComplete() {
-        for (char c : currentWord.toCharArray()) {
-            if (!guessedLetters.contains(c)) {
-                return false;
-            }
-        }
-        return true;
+        return hangman.isComplete();
     }
 
     private int calculateLetterPoints(char letter) {
-        int count = 0;
-        for (char c : currentWord.toCharArray()) {
-            if (c == letter && !guessedLetters.contains(c)) {
-                count++;
-            }
-        }
-        return count;
+        return hangman.getLetterPoints(letter);
     }
 
     private int calculateWordPoints() {
-        int emptySpaces = 0;
-        for (char c : currentWord.toCharArray()) {
-            if (!guessedLetters.contains(c)) {
-                emptySpaces++;
-            }
-        }
-        return emptySpaces * 2; // Bonus points for solving
+        return hangman.getWordPoints(); // Bonus points for solving
     }
 
     /** {@inheritDoc} */
@@ -132,9 +122,14 @@ public class GameRoom extends BaseGameRoom {
     protected void onClientAdded(ServerThread sp) {
         // sync GameRoom state to new client
         syncCurrentPhase(sp);
-        syncReadyStatus(sp);
-        syncTurnStatus(sp);
-        syncPlayerPoints(sp);
+        if (!sp.supportsRoster()) { // already in the room snapshot
+            syncReadyStatus(sp);
+            syncTurnStatus(sp);
+            syncPlayerPoints(sp);
+        }
+        syncTimers(sp);
+        syncGameState(sp);
+        reclaimSeat(sp);
 
         if (sp.user != null && sp.user.isSpectator()) {
             addSpectator(sp.getClientId());
@@ -148,25 +143,53 @@ public class GameRoom extends BaseGameRoom {
         // Stops the timers so room can clean up
         LoggerUtil.INSTANCE.info("Player Removed, remaining: " + clientsInRoom.size());
         long removedClient = sp.getClientId();
-        turnOrder.removeIf(player -> player.getClientId() == sp.getClientId());
+        boolean wasSeated = turnOrder.removeIf(player -> player.getClientId() == sp.getClientId());
+        if (wasSeated && currentPhase == Phase.IN_PROGRESS) {
+            GameJournal.INSTANCE.recordLeft(getName(), sp.getClientName());
+        }
         if (clientsInRoom.isEmpty()) {
             resetReadyTimer();
             resetTurnTimer();
             resetRoundTimer();
             onSessionEnd();
-        } else if (removedClient == currentTurnClientId) {
+        } else if (currentTurnClientId != Constants.DEFAULT_CLIENT_ID && removedClient == currentTurnClientId) {
+            // a disconnect has already reset the id to the default, which would
+            // otherwise match "no turn" and start one
             onTurnStart();
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected void onClientReplaced(ServerThread previous, ServerThread next) {
+        turnOrder.replaceAll(player -> player == previous ? next : player);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void syncTimers(ServerThread sp) {
+        super.syncTimers(sp);
+        syncTimer(sp, TimerType.ROUND, roundTimer);
+        syncTimer(sp, TimerType.TURN, turnTimer);
+    }
+
     // timer handlers
     @SuppressWarnings("unused")
     private void startRoundTimer() {
-        roundTimer = new TimedEvent(30, () -> onRoundEnd());
-        roundTimer.setTickCallback((time) -> {
-            System.out.println("Round Time: " + time);
-            sendCurrentTime(TimerType.ROUND, time);
-        });
+        TimedEvent timer = new TimedEvent(ROUND_SECONDS);
+        // posted to the mailbox; stale callbacks from a reset timer are ignored
+        timer.setExpireCallback(() -> execute(() -> {
+            if (roundTimer == timer) {
+                onRoundEnd();
+            }
+        }));
+        timer.setTickCallback((time) -> execute(() -> {
+            if (roundTimer == timer) {
+                onTimerTick(TimerType.ROUND, timer, time);
+            }
+        }));
+        roundTimer = timer;
+        sendTimerStart(TimerType.ROUND, timer);
     }
 
     private void resetRoundTimer() {
@@ -178,11 +201,20 @@ public class GameRoom extends BaseGameRoom {
     }
 
     private void startTurnTimer() {
-        turnTimer = new TimedEvent(30, () -> onTurnEnd());
-        turnTimer.setTickCallback((time) -> {
-            System.out.println("Turn Time: " + time);
-            sendCurrentTime(TimerType.TURN, time);
-        });
+        TimedEvent timer = new TimedEvent(TURN_SECONDS);
+        // posted to the mailbox; stale callbacks from a reset timer are ignored
+        timer.setExpireCallback(() -> execute(() -> {
+            if (turnTimer == timer) {
+                onTurnEnd();
+            }
+        }));
+        timer.setTickCallback((time) -> execute(() -> {
+            if (turnTimer == timer) {
+                onTimerTick(TimerType.TURN, timer, time);
+            }
+        }));
+        turnTimer = timer;
+        sendTimerStart(TimerType.TURN, timer);
     }
 
     private void resetTurnTimer() {
@@ -206,10 +238,10 @@ public class GameRoom extends BaseGameRoom {
         round = 0;
 
         strikes = 0;
-        guessedLetters.clear();
-        currentWord = selectRandomWord();
-        sendGameEvent("STRIKES:0");
+        hangman.reset(selectRandomWord());
+        sendStrikes();
         sendGameEvent("New game started! Word: " + getWordDisplay());
+        GameJournal.INSTANCE.recordSnapshot(journalState());
         LoggerUtil.INSTANCE.info("onSessionStart() end");
         onRoundStart();
     }
@@ -221,10 +253,12 @@ public class GameRoom extends BaseGameRoom {
         round++;
 
         strikes = 0;
-        guessedLetters.clear();
-        currentWord = selectRandomWord();
-        sendGameEvent("STRIKES:0");
+        roundSolvedBy = Constants.DEFAULT_CLIENT_ID;
+        hangman.reset(selectRandomWord());
+        GameJournal.INSTANCE.recordRoundStart(getName(), round, hangman.getWord());
+        sendStrikes();
         sendGameEvent("Round " + round + " started! Word: " + getWordDisplay());
+        sendWordMask(null); // older clients read it from the message above
         resetRoundTimer();
         resetTurnStatus();
         LoggerUtil.INSTANCE.info("onRoundStart() end");
@@ -271,7 +305,8 @@ public class GameRoom extends BaseGameRoom {
     protected void onRoundEnd() {
         LoggerUtil.INSTANCE.info("onRoundEnd() start");
         resetRoundTimer();
-        
+        sendRoundResult();
+
         // Display scoreboard
         StringBuilder scoreboard = new StringBuilder("\nScoreboard:\n");
         clientsInRoom.values().stream()
@@ -293,6 +328,10 @@ public class GameRoom extends BaseGameRoom {
     @Override
     protected void onSessionEnd() {
         LoggerUtil.INSTANCE.info("onSessionEnd() start");
+        if (currentPhase == Phase.IN_PROGRESS) {
+            GameJournal.INSTANCE.recordSessionEnd(getName());
+        }
+        releaseVacantSeats();
         turnOrder.clear();
         currentTurnClientId = Constants.DEFAULT_CLIENT_ID;
         resetTurnTimer();
@@ -323,6 +362,7 @@ public class GameRoom extends BaseGameRoom {
                 boolean failedToSync = !incomingClient.sendPlayerPoints(serverUser.getClientId(),
                         serverUser.getPoints());
                 if (failedToSync) {
+                    Metrics.recordSendFailure();
                     LoggerUtil.INSTANCE.warning(
                             String.format("Removing disconnected %s from list", serverUser.getDisplayName()));
                     disconnect(serverUser);
@@ -332,13 +372,95 @@ public class GameRoom extends BaseGameRoom {
     }
 
     private void sendPlayerPoints(ServerThread sp) {
+        PointsPayload pp = new PointsPayload();
+        pp.setClientId(sp.getClientId());
+        pp.setPoints(sp.getPoints());
+        broadcastMemberState(sp, 0, pp);
+        if (currentPhase == Phase.IN_PROGRESS) {
+            GameJournal.INSTANCE.recordPoints(getName(), sp.getClientName(), sp.getPoints());
+        }
+    }
+
+    private StrikesPayload getStrikesPayload() {
+        StrikesPayload sp = new StrikesPayload();
+        sp.setStrikes(strikes);
+        sp.setMaxStrikes(MAX_STRIKES);
+        return sp;
+    }
+
+    private WordMaskPayload getWordMaskPayload() {
+        WordMaskPayload wmp = new WordMaskPayload();
+        wmp.setMask(getWordDisplay());
+        wmp.setRound(round);
+        return wmp;
+    }
+
+    private void sendStrikes() {
+        GameJournal.INSTANCE.recordStrikes(getName(), strikes);
+        sendGameState(getStrikesPayload(), "STRIKES:" + strikes);
+    }
+
+    /**
+     * @param legacy what older clients get instead, null if they already got the
+     *               word in another message
+     */
+    private void sendWordMask(String legacy) {
+        sendGameState(getWordMaskPayload(), legacy);
+    }
+
+    private void sendRoundResult() {
+        RoundResultPayload rrp = new RoundResultPayload();
+        rrp.setClientId(roundSolvedBy);
+        rrp.setRound(round);
+        rrp.setWord(hangman.getWord());
+        rrp.setSolved(roundSolvedBy != Constants.DEFAULT_CLIENT_ID);
+        sendGameState(rrp, null); // older clients only get the narrative messages
+    }
+
+    /**
+     * Catches a client joining mid-round up on the word and strikes (older
+     * clients wait for the next update)
+     */
+    private void syncGameState(ServerThread incomingClient) {
+        if (currentPhase != Phase.IN_PROGRESS || !incomingClient.supportsGameState()) {
+            return;
+        }
+        incomingClient.sendGameState(getWordMaskPayload());
+        incomingClient.sendGameState(getStrikesPayload());
+    }
+
+    /**
+     * Sends a typed game state update to clients on the current codec and the
+     * matching game event string to older clients
+     *
+     * @param state
+     * @param legacy what older clients get instead, null if they get nothing
+     */
+    private void sendGameState(Payload state, String legacy) {
+        Payload legacyPayload = null;
+        if (legacy != null) {
+            legacyPayload = new Payload();
+            legacyPayload.setPayloadType(PayloadType.MESSAGE);
+            legacyPayload.setClientId(Constants.GAME_EVENT_CHANNEL);
+            legacyPayload.setMessage(legacy);
+        }
+        long start = System.nanoTime();
+        SharedFrame frame = sequenced(state);
+        SharedFrame legacyFrame = legacyPayload == null ? null : new SharedFrame(legacyPayload);
         clientsInRoom.values().removeIf(spInRoom -> {
-            boolean failedToSend = !spInRoom.sendPlayerPoints(sp.getClientId(), sp.getPoints());
+            boolean failedToSend;
+            if (spInRoom.supportsGameState()) {
+                failedToSend = !spInRoom.sendFrame(frame);
+            } else {
+                failedToSend = legacyFrame != null && !spInRoom.sendFrame(legacyFrame);
+            }
             if (failedToSend) {
+                Metrics.recordSendFailure();
                 removeClient(spInRoom);
             }
             return failedToSend;
         });
+        Metrics.BROADCAST.recordSince(start);
     }
 
     private void sendGameEvent(String str) {
@@ -346,6 +468,15 @@ public class GameRoom extends BaseGameRoom {
     }
 
     private void sendGameEvent(String str, List<Long> targets) {
+        // game events are plain messages on the game event channel, encoded once
+        // for every recipient
+        Payload payload = new Payload();
+        payload.setPayloadType(PayloadType.MESSAGE);
+        payload.setClientId(Constants.GAME_EVENT_CHANNEL);
+        payload.setMessage(str);
+        long start = System.nanoTime();
+        // only numbered if everyone gets it
+        SharedFrame frame = targets == null ? sequenced(payload) : new SharedFrame(payload);
         clientsInRoom.values().removeIf(spInRoom -> {
             boolean canSend = false;
             if (targets != null) {
@@ -356,33 +487,30 @@ public class GameRoom extends BaseGameRoom {
                 canSend = true;
             }
             if (canSend) {
-                boolean failedToSend = !spInRoom.sendGameEvent(str);
+                boolean failedToSend = !spInRoom.sendFrame(frame);
                 if (failedToSend) {
+                    Metrics.recordSendFailure();
                     removeClient(spInRoom);
                 }
                 return failedToSend;
             }
             return false;
         });
+        Metrics.BROADCAST.recordSince(start);
     }
 
     private void sendResetTurnStatus() {
-        clientsInRoom.values().forEach(spInRoom -> {
-            boolean failedToSend = !spInRoom.sendResetTurnStatus();
-            if (failedToSend) {
-                removeClient(spInRoom);
-            }
-        });
+        ReadyPayload rp = new ReadyPayload();
+        rp.setPayloadType(PayloadType.RESET_TURN);
+        broadcastPayload(rp); // one numbered frame instead of one per client
     }
 
     private void sendTurnStatus(ServerThread client, boolean tookTurn) {
-        clientsInRoom.values().removeIf(spInRoom -> {
-            boolean failedToSend = !spInRoom.sendTurnStatus(client.getClientId(), client.didTakeTurn());
-            if (failedToSend) {
-                removeClient(spInRoom);
-            }
-            return failedToSend;
-        });
+        ReadyPayload rp = new ReadyPayload();
+        rp.setPayloadType(PayloadType.TURN);
+        rp.setClientId(client.getClientId());
+        rp.setReady(client.didTakeTurn());
+        broadcastMemberState(client, 0, rp);
     }
 
     private void syncTurnStatus(ServerThread incomingClient) {
@@ -391,6 +519,7 @@ public class GameRoom extends BaseGameRoom {
                 boolean failedToSync = !incomingClient.sendTurnStatus(serverUser.getClientId(),
                         serverUser.didTakeTurn(), true);
                 if (failedToSync) {
+                    Metrics.recordSendFailure();
                     LoggerUtil.INSTANCE.warning(
                             String.format("Removing disconnected %s from list", serverUser.getDisplayName()));
                     disconnect(serverUser);
@@ -482,6 +611,10 @@ public class GameRoom extends BaseGameRoom {
      * @param currentUser
      */
     protected void handleTurnAction(ServerThread currentUser, String command) {
+        execute(() -> handleTurnCommand(currentUser, command));
+    }
+
+    private void handleTurnCommand(ServerThread currentUser, String command) {
         try {
             checkPlayerInRoom(currentUser);
             checkCurrentPhase(currentUser, Phase.IN_PROGRESS);
@@ -551,7 +684,7 @@ public class GameRoom extends BaseGameRoom {
 
 
     private boolean handleGuess(ServerThread currentUser, String guess) {
-        if (guess.equals(currentWord)) {
+        if (guess.equals(hangman.getWord())) {
             int points = calculateWordPoints();
             currentUser.changePoints(points);
             sendPlayerPoints(currentUser);
@@ -559,21 +692,22 @@ public class GameRoom extends BaseGameRoom {
             // Remove a strike if enabled and there are strikes to remove
             if (removeStrikeOnCorrectGuess && strikes > 0) {
                 strikes--;
-                sendGameEvent("STRIKES:" + strikes);
+                sendStrikes();
                 sendGameEvent(String.format("%s removed a strike by guessing the word correctly!", 
                     currentUser.getDisplayName()));
             }
             
             sendGameEvent(String.format("%s guessed the correct word '%s' and got %d points!", 
-                currentUser.getDisplayName(), currentWord, points));
+                currentUser.getDisplayName(), hangman.getWord(), points));
+            roundSolvedBy = currentUser.getClientId();
             return true; // End round
         } else {
             strikes++;
-            sendGameEvent("STRIKES:" + strikes); // Notify clients of new strike count
+            sendStrikes(); // Notify clients of new strike count
             sendGameEvent(String.format("%s guessed '%s' and it was wrong", 
                 currentUser.getDisplayName(), guess));
             if (strikes >= MAX_STRIKES) {
-                sendGameEvent(String.format("Maximum strikes reached! The word was '%s'", currentWord));
+                sendGameEvent(String.format("Maximum strikes reached! The word was '%s'", hangman.getWord()));
                 return true; // End round
             }
         }
@@ -584,22 +718,20 @@ public class GameRoom extends BaseGameRoom {
         letter = Character.toUpperCase(letter); // Ensure uppercase for comparison
 
         // In hard mode, allow repeated guesses (do not block)
-        if (!hardMode && guessedLetters.contains(letter)) {
+        if (!hardMode && hangman.isGuessed(letter)) {
             currentUser.sendMessage(Constants.DEFAULT_CLIENT_ID, "That letter has already been guessed");
             return false;
         }
 
-        int matches = 0;
-        for (char c : currentWord.toCharArray()) {
-            if (c == letter) {
-                matches++;
-            }
-        }
-
-        guessedLetters.add(letter);
+        // hard mode re-guesses still score every occurrence, like before
+        int matches = hangman.getOccurrences(letter);
+        hangman.guess(letter);
+        GameJournal.INSTANCE.recordLetter(getName(), letter);
         // Only send LETTER_GUESSED if not in hard mode
         if (!hardMode) {
-            sendGameEvent("LETTER_GUESSED:" + letter); // Sync to all clients
+            LetterGuessedPayload lgp = new LetterGuessedPayload();
+            lgp.setLetter(letter);
+            sendGameState(lgp, "LETTER_GUESSED:" + letter); // Sync to all clients
         }
 
         if (matches > 0) {
@@ -608,27 +740,28 @@ public class GameRoom extends BaseGameRoom {
             sendPlayerPoints(currentUser);
             sendGameEvent(String.format("%s guessed '%c' and there were %d %c's which yielded %d points", 
                 currentUser.getDisplayName(), letter, matches, letter, points));
-            sendGameEvent("Current word: " + getWordDisplay());
+            sendWordMask("Current word: " + getWordDisplay());
             
             // Remove a strike if enabled and there are strikes to remove
             if (removeStrikeOnCorrectGuess && strikes > 0) {
                 strikes--;
-                sendGameEvent("STRIKES:" + strikes);
+                sendStrikes();
                 sendGameEvent(String.format("%s removed a strike by guessing correctly!", 
                     currentUser.getDisplayName()));
             }
             
             if (isWordComplete()) {
-                sendGameEvent(String.format("Word completed! The word was '%s'", currentWord));
+                sendGameEvent(String.format("Word completed! The word was '%s'", hangman.getWord()));
+                roundSolvedBy = currentUser.getClientId();
                 return true; // End round
             }
         } else {
             strikes++;
-            sendGameEvent("STRIKES:" + strikes); // Notify clients of new strike count
+            sendStrikes(); // Notify clients of new strike count
             sendGameEvent(String.format("%s guessed '%c', which isn't in the word", 
                 currentUser.getDisplayName(), letter));
             if (strikes >= MAX_STRIKES) {
-                sendGameEvent(String.format("Maximum strikes reached! The word was '%s'", currentWord));
+                sendGameEvent(String.format("Maximum strikes reached! The word was '%s'", hangman.getWord()));
                 return true; // End round
             }
         }
@@ -642,31 +775,186 @@ public class GameRoom extends BaseGameRoom {
     // end receive data from ServerThread (GameRoom specific)
 
     public void handleSessionOptions(ServerThread sender, Project.Common.SessionOptionsPayload payload) {
-        this.removeStrikeOnCorrectGuess = payload.isRemoveStrikeOnCorrectGuess();
-        this.hardMode = payload.isHardMode();
-        LoggerUtil.INSTANCE.info(String.format("Session options updated: removeStrikeOnCorrectGuess=%b, hardMode=%b", removeStrikeOnCorrectGuess, hardMode));
+        execute(() -> {
+            this.removeStrikeOnCorrectGuess = payload.isRemoveStrikeOnCorrectGuess();
+            this.hardMode = payload.isHardMode();
+            LoggerUtil.INSTANCE.info(String.format("Session options updated: removeStrikeOnCorrectGuess=%b, hardMode=%b", removeStrikeOnCorrectGuess, hardMode));
+        });
     }
 
     // --- Away status logic ---
     public void setPlayerAway(long clientId, boolean away) {
-        if (away) {
-            awayPlayers.add(clientId);
-        } else {
-            awayPlayers.remove(clientId);
-        }
+        execute(() -> {
+            if (away) {
+                awayPlayers.add(clientId);
+            } else {
+                awayPlayers.remove(clientId);
+            }
+            ServerThread member = clientsInRoom.get(clientId);
+            if (member != null) {
+                AwayStatusPayload asp = new AwayStatusPayload();
+                asp.setAway(away);
+                asp.setClientId(clientId);
+                asp.setClientName(member.getClientName());
+                broadcastMemberState(member, 0, asp);
+            }
+        });
     }
     public boolean isPlayerAway(long clientId) {
         return awayPlayers.contains(clientId);
     }
 
     public void addSpectator(long clientId) {
-        if (spectators.contains(clientId)) return; // Prevent duplicate adds
-        spectators.add(clientId);
-        relay(null, getClientNameByIdSafe(clientId) + " joined as a spectator");
+        execute(() -> {
+            if (spectators.contains(clientId)) return; // Prevent duplicate adds
+            spectators.add(clientId);
+            ServerThread member = clientsInRoom.get(clientId);
+            if (member != null) {
+                broadcastMemberState(member, 0, null); // older clients only get the message below
+            }
+            relay(null, getClientNameByIdSafe(clientId) + " joined as a spectator");
+        });
     }
     public boolean isSpectator(long clientId) {
         return spectators.contains(clientId);
     }
+
+    // --- Crash recovery ---
+
+    /**
+     * @return everything needed to resume this game (read on the mailbox)
+     */
+    private GameJournal.GameState journalState() {
+        GameJournal.GameState state = new GameJournal.GameState(getName());
+        state.round = round;
+        state.word = hangman.getWord();
+        state.guessedMask = hangman.getGuessedMask();
+        state.strikes = strikes;
+        state.hardMode = hardMode;
+        state.removeStrikeOnCorrectGuess = removeStrikeOnCorrectGuess;
+        turnOrder.forEach(player -> state.seats.put(player.getClientName(), player.getPoints()));
+        vacantSeats.forEach(state.seats::putIfAbsent);
+        return state;
+    }
+
+    /**
+     * Asks the room for a fresh snapshot when the journal rolls over to a new
+     * file; a game that ended in the meantime answers with the end instead
+     */
+    void snapshotToJournal() {
+        execute(() -> {
+            if (currentPhase == Phase.IN_PROGRESS) {
+                GameJournal.INSTANCE.recordSnapshot(journalState());
+            } else {
+                GameJournal.INSTANCE.recordSessionEnd(getName());
+            }
+        });
+    }
+
+    /**
+     * Puts a game recovered from the journal back in progress. Its players get
+     * their seats (and points) back by reconnecting with the same name within
+     * -Dserver.journal.reclaim.seconds (default 120); the seats left after that
+     * are given up.
+     *
+     * @param state
+     */
+    void restore(GameJournal.GameState state) {
+        execute(() -> {
+            round = state.round;
+            strikes = state.strikes;
+            hardMode = state.hardMode;
+            removeStrikeOnCorrectGuess = state.removeStrikeOnCorrectGuess;
+            hangman.reset(state.word);
+            for (int letter = 0; letter < 26; letter++) {
+                if ((state.guessedMask & (1 << letter)) != 0) {
+                    hangman.guess((char) ('A' + letter));
+                }
+            }
+            vacantSeats.putAll(state.seats);
+            seatOrder.addAll(state.seats.keySet());
+            currentTurnClientId = Constants.DEFAULT_CLIENT_ID;
+            changePhase(Phase.IN_PROGRESS);
+            TimerScheduler.INSTANCE.schedule(() -> execute(this::expireSeats), RECLAIM_SECONDS, TimeUnit.SECONDS);
+            LoggerUtil.INSTANCE.info(String.format("Restored round %s with %s seats to reclaim", round,
+                    vacantSeats.size()));
+        });
+    }
+
+    /**
+     * Gives a joining client their seat back if the recovered game kept one
+     * under their name
+     */
+    private void reclaimSeat(ServerThread sp) {
+        if (currentPhase != Phase.IN_PROGRESS) {
+            return;
+        }
+        // names are matched like the server routes them, ignoring case
+        String seat = vacantSeats.keySet().stream()
+                .filter(name -> name.equalsIgnoreCase(sp.getClientName()))
+                .findFirst().orElse(null);
+        if (seat == null) {
+            return;
+        }
+        int points = vacantSeats.remove(seat);
+        Server.INSTANCE.releaseSeat(seat, getName());
+        sp.setPoints(points);
+        sp.setReady(true);
+        turnOrder.add(sp);
+        turnOrder.sort(Comparator.comparingInt(player -> seatIndex(player.getClientName())));
+        sendReadyStatus(sp, true);
+        sendPlayerPoints(sp);
+        relay(null, String.format("%s reclaimed their seat", sp.getDisplayName()));
+        if (currentTurnClientId == Constants.DEFAULT_CLIENT_ID) {
+            onTurnStart();
+        }
+    }
+
+    /**
+     * Gives up the seats nobody reclaimed in time, and the game if nobody came
+     * back at all
+     */
+    private void expireSeats() {
+        if (!isRunning() || vacantSeats.isEmpty()) {
+            return;
+        }
+        LoggerUtil.INSTANCE.info(String.format("Seats not reclaimed: %s", vacantSeats.keySet()));
+        if (currentPhase == Phase.IN_PROGRESS) {
+            vacantSeats.keySet().forEach(name -> GameJournal.INSTANCE.recordLeft(getName(), name));
+        }
+        releaseVacantSeats();
+        if (clientsInRoom.isEmpty()) {
+            onSessionEnd();
+            close();
+        }
+    }
+
+    private int seatIndex(String clientName) {
+        for (int i = 0; i < seatOrder.size(); i++) {
+            if (seatOrder.get(i).equalsIgnoreCase(clientName)) {
+                return i;
+            }
+        }
+        return seatOrder.size();
+    }
+
+    private void releaseVacantSeats() {
+        vacantSeats.keySet().forEach(name -> Server.INSTANCE.releaseSeat(name, getName()));
+        vacantSeats.clear();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected int getRosterFlags(ServerThread member) {
+        int flags = super.getRosterFlags(member);
+        if (awayPlayers.contains(member.getClientId())) {
+            flags |= RosterPayload.AWAY;
+        }
+        if (spectators.contains(member.getClientId())) {
+            flags |= RosterPayload.SPECTATOR;
+        }
+        return flags;
+    }
     private String getClientNameByIdSafe(long clientId) {
         ServerThread st = clientsInRoom.get(clientId);
         return st != null ? st.getClientName() : ("Client " + clientId);
@@ -0,0 +1,165 @@
+package Project.Server;
+
+/**
+ * Guess/reveal/scoring state for one Hangman word.
+ * <p>
+ * Letters are tracked as 26 bit masks and positions as a 64 bit mask, with a
+ * per-letter occurrence count and position mask computed once in reset().
+ * Guesses, completion checks and point calculations are O(1) and allocate
+ * nothing; the masked display is patched in place on each reveal and only
+ * turned into a new String when it changed.
+ * </p>
+ * Only A-Z are guessable; any other character is shown from the start.
+ * Not thread-safe, it belongs to a room and is only used from its mailbox.
+ */
+public class HangmanState {
+    public static final int MAX_LENGTH = Long.SIZE;
+
+    private final int[] occurrences = new int[26];
+    private final long[] positions = new long[26]; // bit i set if word[i] is that letter
+    private String word = "";
+    private int wordMask; // letters in the word
+    private int guessedMask; // letters guessed so far
+    private long revealed; // positions shown
+    private long allPositions;
+    private char[] display = new char[0]; // "A _ _ L E", patched on reveal
+    private String displayText = "";
+
+    /**
+     * Starts a new word and forgets every guess
+     *
+     * @param word upper case, at most MAX_LENGTH characters
+     */
+    public void reset(String word) {
+        if (word.length() > MAX_LENGTH) {
+            throw new IllegalArgumentException(String.format("Word longer than %s characters", MAX_LENGTH));
+        }
+        for (int letter = 0; letter < 26; letter++) {
+            occurrences[letter] = 0;
+            positions[letter] = 0;
+        }
+        this.word = word;
+        wordMask = 0;
+        guessedMask = 0;
+        revealed = 0;
+        allPositions = word.isEmpty() ? 0 : -1L >>> (Long.SIZE - word.length());
+        int displayLength = Math.max(0, word.length() * 2 - 1);
+        if (display.length != displayLength) {
+            display = new char[displayLength];
+        }
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            int letter = c - 'A';
+            if (letter >= 0 && letter < 26) {
+                occurrences[letter]++;
+                positions[letter] |= 1L << i;
+                wordMask |= 1 << letter;
+                display[i * 2] = '_';
+            } else {
+                revealed |= 1L << i;
+                display[i * 2] = c;
+            }
+            if (i > 0) {
+                display[i * 2 - 1] = ' ';
+            }
+        }
+        displayText = null;
+    }
+
+    /**
+     * Marks a letter as guessed and reveals it
+     *
+     * @param c
+     * @return positions newly revealed (0 if the letter isn't in the word or was
+     *         already guessed)
+     */
+    public int guess(char c) {
+        int letter = Character.toUpperCase(c) - 'A';
+        if (letter < 0 || letter >= 26) {
+            return 0;
+        }
+        int bit = 1 << letter;
+        if ((guessedMask & bit) != 0) {
+            return 0;
+        }
+        guessedMask |= bit;
+        long newlyRevealed = positions[letter] & ~revealed;
+        if (newlyRevealed == 0) {
+            return 0;
+        }
+        revealed |= newlyRevealed;
+        char upper = (char) ('A' + letter);
+        for (long bits = newlyRevealed; bits != 0; bits &= bits - 1) {
+            display[Long.numberOfTrailingZeros(bits) * 2] = upper;
+        }
+        displayText = null;
+        return Long.bitCount(newlyRevealed);
+    }
+
+    public String getWord() {
+        return word;
+    }
+
+    public boolean isGuessed(char c) {
+        int letter = Character.toUpperCase(c) - 'A';
+        return letter >= 0 && letter < 26 && (guessedMask & (1 << letter)) != 0;
+    }
+
+    /**
+     * @param c
+     * @return how often the letter appears in the word, guessed or not
+     */
+    public int getOccurrences(char c) {
+        int letter = Character.toUpperCase(c) - 'A';
+        return letter >= 0 && letter < 26 ? occurrences[letter] : 0;
+    }
+
+    /**
+     * @param c
+     * @return points a guess of this letter would earn (its hidden occurrences)
+     */
+    public int getLetterPoints(char c) {
+        return isGuessed(c) ? 0 : getOccurrences(c);
+    }
+
+    /**
+     * @return points for solving the word now: 2 per hidden position
+     */
+    public int getWordPoints() {
+        return getHiddenCount() * 2;
+    }
+
+    public int getHiddenCount() {
+        return Long.bitCount(allPositions & ~revealed);
+    }
+
+    public boolean isComplete() {
+        return revealed == allPositions;
+    }
+
+    /**
+     * @return letters guessed so far, bit n for 'A' + n
+     */
+    public int getGuessedMask() {
+        return guessedMask;
+    }
+
+    /**
+     * @return letters in the word, bit n for 'A' + n
+     */
+    public int getWordMask() {
+        return wordMask;
+    }
+
+    /**
+     * @return the word with hidden letters as '_', space separated
+     */
+    public String getDisplay() {
+        String text = displayText;
+        if (text == null) {
+            text = new String(display);
+            displayText = text;
+        }
+        return text;
+    }
+}
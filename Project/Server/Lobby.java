@@ -0,0 +1,229 @@
+package Project.Server;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import Project.Common.LoggerUtil;
+import Project.Common.TimerScheduler;
+
+/**
+ * The lobby every client lands in, split into bounded shards.
+ * <p>
+ * Each shard is an ordinary Room named Room.LOBBY with its own mailbox, so the
+ * user list sync on join, join/leave notices and lobby chat only reach that
+ * shard's members (at most -Dserver.lobby.shard.size, default 50) instead of
+ * everyone online. Clients can't tell the difference: the room they joined is
+ * still "lobby". This object is what the Server registers under that name; it
+ * never holds clients itself, it seats each one in a shard with a free seat
+ * and opens a new shard when they're all full.
+ * </p>
+ * <p>
+ * Instead of the full membership, lobby clients get the lobby-wide count as a
+ * single LOBBY_PRESENCE number: once when they join, then at most every
+ * -Dserver.lobby.presence.ms (default 1000) while it keeps changing.
+ * </p>
+ */
+public class Lobby extends Room {
+    private static final int SHARD_SIZE = Math.max(1, Integer.getInteger("server.lobby.shard.size", 50));
+    private static final long PRESENCE_MILLIS = Long.getLong("server.lobby.presence.ms", 1000);
+
+    private final CopyOnWriteArrayList<Shard> shards = new CopyOnWriteArrayList<>();
+    private final AtomicInteger presence = new AtomicInteger();
+    // only one thread opens a shard when all are full
+    private final ReentrantLock openLock = new ReentrantLock();
+    private volatile int hint = 0; // shard that had the last free seat
+    private int lastPresence = -1; // only touched by the presence task
+
+    /**
+     * One lobby shard; tracks its seats and the lobby-wide presence count as
+     * members come and go
+     */
+    private class Shard extends Room {
+        private final AtomicInteger seats = new AtomicInteger(); // members + joins in flight
+        private boolean tracking = false; // only touched on this shard's mailbox
+
+        Shard() {
+            super(Room.LOBBY);
+        }
+
+        /**
+         * @return false if the shard is full
+         */
+        boolean tryReserve() {
+            int taken;
+            do {
+                taken = seats.get();
+                if (taken >= SHARD_SIZE) {
+                    return false;
+                }
+            } while (!seats.compareAndSet(taken, taken + 1));
+            return true;
+        }
+
+        /**
+         * Runs a membership change and applies how much it actually changed the
+         * shard's size (failed sends can drop other members too) to the seat and
+         * presence counts
+         *
+         * @param change
+         * @param reserved seats reserved for this change
+         */
+        private void track(Runnable change, int reserved) {
+            if (tracking) {
+                change.run(); // nested in another change, which counts it
+                return;
+            }
+            tracking = true;
+            int before = clientsInRoom.size();
+            try {
+                change.run();
+            } finally {
+                tracking = false;
+                int delta = clientsInRoom.size() - before;
+                seats.addAndGet(delta - reserved);
+                presence.addAndGet(delta);
+            }
+        }
+
+        @Override
+        protected void addClient(ServerThread client) {
+            execute(() -> {
+                track(() -> Shard.super.addClient(client), 1);
+                if (clientsInRoom.containsKey(client.getClientId())) {
+                    client.sendLobbyPresence(presence.get());
+                }
+            });
+        }
+
+        @Override
+        protected void removeClient(ServerThread client) {
+            execute(() -> track(() -> Shard.super.removeClient(client), 0));
+        }
+
+        @Override
+        protected void disconnect(ServerThread client) {
+            execute(() -> track(() -> Shard.super.disconnect(client), 0));
+        }
+
+        private void sendPresence(int online) {
+            execute(() -> clientsInRoom.values().removeIf(client -> {
+                boolean failedToSend = !client.sendLobbyPresence(online);
+                if (failedToSend) {
+                    Metrics.recordSendFailure();
+                    LoggerUtil.INSTANCE.warning(
+                            String.format("Removing disconnected %s from list", client.getDisplayName()));
+                    disconnect(client);
+                }
+                return failedToSend;
+            }));
+        }
+    }
+
+    public Lobby() {
+        super(Room.LOBBY);
+        shards.add(new Shard());
+        TimerScheduler.INSTANCE.scheduleAtFixedRate(this::broadcastPresence, PRESENCE_MILLIS, PRESENCE_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reserves a seat in a shard with room for the client
+     */
+    @Override
+    protected Room admit() {
+        return seat();
+    }
+
+    /**
+     * Seats the client in a shard with room for them
+     */
+    @Override
+    protected void addClient(ServerThread client) {
+        seat().addClient(client);
+    }
+
+    private Shard seat() {
+        int count = shards.size();
+        int start = hint;
+        for (int i = 0; i < count; i++) {
+            int index = (start + i) % count;
+            Shard shard = shards.get(index);
+            if (shard.tryReserve()) {
+                hint = index;
+                return shard;
+            }
+        }
+        openLock.lock();
+        try {
+            // someone else may have opened one while we looked
+            Shard newest = shards.get(shards.size() - 1);
+            if (newest.tryReserve()) {
+                return newest;
+            }
+            Shard shard = new Shard();
+            shard.tryReserve();
+            shards.add(shard);
+            hint = shards.size() - 1;
+            return shard;
+        } finally {
+            openLock.unlock();
+        }
+    }
+
+    private void broadcastPresence() {
+        int online = presence.get();
+        if (online == lastPresence) {
+            return;
+        }
+        lastPresence = online;
+        for (Shard shard : shards) {
+            shard.sendPresence(online);
+        }
+    }
+
+    /**
+     * @return clients in the lobby, all shards
+     */
+    @Override
+    protected int getPlayerCount() {
+        return presence.get();
+    }
+
+    /**
+     * @return the shards (empty ones stay open for the next login storm)
+     */
+    public List<? extends Room> getShards() {
+        return Collections.unmodifiableList(shards);
+    }
+
+    @Override
+    public int getMailboxDepth() {
+        int depth = 0;
+        for (Shard shard : shards) {
+            depth += shard.getMailboxDepth();
+        }
+        return depth;
+    }
+
+    /**
+     * Lobby-wide messages (see Server.broadcastMessageToAllRooms()) go to every
+     * shard
+     */
+    @Override
+    protected void relay(ServerThread sender, String message) {
+        for (Shard shard : shards) {
+            shard.relay(sender, message);
+        }
+    }
+
+    @Override
+    protected void disconnectAll() {
+        for (Shard shard : shards) {
+            shard.disconnectAll();
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package Project.Server;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import Project.Common.PayloadType;
+import Project.Common.Phase;
+
+/**
+ * Server wide metrics, exported in the Prometheus text format by
+ * MetricsServer.
+ * <p>
+ * Everything recorded on a hot path is a LongAdder (striped per thread, so
+ * recording never contends); gauges such as connected clients, rooms per Phase
+ * and queue depths are read from the live rooms when scraped instead of being
+ * tracked. Byte and frame totals come from WireStats.
+ * </p>
+ */
+public final class Metrics {
+    private static final LongAdder[] payloadsReceived = adders(PayloadType.values().length);
+    private static final LongAdder[] payloadsSent = adders(PayloadType.values().length);
+    private static final LongAdder sendFailures = new LongAdder();
+    private static final LongAdder[] resumes = adders(ResumeSession.Outcome.values().length);
+    private static final LongAdder sessionsExpired = new LongAdder();
+    private static final LongAdder catchUpsReplayed = new LongAdder();
+    private static final LongAdder catchUpsResynced = new LongAdder();
+
+    /**
+     * Time spent in ServerThread.processPayload() (mostly validating and posting
+     * the command to the room)
+     */
+    public static final Histogram PROCESS_PAYLOAD = new Histogram();
+    /**
+     * Time to hand one broadcast (relay, game event, room payload) to every
+     * recipient's outbound queue
+     */
+    public static final Histogram BROADCAST = new Histogram();
+
+    private Metrics() {
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Latency histogram with fixed buckets from 10 microseconds to 10 seconds
+     */
+    public static final class Histogram {
+        // upper bounds in nanoseconds: 1, 2.5, 5 steps per decade
+        private static final long[] BOUNDS = { 10_000, 25_000, 50_000, 100_000, 250_000, 500_000, 1_000_000,
+                2_500_000, 5_000_000, 10_000_000, 25_000_000, 50_000_000, 100_000_000, 250_000_000, 500_000_000,
+                1_000_000_000, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L };
+
+        private final LongAdder[] buckets = adders(BOUNDS.length + 1); // last one is +Inf
+        private final LongAdder sumNanos = new LongAdder();
+
+        private Histogram() {
+        }
+
+        /**
+         * @param startNanos System.nanoTime() taken before the timed work
+         */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public void record(long nanos) {
+            int bucket = 0;
+            while (bucket < BOUNDS.length && nanos > BOUNDS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+            sumNanos.add(nanos);
+        }
+
+        public long getCount() {
+            long count = 0;
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        private void appendTo(StringBuilder out, String name, String help) {
+            header(out, name, "histogram", help);
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i].sum();
+                String le = i < BOUNDS.length ? seconds(BOUNDS[i]) : "+Inf";
+                out.append(name).append("_bucket{le=\"").append(le).append("\"} ").append(cumulative).append('\n');
+            }
+            out.append(name).append("_sum ").append(seconds(sumNanos.sum())).append('\n');
+            out.append(name).append("_count ").append(cumulative).append('\n');
+        }
+    }
+
+    public static void recordReceived(PayloadType type) {
+        payloadsReceived[type.ordinal()].increment();
+    }
+
+    public static void recordSent(PayloadType type) {
+        payloadsSent[type.ordinal()].increment();
+    }
+
+    /**
+     * A room failed to send to one of its clients and dropped it
+     */
+    public static void recordSendFailure() {
+        sendFailures.increment();
+    }
+
+    /**
+     * A reconnecting client presented a resume token
+     */
+    public static void recordResume(ResumeSession.Outcome outcome) {
+        resumes[outcome.ordinal()].increment();
+    }
+
+    /**
+     * A dropped client didn't reconnect within the grace period
+     */
+    public static void recordSessionExpired() {
+        sessionsExpired.increment();
+    }
+
+    /**
+     * A client asked a room for the broadcasts it missed
+     * 
+     * @param replayed false if they weren't kept anymore and it was resynced
+     */
+    public static void recordCatchUp(boolean replayed) {
+        (replayed ? catchUpsReplayed : catchUpsResynced).increment();
+    }
+
+    public static long getReceived(PayloadType type) {
+        return payloadsReceived[type.ordinal()].sum();
+    }
+
+    public static long getSent(PayloadType type) {
+        return payloadsSent[type.ordinal()].sum();
+    }
+
+    public static long getSendFailures() {
+        return sendFailures.sum();
+    }
+
+    private static String seconds(long nanos) {
+        return BigDecimal.valueOf(nanos, 9).stripTrailingZeros().toPlainString(); // 0.000025, not 2.5E-5
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void single(StringBuilder out, String name, String type, String help, long value) {
+        header(out, name, type, help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void perType(StringBuilder out, String name, String help, LongAdder[] counters) {
+        header(out, name, "counter", help);
+        for (PayloadType type : PayloadType.values()) {
+            long count = counters[type.ordinal()].sum();
+            if (count > 0) {
+                out.append(name).append("{type=\"").append(type).append("\"} ").append(count).append('\n');
+            }
+        }
+    }
+
+    /**
+     * @param rooms the server's current rooms
+     * @return all metrics in the Prometheus text exposition format (0.0.4)
+     */
+    public static String scrape(Iterable<Room> rooms) {
+        int clients = 0;
+        long outboundDepth = 0;
+        int outboundMax = 0;
+        long mailboxDepth = 0;
+        int mailboxMax = 0;
+        int lobbies = 0;
+        Map<Phase, Integer> phases = new EnumMap<>(Phase.class);
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, 0);
+        }
+        for (Room listed : rooms) {
+            // the lobby's clients and mailboxes are in its shards
+            List<? extends Room> parts = listed instanceof Lobby lobby ? lobby.getShards() : List.of(listed);
+            for (Room room : parts) {
+                int depth = room.getMailboxDepth();
+                mailboxDepth += depth;
+                mailboxMax = Math.max(mailboxMax, depth);
+                if (room instanceof BaseGameRoom gameRoom) {
+                    phases.merge(gameRoom.getPhase(), 1, Integer::sum);
+                } else {
+                    lobbies++;
+                }
+                for (ServerThread client : room.clientsInRoom.values()) {
+                    clients++;
+                    int queued = client.getOutboundDepth();
+                    outboundDepth += queued;
+                    outboundMax = Math.max(outboundMax, queued);
+                }
+            }
+        }
+
+        StringBuilder out = new StringBuilder(8 * 1024);
+        single(out, "hangman_clients_connected", "gauge", "Clients in a room (lobby included)", clients);
+        header(out, "hangman_rooms", "gauge", "Rooms by game Phase (lobby shards have none)");
+        out.append("hangman_rooms{phase=\"LOBBY\"} ").append(lobbies).append('\n');
+        phases.forEach((phase, count) -> out.append("hangman_rooms{phase=\"").append(phase).append("\"} ")
+                .append(count).append('\n'));
+        perType(out, "hangman_payloads_received_total", "Payloads read from clients", payloadsReceived);
+        perType(out, "hangman_payloads_sent_total", "Payloads queued to clients (broadcasts count per recipient)",
+                payloadsSent);
+        single(out, "hangman_frames_received_total", "counter", "Frames read from sockets",
+                WireStats.getFramesReceived());
+        single(out, "hangman_bytes_received_total", "counter", "Frame bytes read from sockets",
+                WireStats.getBytesReceived());
+        single(out, "hangman_frames_encoded_total", "counter", "Frames serialized (once per broadcast)",
+                WireStats.getFramesEncoded());
+        single(out, "hangman_bytes_encoded_total", "counter", "Bytes serialized", WireStats.getBytesEncoded());
+        single(out, "hangman_frames_sent_total", "counter", "Frames written to sockets", WireStats.getFramesSent());
+        single(out, "hangman_bytes_sent_total", "counter", "Frame bytes written to sockets",
+                WireStats.getBytesSent());
+        single(out, "hangman_socket_writes_total", "counter",
+                "Socket writes (each carries one or more frames, see -Dserver.flush.batch)", WireStats.getSocketWrites());
+        single(out, "hangman_frames_dropped_total", "counter", "TIME frames dropped for lagging clients",
+                WireStats.getFramesDropped());
+        single(out, "hangman_overflow_disconnects_total", "counter",
+                "Clients disconnected because their outbound queue filled", WireStats.getOverflowDisconnects());
+        single(out, "hangman_timer_resyncs_total", "counter", "Timer resyncs sent because of drift",
+                WireStats.getTimerResyncs());
+        single(out, "hangman_send_failures_total", "counter", "Sends that failed and dropped the client from a room",
+                getSendFailures());
+        header(out, "hangman_session_resumes_total", "counter",
+                "Reconnects that presented a resume token, by outcome (see ResumeSession)");
+        for (ResumeSession.Outcome outcome : ResumeSession.Outcome.values()) {
+            out.append("hangman_session_resumes_total{outcome=\"").append(outcome).append("\"} ")
+                    .append(resumes[outcome.ordinal()].sum()).append('\n');
+        }
+        single(out, "hangman_sessions_expired_total", "counter",
+                "Dropped clients disconnected because they didn't reconnect in time", sessionsExpired.sum());
+        header(out, "hangman_room_catchups_total", "counter",
+                "Clients that asked a room for missed broadcasts, by outcome (see BroadcastLog)");
+        out.append("hangman_room_catchups_total{outcome=\"REPLAYED\"} ").append(catchUpsReplayed.sum()).append('\n');
+        out.append("hangman_room_catchups_total{outcome=\"RESYNC\"} ").append(catchUpsResynced.sum()).append('\n');
+        single(out, "hangman_room_commands_failed_total", "counter", "Room commands that threw",
+                RoomMailbox.getFailedCommands());
+        single(out, "hangman_outbound_queued_frames", "gauge", "Frames waiting in all outbound queues",
+                outboundDepth);
+        single(out, "hangman_outbound_queued_frames_max", "gauge", "Deepest single outbound queue", outboundMax);
+        single(out, "hangman_mailbox_queued_commands", "gauge", "Commands waiting in all room mailboxes",
+                mailboxDepth);
+        single(out, "hangman_mailbox_queued_commands_max", "gauge", "Deepest single room mailbox", mailboxMax);
+        PROCESS_PAYLOAD.appendTo(out, "hangman_process_payload_seconds", "Time spent in processPayload()");
+        BROADCAST.appendTo(out, "hangman_broadcast_seconds", "Time to queue one broadcast to every recipient");
+        return out.toString();
+    }
+}
@@ -0,0 +1,72 @@
+package Project.Server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import Project.Common.LoggerUtil;
+
+/**
+ * Serves Metrics.scrape() at http://localhost:&lt;port&gt;/metrics for
+ * Prometheus (or curl).
+ * <p>
+ * Uses the JDK's built-in HttpServer on one daemon thread, bound to the
+ * loopback address only. The port is -Dserver.metrics.port (default 9464);
+ * -Dserver.metrics=false turns the endpoint off. A port that's already taken
+ * is logged and the game server keeps running without it.
+ * </p>
+ */
+public enum MetricsServer {
+    INSTANCE;
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private HttpServer server;
+
+    public synchronized void start() {
+        if (server != null || !Boolean.parseBoolean(System.getProperty("server.metrics", "true"))) {
+            return;
+        }
+        int port = Integer.getInteger("server.metrics.port", 9464);
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.warning(String.format("Metrics endpoint not started on port %s: %s", port, e));
+            return;
+        }
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("MetricsServer").daemon(true).factory()));
+        server.start();
+        LoggerUtil.INSTANCE.info(String.format("Metrics at http://localhost:%s/metrics", port));
+    }
+
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        server = null;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = Metrics.scrape(Server.INSTANCE.getRooms()).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
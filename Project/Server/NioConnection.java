@@ -0,0 +1,272 @@
+package Project.Server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import Project.Common.FrameCodec;
+import Project.Common.LoggerUtil;
+import Project.Common.Payload;
+
+/**
+ * Non-blocking ClientConnection owned by a single SelectorLoop.
+ * Reads are decoded into frames on the loop thread; writes from any thread are
+ * queued in a bounded OutboundQueue and drained by the loop when the socket is
+ * writable.
+ * A client from before framing (its first bytes are an ObjectOutputStream
+ * header) is handed over to a blocking SocketConnection on a virtual thread,
+ * which speaks that unframed protocol.
+ */
+public class NioConnection implements ClientConnection {
+    private static final int INITIAL_READ_BUFFER = 4 * 1024;
+    private static final int MAX_GATHER = 64; // frames per gathering write
+    // reader and writer threads of clients handed over to a SocketConnection
+    private static final ThreadFactory UNFRAMED_THREADS = Thread.ofVirtual().name("UnframedClient-", 0).factory();
+
+    private final SelectorLoop loop;
+    private final SocketChannel channel;
+    private final OutboundQueue outbound = new OutboundQueue();
+    // frames taken from the queue but not fully written yet, loop thread only
+    private final ByteBuffer[] inFlight = new ByteBuffer[MAX_GATHER];
+    private int inFlightStart = 0;
+    private int inFlightEnd = 0;
+    private final List<byte[]> drained = new ArrayList<>(MAX_GATHER);
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER);
+    private SelectionKey key;
+    private BaseServerThread owner;
+    private boolean firstRead = true; // loop thread only
+
+    protected NioConnection(SelectorLoop loop, SocketChannel channel) {
+        this.loop = loop;
+        this.channel = channel;
+    }
+
+    /**
+     * Links the registered key and the ServerThread handling this connection
+     * 
+     * @param key
+     * @param owner
+     */
+    protected void attach(SelectionKey key, BaseServerThread owner) {
+        this.key = key;
+        this.owner = owner;
+    }
+
+    @Override
+    public boolean write(byte[] frame, boolean droppable) {
+        if (!writeHeld(frame, droppable)) {
+            return false;
+        }
+        flush();
+        return true;
+    }
+
+    @Override
+    public boolean writeHeld(byte[] frame, boolean droppable) {
+        if (closed.get()) {
+            return false;
+        }
+        if (outbound.offer(frame, droppable, false) == OutboundQueue.Result.OVERFLOW) {
+            return false; // the owner decides how to drop the client
+        }
+        if (outbound.getDepth() > outbound.getLimit() / 2) {
+            flush(); // don't hold a long burst until it overflows
+        }
+        return true;
+    }
+
+    @Override
+    public void flush() {
+        // only wake the loop once per batch of queued frames
+        if (flushScheduled.compareAndSet(false, true)) {
+            loop.execute(this::flushQueue);
+        }
+    }
+
+    /**
+     * Writes as much of the queue as the socket accepts, up to MAX_GATHER
+     * frames per write call; must run on the loop thread
+     */
+    private void flushQueue() {
+        flushScheduled.set(false);
+        if (closed.get()) {
+            return;
+        }
+        try {
+            while (true) {
+                if (inFlightStart == inFlightEnd) {
+                    inFlightStart = 0;
+                    inFlightEnd = outbound.drainTo(drained, MAX_GATHER);
+                    if (inFlightEnd == 0) {
+                        break;
+                    }
+                    for (int i = 0; i < inFlightEnd; i++) {
+                        inFlight[i] = ByteBuffer.wrap(drained.get(i));
+                    }
+                    drained.clear();
+                }
+                channel.write(inFlight, inFlightStart, inFlightEnd - inFlightStart);
+                WireStats.recordSocketWrite();
+                while (inFlightStart < inFlightEnd && !inFlight[inFlightStart].hasRemaining()) {
+                    WireStats.recordSent(inFlight[inFlightStart].capacity());
+                    inFlight[inFlightStart++] = null;
+                }
+                if (inFlightStart < inFlightEnd) {
+                    // socket buffer is full, resume when the selector says writable
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    protected void onWritable() {
+        flushQueue();
+    }
+
+    /**
+     * Reads available bytes and dispatches every complete frame
+     */
+    protected void onReadable() {
+        int read;
+        try {
+            read = channel.read(readBuffer);
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        if (read < 0) {
+            close();
+            return;
+        }
+        readBuffer.flip();
+        if (firstRead) {
+            if (readBuffer.remaining() < FrameCodec.HEADER_SIZE) {
+                readBuffer.compact();
+                return;
+            }
+            firstRead = false;
+            if (readBuffer.getInt(readBuffer.position()) == FrameCodec.OBJECT_STREAM_HEADER) {
+                handOver();
+                return;
+            }
+        }
+        int needed = 0;
+        try {
+            while (readBuffer.remaining() >= FrameCodec.HEADER_SIZE) {
+                int length = readBuffer.getInt(readBuffer.position());
+                FrameCodec.checkLength(length);
+                if (readBuffer.remaining() < FrameCodec.HEADER_SIZE + length) {
+                    needed = FrameCodec.HEADER_SIZE + length;
+                    break;
+                }
+                readBuffer.position(readBuffer.position() + FrameCodec.HEADER_SIZE);
+                byte[] body = new byte[length];
+                readBuffer.get(body);
+                WireStats.recordReceived(FrameCodec.HEADER_SIZE + length);
+                dispatch(body);
+            }
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.warning("Closing connection with invalid frame", e);
+            close();
+            return;
+        }
+        readBuffer.compact();
+        if (needed > readBuffer.capacity()) {
+            // frame is larger than the buffer, grow it just enough
+            ByteBuffer bigger = ByteBuffer.allocate(needed);
+            readBuffer.flip();
+            bigger.put(readBuffer);
+            readBuffer = bigger;
+        }
+    }
+
+    /**
+     * Gives the channel (and what's been read from it) to a blocking
+     * SocketConnection for a client from before framing; the owner keeps
+     * running on it. Nothing has been sent to the client yet.
+     */
+    private void handOver() {
+        byte[] alreadyRead = new byte[readBuffer.remaining()];
+        readBuffer.get(alreadyRead);
+        closed.set(true); // this connection is done, without closing the channel
+        outbound.close();
+        key.cancel();
+        loop.execute(() -> continueBlocking(alreadyRead));
+    }
+
+    /**
+     * Runs on the loop once the cancelled key has been deregistered (the next
+     * select does that), since only then can the channel block again
+     */
+    private void continueBlocking(byte[] alreadyRead) {
+        if (channel.isRegistered()) {
+            loop.execute(() -> continueBlocking(alreadyRead));
+            return;
+        }
+        try {
+            channel.configureBlocking(true);
+            SocketConnection connection = new SocketConnection(channel.socket(), UNFRAMED_THREADS, alreadyRead);
+            UNFRAMED_THREADS.newThread(() -> owner.continueOn(connection)).start();
+            LoggerUtil.INSTANCE.info("Serving a client from before framing over an unframed object stream");
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.warning("Couldn't hand over an unframed client", e);
+            try {
+                channel.close();
+            } catch (IOException closing) {
+                // already closed
+            }
+            owner.onConnectionClosed();
+        }
+    }
+
+    private void dispatch(byte[] body) {
+        try {
+            Payload payload = FrameCodec.decode(body, 0, body.length);
+            owner.onPayloadReceived(payload);
+        } catch (ClassCastException | ClassNotFoundException | IOException e) {
+            LoggerUtil.INSTANCE.severe("Error reading object as specified type", e);
+        } catch (Exception e) {
+            LoggerUtil.INSTANCE.severe("Error processing payload", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // already closed
+        }
+        outbound.close();
+        if (owner != null) {
+            owner.onConnectionClosed();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed.get();
+    }
+
+    @Override
+    public OutboundQueue getOutbound() {
+        return outbound;
+    }
+}
@@ -0,0 +1,85 @@
+package Project.Server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.function.Consumer;
+
+import Project.Common.LoggerUtil;
+import Project.Common.TextFX;
+import Project.Common.TextFX.Color;
+
+/**
+ * Selector based engine: accepted channels are spread round-robin over a small
+ * fixed pool of SelectorLoops, so thousands of clients share a handful of
+ * threads instead of one blocked thread each
+ */
+public class NioEngine implements ConnectionEngine {
+    private final SelectorLoop[] loops;
+    private volatile boolean isRunning = true;
+    private ServerSocketChannel serverChannel;
+
+    private void info(String message) {
+        LoggerUtil.INSTANCE.info(() -> TextFX.colorize(String.format("NioEngine: %s", message), Color.YELLOW));
+    }
+
+    /**
+     * @param loopCount number of Selector threads
+     */
+    public NioEngine(int loopCount) {
+        loops = new SelectorLoop[loopCount];
+    }
+
+    @Override
+    public void listen(int port, Consumer<ServerThread> onInitialized) throws IOException {
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new SelectorLoop("SelectorLoop-" + i);
+            loops[i].start();
+        }
+        info(String.format("Started %s selector loops", loops.length));
+        int next = 0;
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            this.serverChannel = serverChannel;
+            serverChannel.bind(new InetSocketAddress(port));
+            // accepting stays blocking on this thread; only client channels are
+            // multiplexed
+            while (isRunning) {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                loops[next].register(channel, onInitialized);
+                next = (next + 1) % loops.length;
+            }
+        } catch (ClosedChannelException e) {
+            if (isRunning) {
+                throw e;
+            }
+            info("Stopped accepting clients");
+        } finally {
+            shutdown();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        if (!isRunning) {
+            return;
+        }
+        isRunning = false;
+        try {
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+        } catch (IOException e) {
+            // ignore, closing anyway
+        }
+        for (SelectorLoop loop : loops) {
+            if (loop != null) {
+                loop.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package Project.Server;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded per-client queue of encoded frames waiting to be written.
+ * <p>
+ * Rooms only ever enqueue here, the connection's writer (a writer thread for
+ * SocketConnection, the SelectorLoop for NioConnection) drains it. When the
+ * queue is full the OverflowPolicy decides between dropping droppable (TIME)
+ * frames and giving up on the client.
+ * </p>
+ * Configured with -Dserver.outbound.limit (frames, default 512) and
+ * -Dserver.outbound.policy (drop_time or disconnect).
+ */
+public class OutboundQueue {
+    public static final int DEFAULT_LIMIT = Integer.getInteger("server.outbound.limit", 512);
+    public static final OverflowPolicy DEFAULT_POLICY = OverflowPolicy
+            .fromString(System.getProperty("server.outbound.policy"), OverflowPolicy.DROP_TIME);
+
+    /**
+     * Outcome of offer()
+     */
+    public enum Result {
+        QUEUED, DROPPED, OVERFLOW
+    }
+
+    private static class Entry {
+        final byte[] frame;
+        final boolean droppable;
+
+        Entry(byte[] frame, boolean droppable) {
+            this.frame = frame;
+            this.droppable = droppable;
+        }
+    }
+
+    private final int limit;
+    private final OverflowPolicy policy;
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private boolean closed = false;
+    private int highWater = 0;
+    private long dropped = 0;
+    private boolean overflowed = false;
+
+    public OutboundQueue() {
+        this(DEFAULT_LIMIT, DEFAULT_POLICY);
+    }
+
+    public OutboundQueue(int limit, OverflowPolicy policy) {
+        this.limit = Math.max(1, limit);
+        this.policy = policy;
+    }
+
+    /**
+     * Adds a frame without blocking
+     * 
+     * @param frame
+     * @param droppable true for frames that are superseded by the next one (TIME)
+     * @return QUEUED, DROPPED (this or an older droppable frame was discarded to
+     *         stay under the limit) or OVERFLOW (closed or the client should be
+     *         disconnected)
+     */
+    public Result offer(byte[] frame, boolean droppable) {
+        return offer(frame, droppable, true);
+    }
+
+    /**
+     * Adds a frame without blocking
+     * 
+     * @param frame
+     * @param droppable true for frames that are superseded by the next one (TIME)
+     * @param wake      false to leave the writer asleep until wake() (or a later
+     *                  offer that wakes it), so a burst goes out in one write
+     * @return see offer(byte[], boolean)
+     */
+    public Result offer(byte[] frame, boolean droppable, boolean wake) {
+        lock.lock();
+        try {
+            if (closed) {
+                return Result.OVERFLOW;
+            }
+            Result result = Result.QUEUED;
+            if (entries.size() >= limit) {
+                if (policy != OverflowPolicy.DROP_TIME) {
+                    overflowed = true;
+                    return Result.OVERFLOW;
+                }
+                if (droppable) {
+                    recordDropped();
+                    return Result.DROPPED;
+                }
+                if (!evictDroppable()) {
+                    overflowed = true;
+                    return Result.OVERFLOW;
+                }
+                result = Result.DROPPED;
+            }
+            entries.add(new Entry(frame, droppable));
+            highWater = Math.max(highWater, entries.size());
+            if (wake) {
+                notEmpty.signal();
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the oldest queued droppable frame; caller holds the lock
+     * 
+     * @return true if a frame was removed
+     */
+    private boolean evictDroppable() {
+        Iterator<Entry> iter = entries.iterator();
+        while (iter.hasNext()) {
+            if (iter.next().droppable) {
+                iter.remove();
+                recordDropped();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void recordDropped() {
+        dropped++;
+        WireStats.recordDropped();
+    }
+
+    /**
+     * Non-blocking removal of the oldest frame
+     * 
+     * @return the frame or null if empty
+     */
+    public byte[] poll() {
+        lock.lock();
+        try {
+            Entry entry = entries.poll();
+            return entry == null ? null : entry.frame;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wakes a writer waiting in awaitBatch() if frames are queued
+     */
+    public void wake() {
+        lock.lock();
+        try {
+            if (!entries.isEmpty()) {
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Non-blocking removal of up to max of the oldest frames
+     * 
+     * @param batch receives the frames
+     * @param max
+     * @return frames moved
+     */
+    public int drainTo(List<byte[]> batch, int max) {
+        lock.lock();
+        try {
+            int moved = 0;
+            Entry entry;
+            while (moved < max && (entry = entries.poll()) != null) {
+                batch.add(entry.frame);
+                moved++;
+            }
+            return moved;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until frames are available, then moves all of them into batch
+     * 
+     * @param batch
+     * @return false once the queue is closed
+     * @throws InterruptedException
+     */
+    public boolean awaitBatch(List<byte[]> batch) throws InterruptedException {
+        lock.lock();
+        try {
+            while (entries.isEmpty() && !closed) {
+                notEmpty.await();
+            }
+            if (closed) {
+                return false;
+            }
+            Entry entry;
+            while ((entry = entries.poll()) != null) {
+                batch.add(entry.frame);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Discards pending frames and wakes the writer; later offers overflow
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            entries.clear();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getDepth() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getHighWater() {
+        lock.lock();
+        try {
+            return highWater;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if an offer was rejected because the client lagged too far
+     *         behind (as opposed to the connection being closed)
+     */
+    public boolean isOverflowed() {
+        lock.lock();
+        try {
+            return overflowed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+}
@@ -0,0 +1,28 @@
+package Project.Server;
+
+/**
+ * What an OutboundQueue does when a client falls too far behind
+ */
+public enum OverflowPolicy {
+    DROP_TIME, // drop TIME frames (newest, then queued ones) first; disconnect if that isn't enough
+    DISCONNECT; // disconnect as soon as the queue is full
+
+    /**
+     * Case-insensitive lookup with a fallback
+     * 
+     * @param value
+     * @param fallback returned if value is null or unknown
+     * @return
+     */
+    public static OverflowPolicy fromString(String value, OverflowPolicy fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        for (OverflowPolicy policy : values()) {
+            if (policy.name().equalsIgnoreCase(value.trim())) {
+                return policy;
+            }
+        }
+        return fallback;
+    }
+}
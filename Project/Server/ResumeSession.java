@@ -0,0 +1,189 @@
+package Project.Server;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+
+import Project.Common.TimerScheduler;
+
+/**
+ * Lets a client that lost its socket pick up where it left off.
+ * <p>
+ * Every frame sent to the client (except TIME updates, which may be dropped
+ * anyway) gets the next sequence number and a reference to it is kept in a
+ * ring of the last -Dserver.resume.buffer frames (default 256; they're the
+ * same byte[]s the connection queues, nothing is copied). When the socket
+ * drops, the session detaches: the client keeps its id, room and seat, frames
+ * keep being numbered and kept but aren't written anywhere. A reconnect that
+ * presents the session's token and the number of frames it got within
+ * -Dserver.resume.grace.seconds (default 30) gets exactly the ones it missed
+ * and continues on the new socket; after the grace period the client is
+ * disconnected like before.
+ * </p>
+ * The lock makes numbering and queueing a frame one step, so the ring is in
+ * the same order as the socket.
+ */
+public class ResumeSession {
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("server.resume", "true"));
+    private static final int BUFFER = Math.max(1, Integer.getInteger("server.resume.buffer", 256));
+    private static final long GRACE_SECONDS = Long.getLong("server.resume.grace.seconds", 30);
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * How a resume went
+     */
+    public enum Outcome {
+        REPLAYED, // the client got every frame it missed
+        RESYNC, // they're no longer kept; the client catches up from its room instead
+        ENDED // too late, the session is over
+    }
+
+    private final String token;
+    private final byte[][] frames = new byte[BUFFER][];
+    // used in place of synchronized so virtual ServerThreads don't pin carriers
+    private final ReentrantLock lock = new ReentrantLock();
+    private long sent = 0; // frames numbered so far
+    private ClientConnection connection; // null while detached
+    private volatile boolean ended = false;
+    private ScheduledFuture<?> grace;
+
+    /**
+     * @param connection the client's current connection
+     */
+    public ResumeSession(ClientConnection connection) {
+        byte[] bytes = new byte[18];
+        RANDOM.nextBytes(bytes);
+        this.token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        this.connection = connection;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * Numbers and keeps the frame (unless it's droppable), then queues it on
+     * the current connection
+     *
+     * @param frame
+     * @param droppable see ClientConnection.write()
+     * @return false if the connection failed (the frame is still kept)
+     */
+    public boolean write(byte[] frame, boolean droppable) {
+        lock.lock();
+        try {
+            if (!droppable) {
+                frames[(int) (sent % BUFFER)] = frame;
+                sent++;
+            }
+            if (connection == null) {
+                return true; // kept for the reconnect
+            }
+            return FlushBatch.write(connection, frame, droppable);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops writing to a connection that dropped and starts the grace period
+     *
+     * @param from     the connection that dropped
+     * @param onExpire runs if nobody resumes in time
+     * @return false if the session already ended
+     */
+    public boolean detach(ClientConnection from, Runnable onExpire) {
+        lock.lock();
+        try {
+            if (ended) {
+                return false;
+            }
+            if (connection == from) { // otherwise already detached or resumed elsewhere
+                connection = null;
+                grace = TimerScheduler.INSTANCE.schedule(onExpire, GRACE_SECONDS, TimeUnit.SECONDS);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the session to a new connection: queues the handshake reply, then
+     * every frame after the client's last one, before anything else can be
+     * written
+     *
+     * @param next handshake connection of the reconnected client
+     * @param seen frames the client got
+     * @param ack  builds the handshake reply for the sequence the client
+     *             continues from
+     * @return REPLAYED, RESYNC (the client continues from the current
+     *         sequence) or ENDED
+     */
+    public Outcome resume(ClientConnection next, long seen, LongFunction<byte[]> ack) {
+        lock.lock();
+        try {
+            if (ended) {
+                return Outcome.ENDED;
+            }
+            if (grace != null) {
+                grace.cancel(false);
+                grace = null;
+            }
+            boolean replay = seen >= 0 && seen <= sent && sent - seen <= BUFFER;
+            next.write(ack.apply(replay ? seen : sent), false);
+            if (replay) {
+                for (long sequence = seen; sequence < sent; sequence++) {
+                    next.write(frames[(int) (sequence % BUFFER)], false);
+                }
+            }
+            connection = next;
+            return replay ? Outcome.REPLAYED : Outcome.RESYNC;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends the session for good (the client left, was disconnected or the
+     * grace period ran out)
+     *
+     * @return true if this call ended it
+     */
+    public boolean end() {
+        lock.lock();
+        try {
+            if (ended) {
+                return false;
+            }
+            ended = true;
+            connection = null;
+            if (grace != null) {
+                grace.cancel(false);
+                grace = null;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEnded() {
+        return ended;
+    }
+
+    /**
+     * @return frames numbered so far
+     */
+    public long getSent() {
+        lock.lock();
+        try {
+            return sent;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
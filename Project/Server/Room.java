@@ -1,28 +1,54 @@
 package Project.Server;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 
+import Project.Common.ConnectionPayload;
 import Project.Common.Constants;
 import Project.Common.LoggerUtil;
+import Project.Common.Payload;
+import Project.Common.PayloadType;
 import Project.Common.RoomAction;
+import Project.Common.RoomResultPayload;
+import Project.Common.RosterPayload;
 import Project.Common.TextFX;
 import Project.Common.TextFX.Color;
+import Project.Common.WireFormat;
 import Project.Exceptions.DuplicateRoomException;
 import Project.Exceptions.RoomNotFoundException;
 
+/**
+ * A Room is an actor: every state change runs as a command on its RoomMailbox,
+ * so only one thread at a time ever touches it and no locks are needed.
+ */
 public class Room implements AutoCloseable {
     private final String name;// unique name of the Room
     private volatile boolean isRunning = false;
     protected final ConcurrentHashMap<Long, ServerThread> clientsInRoom = new ConcurrentHashMap<Long, ServerThread>();
+    protected final RoomMailbox mailbox;
+    private long rosterVersion = 0; // bumped per ROOM_DIFF, only touched on the mailbox
+    private long sequence = 0; // last broadcast numbered by sequenced(), only touched on the mailbox
+    private final BroadcastLog log = new BroadcastLog();
 
     public final static String LOBBY = "lobby";
 
     private void info(String message) {
-        LoggerUtil.INSTANCE.info(TextFX.colorize(String.format("Room[%s]: %s", name, message), Color.PURPLE));
+        LoggerUtil.INSTANCE.info(() -> TextFX.colorize(String.format("Room[%s]: %s", name, message), Color.PURPLE));
+    }
+
+    private void info(Supplier<String> message) {
+        if (LoggerUtil.INSTANCE.isLoggable(Level.INFO)) {
+            info(message.get());
+        }
     }
 
     public Room(String name) {
         this.name = name;
+        this.mailbox = new RoomMailbox(name);
         isRunning = true;
         info("Created");
     }
@@ -35,38 +61,123 @@ public class Room implements AutoCloseable {
         return isRunning;
     }
 
-    protected synchronized void addClient(ServerThread client) {
-        if (!isRunning) { // block action if Room isn't running
-            return;
-        }
-        if (clientsInRoom.containsKey(client.getClientId())) {
-            info("Attempting to add a client that already exists in the room");
-            return;
-        }
-        clientsInRoom.put(client.getClientId(), client);
-        client.setCurrentRoom(this);
-        client.sendResetUserList();
-        syncExistingClients(client);
-        // notify clients of someone joining
-        joinStatusRelay(client, true);
+    /**
+     * Runs a command on this room's mailbox (inline if already on it)
+     * 
+     * @param command
+     */
+    protected void execute(Runnable command) {
+        mailbox.execute(command);
+    }
 
+    /**
+     * @return clients in this room (shown in room lists)
+     */
+    protected int getPlayerCount() {
+        return clientsInRoom.size();
     }
 
-    protected synchronized void removeClient(ServerThread client) {
-        if (!isRunning) { // block action if Room isn't running
-            return;
-        }
-        if (!clientsInRoom.containsKey(client.getClientId())) {
-            info("Attempting to remove a client that doesn't exist in the room");
-            return;
-        }
-        ServerThread removedClient = clientsInRoom.get(client.getClientId());
-        if (removedClient != null) {
+    /**
+     * @return commands waiting in this room's mailbox
+     */
+    public int getMailboxDepth() {
+        return mailbox.getDepth();
+    }
+
+    /**
+     * @return the room a client joining this one is actually seated in (see
+     *         Server.joinRoom())
+     */
+    protected Room admit() {
+        return this;
+    }
+
+    protected void addClient(ServerThread client) {
+        execute(() -> {
+            if (!isRunning) { // block action if Room isn't running
+                return;
+            }
+            if (!client.isHeadedTo(this)) {
+                info("Not adding a client that moved on to another room before it was seated");
+                return;
+            }
+            if (clientsInRoom.containsKey(client.getClientId())) {
+                info("Attempting to add a client that already exists in the room");
+                return;
+            }
+            clientsInRoom.put(client.getClientId(), client);
+            if (client.supportsRoster()) {
+                sendSnapshot(client, false);
+            } else {
+                client.sendResetUserList();
+                syncExistingClients(client);
+            }
             // notify clients of someone joining
-            joinStatusRelay(removedClient, false);
-            clientsInRoom.remove(client.getClientId());
-            autoCleanup();
-        }
+            joinStatusRelay(client, true);
+        });
+    }
+
+    protected void removeClient(ServerThread client) {
+        execute(() -> {
+            if (!isRunning) { // block action if Room isn't running
+                return;
+            }
+            if (!clientsInRoom.containsKey(client.getClientId())) {
+                info("Attempting to remove a client that doesn't exist in the room");
+                return;
+            }
+            ServerThread removedClient = clientsInRoom.get(client.getClientId());
+            if (removedClient != null) {
+                // notify clients of someone joining
+                joinStatusRelay(removedClient, false);
+                clientsInRoom.remove(client.getClientId());
+                autoCleanup();
+            }
+        });
+    }
+
+    /**
+     * Swaps in the ServerThread a member resumed their session on (see
+     * ResumeSession); the other members don't notice anything
+     * 
+     * @param previous the member's old connection
+     * @param next     the one it resumed on (if it missed more than could be
+     *                 replayed, it asks for a catch-up next)
+     */
+    protected void replaceClient(ServerThread previous, ServerThread next) {
+        execute(() -> {
+            if (!isRunning || !clientsInRoom.replace(next.getClientId(), previous, next)) {
+                if (next.getCurrentRoom() == this) {
+                    // left this room while the connection was down
+                    try {
+                        Server.INSTANCE.joinRoom(Room.LOBBY, next);
+                    } catch (RoomNotFoundException e) {
+                        e.printStackTrace();
+                    }
+                }
+                return;
+            }
+            onClientReplaced(previous, next);
+        });
+    }
+
+    /**
+     * Lets subclasses swap their own references to a resumed member
+     * 
+     * @param previous
+     * @param next
+     */
+    protected void onClientReplaced(ServerThread previous, ServerThread next) {
+    }
+
+    /**
+     * Sends a member what joining would, without telling anyone else; only for
+     * resumed sessions and catch-ups, which are always on the current codec
+     * 
+     * @param client
+     */
+    protected void resync(ServerThread client) {
+        sendSnapshot(client, true);
     }
 
     private void syncExistingClients(ServerThread incomingClient) {
@@ -88,111 +199,223 @@ public class Room implements AutoCloseable {
     }
 
     private void joinStatusRelay(ServerThread client, boolean didJoin) {
-        clientsInRoom.values().removeIf(serverThread -> {
+        // Share info of the client joining or leaving the room
+        ConnectionPayload legacy = new ConnectionPayload();
+        legacy.setPayloadType(didJoin ? PayloadType.ROOM_JOIN : PayloadType.ROOM_LEAVE);
+        legacy.setClientId(client.getClientId());
+        legacy.setClientName(client.getClientName());
+        legacy.setMessage(getName()); // room name
+        broadcastMemberState(client, didJoin ? RosterPayload.JOINED : RosterPayload.LEFT, legacy);
+    }
 
-            // Share info of the client joining or leaving the room
-            boolean failedToSync = !serverThread.sendClientInfo(
-                    client.getClientId(), // client id
-                    client.getClientName(), // client name
-                    getName(), // room name
-                    didJoin ? RoomAction.JOIN : RoomAction.LEAVE // action
-            );
-            if (failedToSync) {
-                LoggerUtil.INSTANCE.warning(
-                        String.format("Removing disconnected %s from list", serverThread.getDisplayName()));
-                disconnect(serverThread);
+    /**
+     * Replaces the user list, ready/turn/points syncs and join notices a client
+     * would otherwise get one member at a time with a single ROOM_SNAPSHOT of
+     * everyone else in the room (the client's own join follows as a diff)
+     * 
+     * @param incomingClient
+     * @param includeSelf    also list the client (nothing follows)
+     */
+    private void sendSnapshot(ServerThread incomingClient, boolean includeSelf) {
+        RosterPayload snapshot = new RosterPayload();
+        snapshot.setVersion(rosterVersion);
+        snapshot.setSequence(sequence); // the client's place in the broadcast stream
+        snapshot.setMessage(getName()); // room name
+        clientsInRoom.values().forEach(serverThread -> {
+            if (includeSelf || serverThread.getClientId() != incomingClient.getClientId()) {
+                snapshot.addMember(serverThread.getClientId(), serverThread.getClientName(),
+                        serverThread.getPoints(), getRosterFlags(serverThread));
             }
-            return failedToSync;
         });
+        incomingClient.sendSnapshot(snapshot); // a failure shows up on the join diff right after
     }
 
     /**
-     * Sends a basic String message from the sender to all connectedClients
-     * Note: Clients that fail to receive a message get removed from
-     * connectedClients.
-     * Adding the synchronized keyword ensures that only one thread can execute
-     * these methods at a time,
-     * preventing concurrent modification issues and ensuring thread safety
+     * Numbers a broadcast that every member on the current codec gets and keeps
+     * its binary frame in the room's BroadcastLog, so members that missed it can
+     * catch up (see handleCatchUp()). Not for TIME (may be dropped) or anything
+     * sent to only some of the members.
+     * Must run on the mailbox.
      * 
-     * @param message
-     * @param sender  ServerThread (client) sending the message or null if it's a
-     *                server-generated message
+     * @param payload
+     * @return the frame to send
      */
-    protected synchronized void relay(ServerThread sender, String message) {
-        if (!isRunning) { // block action if Room isn't running
-            return;
+    protected SharedFrame sequenced(Payload payload) {
+        payload.setSequence(++sequence);
+        SharedFrame frame = new SharedFrame(payload);
+        try {
+            log.append(sequence, frame.get(WireFormat.BINARY));
+        } catch (IOException e) {
+            log.skip(sequence); // the recipients fail on it too
         }
+        return frame;
+    }
 
-        final long senderId = sender == null ? Constants.DEFAULT_CLIENT_ID : sender.getClientId();
-        // Note: formattedMessage must be final (or effectively final) since outside
-        // scope can't be changed inside a callback function (see removeIf() below)
-        // Note: Changed in Milestone 3 since client will use its own knownClients list
-        // to lookup the name
-        final String formattedMessage = message;
-
-        // loop over clients and send out the message; remove client if message failed
-        // to be sent
-        // Note: this uses a lambda expression for each item in the values() collection,
-        // it's one way we can safely remove items during iteration
-        info(String.format("sending message to %s recipients: %s", clientsInRoom.size(), formattedMessage));
+    /**
+     * @param member
+     * @return the member's RosterPayload state flags
+     */
+    protected int getRosterFlags(ServerThread member) {
+        int flags = 0;
+        if (member.isReady()) {
+            flags |= RosterPayload.READY;
+        }
+        if (member.didTakeTurn()) {
+            flags |= RosterPayload.TOOK_TURN;
+        }
+        if (member.user.isSpectator()) {
+            flags |= RosterPayload.SPECTATOR;
+        }
+        return flags;
+    }
 
+    /**
+     * Tells everyone in the room about one member's current state: a one row
+     * ROOM_DIFF (encoded once) for clients that get snapshots, the legacy
+     * payload for the rest.
+     * Note: DISCONNECT and the RESET_READY/RESET_TURN triggers aren't member
+     * state and still go out as-is.
+     * Must run on the mailbox.
+     * 
+     * @param member
+     * @param change RosterPayload.JOINED, RosterPayload.LEFT or 0
+     * @param legacy what older clients get instead, null if they get nothing
+     */
+    protected void broadcastMemberState(ServerThread member, int change, Payload legacy) {
+        RosterPayload diff = new RosterPayload();
+        diff.setPayloadType(PayloadType.ROOM_DIFF);
+        diff.setVersion(++rosterVersion);
+        diff.setMessage(getName()); // room name
+        diff.addMember(member.getClientId(), member.getClientName(), member.getPoints(),
+                getRosterFlags(member) | change);
+        long start = System.nanoTime();
+        SharedFrame frame = sequenced(diff);
+        SharedFrame legacyFrame = legacy == null ? null : new SharedFrame(legacy);
         clientsInRoom.values().removeIf(serverThread -> {
-            boolean failedToSend = !serverThread.sendMessage(senderId, formattedMessage);
+            boolean failedToSend;
+            if (serverThread.supportsRoster()) {
+                failedToSend = !serverThread.sendFrame(frame);
+            } else {
+                failedToSend = legacyFrame != null && !serverThread.sendFrame(legacyFrame);
+            }
             if (failedToSend) {
+                Metrics.recordSendFailure();
                 LoggerUtil.INSTANCE.warning(
                         String.format("Removing disconnected %s from list", serverThread.getDisplayName()));
                 disconnect(serverThread);
             }
             return failedToSend;
         });
+        Metrics.BROADCAST.recordSince(start);
     }
 
     /**
-     * Takes a ServerThread and removes them from the Server
-     * Adding the synchronized keyword ensures that only one thread can execute
-     * these methods at a time,
-     * preventing concurrent modification issues and ensuring thread safety
+     * Sends a basic String message from the sender to all connectedClients
+     * Note: Clients that fail to receive a message get removed from
+     * connectedClients.
+     * Runs on the room's mailbox so only one command at a time touches the
+     * room's state
      * 
-     * @param client
+     * @param message
+     * @param sender  ServerThread (client) sending the message or null if it's a
+     *                server-generated message
      */
-    protected synchronized void disconnect(ServerThread client) {
-        if (!isRunning) { // block action if Room isn't running
-            return;
-        }
-        ServerThread disconnectingServerThread = clientsInRoom.remove(client.getClientId());
-        if (disconnectingServerThread != null) {
+    protected void relay(ServerThread sender, String message) {
+        execute(() -> {
+            if (!isRunning) { // block action if Room isn't running
+                return;
+            }
 
+            final long senderId = sender == null ? Constants.DEFAULT_CLIENT_ID : sender.getClientId();
+            // Note: formattedMessage must be final (or effectively final) since outside
+            // scope can't be changed inside a callback function (see removeIf() below)
+            // Note: Changed in Milestone 3 since client will use its own knownClients list
+            // to lookup the name
+            final String formattedMessage = message;
+
+            // loop over clients and send out the message; remove client if message failed
+            // to be sent
+            // Note: this uses a lambda expression for each item in the values() collection,
+            // it's one way we can safely remove items during iteration
+            info(() -> String.format("sending message to %s recipients: %s", clientsInRoom.size(), formattedMessage));
+
+            // encoded once and shared by every recipient
+            Payload payload = new Payload();
+            payload.setPayloadType(PayloadType.MESSAGE);
+            payload.setMessage(formattedMessage);
+            payload.setClientId(senderId);
+            long start = System.nanoTime();
+            SharedFrame frame = sequenced(payload);
             clientsInRoom.values().removeIf(serverThread -> {
-                if (serverThread.getClientId() == disconnectingServerThread.getClientId()) {
-                    return true;
-                }
-                boolean failedToSend = !serverThread.sendDisconnect(
-                        disconnectingServerThread.getClientId());
+                boolean failedToSend = !serverThread.sendFrame(frame);
                 if (failedToSend) {
+                    Metrics.recordSendFailure();
                     LoggerUtil.INSTANCE.warning(
                             String.format("Removing disconnected %s from list", serverThread.getDisplayName()));
                     disconnect(serverThread);
                 }
                 return failedToSend;
             });
-            // relay(null, disconnectingServerThread.getDisplayName() + " disconnected");
-            disconnectingServerThread.sendDisconnect(
-                    disconnectingServerThread.getClientId());
-            disconnectingServerThread.disconnect();
-        }
-        autoCleanup();
+            Metrics.BROADCAST.recordSince(start);
+        });
     }
 
-    protected synchronized void disconnectAll() {
-        info("Disconnect All triggered");
-        if (!isRunning) {
-            return;
-        }
-        clientsInRoom.values().removeIf(client -> {
-            disconnect(client);
-            return true;
+    /**
+     * Takes a ServerThread and removes them from the Server
+     * Runs on the room's mailbox so only one command at a time touches the
+     * room's state
+     * 
+     * @param client
+     */
+    protected void disconnect(ServerThread client) {
+        execute(() -> {
+            if (!isRunning) { // block action if Room isn't running
+                return;
+            }
+            ServerThread disconnectingServerThread = clientsInRoom.remove(client.getClientId());
+            if (disconnectingServerThread != null) {
+                Payload payload = new Payload();
+                payload.setClientId(disconnectingServerThread.getClientId());
+                payload.setPayloadType(PayloadType.DISCONNECT);
+                SharedFrame frame = sequenced(payload);
+                clientsInRoom.values().removeIf(serverThread -> {
+                    if (serverThread.getClientId() == disconnectingServerThread.getClientId()) {
+                        return true;
+                    }
+                    boolean failedToSend = !serverThread.sendFrame(frame);
+                    if (failedToSend) {
+                        Metrics.recordSendFailure();
+                        LoggerUtil.INSTANCE.warning(
+                                String.format("Removing disconnected %s from list", serverThread.getDisplayName()));
+                        disconnect(serverThread);
+                    }
+                    return failedToSend;
+                });
+                // relay(null, disconnectingServerThread.getDisplayName() + " disconnected");
+                disconnectingServerThread.sendDisconnect(
+                        disconnectingServerThread.getClientId());
+                disconnectingServerThread.disconnect();
+            }
+            autoCleanup();
         });
-        info("Disconnect All finished");
+    }
+
+    protected void disconnectAll() {
+        // waits so server shutdown can still tell clients before the JVM exits
+        boolean finished = mailbox.executeAndWait(() -> {
+            info("Disconnect All triggered");
+            if (!isRunning) {
+                return;
+            }
+            clientsInRoom.values().removeIf(client -> {
+                disconnect(client);
+                return true;
+            });
+            info("Disconnect All finished");
+        }, 2, TimeUnit.SECONDS);
+        if (!finished) {
+            info("Disconnect All timed out");
+        }
     }
 
     /**
@@ -227,33 +450,100 @@ public class Room implements AutoCloseable {
     }
 
     // start handle methods
-    protected void handleListRooms(ServerThread sender, String roomQuery) {
-        sender.sendRooms(Server.INSTANCE.listRooms(roomQuery));
+    /**
+     * Replies with one page of matching rooms
+     * 
+     * @param sender
+     * @param request a RoomResultPayload for prefix/cursor/limit, or any Payload
+     *                with just the query (first page of a substring search)
+     */
+    protected void handleListRooms(ServerThread sender, Payload request) {
+        RoomResultPayload paging = request instanceof RoomResultPayload rrp ? rrp : new RoomResultPayload();
+        String query = request.getMessage() == null ? "" : request.getMessage();
+        RoomDirectory.Page page = Server.INSTANCE.listRooms(query, paging.isPrefix(), paging.getCursor(),
+                paging.getLimit());
+        RoomResultPayload result = new RoomResultPayload();
+        for (Room room : page.rooms()) {
+            result.addRoom(room.getName(), room.getPlayerCount(),
+                    room instanceof BaseGameRoom gameRoom ? gameRoom.getPhase() : null);
+        }
+        result.setCursor(page.nextCursor());
+        result.setPrefix(paging.isPrefix());
+        result.setMessage(query); // lets the client ask for the next page
+        sender.sendRooms(result);
     }
 
     public void handleCreateRoom(ServerThread sender, String roomName) {
-        try {
-            Server.INSTANCE.createRoom(roomName);
-            Server.INSTANCE.joinRoom(roomName, sender);
-        } catch (IllegalArgumentException e) {
-            sender.sendMessage(Constants.DEFAULT_CLIENT_ID, "Room name cannot be empty");
-        } catch (RoomNotFoundException e) {
-            info("Room wasn't found (this shouldn't happen)");
-            e.printStackTrace();
-        } catch (DuplicateRoomException e) {
-            sender.sendMessage(Constants.DEFAULT_CLIENT_ID, String.format("Room %s already exists", roomName));
-        }
+        // on the mailbox so leaving this room is ordered with the sender's earlier
+        // commands
+        execute(() -> {
+            try {
+                Server.INSTANCE.createRoom(roomName);
+                Server.INSTANCE.joinRoom(roomName, sender);
+            } catch (IllegalArgumentException e) {
+                sender.sendMessage(Constants.DEFAULT_CLIENT_ID, "Room name cannot be empty");
+            } catch (RoomNotFoundException e) {
+                info("Room wasn't found (this shouldn't happen)");
+                e.printStackTrace();
+            } catch (DuplicateRoomException e) {
+                sender.sendMessage(Constants.DEFAULT_CLIENT_ID, String.format("Room %s already exists", roomName));
+            }
+        });
     }
 
     public void handleJoinRoom(ServerThread sender, String roomName) {
-        try {
-            Server.INSTANCE.joinRoom(roomName, sender);
-        } catch (RoomNotFoundException e) {
-            sender.sendMessage(Constants.DEFAULT_CLIENT_ID, String.format("Room %s doesn't exist", roomName));
-        }
+        execute(() -> {
+            try {
+                Server.INSTANCE.joinRoom(roomName, sender);
+            } catch (RoomNotFoundException e) {
+                sender.sendMessage(Constants.DEFAULT_CLIENT_ID, String.format("Room %s doesn't exist", roomName));
+            }
+        });
+    }
+
+    /**
+     * Sends a member the broadcasts it missed (it noticed a gap in the sequence
+     * numbers, or resumed a session too far behind to replay) from the room's
+     * BroadcastLog, or everything joining would send if they're not kept
+     * anymore
+     * 
+     * @param sender
+     * @param roomName the room the client thinks it's in
+     * @param after    the last broadcast it got from that room
+     */
+    protected void handleCatchUp(ServerThread sender, String roomName, long after) {
+        execute(() -> {
+            if (!isRunning || clientsInRoom.get(sender.getClientId()) != sender || !getName().equals(roomName)) {
+                return; // it left (a join sends a fresh snapshot anyway)
+            }
+            List<byte[]> missed = log.since(after);
+            Metrics.recordCatchUp(missed != null);
+            if (missed == null) {
+                info(() -> String.format("%s is too far behind (%s of %s), resyncing", sender.getDisplayName(),
+                        after, sequence));
+                resync(sender);
+                return;
+            }
+            if (!sender.sendLogged(missed)) {
+                Metrics.recordSendFailure();
+                LoggerUtil.INSTANCE.warning(
+                        String.format("Removing disconnected %s from list", sender.getDisplayName()));
+                disconnect(sender);
+                return;
+            }
+            onCaughtUp(sender);
+        });
     }
 
-    protected synchronized void handleDisconnect(BaseServerThread sender) {
+    /**
+     * Lets subclasses resend what the BroadcastLog doesn't keep (TIME)
+     * 
+     * @param client
+     */
+    protected void onCaughtUp(ServerThread client) {
+    }
+
+    protected void handleDisconnect(BaseServerThread sender) {
         handleDisconnect((ServerThread) sender);
     }
 
@@ -262,19 +552,28 @@ public class Room implements AutoCloseable {
      * 
      * @param serverThread
      */
-    protected synchronized void handleDisconnect(ServerThread sender) {
-        disconnect(sender);
+    protected void handleDisconnect(ServerThread sender) {
+        execute(() -> {
+            disconnect(sender);
+            // the ServerThread waits for this (see onConnectionClosed()) so its
+            // id is still valid above; no-op if disconnect() already cleaned up
+            sender.disconnect();
+        });
     }
 
-    protected synchronized void handleReverseText(ServerThread sender, String text) {
-        StringBuilder sb = new StringBuilder(text);
-        sb.reverse();
-        String rev = sb.toString();
-        relay(sender, rev);
+    protected void handleReverseText(ServerThread sender, String text) {
+        execute(() -> {
+            StringBuilder sb = new StringBuilder(text);
+            sb.reverse();
+            String rev = sb.toString();
+            relay(sender, rev);
+        });
     }
 
-    protected synchronized void handleMessage(ServerThread sender, String text) {
-        relay(sender, text);
+    protected void handleMessage(ServerThread sender, String text) {
+        execute(() -> {
+            relay(sender, text);
+        });
     }
     // end handle methods
 }
@@ -0,0 +1,253 @@
+package Project.Server;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The server's rooms, indexed by normalized (lower case) name.
+ * <p>
+ * Rooms are spread over shards by name hash, each a concurrent skip list, so
+ * creates, joins and removes for different rooms land on different maps and
+ * don't contend during login storms. Shard count is -Dserver.room.shards
+ * (default: available processors, rounded up to a power of two).
+ * </p>
+ * <p>
+ * Searches return one page at a time, merging the shards back into name order.
+ * A prefix search only visits the matching key range of each shard; a
+ * substring search walks names in order and stops as soon as the page is full,
+ * so neither costs more than the page unless few rooms match.
+ * The cursor is the normalized name of the last room on a page; the next page
+ * starts right after it, so rooms created or closed in between never shift a
+ * page or cause repeats.
+ * </p>
+ */
+public class RoomDirectory {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    private final ConcurrentSkipListMap<String, Room>[] shards;
+    private final int mask;
+    private final Collection<Room> values = new AbstractCollection<Room>() {
+        @Override
+        public Iterator<Room> iterator() {
+            return new Iterator<Room>() {
+                private int shard = 0;
+                private Iterator<Room> current = shards[0].values().iterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext() && shard < shards.length - 1) {
+                        current = shards[++shard].values().iterator();
+                    }
+                    return current.hasNext();
+                }
+
+                @Override
+                public Room next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return current.next();
+                }
+
+                @Override
+                public void remove() {
+                    current.remove();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return RoomDirectory.this.size();
+        }
+    };
+
+    /**
+     * One page of search results
+     *
+     * @param rooms      matches in name order
+     * @param nextCursor cursor for the following page, null if there are no more
+     *                   matches
+     */
+    public record Page(List<Room> rooms, String nextCursor) {
+    }
+
+    public RoomDirectory() {
+        this(Integer.getInteger("server.room.shards", Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param shardCount rounded up to a power of two
+     */
+    public RoomDirectory(int shardCount) {
+        int count = Integer.highestOneBit(Math.max(1, shardCount));
+        if (count < shardCount) {
+            count <<= 1;
+        }
+        shards = newShards(count);
+        for (int i = 0; i < count; i++) {
+            shards[i] = new ConcurrentSkipListMap<>();
+        }
+        mask = count - 1;
+    }
+
+    // generic arrays can't be created directly; every slot is filled with a
+    // ConcurrentSkipListMap<String, Room> right after
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static ConcurrentSkipListMap<String, Room>[] newShards(int count) {
+        return new ConcurrentSkipListMap[count];
+    }
+
+    /**
+     * @param name
+     * @return the key a room name is indexed and searched by
+     */
+    public static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private ConcurrentSkipListMap<String, Room> shard(String key) {
+        int hash = key.hashCode();
+        return shards[(hash ^ (hash >>> 16)) & mask]; // spread like HashMap
+    }
+
+    /**
+     * @param room
+     * @return false if a room with the same normalized name already exists
+     */
+    public boolean add(Room room) {
+        String key = normalize(room.getName());
+        return shard(key).putIfAbsent(key, room) == null;
+    }
+
+    public Room get(String name) {
+        String key = normalize(name);
+        return shard(key).get(key);
+    }
+
+    public boolean contains(String name) {
+        String key = normalize(name);
+        return shard(key).containsKey(key);
+    }
+
+    /**
+     * Removes this room (not a newer one that took over its name)
+     *
+     * @param room
+     */
+    public void remove(Room room) {
+        String key = normalize(room.getName());
+        shard(key).remove(key, room);
+    }
+
+    public int size() {
+        int size = 0;
+        for (ConcurrentSkipListMap<String, Room> shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return live view of the rooms, grouped by shard (not in name order)
+     */
+    public Collection<Room> values() {
+        return values;
+    }
+
+    /**
+     * The matching entries of one shard, in name order, with the next one
+     * peeked so shards can be merged by their head
+     */
+    private static class ShardScan {
+        private final Iterator<Map.Entry<String, Room>> entries;
+        private final String needle;
+        private final boolean prefix;
+        private Map.Entry<String, Room> head;
+
+        ShardScan(NavigableMap<String, Room> range, String needle, boolean prefix) {
+            this.entries = range.entrySet().iterator();
+            this.needle = needle;
+            this.prefix = prefix;
+            advance();
+        }
+
+        /**
+         * @return false once the shard has no more matches
+         */
+        boolean advance() {
+            while (entries.hasNext()) {
+                Map.Entry<String, Room> entry = entries.next();
+                if (prefix || entry.getKey().contains(needle)) {
+                    head = entry;
+                    return true;
+                }
+            }
+            head = null;
+            return false;
+        }
+    }
+
+    /**
+     * @param query  matched against normalized names; empty matches every room
+     * @param prefix true to match names starting with query, false for names
+     *               containing it
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @param limit  page size, clamped to 1..MAX_PAGE_SIZE (0 = default)
+     * @return the page
+     */
+    public Page search(String query, boolean prefix, String cursor, int limit) {
+        String needle = query == null ? "" : normalize(query.trim());
+        int pageSize = limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        String upper = needle + Character.MAX_VALUE;
+        if (prefix && !needle.isEmpty() && cursor != null) {
+            // the cursor comes from the client; keep it inside the prefix range
+            // (tailMap() of a subMap throws for keys outside it)
+            if (cursor.compareTo(needle) < 0) {
+                cursor = null; // before every match, start over
+            } else if (cursor.compareTo(upper) >= 0) {
+                return new Page(new ArrayList<>(), null); // after every match
+            }
+        }
+        PriorityQueue<ShardScan> heads = new PriorityQueue<>(shards.length,
+                (a, b) -> a.head.getKey().compareTo(b.head.getKey()));
+        for (ConcurrentSkipListMap<String, Room> shard : shards) {
+            NavigableMap<String, Room> range = shard;
+            if (prefix && !needle.isEmpty()) {
+                // every key starting with needle sorts between needle and needle + max char
+                range = range.subMap(needle, true, upper, false);
+            }
+            if (cursor != null) {
+                range = range.tailMap(cursor, false);
+            }
+            ShardScan scan = new ShardScan(range, needle, prefix);
+            if (scan.head != null) {
+                heads.add(scan);
+            }
+        }
+        List<Room> page = new ArrayList<>(pageSize);
+        String last = null;
+        while (!heads.isEmpty()) {
+            if (page.size() == pageSize) {
+                return new Page(page, last); // there's at least one more match
+            }
+            ShardScan next = heads.poll();
+            page.add(next.head.getValue());
+            last = next.head.getKey();
+            if (next.advance()) {
+                heads.add(next);
+            }
+        }
+        return new Page(page, null);
+    }
+}
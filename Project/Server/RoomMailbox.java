@@ -0,0 +1,145 @@
+package Project.Server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import Project.Common.LoggerUtil;
+
+/**
+ * Serial mailbox that turns a Room into an actor.
+ * <p>
+ * Every command (client actions, timer expirations, joins and leaves) is
+ * queued here and run one at a time, in order, on a small worker pool shared
+ * by all rooms. Room state is therefore only touched by one thread at a time
+ * without any locks, and thousands of idle rooms cost no threads.
+ * </p>
+ * A command submitted while already running inside this mailbox (i.e.,
+ * relay() called from handleTurnAction()) runs inline so internal call chains
+ * behave like plain method calls.
+ * Whatever a command sends is flushed to each client once, when the command
+ * ends (see FlushBatch).
+ * Worker count can be set with -Dserver.room.threads (default: number of
+ * cores).
+ */
+public class RoomMailbox {
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(
+            Integer.getInteger("server.room.threads", Runtime.getRuntime().availableProcessors()),
+            Thread.ofPlatform().name("RoomWorker-", 0).daemon(true).factory());
+    // commands handled before yielding the worker to other rooms
+    private static final int BATCH = 64;
+    private static final LongAdder failedCommands = new LongAdder();
+
+    private final String name;
+    private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private volatile Thread owner; // worker currently draining this mailbox
+
+    public RoomMailbox(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return true if the calling thread is currently running this mailbox
+     */
+    public boolean isOwner() {
+        return owner == Thread.currentThread();
+    }
+
+    /**
+     * Queues a command, or runs it immediately if called from inside this
+     * mailbox
+     *
+     * @param command
+     */
+    public void execute(Runnable command) {
+        if (isOwner()) {
+            command.run();
+            return;
+        }
+        commands.add(command);
+        schedule();
+    }
+
+    /**
+     * Queues a command and waits for it to finish
+     *
+     * @param command
+     * @param timeout
+     * @param unit
+     * @return false if it didn't finish in time
+     */
+    public boolean executeAndWait(Runnable command, long timeout, TimeUnit unit) {
+        if (isOwner()) {
+            command.run();
+            return true;
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        execute(() -> {
+            try {
+                command.run();
+            } finally {
+                done.countDown();
+            }
+        });
+        try {
+            return done.await(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            WORKERS.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        owner = Thread.currentThread();
+        try {
+            for (int i = 0; i < BATCH; i++) {
+                Runnable command = commands.poll();
+                if (command == null) {
+                    break;
+                }
+                FlushBatch.begin(); // one socket write per client for the whole command
+                try {
+                    command.run();
+                } catch (Exception e) {
+                    failedCommands.increment();
+                    LoggerUtil.INSTANCE.severe(String.format("Room[%s] command failed", name), e);
+                } finally {
+                    FlushBatch.end();
+                }
+            }
+        } finally {
+            owner = null;
+            scheduled.set(false);
+        }
+        // more work arrived (or BATCH was hit), go to the back of the worker queue
+        if (!commands.isEmpty()) {
+            schedule();
+        }
+    }
+
+    /**
+     * @return commands waiting to run
+     */
+    public int getDepth() {
+        return commands.size();
+    }
+
+    /**
+     * @return commands that threw, across every room
+     */
+    public static long getFailedCommands() {
+        return failedCommands.sum();
+    }
+}
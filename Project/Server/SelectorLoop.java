@@ -0,0 +1,126 @@
+package Project.Server;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+import Project.Common.LoggerUtil;
+import Project.Common.TextFX;
+import Project.Common.TextFX.Color;
+
+/**
+ * One Selector plus the thread that services it.
+ * Registration and interest changes are handed over as tasks since a Selector
+ * should only be mutated from its own thread.
+ */
+public class SelectorLoop implements Runnable {
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private volatile boolean isRunning = false;
+
+    private void info(String message) {
+        LoggerUtil.INSTANCE.info(() -> TextFX.colorize(String.format("%s: %s", thread.getName(), message), Color.YELLOW));
+    }
+
+    public SelectorLoop(String name) throws IOException {
+        selector = Selector.open();
+        thread = new Thread(this, name);
+    }
+
+    public void start() {
+        isRunning = true;
+        thread.start();
+    }
+
+    /**
+     * Runs the task on the loop thread during the next iteration
+     * 
+     * @param task
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Takes ownership of an accepted, non-blocking channel
+     * 
+     * @param channel
+     * @param onInitialized
+     */
+    public void register(SocketChannel channel, Consumer<ServerThread> onInitialized) {
+        execute(() -> {
+            NioConnection connection = new NioConnection(this, channel);
+            try {
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ, connection);
+                ServerThread serverThread = new ServerThread(connection, onInitialized);
+                connection.attach(key, serverThread);
+                serverThread.onConnectionOpened();
+            } catch (IOException e) {
+                info("Failed to register channel");
+                connection.close();
+            }
+        });
+    }
+
+    @Override
+    public void run() {
+        while (isRunning) {
+            try {
+                selector.select();
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    NioConnection connection = (NioConnection) key.attachment();
+                    try {
+                        if (key.isValid() && key.isReadable()) {
+                            connection.onReadable();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.onWritable();
+                        }
+                    } catch (CancelledKeyException e) {
+                        connection.close();
+                    }
+                }
+            } catch (IOException e) {
+                LoggerUtil.INSTANCE.severe("Selector failure", e);
+            } catch (Exception e) {
+                // never let a single bad client kill the loop
+                LoggerUtil.INSTANCE.severe("Unexpected error in selector loop", e);
+            }
+        }
+        closeAll();
+    }
+
+    private void closeAll() {
+        try {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof NioConnection connection) {
+                    connection.close();
+                }
+            }
+            selector.close();
+        } catch (Exception e) {
+            // shutting down anyway
+        }
+        info("Stopped");
+    }
+
+    public void shutdown() {
+        isRunning = false;
+        selector.wakeup();
+    }
+}
@@ -1,11 +1,13 @@
 package Project.Server;
 
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import Project.Common.LoggerUtil;
 import Project.Common.TextFX;
@@ -22,19 +24,26 @@ public enum Server {
         config.setFileSizeLimit(2048 * 1024); // 2MB
         config.setFileCount(1);
         config.setLogLocation("server.log");
+        // game threads hand records to a background writer (-Dlog.async=false to turn off)
+        config.setAsync(Boolean.parseBoolean(System.getProperty("log.async", "true")));
         // Set the logger configuration
         LoggerUtil.INSTANCE.setConfig(config);
     }
     private int port = 3000;
-    // connected clients
-    // Use ConcurrentHashMap for thread-safe client management
-    // The key is the unique Room name and the Room is the instance
-    private final ConcurrentHashMap<String, Room> rooms = new ConcurrentHashMap<>();
-    private boolean isRunning = true;
-    private long nextClientId = 0;
+    private ConnectionEngine engine;
+    // rooms by case-insensitive name, sharded so login storms don't contend
+    private final RoomDirectory rooms = new RoomDirectory();
+    private final AtomicLong nextClientId = new AtomicLong();
+    // used in place of synchronized so virtual ServerThreads don't pin carriers
+    private final ReentrantLock lock = new ReentrantLock();
+    // client name (lower case) -> room holding a seat for them in a game
+    // recovered from the journal
+    private final Map<String, String> recoveredSeats = new ConcurrentHashMap<>();
+    // resume token -> client currently holding that session (see ResumeSession)
+    private final Map<String, ServerThread> sessions = new ConcurrentHashMap<>();
 
     private void info(String message) {
-        LoggerUtil.INSTANCE.info(TextFX.colorize(String.format("Server: %s", message), Color.YELLOW));
+        LoggerUtil.INSTANCE.info(() -> TextFX.colorize(String.format("Server: %s", message), Color.YELLOW));
     }
 
     private Server() {
@@ -49,6 +58,9 @@ public enum Server {
      */
     private void shutdown() {
         try {
+            info(WireStats.summary());
+            // before the disconnects end every game, so a restart can resume them
+            GameJournal.INSTANCE.stop();
             // chose removeIf over forEach to avoid potential
             // ConcurrentModificationException
             // since empty rooms tell the server to remove themselves
@@ -56,30 +68,30 @@ public enum Server {
                 room.disconnectAll();
                 return true;
             });
+            WordWatcher.INSTANCE.stop();
+            MetricsServer.INSTANCE.stop();
+            if (engine != null) {
+                engine.shutdown();
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
+        LoggerUtil.INSTANCE.flush(); // the JVM exits right after the shutdown hooks
     }
 
-    private void start(int port) {
+    private void start(int port, EngineType engineType) {
         this.port = port;
         // server listening
-        info("Listening on port " + this.port);
-        // Simplified client connection loop
-        try (ServerSocket serverSocket = new ServerSocket(port)) {
+        info(String.format("Listening on port %s using the %s engine", this.port, engineType));
+        engine = engineType.create();
+        try {
             createRoom(Room.LOBBY);// create the first room (lobby)
-            while (isRunning) {
-                info("Waiting for next client");
-                Socket incomingClient = serverSocket.accept(); // blocking action, waits for a client connection
-                info("Client connected");
-                // wrap socket in a ServerThread, pass a callback to notify the Server when
-                // they're initialized
-                ServerThread serverThread = new ServerThread(incomingClient, this::onServerThreadInitialized);
-                // start the thread (typically an external entity manages the lifecycle and we
-                // don't have the thread start itself)
-                serverThread.start();
-                // Note: We don't yet add the ServerThread reference to our connectedClients map
-            }
+            recoverGames();
+            WordWatcher.INSTANCE.start();
+            MetricsServer.INSTANCE.start();
+            // blocks while the engine accepts clients; each one is wrapped in a
+            // ServerThread that notifies the Server via the callback once initialized
+            engine.listen(port, this::onServerThreadInitialized);
         } catch (DuplicateRoomException e) {
             LoggerUtil.INSTANCE.severe(TextFX.colorize("Lobby already exists (this shouldn't happen)", Color.RED));
         } catch (IOException e) {
@@ -96,13 +108,26 @@ public enum Server {
      * 
      * @param serverThread
      */
-    private synchronized void onServerThreadInitialized(ServerThread serverThread) {
+    void onServerThreadInitialized(ServerThread serverThread) {
+        // no server lock: ids come from an atomic counter and the lobby join is
+        // posted to the lobby's mailbox, so connecting clients never wait on
+        // each other's sends
         // Generate Server controlled clientId
-        nextClientId = Math.max(++nextClientId, 1);
-        serverThread.setClientId(nextClientId);
+        serverThread.setClientId(nextClientId.incrementAndGet());
         serverThread.sendClientId();// syncs the data to the Client
         // add initialized client to the lobby
         info(String.format("*%s initialized*", serverThread.getDisplayName()));
+        String seatRoom = recoveredSeats.get(serverThread.getClientName().toLowerCase(Locale.ROOT));
+        if (seatRoom != null) {
+            // straight back to their recovered game instead of via the lobby
+            try {
+                joinRoom(seatRoom, serverThread);
+                info(String.format("*%s returned to Room %s*", serverThread.getDisplayName(), seatRoom));
+                return;
+            } catch (RoomNotFoundException e) {
+                recoveredSeats.remove(serverThread.getClientName().toLowerCase(Locale.ROOT));
+            }
+        }
         try {
             joinRoom(Room.LOBBY, serverThread);
             info(String.format("*%s added to Lobby*", serverThread.getDisplayName()));
@@ -112,6 +137,57 @@ public enum Server {
         }
     }
 
+    /**
+     * Recreates the games that were in progress when the server last stopped
+     * (see GameJournal)
+     */
+    private void recoverGames() {
+        List<GameJournal.GameState> games = GameJournal.INSTANCE.start();
+        for (GameJournal.GameState state : games) {
+            try {
+                createRoom(state.room);
+            } catch (DuplicateRoomException | IllegalArgumentException e) {
+                LoggerUtil.INSTANCE.warning(String.format("Couldn't recover Room %s: %s", state.room, e.getMessage()));
+                continue;
+            }
+            if (rooms.get(state.room) instanceof GameRoom gameRoom) {
+                state.seats.keySet()
+                        .forEach(seat -> recoveredSeats.put(seat.toLowerCase(Locale.ROOT), gameRoom.getName()));
+                gameRoom.restore(state);
+            }
+        }
+    }
+
+    /**
+     * Forgets a recovered seat once it's been reclaimed or given up
+     * 
+     * @param clientName
+     * @param roomName   room that held the seat
+     */
+    void releaseSeat(String clientName, String roomName) {
+        recoveredSeats.remove(clientName.toLowerCase(Locale.ROOT), roomName);
+    }
+
+    /**
+     * @param token
+     * @param client the client now holding the session
+     */
+    void registerSession(String token, ServerThread client) {
+        sessions.put(token, client);
+    }
+
+    /**
+     * @param token
+     * @return the client holding the session, null if it ended or never existed
+     */
+    ServerThread getSession(String token) {
+        return sessions.get(token);
+    }
+
+    void removeSession(String token) {
+        sessions.remove(token);
+    }
+
     /**
      * Attempts to create a new Room and add it to the tracked rooms collection
      * 
@@ -120,15 +196,17 @@ public enum Server {
      * @throws DuplicateRoomException
      */
     protected void createRoom(String name) throws DuplicateRoomException {
-        final String nameCheck = name.toLowerCase();
-        if (nameCheck.length() == 0) {
+        if (name.length() == 0) {
             throw new IllegalArgumentException("Room name cannot be empty");
         }
-        if (rooms.containsKey(nameCheck)) {
+        if (rooms.contains(name)) {
+            throw new DuplicateRoomException(String.format("Room %s already exists", name));
+        }
+        Room room = Room.LOBBY.equalsIgnoreCase(name) ? new Lobby() : new GameRoom(name);
+        if (!rooms.add(room)) {
+            // another client created it since the check above
             throw new DuplicateRoomException(String.format("Room %s already exists", name));
         }
-        Room room = Room.LOBBY.equalsIgnoreCase(nameCheck) ? new Room(name) : new GameRoom(name);
-        rooms.put(nameCheck, room);
         info(String.format("Created new Room %s", name));
     }
 
@@ -141,29 +219,52 @@ public enum Server {
      * 
      */
     protected void joinRoom(String name, ServerThread client) throws RoomNotFoundException {
-        final String nameCheck = name.toLowerCase();
-        if (!rooms.containsKey(nameCheck)) {
+        Room next = rooms.get(name);
+        if (next == null) {
             throw new RoomNotFoundException(String.format("Room %s wasn't found", name));
         }
-        Room currentRoom = client.getCurrentRoom();
+        // the seat is taken later on the room's mailbox; point the client at it
+        // now so a join that arrives before then leaves this room, not the last one
+        Room target = next.admit();
+        Room currentRoom = client.moveTo(target);
         if (currentRoom != null) {
             info("Removing client from previous Room " + currentRoom.getName());
             currentRoom.removeClient(client);
         }
-        Room next = rooms.get(nameCheck);
-        next.addClient(client);
+        target.addClient(client);
+    }
+
+    /**
+     * One page of rooms matching the query, in name order
+     * 
+     * @param roomQuery
+     * @param prefix    match names starting with the query instead of containing
+     *                  it
+     * @param cursor    from the previous page, null for the first one
+     * @param limit     page size (0 = default)
+     * @return the page and the cursor for the next one
+     */
+    protected RoomDirectory.Page listRooms(String roomQuery, boolean prefix, String cursor, int limit) {
+        return rooms.search(roomQuery, prefix, cursor, limit);
     }
 
-    protected List<String> listRooms(String roomQuery) {
-        final String nameCheck = roomQuery.toLowerCase();
-        return rooms.values().stream()
-                .filter(room -> room.getName().toLowerCase().contains(nameCheck))// find partially matched rooms
-                .map(room -> room.getName())// map room to String (name)
-                .collect(Collectors.toList()); // return a mutable list
+    /**
+     * @param name
+     * @return the room with this name (any case), null if there isn't one
+     */
+    Room getRoom(String name) {
+        return rooms.get(name);
+    }
+
+    /**
+     * @return live view of the current rooms
+     */
+    Collection<Room> getRooms() {
+        return rooms.values();
     }
 
     protected void removeRoom(Room room) {
-        rooms.remove(room.getName().toLowerCase());
+        rooms.remove(room);
         info(String.format("Removed room %s", room.getName()));
     }
 
@@ -173,7 +274,7 @@ public enum Server {
      * Note: Not a common use-case; just updated for example sake.
      * </p>
      * Relays the message from the sender to all rooms
-     * Adding the synchronized keyword ensures that only one thread can execute
+     * Holding the server lock ensures that only one thread can execute
      * these methods at a time,
      * preventing concurrent modification issues and ensuring thread safety
      * 
@@ -181,20 +282,25 @@ public enum Server {
      * @param sender  ServerThread (client) sending the message or null if it's a
      *                server-generated message
      */
-    private synchronized void relayToAllRooms(ServerThread sender, String message) {
-        // Note: any desired changes to the message must be done before this line
-        String senderString = sender == null ? "Server" : sender.getDisplayName();
-        // Note: formattedMessage must be final (or effectively final) since outside
-        // scope can't changed inside a callback function (see removeIf() below)
-        final String formattedMessage = String.format("%s: %s", senderString, message);
-        // end temp identifier
+    private void relayToAllRooms(ServerThread sender, String message) {
+        lock.lock();
+        try {
+            // Note: any desired changes to the message must be done before this line
+            String senderString = sender == null ? "Server" : sender.getDisplayName();
+            // Note: formattedMessage must be final (or effectively final) since outside
+            // scope can't changed inside a callback function (see removeIf() below)
+            final String formattedMessage = String.format("%s: %s", senderString, message);
+            // end temp identifier
 
-        // loop over Rooms and send out the message
-        // Note: this uses a lambda expression for each item in the values() collection
+            // loop over Rooms and send out the message
+            // Note: this uses a lambda expression for each item in the values() collection
 
-        rooms.values().forEach(room -> {
-            room.relay(sender, formattedMessage);
-        });
+            rooms.values().forEach(room -> {
+                room.relay(sender, formattedMessage);
+            });
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -204,7 +310,7 @@ public enum Server {
      * @param sender
      * @param message
      */
-    public synchronized void broadcastMessageToAllRooms(ServerThread sender, String message) {
+    public void broadcastMessageToAllRooms(ServerThread sender, String message) {
         relayToAllRooms(sender, message);
     }
 
@@ -218,7 +324,9 @@ public enum Server {
             // can ignore, will either be index out of bounds or type mismatch
             // will default to the defined value prior to the try/catch
         }
-        server.start(port);
+        // optional second argument (or -Dserver.engine) picks the connection engine
+        String engineArg = args.length > 1 ? args[1] : System.getProperty("server.engine");
+        server.start(port, EngineType.fromString(engineArg, EngineType.NIO));
         LoggerUtil.INSTANCE.warning("Server Stopped");
     }
 
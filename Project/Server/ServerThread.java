@@ -1,9 +1,12 @@
 package Project.Server;
 
 import Project.Common.AwayStatusPayload;
+import Project.Common.BinaryCodec;
 
 import Project.Common.ConnectionPayload;
 import Project.Common.Constants;
+import Project.Common.FrameCodec;
+import Project.Common.LobbyPresencePayload;
 import Project.Common.LoggerUtil;
 import Project.Common.Payload;
 import Project.Common.PayloadType;
@@ -12,13 +15,17 @@ import Project.Common.PointsPayload;
 import Project.Common.ReadyPayload;
 import Project.Common.RoomAction;
 import Project.Common.RoomResultPayload;
+import Project.Common.RosterPayload;
+import Project.Common.SessionOptionsPayload;
 import Project.Common.TextFX;
 import Project.Common.TextFX.Color;
 import Project.Common.TimerPayload;
 import Project.Common.TimerType;
+import Project.Common.User;
+import Project.Common.WireFormat;
 
-import java.net.Socket;
-import java.util.List;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Objects;
 import java.util.function.Consumer;
 
@@ -29,6 +36,40 @@ import java.util.function.Consumer;
 public class ServerThread extends BaseServerThread {
     private Consumer<ServerThread> onInitializationComplete; // callback to inform when this object is ready
 
+    /**
+     * Handles one PayloadType sent by the client
+     */
+    @FunctionalInterface
+    private interface PayloadHandler {
+        void handle(ServerThread client, Payload incoming);
+    }
+
+    // indexed by PayloadType.ordinal(), null for types clients don't send
+    private static final PayloadHandler[] HANDLERS = new PayloadHandler[PayloadType.values().length];
+    static {
+        register(PayloadType.CLIENT_CONNECT, ServerThread::processConnect);
+        register(PayloadType.DISCONNECT, (client, incoming) -> client.currentRoom.handleDisconnect(client));
+        register(PayloadType.MESSAGE, ServerThread::processMessage);
+        register(PayloadType.REVERSE,
+                (client, incoming) -> client.currentRoom.handleReverseText(client, incoming.getMessage()));
+        register(PayloadType.ROOM_CREATE,
+                (client, incoming) -> client.currentRoom.handleCreateRoom(client, incoming.getMessage()));
+        register(PayloadType.ROOM_JOIN,
+                (client, incoming) -> client.currentRoom.handleJoinRoom(client, incoming.getMessage()));
+        register(PayloadType.ROOM_LEAVE, (client, incoming) -> client.currentRoom.handleJoinRoom(client, Room.LOBBY));
+        register(PayloadType.ROOM_LIST, (client, incoming) -> client.currentRoom.handleListRooms(client, incoming));
+        register(PayloadType.READY, ServerThread::processReady);
+        register(PayloadType.TURN, ServerThread::processTurn);
+        register(PayloadType.SESSION_OPTIONS, ServerThread::processSessionOptions);
+        register(PayloadType.AWAY_STATUS, ServerThread::processAwayStatus);
+        register(PayloadType.SPECTATE, ServerThread::processSpectate);
+        register(PayloadType.CATCH_UP, ServerThread::processCatchUp);
+    }
+
+    private static void register(PayloadType type, PayloadHandler handler) {
+        HANDLERS[type.ordinal()] = handler;
+    }
+
     /**
      * A wrapper method so we don't need to keep typing out the long/complex sysout
      * line inside
@@ -37,23 +78,22 @@ public class ServerThread extends BaseServerThread {
      */
     protected void info(String message) {
         LoggerUtil.INSTANCE
-                .info(TextFX.colorize(String.format("Thread[%s]: %s", this.getClientId(), message), Color.CYAN));
+                .info(() -> TextFX.colorize(String.format("Thread[%s]: %s", this.getClientId(), message), Color.CYAN));
     }
 
     /**
-     * Wraps the Socket connection and takes a Server reference and a callback
+     * Wraps the client connection and takes a callback
      * 
-     * @param myClient
-     * @param server
+     * @param myClient                 the engine specific connection
      * @param onInitializationComplete method to inform listener that this object is
      *                                 ready
      */
-    protected ServerThread(Socket myClient, Consumer<ServerThread> onInitializationComplete) {
-        Objects.requireNonNull(myClient, "Client socket cannot be null");
+    protected ServerThread(ClientConnection myClient, Consumer<ServerThread> onInitializationComplete) {
+        Objects.requireNonNull(myClient, "Client connection cannot be null");
         Objects.requireNonNull(onInitializationComplete, "callback cannot be null");
         info("ServerThread created");
         // get communication channels to single client
-        this.client = myClient;
+        this.connection = myClient;
         // this.clientId = this.threadId(); // An id associated with the thread
         // instance, used as a temporary identifier
         this.onInitializationComplete = onInitializationComplete;
@@ -93,6 +133,22 @@ public class ServerThread extends BaseServerThread {
         return sendToClient(tp);
     }
 
+    /**
+     * Syncs a running timer for the client to count down locally
+     * 
+     * @param timerType
+     * @param time      remaining seconds
+     * @param duration  full length of the timer
+     * @return
+     */
+    public boolean sendTimerStart(TimerType timerType, int time, int duration) {
+        TimerPayload tp = new TimerPayload();
+        tp.setTime(time);
+        tp.setDuration(duration);
+        tp.setTimerType(timerType);
+        return sendToClient(tp);
+    }
+
     public boolean sendResetTurnStatus() {
         ReadyPayload rp = new ReadyPayload();
         rp.setPayloadType(PayloadType.RESET_TURN);
@@ -126,7 +182,7 @@ public class ServerThread extends BaseServerThread {
         return sendToClient(rp);
     }
 
-    public synchronized boolean sendReadyStatus(long clientId, boolean isReady) {
+    public boolean sendReadyStatus(long clientId, boolean isReady) {
         return sendReadyStatus(clientId, isReady, false);
     }
 
@@ -148,10 +204,59 @@ public class ServerThread extends BaseServerThread {
         return sendToClient(rp);
     }
 
-    public boolean sendRooms(List<String> rooms) {
-        RoomResultPayload rrp = new RoomResultPayload();
-        rrp.setRooms(rooms);
-        return sendToClient(rrp);
+    public boolean sendRooms(RoomResultPayload rooms) {
+        return sendToClient(rooms);
+    }
+
+    /**
+     * Tells a lobby client how many clients are in the lobby (all shards)
+     * 
+     * @param online
+     * @return true if no errors were encountered
+     */
+    protected boolean sendLobbyPresence(int online) {
+        if (wireFormat != WireFormat.BINARY) {
+            return true; // only clients on the current codec know LOBBY_PRESENCE
+        }
+        LobbyPresencePayload payload = new LobbyPresencePayload();
+        payload.setOnline(online);
+        return sendToClient(payload);
+    }
+
+    /**
+     * @return true if this client is sent ROOM_SNAPSHOT/ROOM_DIFF instead of the
+     *         per-member user list, ready, turn and points syncs
+     */
+    protected boolean supportsRoster() {
+        return wireFormat == WireFormat.BINARY; // binary is only negotiated on the current codec
+    }
+
+    /**
+     * @return true if this client is sent WORD_MASK/STRIKES/LETTER_GUESSED/
+     *         ROUND_RESULT instead of the machine-readable game event strings
+     */
+    protected boolean supportsGameState() {
+        return wireFormat == WireFormat.BINARY;
+    }
+
+    /**
+     * Sends one typed game state update (see GameRoom.sendGameState())
+     * 
+     * @param state
+     * @return true if no errors were encountered
+     */
+    protected boolean sendGameState(Payload state) {
+        return sendToClient(state);
+    }
+
+    /**
+     * Sends every member of a room in one payload (see Room.sendSnapshot())
+     * 
+     * @param snapshot
+     * @return true if no errors were encountered
+     */
+    protected boolean sendSnapshot(RosterPayload snapshot) {
+        return sendToClient(snapshot);
     }
 
     protected boolean sendDisconnect(long clientId) {
@@ -216,12 +321,27 @@ public class ServerThread extends BaseServerThread {
      * @return true for successful send
      */
     protected boolean sendClientId() {
+        ConnectionPayload payload = getClientIdPayload();
+        if (wireFormat != WireFormat.BINARY || !ResumeSession.ENABLED || session != null) {
+            return sendToClient(payload);
+        }
+        // clients on the current codec can resume if the connection drops
+        ResumeSession resumable = new ResumeSession(connection);
+        payload.setResumeToken(resumable.getToken());
+        boolean sent = sendToClient(payload); // the session numbers what comes after
+        session = resumable;
+        Server.INSTANCE.registerSession(resumable.getToken(), this);
+        return sent;
+    }
+
+    private ConnectionPayload getClientIdPayload() {
         ConnectionPayload payload = new ConnectionPayload();
         payload.setPayloadType(PayloadType.CLIENT_ID);
         payload.setClientId(getClientId());
         payload.setClientName(getClientName());// Can be used as a Server-side override of username (i.e., profanity
                                                // filter)
-        return sendToClient(payload);
+        payload.setCodecVersion(wireFormat == WireFormat.BINARY ? BinaryCodec.VERSION : 0);// accepted codec
+        return payload;
     }
 
     /**
@@ -241,83 +361,140 @@ public class ServerThread extends BaseServerThread {
     // End Send*() Methods
     @Override
     protected void processPayload(Payload incoming) {
-        switch (incoming.getPayloadType()) {
-            case CLIENT_CONNECT:
-                setClientName(((ConnectionPayload) incoming).getClientName().trim());
-                break;
-            case DISCONNECT:
-                currentRoom.handleDisconnect(this);
-                break;
-            case MESSAGE:
-                if (this.user.isSpectator()) {
-                    sendMessage(Constants.DEFAULT_CLIENT_ID, "Spectators cannot send messages.");
-                    return;
-                }
+        PayloadType type = incoming.getPayloadType();
+        PayloadHandler handler = type == null ? null : HANDLERS[type.ordinal()];
+        if (handler == null) {
+            LoggerUtil.INSTANCE.warning(TextFX.colorize("Unknown payload type received", Color.RED));
+            return;
+        }
+        handler.handle(this, incoming);
+    }
 
-                currentRoom.handleMessage(this, incoming.getMessage());
-                break;
-            case REVERSE:
-                currentRoom.handleReverseText(this, incoming.getMessage());
-                break;
-            case ROOM_CREATE:
-                currentRoom.handleCreateRoom(this, incoming.getMessage());
-                break;
-            case ROOM_JOIN:
-                currentRoom.handleJoinRoom(this, incoming.getMessage());
-                break;
-            case ROOM_LEAVE:
-                currentRoom.handleJoinRoom(this, Room.LOBBY);
-                break;
-            case ROOM_LIST:
-                currentRoom.handleListRooms(this, incoming.getMessage());
-                break;
-            case READY:
-                // no data needed as the intent will be used as the trigger
-                try {
-                    // cast to GameRoom as the subclass will handle all Game logic
-                    ((GameRoom) currentRoom).handleReady(this);
-                } catch (Exception e) {
-                    sendMessage(Constants.DEFAULT_CLIENT_ID, "You must be in a GameRoom to do the ready check");
-                }
-                break;
-            case TURN:
-                if (this.user.isSpectator()) {
-                    sendMessage(Constants.DEFAULT_CLIENT_ID, "Spectators cannot take turns.");
-                    return;
-                }
-                try {
-                    ((GameRoom) currentRoom).handleTurnAction(this, incoming.getMessage());
-                } catch (Exception e) {
-                    sendMessage(Constants.DEFAULT_CLIENT_ID, "You must be in a GameRoom to do a turn");
-                }
-                break;
-            case SESSION_OPTIONS:
-                if (currentRoom instanceof GameRoom && incoming instanceof Project.Common.SessionOptionsPayload) {
-                    ((GameRoom) currentRoom).handleSessionOptions(this, (Project.Common.SessionOptionsPayload) incoming);
-                }
-                break;
-            case AWAY_STATUS:
-                if (currentRoom instanceof GameRoom && incoming instanceof AwayStatusPayload) {
-                    AwayStatusPayload asp = (AwayStatusPayload) incoming;
-                    ((GameRoom) currentRoom).setPlayerAway(getClientId(), asp.isAway());
-                    // Broadcast to all clients
-                    AwayStatusPayload broadcast = new AwayStatusPayload();
-                    broadcast.setAway(asp.isAway());
-                    broadcast.setClientId(getClientId());
-                    broadcast.setClientName(getClientName());
-                    currentRoom.relay(null, asp.isAway() ? (getClientName() + " is away") : (getClientName() + " is no longer away"));
-                    ((BaseGameRoom) currentRoom).broadcastPayload(broadcast);
-                }
-                break;
-            case SPECTATE:
-                this.user.setSpectator(true);
-                if (currentRoom instanceof GameRoom) {
-                    ((GameRoom) currentRoom).addSpectator(getClientId());
-                }
-                break;
-            default:
-                LoggerUtil.INSTANCE.warning(TextFX.colorize("Unknown payload type received", Color.RED));
-                break;
+    /**
+     * @return the current room if it runs a game, otherwise null
+     */
+    private GameRoom getGameRoom() {
+        return currentRoom instanceof GameRoom gameRoom ? gameRoom : null;
+    }
+
+    private void processConnect(Payload incoming) {
+        ConnectionPayload cp = (ConnectionPayload) incoming;
+        // only the exact same layout; a newer or older client stays on Java
+        // serialization, which every version reads
+        if (cp.getCodecVersion() == BinaryCodec.VERSION) {
+            wireFormat = WireFormat.BINARY; // before setClientName() so the handshake reply is binary
+        }
+        String clientName = cp.getClientName().trim();
+        if (cp.getResumeToken() != null && wireFormat == WireFormat.BINARY
+                && resume(cp.getResumeToken(), clientName, cp.getReceived())) {
+            return;
+        }
+        setClientName(clientName); // new session (or the old one can't be resumed)
+    }
+
+    /**
+     * Takes over the session of a client whose connection dropped: same id,
+     * room, seat and points, and only the frames it missed instead of a resync
+     * 
+     * @param token    from the session's CLIENT_ID
+     * @param clientName
+     * @param seen     frames the client got in that session
+     * @return false if there's no such session (anymore)
+     */
+    private boolean resume(String token, String clientName, long seen) {
+        ServerThread previous = Server.INSTANCE.getSession(token);
+        ResumeSession resumable = previous == null ? null : previous.session;
+        if (resumable == null || !clientName.equals(previous.getClientName())) {
+            return false;
+        }
+        User resumedUser = previous.user;
+        ResumeSession.Outcome outcome = resumable.resume(connection, seen, received -> {
+            ConnectionPayload payload = previous.getClientIdPayload();
+            payload.setResumeToken(token);
+            payload.setReceived(received);
+            try {
+                return FrameCodec.encode(payload, wireFormat);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        Metrics.recordResume(outcome);
+        if (outcome == ResumeSession.Outcome.ENDED) {
+            return false;
+        }
+        user = resumedUser;
+        session = resumable;
+        Room room = previous.currentRoom;
+        currentRoom = room;
+        previous.superseded = true;
+        previous.connection.close(); // if the old socket hadn't noticed yet
+        Server.INSTANCE.registerSession(token, this);
+        info(String.format("Resumed session (%s)", outcome == ResumeSession.Outcome.REPLAYED
+                ? (resumable.getSent() - seen) + " frames replayed" : "too far behind, the client catches up"));
+        if (room != null) {
+            room.replaceClient(previous, this);
+        }
+        return true;
+    }
+
+    private void processMessage(Payload incoming) {
+        if (this.user.isSpectator()) {
+            sendMessage(Constants.DEFAULT_CLIENT_ID, "Spectators cannot send messages.");
+            return;
+        }
+        currentRoom.handleMessage(this, incoming.getMessage());
+    }
+
+    private void processReady(Payload incoming) {
+        // no data needed as the intent will be used as the trigger
+        GameRoom gameRoom = getGameRoom(); // the subclass handles all Game logic
+        if (gameRoom == null) {
+            sendMessage(Constants.DEFAULT_CLIENT_ID, "You must be in a GameRoom to do the ready check");
+            return;
+        }
+        gameRoom.handleReady(this);
+    }
+
+    private void processTurn(Payload incoming) {
+        if (this.user.isSpectator()) {
+            sendMessage(Constants.DEFAULT_CLIENT_ID, "Spectators cannot take turns.");
+            return;
+        }
+        GameRoom gameRoom = getGameRoom();
+        if (gameRoom == null) {
+            sendMessage(Constants.DEFAULT_CLIENT_ID, "You must be in a GameRoom to do a turn");
+            return;
+        }
+        gameRoom.handleTurnAction(this, incoming.getMessage());
+    }
+
+    private void processSessionOptions(Payload incoming) {
+        GameRoom gameRoom = getGameRoom();
+        if (gameRoom != null && incoming instanceof SessionOptionsPayload sop) {
+            gameRoom.handleSessionOptions(this, sop);
+        }
+    }
+
+    private void processAwayStatus(Payload incoming) {
+        GameRoom gameRoom = getGameRoom();
+        if (gameRoom != null && incoming instanceof AwayStatusPayload asp) {
+            // also tells everyone in the room
+            gameRoom.setPlayerAway(getClientId(), asp.isAway());
+            gameRoom.relay(null, asp.isAway() ? (getClientName() + " is away") : (getClientName() + " is no longer away"));
+        }
+    }
+
+    private void processCatchUp(Payload incoming) {
+        if (wireFormat == WireFormat.BINARY) { // the BroadcastLog keeps binary frames
+            currentRoom.handleCatchUp(this, incoming.getMessage(), incoming.getSequence());
+        }
+    }
+
+    private void processSpectate(Payload incoming) {
+        this.user.setSpectator(true);
+        GameRoom gameRoom = getGameRoom();
+        if (gameRoom != null) {
+            gameRoom.addSpectator(getClientId());
         }
     }
 
@@ -0,0 +1,51 @@
+package Project.Server;
+
+import java.io.IOException;
+
+import Project.Common.FrameCodec;
+import Project.Common.Payload;
+import Project.Common.WireFormat;
+
+/**
+ * A Payload that's encoded at most once per WireFormat and then written as the
+ * same byte[] to every recipient of a broadcast.
+ * <p>
+ * The encoded frames are never modified after creation, so connections may
+ * queue them without copying. Meant to be built and used by the single
+ * thread doing the broadcast.
+ * </p>
+ */
+public class SharedFrame {
+    private final Payload payload;
+    private final byte[][] frames = new byte[WireFormat.values().length][];
+
+    public SharedFrame(Payload payload) {
+        this.payload = payload;
+    }
+
+    public Payload getPayload() {
+        return payload;
+    }
+
+    /**
+     * Returns the encoded frame for a format, encoding it on first use
+     *
+     * @param format
+     * @return the complete frame (header + body); don't modify
+     * @throws IOException
+     */
+    public byte[] get(WireFormat format) throws IOException {
+        byte[] frame = frames[format.ordinal()];
+        if (frame == null) {
+            frame = FrameCodec.encode(payload, format);
+            frames[format.ordinal()] = frame;
+            WireStats.recordEncoded(frame.length);
+        }
+        return frame;
+    }
+
+    @Override
+    public String toString() {
+        return payload.toString();
+    }
+}
@@ -0,0 +1,184 @@
+package Project.Server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.SequenceInputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+
+import Project.Common.FrameCodec;
+import Project.Common.Payload;
+
+/**
+ * Blocking ClientConnection backed by a plain Socket.
+ * The owning ServerThread's run() loop pulls frames via read(); a dedicated
+ * writer thread drains the OutboundQueue so a slow client only ever blocks its
+ * own writer.
+ * <p>
+ * A client from before framing starts with an ObjectOutputStream header where
+ * the first length would be. From then on the connection speaks that original
+ * unframed protocol: the client's objects are read with one ObjectInputStream
+ * and frames are written with FrameCodec.writeUnframed() after our own stream
+ * header. NioConnection hands such clients over to this class as well.
+ * </p>
+ */
+public class SocketConnection implements ClientConnection {
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    private final OutboundQueue outbound = new OutboundQueue();
+    // queued (compared by reference) to write our stream header to an unframed client
+    private static final byte[] OBJECT_STREAM_HEADER = ByteBuffer.allocate(FrameCodec.HEADER_SIZE)
+            .putInt(FrameCodec.OBJECT_STREAM_HEADER).array();
+    private boolean firstRead = true; // reader only
+    private ObjectInputStream objectIn; // reader only, set for unframed clients
+    private volatile boolean unframed = false;
+
+    /**
+     * @param socket
+     * @param threadFactory creates the writer thread (same kind as the reader)
+     * @throws IOException
+     */
+    public SocketConnection(Socket socket, ThreadFactory threadFactory) throws IOException {
+        this(socket, threadFactory, new byte[0]);
+    }
+
+    /**
+     * @param socket        blocking
+     * @param threadFactory creates the writer thread (same kind as the reader)
+     * @param alreadyRead   bytes taken off the socket before it was handed over,
+     *                      read again first
+     * @throws IOException
+     */
+    public SocketConnection(Socket socket, ThreadFactory threadFactory, byte[] alreadyRead) throws IOException {
+        this.socket = socket;
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.in = new DataInputStream(new BufferedInputStream(alreadyRead.length == 0 ? socket.getInputStream()
+                : new SequenceInputStream(new ByteArrayInputStream(alreadyRead), socket.getInputStream())));
+        threadFactory.newThread(this::drainOutbound).start();
+    }
+
+    /**
+     * Blocking read of the next Payload
+     * 
+     * @return the next Payload
+     * @throws IOException            EOFException when the client closed the
+     *                                socket
+     * @throws ClassNotFoundException
+     */
+    public Payload read() throws IOException, ClassNotFoundException {
+        if (objectIn != null) {
+            return (Payload) objectIn.readObject();
+        }
+        // FrameCodec.read() inlined to count the frame
+        int length = in.readInt();
+        if (firstRead) {
+            firstRead = false;
+            if (length == FrameCodec.OBJECT_STREAM_HEADER) {
+                switchToUnframed();
+                return read();
+            }
+        }
+        FrameCodec.checkLength(length);
+        byte[] body = new byte[length];
+        in.readFully(body);
+        WireStats.recordReceived(FrameCodec.HEADER_SIZE + length);
+        return FrameCodec.decode(body, 0, length);
+    }
+
+    /**
+     * Serves a client from before framing: answers with our own stream header
+     * (its ObjectInputStream waits for it before the client sends anything else)
+     * and reads the rest of the connection as the stream that started with the
+     * header just read
+     * 
+     * @throws IOException
+     */
+    private void switchToUnframed() throws IOException {
+        unframed = true;
+        queue(OBJECT_STREAM_HEADER, false, true);
+        objectIn = new ObjectInputStream(
+                new SequenceInputStream(new ByteArrayInputStream(OBJECT_STREAM_HEADER), in));
+    }
+
+    /**
+     * Writer loop: takes everything queued, writes it and flushes once per batch
+     */
+    private void drainOutbound() {
+        List<byte[]> batch = new ArrayList<>();
+        try {
+            while (outbound.awaitBatch(batch)) {
+                for (byte[] frame : batch) {
+                    if (frame == OBJECT_STREAM_HEADER || !unframed) {
+                        out.write(frame);
+                    } else {
+                        FrameCodec.writeUnframed(out, frame);
+                    }
+                    WireStats.recordSent(frame.length);
+                }
+                out.flush();
+                WireStats.recordSocketWrite();
+                batch.clear();
+            }
+        } catch (IOException | InterruptedException e) {
+            // socket closed or failed; the reader notices and cleans up
+        }
+        close();
+    }
+
+    @Override
+    public boolean write(byte[] frame, boolean droppable) {
+        return queue(frame, droppable, true);
+    }
+
+    @Override
+    public boolean writeHeld(byte[] frame, boolean droppable) {
+        return queue(frame, droppable, false);
+    }
+
+    private boolean queue(byte[] frame, boolean droppable, boolean wake) {
+        if (outbound.offer(frame, droppable, wake) == OutboundQueue.Result.OVERFLOW) {
+            return false; // the owner decides how to drop the client
+        }
+        if (outbound.getDepth() > outbound.getLimit() / 2) {
+            // virtual threads aren't preempted, a busy reader can starve the
+            // writers sharing its carrier; give them a turn before we overflow
+            outbound.wake();
+            Thread.yield();
+        }
+        return true;
+    }
+
+    @Override
+    public void flush() {
+        outbound.wake();
+    }
+
+    @Override
+    public void close() {
+        outbound.close();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !socket.isClosed();
+    }
+
+    @Override
+    public OutboundQueue getOutbound() {
+        return outbound;
+    }
+}
@@ -0,0 +1,111 @@
+package Project.Server;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server wide counters comparing how many frame bytes were encoded against how
+ * many were written to connections. With serialize-once broadcasts a room of N
+ * clients encodes a frame once and sends it N times.
+ */
+public final class WireStats {
+    private static final LongAdder framesReceived = new LongAdder();
+    private static final LongAdder bytesReceived = new LongAdder();
+    private static final LongAdder framesEncoded = new LongAdder();
+    private static final LongAdder bytesEncoded = new LongAdder();
+    private static final LongAdder framesSent = new LongAdder();
+    private static final LongAdder bytesSent = new LongAdder();
+    private static final LongAdder socketWrites = new LongAdder();
+    private static final LongAdder framesDropped = new LongAdder();
+    private static final LongAdder overflowDisconnects = new LongAdder();
+    private static final LongAdder timerResyncs = new LongAdder();
+
+    private WireStats() {
+    }
+
+    public static void recordReceived(int frameLength) {
+        framesReceived.increment();
+        bytesReceived.add(frameLength);
+    }
+
+    public static void recordEncoded(int frameLength) {
+        framesEncoded.increment();
+        bytesEncoded.add(frameLength);
+    }
+
+    public static void recordSent(int frameLength) {
+        framesSent.increment();
+        bytesSent.add(frameLength);
+    }
+
+    /**
+     * One write (flush or gathering write) to a socket, however many frames it
+     * carried
+     */
+    public static void recordSocketWrite() {
+        socketWrites.increment();
+    }
+
+    public static void recordDropped() {
+        framesDropped.increment();
+    }
+
+    public static void recordOverflowDisconnect() {
+        overflowDisconnects.increment();
+    }
+
+    public static void recordTimerResync() {
+        timerResyncs.increment();
+    }
+
+    public static long getFramesReceived() {
+        return framesReceived.sum();
+    }
+
+    public static long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    public static long getFramesEncoded() {
+        return framesEncoded.sum();
+    }
+
+    public static long getBytesEncoded() {
+        return bytesEncoded.sum();
+    }
+
+    public static long getFramesSent() {
+        return framesSent.sum();
+    }
+
+    public static long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    public static long getSocketWrites() {
+        return socketWrites.sum();
+    }
+
+    public static long getFramesDropped() {
+        return framesDropped.sum();
+    }
+
+    public static long getOverflowDisconnects() {
+        return overflowDisconnects.sum();
+    }
+
+    public static long getTimerResyncs() {
+        return timerResyncs.sum();
+    }
+
+    /**
+     * @return one line summary suitable for logging
+     */
+    public static String summary() {
+        long encoded = getBytesEncoded();
+        long sent = getBytesSent();
+        return String.format(
+                "Wire stats: received %s frames/%s bytes, encoded %s frames/%s bytes, sent %s frames/%s bytes (%.2fx fan-out) in %s socket writes, dropped %s frames, %s overflow disconnects, %s timer resyncs",
+                getFramesReceived(), getBytesReceived(), getFramesEncoded(), encoded, getFramesSent(), sent, encoded == 0 ? 0.0 : (double) sent / encoded,
+                getSocketWrites(), getFramesDropped(), getOverflowDisconnects(), getTimerResyncs());
+    }
+}
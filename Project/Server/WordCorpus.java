@@ -0,0 +1,347 @@
+package Project.Server;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import Project.Common.LoggerUtil;
+
+/**
+ * Process-wide, immutable word list shared by every GameRoom.
+ * <p>
+ * The file is read once through a memory-mapped buffer and its words are split
+ * into Difficulty tiers. Rooms don't copy the list; they walk it (or a tier)
+ * with their own Cursor, so creating a room does no I/O and picking a word
+ * allocates nothing.
+ * </p>
+ * A corpus never changes once built. WordWatcher parses a new one in the
+ * background when the file changes and swaps it in with reload(); rooms pick it
+ * up the next time they choose a word.
+ * The file is -Dgame.words (default Project/words.txt), one word per line.
+ */
+public final class WordCorpus {
+    public static final String WORDS_FILE = System.getProperty("game.words", "Project/words.txt");
+    // used when the words file is missing so games can still start
+    private static final String[] FALLBACK_WORDS = { "HANGMAN", "JAVA", "SERVER", "CLIENT", "SOCKET", "PAYLOAD",
+            "THREAD", "PUZZLE", "LETTER", "GUESS" };
+
+    // approximate English letter frequency per 1000 letters, A-Z
+    private static final int[] LETTER_FREQUENCY = { 82, 15, 28, 43, 127, 22, 20, 61, 70, 2, 8, 40, 24, 67, 75, 19,
+            1, 60, 63, 91, 28, 10, 24, 2, 20, 1 };
+
+    /**
+     * Word tiers by difficulty score, each holding roughly a third of the words
+     */
+    public enum Difficulty {
+        EASY, MEDIUM, HARD
+    }
+
+    private static volatile WordCorpus instance;
+
+    private final String[] words;
+    private final int[] scores;
+    private final int[][] tiers; // word indexes per Difficulty ordinal
+
+    private WordCorpus(String[] words) {
+        this.words = words;
+        this.scores = new int[words.length];
+        for (int i = 0; i < words.length; i++) {
+            scores[i] = difficultyScore(words[i], letterMask(words[i]));
+        }
+        this.tiers = splitTiers();
+    }
+
+    /**
+     * Higher is harder: every distinct letter is another guess to make (more so
+     * for rare letters), while repeated letters give away several blanks at once.
+     *
+     * @param word
+     * @param mask letterMask(word)
+     * @return
+     */
+    private static int difficultyScore(String word, int mask) {
+        int distinct = Integer.bitCount(mask);
+        int score = distinct * 10 - (word.length() - distinct) * 15;
+        for (int letter = 0; letter < 26; letter++) {
+            if ((mask & (1 << letter)) != 0) {
+                score += 128 - LETTER_FREQUENCY[letter];
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Orders word indexes by score and cuts them into thirds
+     */
+    private int[][] splitTiers() {
+        long[] ranked = new long[words.length];
+        for (int i = 0; i < words.length; i++) {
+            ranked[i] = ((long) scores[i] << 32) | i; // sorts by score, then index
+        }
+        Arrays.sort(ranked);
+        Difficulty[] difficulties = Difficulty.values();
+        int[][] result = new int[difficulties.length][];
+        int from = 0;
+        for (Difficulty difficulty : difficulties) {
+            int to = words.length * (difficulty.ordinal() + 1) / difficulties.length;
+            result[difficulty.ordinal()] = new int[to - from];
+            for (int i = from; i < to; i++) {
+                result[difficulty.ordinal()][i - from] = (int) ranked[i];
+            }
+            from = to;
+        }
+        return result;
+    }
+
+    /**
+     * @param word upper case word
+     * @return bit n set for every letter 'A' + n in the word
+     */
+    private static int letterMask(String word) {
+        int mask = 0;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                mask |= 1 << (c - 'A');
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the shared corpus, loading it on first use
+     *
+     * @return
+     */
+    public static WordCorpus get() {
+        WordCorpus corpus = instance;
+        if (corpus == null) {
+            synchronized (WordCorpus.class) {
+                corpus = instance;
+                if (corpus == null) {
+                    corpus = load(Path.of(WORDS_FILE));
+                    instance = corpus;
+                }
+            }
+        }
+        return corpus;
+    }
+
+    /**
+     * Reads a words file (memory-mapped) into a new corpus
+     *
+     * @param file
+     * @return the corpus, using the fallback words if the file can't be read or
+     *         is empty
+     */
+    public static WordCorpus load(Path file) {
+        long start = System.nanoTime();
+        List<String> words = new ArrayList<>();
+        try {
+            words = readWords(file);
+        } catch (NoSuchFileException e) {
+            LoggerUtil.INSTANCE.severe("Could not load words file: " + file);
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.severe("Could not load words file: " + file, e);
+        }
+        if (words.isEmpty()) {
+            LoggerUtil.INSTANCE.warning("Using the built-in fallback word list");
+            words = List.of(FALLBACK_WORDS);
+        }
+        WordCorpus corpus = new WordCorpus(words.toArray(new String[0]));
+        LoggerUtil.INSTANCE.info(String.format("Loaded %s words in %s ms", corpus.size(),
+                (System.nanoTime() - start) / 1_000_000));
+        return corpus;
+    }
+
+    /**
+     * Builds a new corpus from the file and makes it the shared one. Games in
+     * progress keep their current word; rooms switch on their next pick.
+     *
+     * @param file
+     * @return false (keeping the current corpus) if the file couldn't be read or
+     *         had no words
+     */
+    public static boolean reload(Path file) {
+        long start = System.nanoTime();
+        List<String> words;
+        try {
+            words = readWords(file);
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.warning(String.format("Keeping current words, could not read %s: %s", file, e));
+            return false;
+        }
+        if (words.isEmpty()) {
+            LoggerUtil.INSTANCE.warning(String.format("Keeping current words, %s has no words", file));
+            return false;
+        }
+        WordCorpus corpus = new WordCorpus(words.toArray(new String[0]));
+        instance = corpus;
+        LoggerUtil.INSTANCE.info(String.format("Reloaded %s words from %s in %s ms", corpus.size(), file,
+                (System.nanoTime() - start) / 1_000_000));
+        return true;
+    }
+
+    private static List<String> readWords(Path file) throws IOException {
+        List<String> words = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] line = new byte[64];
+            int length = 0;
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == '\n' || b == '\r') {
+                    addWord(words, line, length);
+                    length = 0;
+                    continue;
+                }
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, length * 2);
+                }
+                line[length++] = b;
+            }
+            addWord(words, line, length);
+        }
+        return words;
+    }
+
+    private static void addWord(List<String> words, byte[] line, int length) {
+        if (length == 0) {
+            return;
+        }
+        String word = new String(line, 0, length, StandardCharsets.UTF_8).trim().toUpperCase();
+        // HangmanState tracks positions in a 64 bit mask
+        if (!word.isEmpty() && word.length() <= HangmanState.MAX_LENGTH) {
+            words.add(word);
+        }
+    }
+
+    public int size() {
+        return words.length;
+    }
+
+    public String word(int index) {
+        return words[index];
+    }
+
+    /**
+     * @param difficulty
+     * @return indexes of the words in this tier, easiest first (don't modify)
+     */
+    public int[] wordsOfDifficulty(Difficulty difficulty) {
+        return tiers[difficulty.ordinal()];
+    }
+
+    /**
+     * @return a new per-room cursor over the whole corpus
+     */
+    public Cursor cursor() {
+        return new Cursor(this, null);
+    }
+
+    /**
+     * @param difficulty
+     * @return a new per-room cursor over one tier (the whole corpus if the tier
+     *         is empty)
+     */
+    public Cursor cursor(Difficulty difficulty) {
+        int[] tier = tiers[difficulty.ordinal()];
+        return new Cursor(this, tier.length > 0 ? tier : null);
+    }
+
+    /**
+     * Walks every word of a corpus (or tier) once, in a random order, before
+     * repeating.
+     * <p>
+     * Visits index (start + k * stride) mod n for k = 0..n-1; with stride
+     * coprime to n that's a permutation of all indexes, so no per-room list or
+     * "used" set is needed. A new start and stride are picked for each pass.
+     * </p>
+     * Not thread-safe; each room owns its own cursor.
+     */
+    public static class Cursor {
+        private final WordCorpus corpus;
+        private final int[] indexes; // null means every word
+        private final int n;
+        private int start;
+        private int stride;
+        private int step;
+
+        private Cursor(WordCorpus corpus, int[] indexes) {
+            this.corpus = corpus;
+            this.indexes = indexes;
+            this.n = indexes == null ? corpus.size() : indexes.length;
+            reshuffle();
+        }
+
+        private void reshuffle() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            start = random.nextInt(n);
+            stride = n == 1 ? 1 : 1 + random.nextInt(n - 1);
+            while (gcd(stride, n) != 1) {
+                stride = stride % (n - 1) + 1;
+            }
+            step = 0;
+        }
+
+        private static int gcd(int a, int b) {
+            while (b != 0) {
+                int t = a % b;
+                a = b;
+                b = t;
+            }
+            return a;
+        }
+
+        /**
+         * @return the next word; every word is returned once per pass
+         */
+        public String next() {
+            if (step == n) {
+                reshuffle();
+            }
+            int index = (int) ((start + (long) step * stride) % n);
+            step++;
+            return corpus.word(indexes == null ? index : indexes[index]);
+        }
+
+        public WordCorpus getCorpus() {
+            return corpus;
+        }
+    }
+
+    /**
+     * Loads the words file and prints tier stats
+     *
+     * @param args [words file]
+     */
+    public static void main(String[] args) {
+        LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
+        config.setLogLocation("wordcorpus.log");
+        LoggerUtil.INSTANCE.setConfig(config);
+        WordCorpus corpus = load(Path.of(args.length > 0 ? args[0] : WORDS_FILE));
+        for (Difficulty difficulty : Difficulty.values()) {
+            int[] tier = corpus.wordsOfDifficulty(difficulty);
+            if (tier.length > 0) {
+                System.out.println(String.format("%-6s: %s words, scores %s..%s, e.g. %s", difficulty, tier.length,
+                        corpus.scores[tier[0]], corpus.scores[tier[tier.length - 1]],
+                        corpus.cursor(difficulty).next()));
+            }
+        }
+        Cursor cursor = corpus.cursor();
+        java.util.Set<String> seen = new java.util.HashSet<>();
+        for (int i = 0; i < corpus.size(); i++) {
+            seen.add(cursor.next());
+        }
+        System.out.println(String.format("one cursor pass returned %s distinct of %s words", seen.size(),
+                corpus.size()));
+    }
+}
@@ -0,0 +1,141 @@
+package Project.Server;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+import Project.Common.LoggerUtil;
+
+/**
+ * Watches the words file's directory and reloads the shared WordCorpus when
+ * the file is created, replaced or modified, so word lists can be rotated
+ * without a restart.
+ * <p>
+ * Only events for the words file's own name count: a create (which is also
+ * what renaming another file onto it looks like) or a modify reloads, a delete
+ * (or renaming it away) keeps the current corpus until the name shows up
+ * again, and changes to any other file in the directory are ignored. Whatever
+ * happened last to the name during the debounce window wins.
+ * </p>
+ * <p>
+ * Parsing happens on this watcher's own daemon thread; rooms keep playing on
+ * the old corpus until WordCorpus.reload() swaps in the new one.
+ * Replace the file with a move (mv new.txt words.txt) so a half written file
+ * is never read; in place edits are debounced but could still be caught
+ * mid-write.
+ * </p>
+ * Disable with -Dgame.words.watch=false.
+ */
+public enum WordWatcher {
+    INSTANCE;
+
+    // quiet time after the last change before reloading
+    private static final long DEBOUNCE_MS = 250;
+
+    /**
+     * What the events seen so far mean for the words file
+     */
+    private enum Change {
+        NONE, CHANGED, GONE
+    }
+
+    private WatchService watchService;
+    private Thread thread;
+
+    /**
+     * Loads the corpus (if it isn't yet) and starts watching its file
+     */
+    public synchronized void start() {
+        WordCorpus.get();
+        if (thread != null || !Boolean.parseBoolean(System.getProperty("game.words.watch", "true"))) {
+            return;
+        }
+        Path file = Path.of(WordCorpus.WORDS_FILE).toAbsolutePath();
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.warning(String.format("Not watching %s for changes: %s", file, e));
+            return;
+        }
+        thread = Thread.ofPlatform().name("WordWatcher").daemon(true).start(() -> watch(file));
+        LoggerUtil.INSTANCE.info("Watching for word list changes: " + file);
+    }
+
+    /**
+     * Stops watching; the current corpus stays in use
+     */
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        try {
+            watchService.close(); // wakes the watcher with ClosedWatchServiceException
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        thread = null;
+    }
+
+    private void watch(Path file) {
+        Path name = file.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Change change = Change.NONE;
+                // keep collecting until the directory has been quiet for a bit
+                while (key != null) {
+                    change = changeOf(key, name, change);
+                    if (!key.reset()) {
+                        LoggerUtil.INSTANCE.warning("Stopped watching for word list changes, "
+                                + file.getParent() + " is gone");
+                        return;
+                    }
+                    key = watchService.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+                }
+                if (change == Change.CHANGED) {
+                    WordCorpus.reload(file);
+                } else if (change == Change.GONE) {
+                    LoggerUtil.INSTANCE.info(String.format("Keeping current words, %s was removed", file));
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // stop() was called
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LoggerUtil.INSTANCE.severe("Word watcher stopped", e);
+        }
+    }
+
+    /**
+     * Folds a key's events into what's known about the words file so far
+     *
+     * @param key
+     * @param name   the words file's name
+     * @param change what the earlier events meant
+     * @return
+     */
+    private Change changeOf(WatchKey key, Path name, Change change) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            WatchEvent.Kind<?> kind = event.kind();
+            if (kind == StandardWatchEventKinds.OVERFLOW) {
+                change = Change.CHANGED; // events were lost, it may have been replaced
+            } else if (!name.equals(event.context())) {
+                continue; // some other file in the directory
+            } else if (kind == StandardWatchEventKinds.ENTRY_CREATE || kind == StandardWatchEventKinds.ENTRY_MODIFY) {
+                change = Change.CHANGED;
+            } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+                change = Change.GONE;
+            }
+        }
+        return change;
+    }
+}
@@ -0,0 +1,152 @@
+package Project.Tools;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import Project.Server.HangmanState;
+
+/**
+ * Benchmark: HangmanState against the HashSet based word logic GameRoom used
+ * before it.
+ * <p>
+ * Each operation plays one word to the end: guess letters in frequency order
+ * and, after every guess, do what GameRoom does (points for the letter, the
+ * masked display, the completion check and the solve bonus). Reports ns and
+ * bytes allocated per game for both implementations after a warmup.
+ * </p>
+ * Usage: java Project.Tools.HangmanBench [games=200000]
+ */
+public class HangmanBench {
+    private static final String GUESS_ORDER = "ETAOINSHRDLUCMWFGYPBVKJXQZ";
+
+    /**
+     * The previous GameRoom implementation, kept here for comparison
+     */
+    private static class LegacyState {
+        String currentWord;
+        Set<Character> guessedLetters = new HashSet<>();
+
+        String getWordDisplay() {
+            StringBuilder display = new StringBuilder();
+            for (char c : currentWord.toCharArray()) {
+                if (guessedLetters.contains(c)) {
+                    display.append(c);
+                } else {
+                    display.append('_');
+                }
+                display.append(' ');
+            }
+            return display.toString().trim();
+        }
+
+        boolean isWordComplete() {
+            for (char c : currentWord.toCharArray()) {
+                if (!guessedLetters.contains(c)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int calculateLetterPoints(char letter) {
+            int count = 0;
+            for (char c : currentWord.toCharArray()) {
+                if (c == letter && !guessedLetters.contains(c)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        int calculateWordPoints() {
+            int emptySpaces = 0;
+            for (char c : currentWord.toCharArray()) {
+                if (!guessedLetters.contains(c)) {
+                    emptySpaces++;
+                }
+            }
+            return emptySpaces * 2;
+        }
+    }
+
+    private static long playLegacy(LegacyState state, String word) {
+        long sink = 0;
+        state.currentWord = word;
+        state.guessedLetters.clear();
+        for (int i = 0; i < GUESS_ORDER.length(); i++) {
+            char letter = GUESS_ORDER.charAt(i);
+            sink += state.calculateLetterPoints(letter);
+            state.guessedLetters.add(letter);
+            sink += state.getWordDisplay().length();
+            sink += state.calculateWordPoints();
+            if (state.isWordComplete()) {
+                break;
+            }
+        }
+        return sink;
+    }
+
+    private static long playBitmask(HangmanState state, String word) {
+        long sink = 0;
+        state.reset(word);
+        for (int i = 0; i < GUESS_ORDER.length(); i++) {
+            char letter = GUESS_ORDER.charAt(i);
+            sink += state.getLetterPoints(letter);
+            state.guess(letter);
+            sink += state.getDisplay().length();
+            sink += state.getWordPoints();
+            if (state.isComplete()) {
+                break;
+            }
+        }
+        return sink;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getCurrentThreadAllocatedBytes();
+    }
+
+    private interface Game {
+        long play(String word);
+    }
+
+    private static void measure(String name, Game game, String[] words, int games) {
+        long sink = 0;
+        // warmup so both run compiled
+        for (int i = 0; i < Math.min(games, 50_000); i++) {
+            sink += game.play(words[i % words.length]);
+        }
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < games; i++) {
+            sink += game.play(words[i % words.length]);
+        }
+        long elapsed = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+        System.out.println(String.format("%-8s %8.1f ns/game %8.1f bytes/game (checksum %s)", name,
+                (double) elapsed / games, (double) bytes / games, sink));
+    }
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        Random random = new Random(1);
+        String[] words = new String[1024];
+        for (int i = 0; i < words.length; i++) {
+            char[] chars = new char[4 + random.nextInt(9)];
+            for (int c = 0; c < chars.length; c++) {
+                chars[c] = (char) ('A' + random.nextInt(26));
+            }
+            words[i] = new String(chars);
+        }
+        LegacyState legacy = new LegacyState();
+        HangmanState bitmask = new HangmanState();
+        for (int round = 1; round <= 2; round++) {
+            System.out.println("Round " + round);
+            measure("legacy", word -> playLegacy(legacy, word), words, games);
+            measure("bitmask", word -> playBitmask(bitmask, word), words, games);
+        }
+    }
+}
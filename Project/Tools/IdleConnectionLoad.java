@@ -0,0 +1,237 @@
+package Project.Tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import Project.Common.ConnectionPayload;
+import Project.Common.FrameCodec;
+import Project.Common.PayloadType;
+
+/**
+ * Load test: how many idle (connected and named) clients each engine holds
+ * inside a fixed heap.
+ * <p>
+ * For every engine a child server JVM is started with -Xmx set, then
+ * connections are added in steps until the server dies, stops completing
+ * handshakes, or the connection cap is reached.
+ * </p>
+ * Usage: java Project.Tools.IdleConnectionLoad [heap=64m] [max=4000] [step=250]
+ * [engines=nio,virtual,blocking]
+ */
+public class IdleConnectionLoad {
+    private static final int PORT = 3999;
+    private static final long STEP_TIMEOUT_MS = 30_000;
+    // connections opened before waiting for their handshakes; small enough that
+    // the server's 3 second name timeout doesn't trip on a burst
+    private static final int BATCH = 25;
+
+    private final Selector selector;
+    private final List<SocketChannel> channels = new ArrayList<>();
+    private int handshakes = 0;
+
+    /**
+     * Per channel read state; only the first frame (CLIENT_ID) is decoded, the
+     * rest is drained so the server never blocks on a full socket
+     */
+    private static class ReadState {
+        final ByteBuffer header = ByteBuffer.allocate(FrameCodec.HEADER_SIZE);
+        ByteBuffer body;
+        boolean sawClientId = false;
+    }
+
+    private IdleConnectionLoad() throws IOException {
+        selector = Selector.open();
+    }
+
+    private void open(int count) throws IOException {
+        byte[] connect = connectFrame();
+        for (int i = 0; i < count; i++) {
+            SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", PORT));
+            channel.write(ByteBuffer.wrap(connect));
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, new ReadState());
+            channels.add(channel);
+        }
+    }
+
+    private static byte[] connectFrame() throws IOException {
+        ConnectionPayload payload = new ConnectionPayload();
+        payload.setPayloadType(PayloadType.CLIENT_CONNECT);
+        payload.setClientName("idle");
+        return FrameCodec.encode(payload);
+    }
+
+    /**
+     * Reads until every open channel completed its handshake or the timeout hits
+     *
+     * @return true if all handshakes completed
+     */
+    private boolean awaitHandshakes(long timeoutMs) throws IOException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (handshakes < channels.size()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            selector.select(remaining);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                drain(key);
+            }
+        }
+        return true;
+    }
+
+    private void drain(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        ReadState state = (ReadState) key.attachment();
+        while (true) {
+            ByteBuffer target = state.body == null ? state.header : state.body;
+            int read;
+            try {
+                read = channel.read(target);
+            } catch (IOException e) {
+                read = -1;
+            }
+            if (read < 0) {
+                key.cancel();
+                channel.close();
+                return;
+            }
+            if (target.hasRemaining()) {
+                return; // wait for more bytes
+            }
+            if (state.body == null) {
+                int length = state.header.flip().getInt();
+                state.header.clear();
+                state.body = ByteBuffer.allocate(length);
+                continue;
+            }
+            if (!state.sawClientId) {
+                try {
+                    if (FrameCodec.decode(state.body.array(), 0, state.body.capacity())
+                            .getPayloadType() == PayloadType.CLIENT_ID) {
+                        state.sawClientId = true;
+                        handshakes++;
+                    }
+                } catch (ClassNotFoundException e) {
+                    // ignore, not the frame we're looking for
+                }
+            }
+            state.body = null;
+        }
+    }
+
+    private void closeAll() {
+        for (SocketChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private static long rssKb(Process process) {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc", String.valueOf(process.pid()), "status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (Exception e) {
+            // not linux or process gone
+        }
+        return -1;
+    }
+
+    private static Process startServer(String heap, String engine) throws IOException, InterruptedException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        File workDir = Files.createTempDirectory("idle-load-" + engine).toFile(); // keeps server logs out of the repo
+        Process process = new ProcessBuilder(java, "-Xmx" + heap, "-cp", System.getProperty("java.class.path"),
+                "Project.Server.Server", String.valueOf(PORT), engine)
+                .directory(workDir)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        // wait for the port to open
+        for (int i = 0; i < 100; i++) {
+            try {
+                new Socket("localhost", PORT).close();
+                return process;
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+        process.destroyForcibly();
+        throw new IOException("Server didn't start");
+    }
+
+    private static String run(String heap, String engine, int max, int step) throws Exception {
+        Process server = startServer(heap, engine);
+        IdleConnectionLoad load = new IdleConnectionLoad();
+        String reason = "reached cap";
+        try {
+            while (load.channels.size() < max) {
+                int target = Math.min(load.channels.size() + step, max);
+                boolean complete = true;
+                try {
+                    while (complete && load.channels.size() < target) {
+                        load.open(Math.min(BATCH, target - load.channels.size()));
+                        complete = load.awaitHandshakes(STEP_TIMEOUT_MS);
+                    }
+                } catch (IOException e) {
+                    reason = "connect failed: " + e.getMessage();
+                    break;
+                }
+                System.out.println(String.format("  %s: %s/%s handshakes, server rss %s KB", engine,
+                        load.handshakes, load.channels.size(), rssKb(server)));
+                if (!server.isAlive()) {
+                    reason = "server died";
+                    break;
+                }
+                if (!complete) {
+                    reason = "handshakes stalled";
+                    break;
+                }
+            }
+            return String.format("%-9s heap=%-5s held=%-6s rss=%sKB (%s)", engine, heap, load.handshakes,
+                    rssKb(server), reason);
+        } finally {
+            load.closeAll();
+            server.destroyForcibly().waitFor();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String heap = args.length > 0 ? args[0] : "64m";
+        int max = args.length > 1 ? Integer.parseInt(args[1]) : 4000;
+        int step = args.length > 2 ? Integer.parseInt(args[2]) : 250;
+        String[] engines = (args.length > 3 ? args[3] : "nio,virtual,blocking").split(",");
+        List<String> results = new ArrayList<>();
+        for (String engine : engines) {
+            System.out.println("Running " + engine);
+            results.add(run(heap, engine, max, step));
+        }
+        System.out.println("Idle connections held:");
+        results.forEach(System.out::println);
+    }
+}
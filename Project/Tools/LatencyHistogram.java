@@ -0,0 +1,93 @@
+package Project.Tools;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, thread-safe latency histogram in the style of HdrHistogram.
+ * <p>
+ * Values (microseconds) below 128 get their own bucket; above that each power
+ * of two is split into 64 linear buckets, so any recorded value is reported
+ * within 1/64 (about 1.6%) of its real value while the whole range up to
+ * roughly 17 minutes fits in about 2000 counters. Recording is a couple of
+ * shifts and one atomic increment.
+ * </p>
+ */
+public class LatencyHistogram {
+    private static final int LINEAR = 128; // values below this are exact
+    private static final int SUB_BUCKETS = 64; // buckets per power of two above that
+    private static final int MAGNITUDES = 24;
+
+    private final AtomicLongArray counts = new AtomicLongArray(LINEAR + MAGNITUDES * SUB_BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    private static int indexOf(long value) {
+        if (value < LINEAR) {
+            return (int) Math.max(0, value);
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value) - 6; // keeps the top 7 bits
+        if (magnitude > MAGNITUDES) {
+            return LINEAR + MAGNITUDES * SUB_BUCKETS - 1;
+        }
+        return LINEAR + (magnitude - 1) * SUB_BUCKETS + (int) ((value >>> magnitude) - SUB_BUCKETS);
+    }
+
+    /**
+     * @param index
+     * @return the highest value that lands in this bucket
+     */
+    private static long highestValueAt(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int magnitude = (index - LINEAR) / SUB_BUCKETS + 1;
+        long subBucket = (index - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << magnitude) - 1;
+    }
+
+    /**
+     * @param micros
+     */
+    public void record(long micros) {
+        counts.incrementAndGet(indexOf(micros));
+        total.incrementAndGet();
+        sum.addAndGet(micros);
+        max.accumulateAndGet(micros, Math::max);
+    }
+
+    public long getCount() {
+        return total.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = total.get();
+        return count == 0 ? 0 : (double) sum.get() / count;
+    }
+
+    /**
+     * @param percentile 0-100
+     * @return the value at or below which this percentage of samples fall (0 if
+     *         empty)
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = total.get();
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestValueAt(i), getMax());
+            }
+        }
+        return getMax();
+    }
+}
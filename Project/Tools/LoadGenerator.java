@@ -0,0 +1,377 @@
+package Project.Tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import Project.Common.BinaryCodec;
+import Project.Common.ConnectionPayload;
+import Project.Common.Constants;
+import Project.Common.FrameCodec;
+import Project.Common.Payload;
+import Project.Common.PayloadType;
+import Project.Common.Phase;
+import Project.Common.ReadyPayload;
+import Project.Common.RosterPayload;
+import Project.Common.WireFormat;
+import Project.Server.Room;
+
+/**
+ * Load test: headless players against a running server.
+ * <p>
+ * Opens the given number of connections speaking the same protocol as
+ * Project.Client.Client (binary codec offered in CLIENT_CONNECT). Players are
+ * grouped into rooms: the first of each group sends ROOM_CREATE, the rest
+ * ROOM_JOIN. Everyone readies up whenever the room is in the READY phase and,
+ * when told it's their turn, waits the think time and sends a TURN command
+ * (letter X, guess WORD or skip). Each player also sends a chat MESSAGE every
+ * few seconds.
+ * </p>
+ * <p>
+ * Latency is measured from sending a request to the server's answer on the same
+ * connection and kept per request PayloadType:
+ * CLIENT_CONNECT -> CLIENT_ID, ROOM_CREATE/ROOM_JOIN -> our ROOM_JOIN,
+ * READY -> our READY status, TURN -> the "finished their turn" relay,
+ * MESSAGE -> the relayed message.
+ * </p>
+ * Start the server first (i.e., java -Dgame.ready.seconds=5 Project.Server.Server
+ * 3000).
+ * Usage: java Project.Tools.LoadGenerator [clients=100] [roomSize=4]
+ * [seconds=60] [thinkMs=500] [chatMs=5000] [host=localhost] [port=3000]
+ */
+public class LoadGenerator {
+    private static final String[] GUESSES = { "HANGMAN", "JAVA", "SERVER", "CLIENT", "SOCKET", "PAYLOAD" };
+
+    private final String host;
+    private final int port;
+    private final long thinkMs;
+    private final long chatMs;
+    private final String runId = Long.toString(System.currentTimeMillis() % 100_000, 36);
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2,
+            Thread.ofPlatform().name("LoadScheduler-", 0).daemon(true).factory());
+    private final Map<PayloadType, LatencyHistogram> latencies = new EnumMap<>(PayloadType.class);
+    private final AtomicLongArray received = new AtomicLongArray(PayloadType.values().length);
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder notYourTurn = new LongAdder();
+    private final LongAdder connectFailures = new LongAdder();
+    private volatile boolean running = true;
+
+    private LoadGenerator(String host, int port, long thinkMs, long chatMs) {
+        this.host = host;
+        this.port = port;
+        this.thinkMs = thinkMs;
+        this.chatMs = chatMs;
+        for (PayloadType type : PayloadType.values()) {
+            latencies.put(type, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * One simulated player
+     */
+    private class Player {
+        final String name;
+        final String roomName;
+        final boolean creator;
+        final CompletableFuture<Void> roomCreated; // completed once the creator is in the room
+        Socket socket;
+        DataOutputStream out;
+        long clientId = Constants.DEFAULT_CLIENT_ID;
+        String displayName;
+        volatile boolean inRoom = false;
+        // send time of the request waiting for its answer, 0 when none
+        final AtomicLong connectSent = new AtomicLong();
+        final AtomicLong roomSent = new AtomicLong();
+        final AtomicLong readySent = new AtomicLong();
+        final AtomicLong turnSent = new AtomicLong();
+        final Map<String, Long> chatSent = new ConcurrentHashMap<>();
+        PayloadType roomRequest;
+        long chatSequence = 0;
+
+        Player(int index, String roomName, boolean creator, CompletableFuture<Void> roomCreated) {
+            this.name = "bot" + index;
+            this.roomName = roomName;
+            this.creator = creator;
+            this.roomCreated = roomCreated;
+        }
+
+        void connect() throws IOException {
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            Thread.ofVirtual().name("Load-" + name).start(this::readLoop);
+            ConnectionPayload payload = new ConnectionPayload();
+            payload.setPayloadType(PayloadType.CLIENT_CONNECT);
+            payload.setClientName(name);
+            payload.setCodecVersion(BinaryCodec.VERSION);
+            send(payload, connectSent);
+        }
+
+        void send(Payload payload, AtomicLong pending) {
+            if (!running) {
+                return;
+            }
+            try {
+                synchronized (this) {
+                    if (pending != null) {
+                        pending.set(System.nanoTime());
+                    }
+                    FrameCodec.write(out, payload, WireFormat.BINARY);
+                    out.flush();
+                }
+                sent.increment();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void readLoop() {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                while (running) {
+                    Payload payload = FrameCodec.read(in);
+                    received.incrementAndGet(payload.getPayloadType().ordinal());
+                    onPayload(payload);
+                }
+            } catch (Exception e) {
+                // closed by the server or at the end of the run
+            }
+        }
+
+        void onPayload(Payload payload) {
+            switch (payload.getPayloadType()) {
+                case CLIENT_ID:
+                    clientId = payload.getClientId();
+                    displayName = String.format("%s#%s", name, clientId);
+                    answered(PayloadType.CLIENT_CONNECT, connectSent);
+                    break;
+                case ROOM_JOIN:
+                    if (payload.getClientId() == clientId) {
+                        onJoined(payload.getMessage());
+                    }
+                    break;
+                case ROOM_DIFF:
+                    // joins and ready changes arrive as roster rows on the current codec
+                    RosterPayload roster = (RosterPayload) payload;
+                    for (int i = 0; i < roster.size(); i++) {
+                        if (roster.getMemberId(i) != clientId) {
+                            continue;
+                        }
+                        if (roster.hasFlag(i, RosterPayload.JOINED)) {
+                            onJoined(roster.getMessage());
+                        } else if (roster.hasFlag(i, RosterPayload.READY)) {
+                            answered(PayloadType.READY, readySent);
+                        }
+                    }
+                    break;
+                case PHASE:
+                    if (inRoom && Phase.READY.name().equals(payload.getMessage())) {
+                        later(() -> send(typed(new ReadyPayload(), PayloadType.READY), readySent));
+                    }
+                    break;
+                case READY:
+                    if (payload.getClientId() == clientId) {
+                        answered(PayloadType.READY, readySent);
+                    }
+                    break;
+                case TURN:
+                    if (payload.getClientId() == clientId && payload instanceof ReadyPayload rp && rp.isReady()
+                            && turnSent.get() == 0) {
+                        later(this::takeTurn);
+                    }
+                    break;
+                case MESSAGE:
+                    onMessage(payload);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        void onJoined(String room) {
+            if (Room.LOBBY.equals(room) && !inRoom) {
+                // room commands are only handled once we're in the lobby
+                if (creator) {
+                    enterRoom();
+                } else {
+                    roomCreated.thenRun(this::enterRoom);
+                }
+            } else if (roomName.equals(room)) {
+                answered(roomRequest, roomSent);
+                inRoom = true;
+                if (creator) {
+                    roomCreated.complete(null);
+                }
+                scheduleChat();
+            }
+        }
+
+        void onMessage(Payload payload) {
+            String message = payload.getMessage();
+            if (message == null) {
+                return;
+            }
+            if (payload.getClientId() == clientId) {
+                Long sentAt = chatSent.remove(message);
+                if (sentAt != null) {
+                    latencies.get(PayloadType.MESSAGE).record((System.nanoTime() - sentAt) / 1000);
+                }
+            } else if (payload.getClientId() == Constants.DEFAULT_CLIENT_ID) {
+                if (displayName != null && message.startsWith(displayName + " finished their turn")) {
+                    answered(PayloadType.TURN, turnSent);
+                } else if (message.startsWith("It's not your turn")) {
+                    notYourTurn.increment();
+                    turnSent.set(0);
+                }
+            }
+        }
+
+        void enterRoom() {
+            Payload payload = new Payload();
+            payload.setMessage(roomName);
+            roomRequest = creator ? PayloadType.ROOM_CREATE : PayloadType.ROOM_JOIN;
+            payload.setPayloadType(roomRequest);
+            send(payload, roomSent);
+        }
+
+        void takeTurn() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int roll = random.nextInt(100);
+            String command = roll < 75 ? "letter " + (char) ('A' + random.nextInt(26))
+                    : roll < 85 ? "guess " + GUESSES[random.nextInt(GUESSES.length)] : "skip";
+            send(typed(new ReadyPayload(), PayloadType.TURN, command), turnSent);
+        }
+
+        void scheduleChat() {
+            if (chatMs <= 0) {
+                return;
+            }
+            long initialDelay = ThreadLocalRandom.current().nextLong(chatMs);
+            scheduler.scheduleAtFixedRate(() -> {
+                String message = String.format("%s ping %s", name, chatSequence++);
+                chatSent.put(message, System.nanoTime());
+                send(typed(new Payload(), PayloadType.MESSAGE, message), null);
+            }, initialDelay, chatMs, TimeUnit.MILLISECONDS);
+        }
+
+        void answered(PayloadType request, AtomicLong pending) {
+            long sentAt = pending.getAndSet(0);
+            if (sentAt != 0 && request != null) {
+                latencies.get(request).record((System.nanoTime() - sentAt) / 1000);
+            }
+        }
+
+        void later(Runnable action) {
+            long delay = thinkMs <= 0 ? 0 : ThreadLocalRandom.current().nextLong(thinkMs / 2, thinkMs * 3 / 2 + 1);
+            scheduler.schedule(action, delay, TimeUnit.MILLISECONDS);
+        }
+
+        void close() {
+            try {
+                if (socket != null) {
+                    socket.close();
+                }
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+
+    private static <T extends Payload> T typed(T payload, PayloadType type) {
+        payload.setPayloadType(type);
+        if (payload instanceof ReadyPayload rp) {
+            rp.setReady(true);
+        }
+        return payload;
+    }
+
+    private static <T extends Payload> T typed(T payload, PayloadType type, String message) {
+        typed(payload, type).setMessage(message);
+        return payload;
+    }
+
+    private void run(int clients, int roomSize, int seconds) throws InterruptedException {
+        List<Player> players = new ArrayList<>(clients);
+        CompletableFuture<Void> roomCreated = null;
+        for (int i = 0; i < clients; i++) {
+            if (i % roomSize == 0) {
+                roomCreated = new CompletableFuture<>();
+            }
+            players.add(new Player(i, String.format("load-%s-%s", runId, i / roomSize), i % roomSize == 0,
+                    roomCreated));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            try {
+                players.get(i).connect();
+            } catch (IOException e) {
+                connectFailures.increment();
+            }
+            if (i % 50 == 49) {
+                Thread.sleep(20); // small ramp so the accept backlog isn't flooded
+            }
+        }
+        System.out.println(String.format("Connected %s players (%s failed) in %s ms, running for %ss", clients,
+                connectFailures.sum(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), seconds));
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        running = false;
+        long elapsedNanos = System.nanoTime() - start;
+        players.forEach(Player::close);
+        report(elapsedNanos / 1e9);
+    }
+
+    private void report(double elapsedSeconds) {
+        System.out.println(String.format("%-14s %8s %9s %9s %9s %9s %9s", "request", "count", "per sec", "p50 ms",
+                "p99 ms", "p999 ms", "max ms"));
+        for (Map.Entry<PayloadType, LatencyHistogram> entry : latencies.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            System.out.println(String.format("%-14s %8s %9.1f %9.2f %9.2f %9.2f %9.2f", entry.getKey(),
+                    histogram.getCount(), histogram.getCount() / elapsedSeconds,
+                    histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMax() / 1000.0));
+        }
+        long totalReceived = 0;
+        StringBuilder byType = new StringBuilder();
+        for (PayloadType type : PayloadType.values()) {
+            long count = received.get(type.ordinal());
+            totalReceived += count;
+            if (count > 0) {
+                byType.append(' ').append(type).append('=').append(count);
+            }
+        }
+        System.out.println(String.format("sent %s payloads (%.1f/s), received %s (%.1f/s):%s", sent.sum(),
+                sent.sum() / elapsedSeconds, totalReceived, totalReceived / elapsedSeconds, byType));
+        System.out.println(String.format("'not your turn' replies: %s", notYourTurn.sum()));
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int roomSize = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+        long thinkMs = args.length > 3 ? Long.parseLong(args[3]) : 500;
+        long chatMs = args.length > 4 ? Long.parseLong(args[4]) : 5000;
+        String host = args.length > 5 ? args[5] : "localhost";
+        int port = args.length > 6 ? Integer.parseInt(args[6]) : 3000;
+        new LoadGenerator(host, port, thinkMs, chatMs).run(clients, roomSize, seconds);
+        System.exit(0);
+    }
+}
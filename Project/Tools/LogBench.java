@@ -0,0 +1,108 @@
+package Project.Tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+import Project.Common.LoggerUtil;
+
+/**
+ * Benchmark: LoggerUtil calls per second from many threads.
+ * <p>
+ * LoggerUtil is configured once per JVM, so each mode runs in its own child
+ * process: synchronous (the previous behavior), async, and async without
+ * caller lookup. Threads log to a file (console off) for the given time; the
+ * rate includes waiting for the async writer to finish. A last mode logs at a
+ * disabled level to compare eager String.format() messages with Supplier ones.
+ * </p>
+ * Usage: java Project.Tools.LogBench [threads=64] [seconds=5]
+ */
+public class LogBench {
+    private static final String[] MODES = { "sync", "async", "async-nocaller", "disabled" };
+
+    private static void runChild(String mode, int threads, int seconds) throws Exception {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        File workDir = Files.createTempDirectory("log-bench-" + mode).toFile(); // keeps bench logs out of the repo
+        Process process = new ProcessBuilder(java, "-cp", new File(System.getProperty("java.class.path"))
+                .getAbsolutePath(), LogBench.class.getName(), "--child", mode, String.valueOf(threads),
+                String.valueOf(seconds))
+                .directory(workDir)
+                .redirectErrorStream(true)
+                .start();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                System.out.println(line);
+            }
+        }
+        process.waitFor();
+    }
+
+    private static void child(String mode, int threads, int seconds) throws InterruptedException {
+        LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
+        config.setLogLocation("bench.log");
+        config.setFileSizeLimit(64 * 1024 * 1024);
+        config.setFileCount(1);
+        config.setConsoleLogLevel(Level.OFF);
+        config.setFileLogLevel(mode.equals("disabled") ? Level.INFO : Level.ALL);
+        config.setAsync(mode.startsWith("async"));
+        config.setCallerInfo(!mode.equals("async-nocaller"));
+        LoggerUtil.INSTANCE.setConfig(config);
+
+        if (mode.equals("disabled")) {
+            measure("disabled eager", threads, seconds,
+                    i -> LoggerUtil.INSTANCE.fine(String.format("Thread[%s]: tick %s", i & 63, i)));
+            measure("disabled supplier", threads, seconds,
+                    i -> LoggerUtil.INSTANCE.fine(() -> String.format("Thread[%s]: tick %s", i & 63, i)));
+            return;
+        }
+        measure(mode, threads, seconds, i -> LoggerUtil.INSTANCE.info("Thread[" + (i & 63) + "]: tick " + i));
+    }
+
+    private interface LogCall {
+        void log(long i);
+    }
+
+    private static void measure(String name, int threads, int seconds, LogCall call) throws InterruptedException {
+        LongAdder calls = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Thread.ofPlatform().name("Bench-" + t).start(() -> {
+                long i = 0;
+                while ((i & 63) != 0 || System.nanoTime() < deadline) {
+                    call.log(i++);
+                }
+                calls.add(i);
+                done.countDown();
+            });
+        }
+        done.await();
+        long logged = System.nanoTime();
+        LoggerUtil.INSTANCE.flush(); // count the time to get everything on disk
+        long end = System.nanoTime();
+        System.out.println(String.format("%-18s %,12.0f calls/s (%,d calls, %s ms waiting for the writer)", name,
+                calls.sum() * 1e9 / (end - start), calls.sum(), TimeUnit.NANOSECONDS.toMillis(end - logged)));
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--child")) {
+            child(args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            System.exit(0);
+        }
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        System.out.println(String.format("%s threads, %ss per mode, %s cores", threads, seconds,
+                Runtime.getRuntime().availableProcessors()));
+        for (String mode : MODES) {
+            runChild(mode, threads, seconds);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package Project.Tools;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import Project.Common.TimedEvent;
+import Project.Common.TimerScheduler;
+
+/**
+ * Benchmark: many concurrent TimedEvents on the shared TimerScheduler.
+ * <p>
+ * Starts the given number of countdowns (2 to 5 seconds, with tick
+ * callbacks), waits for every one to expire and reports live threads, tick
+ * throughput and how late expirations fired. A smaller run with one
+ * java.util.Timer per countdown (the previous TimedEvent implementation) is
+ * included for comparison.
+ * </p>
+ * Usage: java Project.Tools.TimerLoad [timers=100000] [legacyTimers=2000]
+ */
+public class TimerLoad {
+
+    private static int liveThreads() {
+        return ManagementFactory.getThreadMXBean().getThreadCount();
+    }
+
+    private static long usedHeapMb() {
+        Runtime rt = Runtime.getRuntime();
+        return (rt.totalMemory() - rt.freeMemory()) / (1024 * 1024);
+    }
+
+    private static void runShared(int count) throws InterruptedException {
+        Random random = new Random(1);
+        CountDownLatch expired = new CountDownLatch(count);
+        LongAdder ticks = new LongAdder();
+        AtomicLong maxLateMs = new AtomicLong();
+        LongAdder totalLateMs = new LongAdder();
+        int threadsBefore = liveThreads();
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            int seconds = 2 + random.nextInt(4);
+            long due = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            TimedEvent event = new TimedEvent(seconds, () -> {
+                long late = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - due);
+                totalLateMs.add(late);
+                maxLateMs.accumulateAndGet(late, Math::max);
+                expired.countDown();
+            });
+            event.setTickCallback(time -> ticks.increment());
+        }
+        long createdMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.out.println(String.format("  scheduled %s timers in %s ms, pending=%s, heap=%s MB", count, createdMs,
+                TimerScheduler.INSTANCE.getPendingCount(), usedHeapMb()));
+        int peakThreads = liveThreads();
+        while (!expired.await(500, TimeUnit.MILLISECONDS)) {
+            peakThreads = Math.max(peakThreads, liveThreads());
+        }
+        long totalMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.out.println(String.format(
+                "shared   timers=%-7s threads=+%s (scheduler pool %s) ticks=%s in %s ms, expiry late avg=%.1f ms max=%s ms",
+                count, peakThreads - threadsBefore, TimerScheduler.INSTANCE.getThreadCount(), ticks.sum(), totalMs,
+                totalLateMs.sum() / (double) count, maxLateMs.get()));
+    }
+
+    private static void runLegacy(int count) throws InterruptedException {
+        CountDownLatch expired = new CountDownLatch(count);
+        int threadsBefore = liveThreads();
+        List<Timer> timers = new ArrayList<>(count);
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Timer timer = new Timer(true);
+            timer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    timer.cancel();
+                    expired.countDown();
+                }
+            }, 2000);
+            timers.add(timer);
+        }
+        int peakThreads = liveThreads();
+        expired.await();
+        long totalMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.out.println(String.format("legacy   timers=%-7s threads=+%s (one java.util.Timer each) in %s ms", count,
+                peakThreads - threadsBefore, totalMs));
+    }
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int legacyCount = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        System.out.println(String.format("Running %s shared timers", count));
+        runShared(count);
+        if (legacyCount > 0) {
+            System.out.println(String.format("Running %s legacy timers", legacyCount));
+            runLegacy(legacyCount);
+        }
+    }
+}
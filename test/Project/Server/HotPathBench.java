@@ -0,0 +1,420 @@
+package Project.Server;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import Project.Common.BinaryCodec;
+import Project.Common.FrameCodec;
+import Project.Common.LoggerUtil;
+import Project.Common.Payload;
+import Project.Common.PayloadType;
+import Project.Common.Phase;
+import Project.Common.WireFormat;
+import Project.Exceptions.DuplicateRoomException;
+
+/**
+ * Benchmark: server hot paths, for catching regressions.
+ * <p>
+ * Rooms run with in-memory connections (no sockets), so results only depend on
+ * the machine. Benchmarks are grouped and every group runs in its own child JVM
+ * (logging is configured once per JVM and one group's JIT profile shouldn't
+ * leak into the next). Each benchmark warms up, then reports the mean time per
+ * operation over the measured iterations with the spread between them.
+ * Commands that normally go through a room's mailbox run on the mailbox
+ * itself, so the numbers are the handling cost without the thread handoff.
+ * </p>
+ * <p>
+ * --save writes the results to a file, --compare prints the change against a
+ * saved file (test/HotPathBench.baseline.txt holds the committed
+ * baseline) and marks anything more than 20% slower.
+ * </p>
+ * Usage: java Project.Server.HotPathBench [--save file] [--compare file]
+ * [group ...] (groups: relay, turn, journal, words, codec, rooms, log-sync,
+ * log-async)
+ */
+public class HotPathBench {
+    private static final String[] GROUPS = { "relay", "turn", "journal", "words", "codec", "rooms", "log-sync", "log-async" };
+    private static final int WARMUP_ITERATIONS = Integer.getInteger("bench.warmup", 3);
+    private static final int ITERATIONS = Integer.getInteger("bench.iterations", 5);
+    private static final long ITERATION_MILLIS = Long.getLong("bench.iteration.ms", 500);
+    private static final double REGRESSION = 1.20;
+    // letters in rough English frequency order, like a player would try them
+    private static final String LETTERS = "ETAOINSHRDLUCMFWYPVBGKJQXZ";
+
+    private interface Op {
+        /**
+         * @return something derived from the work so it can't be optimized away
+         */
+        long run() throws Exception;
+    }
+
+    private static long sink = 0;
+    private static PrintStream results = System.out; // the game code prints to System.out
+
+    /**
+     * Times op for the warmup and measured iterations and prints one result line
+     * (name, ns/op, spread in ns/op)
+     *
+     * @param name
+     * @param opsPerCall operations done by a single op.run()
+     * @param op
+     */
+    private static void measure(String name, int opsPerCall, Op op) throws Exception {
+        double[] nanosPerOp = new double[ITERATIONS];
+        for (int i = 0; i < WARMUP_ITERATIONS + ITERATIONS; i++) {
+            long calls = 0;
+            long start = System.nanoTime();
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(ITERATION_MILLIS);
+            long now;
+            do {
+                sink += op.run();
+                calls++;
+            } while ((now = System.nanoTime()) < deadline);
+            if (i >= WARMUP_ITERATIONS) {
+                nanosPerOp[i - WARMUP_ITERATIONS] = (double) (now - start) / (calls * opsPerCall);
+            }
+        }
+        double mean = 0;
+        for (double result : nanosPerOp) {
+            mean += result / nanosPerOp.length;
+        }
+        double spread = 0;
+        for (double result : nanosPerOp) {
+            spread = Math.max(spread, Math.abs(result - mean));
+        }
+        results.println(String.format("%s %.1f %.1f", name, mean, spread));
+    }
+
+    private static List<ServerThread> addPlayers(Room room, int count, long firstId) {
+        List<ServerThread> players = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ServerThread player = new ServerThread(new InMemoryConnection(), initialized -> {
+            });
+            player.wireFormat = WireFormat.BINARY;
+            player.setClientId(firstId + i);
+            player.onConnectionOpened();
+            player.setClientName("player" + player.getClientId());
+            room.addClient(player);
+            players.add(player);
+        }
+        room.mailbox.executeAndWait(() -> {
+        }, 30, TimeUnit.SECONDS);
+        return players;
+    }
+
+    /**
+     * Runs ops calls of command on the room's mailbox and waits for them
+     */
+    private static long onMailbox(Room room, int ops, Runnable command) {
+        room.mailbox.executeAndWait(() -> {
+            for (int i = 0; i < ops; i++) {
+                command.run();
+            }
+        }, 30, TimeUnit.SECONDS);
+        return room.clientsInRoom.size();
+    }
+
+    private static void relay() throws Exception {
+        for (int players : new int[] { 4, 64 }) {
+            Room room = new Room("relay-" + players);
+            addPlayers(room, players, 1);
+            measure("relay-" + players + "-players", 100, () -> onMailbox(room, 100,
+                    () -> room.relay(null, "player1#1 finished their turn")));
+        }
+    }
+
+    /**
+     * Plays one turn command as the current player, starting a new session first
+     * if the last one ended (runs on the mailbox)
+     */
+    private static void playTurn(GameRoom room, List<ServerThread> players, String command) {
+        if (room.currentPhase != Phase.IN_PROGRESS) {
+            players.forEach(player -> player.setReady(true));
+            room.onSessionStart();
+        }
+        ServerThread current = room.clientsInRoom.get(room.getCurrentTurnClientId());
+        room.handleTurnAction(current, command);
+    }
+
+    private static void turn() throws Exception {
+        GameRoom letters = new GameRoom("turn-letter");
+        List<ServerThread> letterPlayers = addPlayers(letters, 4, 1);
+        int[] next = { 0 };
+        measure("handleTurnAction-letter", 100, () -> onMailbox(letters, 100,
+                () -> playTurn(letters, letterPlayers, "letter " + LETTERS.charAt(next[0]++ % LETTERS.length()))));
+
+        GameRoom guesses = new GameRoom("turn-guess");
+        List<ServerThread> guessPlayers = addPlayers(guesses, 4, 11);
+        measure("handleTurnAction-guess", 100, () -> onMailbox(guesses, 100,
+                () -> playTurn(guesses, guessPlayers, "guess PROGRAMMING")));
+
+        GameRoom skips = new GameRoom("turn-skip");
+        List<ServerThread> skipPlayers = addPlayers(skips, 4, 21);
+        measure("handleTurnAction-skip", 100, () -> onMailbox(skips, 100,
+                () -> playTurn(skips, skipPlayers, "skip")));
+    }
+
+    private static void journal() throws Exception {
+        // handleTurnAction-letter with every transition going to the journal
+        Path directory = Files.createTempDirectory("journal-bench");
+        System.setProperty("server.journal.file", directory.resolve("bench.journal").toString());
+        GameJournal.INSTANCE.start();
+        GameRoom letters = new GameRoom("journal-letter");
+        List<ServerThread> letterPlayers = addPlayers(letters, 4, 1);
+        int[] next = { 0 };
+        measure("handleTurnAction-letter-journal", 100, () -> onMailbox(letters, 100,
+                () -> playTurn(letters, letterPlayers, "letter " + LETTERS.charAt(next[0]++ % LETTERS.length()))));
+        GameJournal.INSTANCE.stop();
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static void words() throws Exception {
+        // GameRoom.selectRandomWord() and getWordDisplay() are thin wrappers over these
+        WordCorpus corpus = WordCorpus.get();
+        WordCorpus.Cursor cursor = corpus.cursor();
+        measure("selectRandomWord", 1, () -> cursor.next().length());
+        WordCorpus.Cursor hardCursor = corpus.cursor(WordCorpus.Difficulty.HARD);
+        measure("selectRandomWord-hard", 1, () -> hardCursor.next().length());
+
+        HangmanState hangman = new HangmanState();
+        int[] next = { 0 };
+        measure("getWordDisplay-after-guess", 1, () -> {
+            if (hangman.isComplete() || next[0] == LETTERS.length()) {
+                hangman.reset(cursor.next());
+                next[0] = 0;
+            }
+            hangman.guess(LETTERS.charAt(next[0]++));
+            return hangman.getDisplay().length();
+        });
+    }
+
+    private static void codec() throws Exception {
+        // one sample per Payload class
+        Set<Class<?>> seen = new HashSet<>();
+        for (PayloadType type : PayloadType.values()) {
+            Payload payload = BinaryCodec.sample(type);
+            if (!seen.add(payload.getClass())) {
+                continue;
+            }
+            for (WireFormat format : WireFormat.values()) {
+                measure(String.format("codec-%s-%s", format.name().toLowerCase(), payload.getClass().getSimpleName()),
+                        1, () -> {
+                            byte[] frame = FrameCodec.encode(payload, format);
+                            Payload decoded = FrameCodec.decode(frame, FrameCodec.HEADER_SIZE,
+                                    frame.length - FrameCodec.HEADER_SIZE);
+                            return frame.length + decoded.getClientId();
+                        });
+            }
+        }
+    }
+
+    private static void rooms() throws Exception {
+        Server server = Server.INSTANCE; // logging is already set up, so its config is ignored
+        for (int i = 0; i < 10_000; i++) {
+            try {
+                server.createRoom("room-" + i);
+            } catch (DuplicateRoomException e) {
+                // not possible, every name is new
+            }
+        }
+        // first page of each search; a miss still has to look at every name
+        measure("listRooms-10k-all", 1, () -> server.listRooms("", false, null, 0).rooms().size());
+        measure("listRooms-10k-prefix", 1, () -> server.listRooms("room-12", true, null, 0).rooms().size());
+        measure("listRooms-10k-substring", 1, () -> server.listRooms("m-12", false, null, 0).rooms().size());
+        measure("listRooms-10k-miss", 1, () -> server.listRooms("nothing", false, null, 0).rooms().size());
+    }
+
+    private static void log(boolean async) throws Exception {
+        LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
+        config.setLogLocation("bench.log");
+        config.setFileSizeLimit(64 * 1024 * 1024);
+        config.setFileCount(1);
+        config.setFileLogLevel(Level.INFO);
+        config.setConsoleLogLevel(Level.OFF);
+        config.setAsync(async);
+        LoggerUtil.INSTANCE.setConfig(config);
+        long[] i = { 0 };
+        // includes waiting for the writer, so async isn't just filling a buffer
+        measure(async ? "LoggerUtil.info-async" : "LoggerUtil.info-sync", 1000, () -> {
+            for (int n = 0; n < 1000; n++) {
+                LoggerUtil.INSTANCE.info("Thread[" + (i[0]++ & 63) + "]: Sending to client: Payload[MESSAGE]");
+            }
+            LoggerUtil.INSTANCE.flush();
+            return i[0];
+        });
+        if (async) {
+            return;
+        }
+        measure("LoggerUtil.finest-disabled", 1, () -> {
+            LoggerUtil.INSTANCE.finest(() -> "Thread[" + (i[0]++ & 63) + "]: tick");
+            return i[0];
+        });
+    }
+
+    private static void child(String group) throws Exception {
+        if (!group.startsWith("log")) {
+            LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
+            config.setLogLocation("bench.log");
+            config.setFileLogLevel(Level.OFF);
+            config.setConsoleLogLevel(Level.OFF);
+            LoggerUtil.INSTANCE.setConfig(config);
+        }
+        results = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // game chatter
+        switch (group) {
+            case "relay":
+                relay();
+                break;
+            case "turn":
+                turn();
+                break;
+            case "journal":
+                journal();
+                break;
+            case "words":
+                words();
+                break;
+            case "codec":
+                codec();
+                break;
+            case "rooms":
+                rooms();
+                break;
+            case "log-sync":
+                log(false);
+                break;
+            case "log-async":
+                log(true);
+                break;
+            default:
+                results.println("Unknown group " + group);
+        }
+        results.println("sink " + sink);
+    }
+
+    private static void runChild(String group, Map<String, double[]> results) throws Exception {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        File workDir = Files.createTempDirectory("hot-path-" + group).toFile(); // keeps bench logs out of the repo
+        List<String> command = new ArrayList<>(List.of(java, "-Xms512m", "-Xmx512m"));
+        for (String property : new String[] { "bench.warmup", "bench.iterations", "bench.iteration.ms",
+                "server.flush.batch" }) {
+            if (System.getProperty(property) != null) {
+                command.add(String.format("-D%s=%s", property, System.getProperty(property)));
+            }
+        }
+        String words = new File(System.getProperty("game.words", "Project/words.txt")).getAbsolutePath();
+        command.addAll(List.of("-Dgame.words=" + words, "-Dgame.words.watch=false", "-cp",
+                new File(System.getProperty("java.class.path")).getAbsolutePath(), HotPathBench.class.getName(),
+                "--child", group));
+        Process process = new ProcessBuilder(command)
+                .directory(workDir)
+                .redirectErrorStream(true)
+                .start();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                if (parts.length == 3 && !parts[0].equals("sink")) {
+                    try {
+                        results.put(parts[0], new double[] { Double.parseDouble(parts[1]),
+                                Double.parseDouble(parts[2]) });
+                        continue;
+                    } catch (NumberFormatException e) {
+                        // not a result line
+                    }
+                }
+                if (!line.startsWith("sink ")) {
+                    System.out.println(line);
+                }
+            }
+        }
+        process.waitFor();
+    }
+
+    private static Map<String, Double> readBaseline(Path file) throws Exception {
+        Map<String, Double> baseline = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file)) {
+            String[] parts = line.trim().split("\\s+");
+            if (parts.length >= 2 && !line.startsWith("#")) {
+                baseline.put(parts[0], Double.parseDouble(parts[1]));
+            }
+        }
+        return baseline;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 1 && args[0].equals("--child")) {
+            child(args[1]);
+            System.exit(0);
+        }
+        Path save = null;
+        Path compare = null;
+        List<String> groups = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--save") && i + 1 < args.length) {
+                save = Path.of(args[++i]);
+            } else if (args[i].equals("--compare") && i + 1 < args.length) {
+                compare = Path.of(args[++i]);
+            } else {
+                groups.add(args[i]);
+            }
+        }
+        if (groups.isEmpty()) {
+            groups.addAll(List.of(GROUPS));
+        }
+        Map<String, Double> baseline = compare == null ? Map.of() : readBaseline(compare);
+        System.out.println(String.format("%s warmup + %s x %sms iterations per benchmark, %s cores, Java %s",
+                WARMUP_ITERATIONS, ITERATIONS, ITERATION_MILLIS, Runtime.getRuntime().availableProcessors(),
+                System.getProperty("java.version")));
+        System.out.println(String.format("%-36s %12s %10s %14s%s", "benchmark", "ns/op", "+/-", "ops/s",
+                compare == null ? "" : "   vs baseline"));
+        Map<String, double[]> results = new LinkedHashMap<>();
+        int regressions = 0;
+        for (String group : groups) {
+            Map<String, double[]> groupResults = new LinkedHashMap<>();
+            runChild(group, groupResults);
+            for (Map.Entry<String, double[]> entry : groupResults.entrySet()) {
+                double nanos = entry.getValue()[0];
+                String change = "";
+                Double before = baseline.get(entry.getKey());
+                if (before != null) {
+                    boolean slower = nanos > before * REGRESSION;
+                    regressions += slower ? 1 : 0;
+                    change = String.format("   %+6.1f%%%s", (nanos / before - 1) * 100, slower ? "  REGRESSION" : "");
+                }
+                System.out.println(String.format("%-36s %12.1f %10.1f %,14.0f%s", entry.getKey(), nanos,
+                        entry.getValue()[1], 1e9 / nanos, change));
+            }
+            results.putAll(groupResults);
+        }
+        if (save != null) {
+            List<String> lines = new ArrayList<>();
+            lines.add(String.format("# HotPathBench ns/op, %s cores, Java %s", Runtime.getRuntime()
+                    .availableProcessors(), System.getProperty("java.version")));
+            results.forEach((name, value) -> lines.add(String.format("%-36s %12.1f", name, value[0])));
+            Files.write(save, lines);
+            System.out.println("Saved to " + save);
+        }
+        if (compare != null) {
+            System.out.println(regressions == 0 ? "No regressions" : regressions + " regression(s)");
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package Project.Server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import Project.Common.BinaryCodec;
+import Project.Common.FrameCodec;
+import Project.Common.PayloadType;
+
+/**
+ * ClientConnection without a socket, for stress tests and benchmarks that drive
+ * rooms in-process.
+ * Frames are counted (and, for binary frames, tallied per PayloadType) then
+ * discarded. Writes count what a socket would see: one per write(), one per
+ * flush() of held frames.
+ */
+public class InMemoryConnection implements ClientConnection {
+    private final OutboundQueue outbound = new OutboundQueue();
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private volatile boolean holding = false; // frames written since the last flush
+    private final AtomicLongArray framesByType = new AtomicLongArray(PayloadType.values().length);
+    private final AtomicLongArray bytesByType = new AtomicLongArray(PayloadType.values().length);
+    private volatile boolean open = true;
+
+    @Override
+    public boolean write(byte[] frame, boolean droppable) {
+        if (!count(frame)) {
+            return false;
+        }
+        writes.increment();
+        WireStats.recordSocketWrite();
+        return true;
+    }
+
+    @Override
+    public boolean writeHeld(byte[] frame, boolean droppable) {
+        if (!count(frame)) {
+            return false;
+        }
+        if (!holding) {
+            holding = true;
+        }
+        return true;
+    }
+
+    @Override
+    public void flush() {
+        if (holding) {
+            holding = false;
+            writes.increment();
+            WireStats.recordSocketWrite();
+        }
+    }
+
+    private boolean count(byte[] frame) {
+        if (!open) {
+            return false;
+        }
+        frames.increment();
+        bytes.add(frame.length);
+        if (BinaryCodec.isBinary(frame, FrameCodec.HEADER_SIZE)) {
+            // binary bodies start with the PayloadType ordinal
+            framesByType.incrementAndGet(frame[FrameCodec.HEADER_SIZE]);
+            bytesByType.addAndGet(frame[FrameCodec.HEADER_SIZE], frame.length);
+        }
+        WireStats.recordSent(frame.length);
+        return true;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public OutboundQueue getOutbound() {
+        return outbound;
+    }
+
+    public long getFrames() {
+        return frames.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * @return socket writes these frames would have taken
+     */
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    /**
+     * @param type
+     * @return binary frames written of this type
+     */
+    public long getFrames(PayloadType type) {
+        return framesByType.get(type.ordinal());
+    }
+
+    /**
+     * @param type
+     * @return bytes of binary frames written of this type
+     */
+    public long getBytes(PayloadType type) {
+        return bytesByType.get(type.ordinal());
+    }
+}
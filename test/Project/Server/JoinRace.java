@@ -0,0 +1,148 @@
+package Project.Server;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+import Project.Common.BinaryCodec;
+import Project.Common.ConnectionPayload;
+import Project.Common.LoggerUtil;
+import Project.Common.Payload;
+import Project.Common.PayloadType;
+
+/**
+ * Regression check for back-to-back room joins.
+ * <p>
+ * A client sends ROOM_JOIN "a" and then ROOM_JOIN "b" while a room mailbox is
+ * busy, so both joins queue up before either room has seated it. Each round
+ * holds a different mailbox: the room the client is leaving, or (with more
+ * than one room worker, since a held mailbox ties one up) the first room it's
+ * joining. Once everything has run the client must be seated in "b"
+ * only, with "b" as its current room; before moves were recorded up front the
+ * second join left the old room again and the client ended up in both.
+ * </p>
+ * Passes when every round ends with the client in "b" only.
+ * Usage: java Project.Server.JoinRace [rounds=200] [room threads=cores]
+ */
+public class JoinRace {
+    private static long clientNames = 0;
+
+    private static void configure(String[] args) throws Exception {
+        if (args.length > 1) {
+            // must happen before RoomMailbox is loaded
+            System.setProperty("server.room.threads", args[1]);
+        }
+        Path dir = Files.createTempDirectory("join-race");
+        LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
+        config.setLogLocation(dir.resolve("race.log").toString());
+        config.setFileLogLevel(Level.OFF);
+        config.setConsoleLogLevel(Level.OFF);
+        LoggerUtil.INSTANCE.setConfig(config); // before Server.INSTANCE sets its own
+    }
+
+    private static ServerThread connect() {
+        Server server = Server.INSTANCE;
+        ServerThread client = new ServerThread(new InMemoryConnection(), server::onServerThreadInitialized);
+        client.onConnectionOpened();
+        ConnectionPayload hello = new ConnectionPayload();
+        hello.setPayloadType(PayloadType.CLIENT_CONNECT);
+        hello.setClientName("racer" + (++clientNames));
+        hello.setCodecVersion(BinaryCodec.VERSION);
+        client.onPayloadReceived(hello);
+        while (client.getCurrentRoom() == null) {
+            LockSupport.parkNanos(20_000);
+        }
+        drain(client.getCurrentRoom());
+        return client;
+    }
+
+    private static void drain(Room room) {
+        room.mailbox.executeAndWait(() -> {
+        }, 10, TimeUnit.SECONDS);
+    }
+
+    private static boolean isIn(Room room, ServerThread client) {
+        boolean[] in = new boolean[1];
+        room.mailbox.executeAndWait(() -> in[0] = room.clientsInRoom.get(client.getClientId()) == client, 10,
+                TimeUnit.SECONDS);
+        return in[0];
+    }
+
+    private static void join(ServerThread client, String roomName) {
+        Payload payload = new Payload();
+        payload.setPayloadType(PayloadType.ROOM_JOIN);
+        payload.setMessage(roomName);
+        client.onPayloadReceived(payload);
+    }
+
+    /**
+     * @param holdTarget hold the first room joined instead of the one being left
+     * @return true if the client ended up in "b" only
+     */
+    private static boolean round(int round, boolean holdTarget) throws Exception {
+        Server server = Server.INSTANCE;
+        String a = "race-a-" + round;
+        String b = "race-b-" + round;
+        server.createRoom(a);
+        server.createRoom(b);
+        Room roomA = server.getRoom(a);
+        Room roomB = server.getRoom(b);
+        ServerThread client = connect();
+        Room left = client.getCurrentRoom(); // a lobby shard
+
+        CountDownLatch release = new CountDownLatch(1);
+        Room held = holdTarget ? roomA : left;
+        held.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        join(client, a);
+        if (holdTarget) {
+            drain(left); // the first join has run and is waiting on "a"
+        }
+        join(client, b);
+        release.countDown();
+        // each drain runs after whatever the previous one's room posted
+        for (int i = 0; i < 3; i++) {
+            drain(left);
+            drain(roomA);
+            drain(roomB);
+        }
+
+        boolean inLeft = isIn(left, client);
+        boolean inA = isIn(roomA, client);
+        boolean inB = isIn(roomB, client);
+        boolean ok = !inLeft && !inA && inB && client.getCurrentRoom() == roomB;
+        if (!ok) {
+            System.out.println(String.format("round %s (holding %s): in lobby: %s, in a: %s, in b: %s, current: %s",
+                    round, holdTarget ? "a" : "lobby", inLeft, inA, inB,
+                    client.getCurrentRoom() == null ? null : client.getCurrentRoom().getName()));
+        }
+        client.onConnectionClosed();
+        return ok;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        configure(args);
+        Server.INSTANCE.createRoom(Room.LOBBY);
+        boolean canHoldTarget = Integer.getInteger("server.room.threads",
+                Runtime.getRuntime().availableProcessors()) > 1;
+        int failed = 0;
+        for (int i = 0; i < rounds; i++) {
+            if (!round(i, canHoldTarget && i % 2 == 1)) {
+                failed++;
+            }
+        }
+        System.out.println(String.format("back-to-back joins: %s of %s rounds ended in the second room only",
+                rounds - failed, rounds));
+        System.out.println(failed == 0 ? "PASS" : "FAIL");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+}
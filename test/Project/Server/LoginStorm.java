@@ -0,0 +1,138 @@
+package Project.Server;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+import Project.Common.BinaryCodec;
+import Project.Common.ConnectionPayload;
+import Project.Common.LoggerUtil;
+import Project.Common.PayloadType;
+import Project.Exceptions.DuplicateRoomException;
+import Project.Exceptions.RoomNotFoundException;
+import Project.Tools.LatencyHistogram;
+
+/**
+ * Login storm benchmark for the Server's connection path.
+ * <p>
+ * Opens in-memory connections at a fixed rate (open loop: each one is due at
+ * start + i / rate, and latency counts from that due time, so a server that
+ * falls behind shows up as queueing instead of a slower offered load). Every
+ * connection sends its CLIENT_CONNECT through the real ServerThread handshake
+ * (client id + lobby join), then creates or joins its own game room, then
+ * disconnects, so rooms are created, joined and removed at the same rate from
+ * many threads at once.
+ * </p>
+ * Usage: java Project.Server.LoginStorm [connections=50000] [rate=10000]
+ * [roomSize=4]
+ */
+public class LoginStorm {
+    private static final LatencyHistogram loginLatency = new LatencyHistogram();
+    private static final LatencyHistogram roomLatency = new LatencyHistogram();
+    private static final LongAdder failures = new LongAdder();
+
+    private static void configure() throws Exception {
+        Path dir = Files.createTempDirectory("login-storm");
+        LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
+        config.setLogLocation(dir.resolve("storm.log").toString());
+        config.setFileLogLevel(Level.OFF);
+        config.setConsoleLogLevel(Level.OFF);
+        LoggerUtil.INSTANCE.setConfig(config); // before Server.INSTANCE sets its own
+    }
+
+    private static void connect(int index, int roomSize, long dueNanos) {
+        Server server = Server.INSTANCE;
+        InMemoryConnection connection = new InMemoryConnection();
+        ServerThread client = new ServerThread(connection, server::onServerThreadInitialized);
+        client.onConnectionOpened();
+        ConnectionPayload hello = new ConnectionPayload();
+        hello.setPayloadType(PayloadType.CLIENT_CONNECT);
+        hello.setClientName("storm" + index);
+        hello.setCodecVersion(BinaryCodec.VERSION);
+        client.onPayloadReceived(hello);
+        // the lobby shard seats us on its own mailbox
+        while (client.getCurrentRoom() == null) {
+            LockSupport.parkNanos(20_000);
+        }
+        loginLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - dueNanos));
+
+        String roomName = "storm-" + (index / roomSize);
+        try {
+            try {
+                server.createRoom(roomName);
+            } catch (DuplicateRoomException e) {
+                // another member of the group got there first
+            }
+            server.joinRoom(roomName, client);
+            Room room = server.getRoom(roomName);
+            if (room != null) {
+                room.mailbox.executeAndWait(() -> {
+                }, 30, TimeUnit.SECONDS);
+            }
+            roomLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - dueNanos));
+        } catch (RoomNotFoundException e) {
+            // the group's room emptied and closed between create and join
+            failures.increment();
+        }
+        client.onConnectionClosed(); // as if the socket closed; the room disconnects us
+    }
+
+    private static String percentiles(LatencyHistogram histogram) {
+        return String.format("p50=%sus p99=%sus p99.9=%sus max=%sus", histogram.getValueAtPercentile(50),
+                histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9), histogram.getMax());
+    }
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int rate = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int roomSize = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        configure();
+        try {
+            Server.INSTANCE.createRoom(Room.LOBBY);
+        } catch (DuplicateRoomException e) {
+            // can't happen, nothing else runs here
+        }
+        System.out.println(String.format("Logging in %s clients at %s/s (rooms of %s)", connections, rate,
+                roomSize));
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        CountDownLatch done = new CountDownLatch(connections);
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / (double) rate;
+        long start = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            long due = start + (long) (i * intervalNanos);
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            int index = i;
+            Thread.startVirtualThread(() -> {
+                try {
+                    connect(index, roomSize, due);
+                } catch (Exception e) {
+                    failures.increment();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        boolean finished = done.await(2, TimeUnit.MINUTES);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.setOut(console);
+
+        System.out.println(String.format("connects=%s in %.2fs (%.0f/s) failures=%s%s", loginLatency.getCount(),
+                seconds, loginLatency.getCount() / seconds, failures.sum(), finished ? "" : " TIMED OUT"));
+        System.out.println("login (id + lobby): " + percentiles(loginLatency));
+        System.out.println("login + game room:  " + percentiles(roomLatency));
+        System.out.println(String.format("rooms left=%s failed room commands=%s", Server.INSTANCE.getRooms().size(),
+                RoomMailbox.getFailedCommands()));
+        System.exit(0);
+    }
+}
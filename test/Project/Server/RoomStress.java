@@ -0,0 +1,177 @@
+package Project.Server;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+import Project.Common.LoggerUtil;
+import Project.Common.PayloadType;
+import Project.Common.WireFormat;
+
+/**
+ * Stress check for the Room actor model.
+ * <p>
+ * Builds GameRooms with in-memory players, then lets many threads fire
+ * concurrent ready/letter/guess/skip commands at them while 1 second turn
+ * and ready timers expire underneath. Alongside the game traffic every thread
+ * posts increments of a plain (non-atomic) per-room counter through the room's
+ * mailbox; if two commands for the same room ever ran at the same time
+ * increments would get lost.
+ * </p>
+ * Passes when no increments were lost and no room command threw.
+ * Usage: java Project.Server.RoomStress [rooms=200] [players=4] [threads=16]
+ * [seconds=10]
+ */
+public class RoomStress {
+    private static final String[] WORDS = { "APPLE", "BANANA", "CHERRY", "ORANGE", "MANGO", "GRAPE", "LEMON",
+            "PEACH" };
+
+    private static class StressRoom {
+        final GameRoom room;
+        final List<ServerThread> players = new ArrayList<>();
+        final List<InMemoryConnection> connections = new ArrayList<>();
+        long counter = 0; // only ever touched from the room's mailbox
+        final AtomicLong posted = new AtomicLong();
+
+        StressRoom(GameRoom room) {
+            this.room = room;
+        }
+    }
+
+    private static void configure() throws Exception {
+        // must happen before GameRoom/BaseGameRoom are loaded
+        System.setProperty("game.turn.seconds", "1");
+        System.setProperty("game.ready.seconds", "1");
+        Path dir = Files.createTempDirectory("room-stress");
+        Path words = dir.resolve("words.txt");
+        Files.write(words, List.of(WORDS));
+        System.setProperty("game.words", words.toString());
+
+        LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
+        config.setLogLocation(dir.resolve("stress.log").toString());
+        config.setFileLogLevel(Level.OFF);
+        config.setConsoleLogLevel(Level.OFF);
+        LoggerUtil.INSTANCE.setConfig(config);
+    }
+
+    private static List<StressRoom> createRooms(int rooms, int players) {
+        List<StressRoom> result = new ArrayList<>(rooms);
+        long nextId = 1;
+        for (int r = 0; r < rooms; r++) {
+            StressRoom stressRoom = new StressRoom(new GameRoom("stress-" + r));
+            for (int p = 0; p < players; p++) {
+                InMemoryConnection connection = new InMemoryConnection();
+                ServerThread player = new ServerThread(connection, initialized -> {
+                });
+                player.wireFormat = WireFormat.BINARY; // lets InMemoryConnection tally frame types
+                player.setClientId(nextId++);
+                player.onConnectionOpened();
+                player.setClientName("player" + player.getClientId());
+                stressRoom.room.addClient(player);
+                stressRoom.players.add(player);
+                stressRoom.connections.add(connection);
+            }
+            result.add(stressRoom);
+        }
+        return result;
+    }
+
+    private static void hammer(List<StressRoom> rooms, long deadline, LongAdder commands) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.currentTimeMillis() < deadline) {
+            StressRoom target = rooms.get(random.nextInt(rooms.size()));
+            ServerThread player = target.players.get(random.nextInt(target.players.size()));
+            int roll = random.nextInt(100);
+            if (roll < 10) {
+                target.room.handleReady(player);
+            } else if (roll < 55) {
+                target.room.handleTurnAction(player, "letter " + (char) ('A' + random.nextInt(26)));
+            } else if (roll < 75) {
+                target.room.handleTurnAction(player, "guess " + WORDS[random.nextInt(WORDS.length)]);
+            } else if (roll < 85) {
+                target.room.handleTurnAction(player, "skip");
+            } else {
+                target.posted.incrementAndGet();
+                target.room.execute(() -> target.counter++);
+            }
+            commands.increment();
+            if ((commands.intValue() & 0xFF) == 0) {
+                // let the room workers keep up instead of growing mailboxes forever
+                Thread.yield();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int roomCount = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int playerCount = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int threadCount = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        configure();
+
+        List<StressRoom> rooms = createRooms(roomCount, playerCount);
+        System.out.println(String.format("Stressing %s rooms x %s players with %s threads for %ss", roomCount,
+                playerCount, threadCount, seconds));
+        LongAdder commands = new LongAdder();
+        // the timers print every tick, keep that out of the report
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(seconds);
+        CountDownLatch done = new CountDownLatch(threadCount);
+        int maxDepth = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < threadCount; i++) {
+            Thread.ofPlatform().name("Stress-" + i).start(() -> {
+                try {
+                    hammer(rooms, deadline, commands);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        while (!done.await(200, TimeUnit.MILLISECONDS)) {
+            for (StressRoom room : rooms) {
+                maxDepth = Math.max(maxDepth, room.room.getMailboxDepth());
+            }
+        }
+        // drain: a final command per room runs after everything queued before it
+        for (StressRoom room : rooms) {
+            room.room.mailbox.executeAndWait(() -> {
+            }, 30, TimeUnit.SECONDS);
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.setOut(console);
+
+        long lost = 0;
+        long turns = 0;
+        long phases = 0;
+        long timeFrames = 0;
+        long frames = 0;
+        for (StressRoom room : rooms) {
+            lost += room.posted.get() - room.counter;
+            for (InMemoryConnection connection : room.connections) {
+                turns += connection.getFrames(PayloadType.TURN);
+                phases += connection.getFrames(PayloadType.PHASE);
+                timeFrames += connection.getFrames(PayloadType.TIME);
+                frames += connection.getFrames();
+            }
+        }
+        long failed = RoomMailbox.getFailedCommands();
+        System.out.println(String.format("commands=%s (%.0f/s) max mailbox depth=%s", commands.sum(),
+                commands.sum() * 1000.0 / elapsedMs, maxDepth));
+        System.out.println(String.format("frames out=%s turn frames=%s phase frames=%s time frames=%s", frames,
+                turns, phases, timeFrames));
+        System.out.println(String.format("lost counter increments=%s failed commands=%s", lost, failed));
+        System.out.println(lost == 0 && failed == 0 ? "PASS" : "FAIL");
+        System.exit(lost == 0 && failed == 0 ? 0 : 1);
+    }
+}
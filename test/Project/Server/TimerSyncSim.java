@@ -0,0 +1,207 @@
+package Project.Server;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import Project.Common.FrameCodec;
+import Project.Common.LoggerUtil;
+import Project.Common.PayloadType;
+import Project.Common.Phase;
+import Project.Common.TimerPayload;
+import Project.Common.TimerType;
+import Project.Common.WireFormat;
+
+/**
+ * Simulation: timer traffic of many idle game rooms, per-tick TIME broadcasts
+ * (-Dgame.timer.ticks=true, the previous behavior) against start/cancel/resync
+ * only.
+ * <p>
+ * Every room gets in-memory players who ready up and then never act, so the
+ * ready timer and then one turn timer after another run for the whole test.
+ * Each mode runs in its own child process since the mode is read once at
+ * startup. Frames and the socket writes (syscalls) they'd take on a real
+ * connection are counted per client. At the end one more player joins every
+ * room mid-turn and has to be sent the running turn timer right away.
+ * </p>
+ * Usage: java Project.Server.TimerSyncSim [rooms=500] [players=4] [seconds=40]
+ */
+public class TimerSyncSim {
+
+    private static void runChild(boolean ticks, int rooms, int players, int seconds) throws Exception {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-Dgame.timer.ticks=" + ticks, "-Dgame.ready.seconds=5",
+                "-Dgame.turn.seconds=15", "-cp", new File(System.getProperty("java.class.path")).getAbsolutePath(),
+                TimerSyncSim.class.getName(), "--child", String.valueOf(rooms), String.valueOf(players),
+                String.valueOf(seconds))
+                .redirectErrorStream(true)
+                .start();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                System.out.println(line);
+            }
+        }
+        process.waitFor();
+    }
+
+    private static void child(int roomCount, int playerCount, int seconds) throws Exception {
+        Path dir = Files.createTempDirectory("timer-sync");
+        LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
+        config.setLogLocation(dir.resolve("sim.log").toString());
+        config.setFileLogLevel(Level.OFF);
+        config.setConsoleLogLevel(Level.OFF);
+        LoggerUtil.INSTANCE.setConfig(config);
+
+        List<GameRoom> rooms = new ArrayList<>(roomCount);
+        List<ServerThread> players = new ArrayList<>();
+        List<GameRoom> playerRooms = new ArrayList<>(); // room of players[i]; joins are still queued
+        List<InMemoryConnection> connections = new ArrayList<>();
+        long nextId = 1;
+        for (int r = 0; r < roomCount; r++) {
+            GameRoom room = new GameRoom("sim-" + r);
+            for (int p = 0; p < playerCount; p++) {
+                InMemoryConnection connection = new InMemoryConnection();
+                ServerThread player = new ServerThread(connection, initialized -> {
+                });
+                player.wireFormat = WireFormat.BINARY; // lets InMemoryConnection tally frame types
+                player.setClientId(nextId++);
+                player.onConnectionOpened();
+                player.setClientName("player" + player.getClientId());
+                room.addClient(player);
+                players.add(player);
+                playerRooms.add(room);
+                connections.add(connection);
+            }
+            rooms.add(room);
+        }
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // game chatter
+        for (int i = 0; i < players.size(); i++) {
+            playerRooms.get(i).handleReady(players.get(i));
+        }
+        // only count steady state traffic, not the joins
+        for (GameRoom room : rooms) {
+            room.mailbox.executeAndWait(() -> {
+            }, 30, TimeUnit.SECONDS);
+        }
+        long baseFrames = 0;
+        long baseWrites = 0;
+        long baseBytes = 0;
+        long baseTimeFrames = 0;
+        long baseTimeBytes = 0;
+        for (InMemoryConnection connection : connections) {
+            baseFrames += connection.getFrames();
+            baseWrites += connection.getWrites();
+            baseBytes += connection.getBytes();
+            baseTimeFrames += connection.getFrames(PayloadType.TIME);
+            baseTimeBytes += connection.getBytes(PayloadType.TIME);
+        }
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+
+        long frames = -baseFrames;
+        long writes = -baseWrites;
+        long bytes = -baseBytes;
+        long timeFrames = -baseTimeFrames;
+        long timeBytes = -baseTimeBytes;
+        for (InMemoryConnection connection : connections) {
+            frames += connection.getFrames();
+            writes += connection.getWrites();
+            bytes += connection.getBytes();
+            timeFrames += connection.getFrames(PayloadType.TIME);
+            timeBytes += connection.getBytes(PayloadType.TIME);
+        }
+        int[] midTurn = joinMidTurn(rooms, nextId);
+        System.setOut(console);
+        System.out.println(String.format("%-6s TIME: %,9d frames %,11d bytes | all: %,9d frames %,11d bytes"
+                + " | %.2f writes/s per client, %s resyncs",
+                BaseGameRoom.TIMER_TICKS ? "ticks" : "delta", timeFrames, timeBytes, frames, bytes,
+                (double) writes / connections.size() / seconds, WireStats.getTimerResyncs()));
+        System.out.println(String.format("%-6s mid-turn joins: %s of %s got the running turn timer",
+                BaseGameRoom.TIMER_TICKS ? "ticks" : "delta", midTurn[0], midTurn[1]));
+    }
+
+    /**
+     * Adds one more player to every room while its turn timer runs and checks
+     * that the join alone (no tick or resync) tells them the time left
+     *
+     * @param rooms
+     * @param nextId first unused client id
+     * @return players that got a TURN timer start, rooms that were mid-turn
+     */
+    private static int[] joinMidTurn(List<GameRoom> rooms, long nextId) throws Exception {
+        int synced = 0;
+        int joined = 0;
+        for (GameRoom room : rooms) {
+            Set<TimerType> started = ConcurrentHashMap.newKeySet();
+            InMemoryConnection connection = new InMemoryConnection() {
+                @Override
+                public boolean write(byte[] frame, boolean droppable) {
+                    record(frame);
+                    return super.write(frame, droppable);
+                }
+
+                @Override
+                public boolean writeHeld(byte[] frame, boolean droppable) {
+                    record(frame);
+                    return super.writeHeld(frame, droppable);
+                }
+
+                private void record(byte[] frame) {
+                    try {
+                        if (FrameCodec.decode(frame, FrameCodec.HEADER_SIZE,
+                                frame.length - FrameCodec.HEADER_SIZE) instanceof TimerPayload tp
+                                && tp.getTime() > 0) {
+                            started.add(tp.getTimerType());
+                        }
+                    } catch (Exception e) {
+                        // not a frame we care about
+                    }
+                }
+            };
+            ServerThread player = new ServerThread(connection, initialized -> {
+            });
+            player.wireFormat = WireFormat.BINARY;
+            player.setClientId(nextId++);
+            player.onConnectionOpened();
+            player.setClientName("late" + player.getClientId());
+            boolean[] midTurn = new boolean[1];
+            // checked and joined in one command so the turn can't end in between
+            room.mailbox.executeAndWait(() -> {
+                midTurn[0] = room.getPhase() == Phase.IN_PROGRESS;
+                room.addClient(player);
+            }, 30, TimeUnit.SECONDS);
+            if (midTurn[0]) {
+                joined++;
+                if (started.contains(TimerType.TURN)) {
+                    synced++;
+                }
+            }
+        }
+        return new int[] { synced, joined };
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--child")) {
+            child(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            System.exit(0);
+        }
+        int rooms = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int players = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 40;
+        System.out.println(String.format("%s rooms x %s players, %ss of 5s ready / 15s turn timers", rooms, players,
+                seconds));
+        runChild(true, rooms, players, seconds);
+        runChild(false, rooms, players, seconds);
+    }
+}
@@ -0,0 +1,118 @@
+package Project.Server;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import Project.Common.LoggerUtil;
+import Project.Common.Phase;
+import Project.Common.WireFormat;
+
+/**
+ * Simulation: socket writes per turn with and without flush batching
+ * (-Dserver.flush.batch).
+ * <p>
+ * One game room of in-memory players plays turns back to back, each turn its
+ * own mailbox command like a TURN payload from a client. Counts the frames
+ * every client receives per turn and the socket writes (syscalls, and with
+ * TCP_NODELAY usually packets) they'd take on a real connection. Each mode
+ * runs in its own child process since the mode is read once at startup.
+ * </p>
+ * Usage: java Project.Server.TurnPackets [turns=2000] [players=4]
+ */
+public class TurnPackets {
+    private static final String LETTERS = "ETAOINSHRDLUCMFWYPVBGKJQXZ";
+
+    private static void runChild(boolean batch, int turns, int players) throws Exception {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-Dserver.flush.batch=" + batch, "-cp",
+                new File(System.getProperty("java.class.path")).getAbsolutePath(), TurnPackets.class.getName(),
+                "--child", String.valueOf(turns), String.valueOf(players))
+                .redirectErrorStream(true)
+                .start();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                System.out.println(line);
+            }
+        }
+        process.waitFor();
+    }
+
+    private static void child(boolean batch, int turns, int playerCount) throws Exception {
+        Path dir = Files.createTempDirectory("turn-packets");
+        LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
+        config.setLogLocation(dir.resolve("sim.log").toString());
+        config.setFileLogLevel(Level.OFF);
+        config.setConsoleLogLevel(Level.OFF);
+        LoggerUtil.INSTANCE.setConfig(config);
+
+        GameRoom room = new GameRoom("turns");
+        List<ServerThread> players = new ArrayList<>(playerCount);
+        List<InMemoryConnection> connections = new ArrayList<>(playerCount);
+        for (int p = 0; p < playerCount; p++) {
+            InMemoryConnection connection = new InMemoryConnection();
+            ServerThread player = new ServerThread(connection, initialized -> {
+            });
+            player.wireFormat = WireFormat.BINARY;
+            player.setClientId(p + 1);
+            player.onConnectionOpened();
+            player.setClientName("player" + player.getClientId());
+            room.addClient(player);
+            players.add(player);
+            connections.add(connection);
+        }
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // game chatter
+        room.mailbox.executeAndWait(() -> {
+        }, 30, TimeUnit.SECONDS);
+        long baseFrames = 0;
+        long baseWrites = 0;
+        for (InMemoryConnection connection : connections) {
+            baseFrames += connection.getFrames();
+            baseWrites += connection.getWrites();
+        }
+        for (int i = 0; i < turns; i++) {
+            char letter = LETTERS.charAt(i % LETTERS.length());
+            room.mailbox.executeAndWait(() -> {
+                if (room.currentPhase != Phase.IN_PROGRESS) {
+                    players.forEach(player -> player.setReady(true));
+                    room.onSessionStart();
+                }
+                ServerThread current = room.clientsInRoom.get(room.getCurrentTurnClientId());
+                room.handleTurnAction(current, "letter " + letter);
+            }, 30, TimeUnit.SECONDS);
+        }
+        System.setOut(console);
+
+        long frames = -baseFrames;
+        long writes = -baseWrites;
+        for (InMemoryConnection connection : connections) {
+            frames += connection.getFrames();
+            writes += connection.getWrites();
+        }
+        double perClientTurn = (double) turns * connections.size();
+        System.out.println(String.format("%-9s %.2f frames, %.2f socket writes per client per turn",
+                batch ? "batched" : "unbatched", frames / perClientTurn, writes / perClientTurn));
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--child")) {
+            child(FlushBatch.isEnabled(), Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            System.exit(0);
+        }
+        int turns = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int players = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        System.out.println(String.format("%s letter turns, %s players", turns, players));
+        runChild(false, turns, players);
+        runChild(true, turns, players);
+    }
+}
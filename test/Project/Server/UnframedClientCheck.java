@@ -0,0 +1,241 @@
+package Project.Server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+import Project.Common.AwayStatusPayload;
+import Project.Common.ConnectionPayload;
+import Project.Common.Payload;
+import Project.Common.PayloadType;
+import Project.Common.Phase;
+import Project.Common.PointsPayload;
+import Project.Common.ReadyPayload;
+import Project.Common.RoomResultPayload;
+import Project.Common.SessionOptionsPayload;
+import Project.Common.TimerPayload;
+
+/**
+ * Check that clients from before length-prefixed framing still play.
+ * <p>
+ * Starts a server per engine, connects two clients the way the original
+ * Client did (one ObjectOutputStream for everything it sends, one
+ * ObjectInputStream for everything it gets, no codec version in the
+ * handshake), has one create a room and the other join it, readies both and
+ * takes turns guessing letters until the round's word is revealed.
+ * </p>
+ * <p>
+ * Every payload they get has to be something the original client knows: a
+ * PayloadType up to SPECTATE and one of the payload classes it shipped with
+ * (those keep their serialVersionUIDs pinned).
+ * </p>
+ * Passes when both clients saw the end of the round on every engine.
+ * Usage: java Project.Server.UnframedClientCheck [port=3470] [engine ...]
+ */
+public class UnframedClientCheck {
+    private static final long WAIT_MS = 30_000;
+    private static final String ROOM = "unframed";
+    private static final Set<Class<?>> KNOWN_CLASSES = Set.of(Payload.class, ConnectionPayload.class,
+            ReadyPayload.class, PointsPayload.class, RoomResultPayload.class, TimerPayload.class,
+            SessionOptionsPayload.class, AwayStatusPayload.class);
+
+    /**
+     * A client as it was before framing
+     */
+    private static class UnframedClient {
+        final String name;
+        final Socket socket;
+        final ObjectOutputStream out;
+        final ObjectInputStream in;
+        final List<Payload> received = new CopyOnWriteArrayList<>();
+        final List<String> unknown = new CopyOnWriteArrayList<>();
+        volatile long clientId = -1;
+
+        UnframedClient(int port, String name) throws IOException {
+            this.name = name;
+            socket = new Socket("localhost", port);
+            out = new ObjectOutputStream(socket.getOutputStream());
+            in = new ObjectInputStream(socket.getInputStream()); // waits for the server's stream header
+            Thread.ofPlatform().daemon(true).name("unframed-" + name).start(this::listen);
+            ConnectionPayload hello = new ConnectionPayload();
+            hello.setPayloadType(PayloadType.CLIENT_CONNECT);
+            hello.setClientName(name);
+            send(hello);
+        }
+
+        private void listen() {
+            try {
+                while (true) {
+                    Payload payload = (Payload) in.readObject();
+                    if (!KNOWN_CLASSES.contains(payload.getClass())
+                            || payload.getPayloadType().ordinal() > PayloadType.SPECTATE.ordinal()) {
+                        unknown.add(payload.getClass().getSimpleName() + "/" + payload.getPayloadType());
+                    }
+                    if (payload.getPayloadType() == PayloadType.CLIENT_ID) {
+                        clientId = payload.getClientId();
+                    }
+                    received.add(payload);
+                }
+            } catch (IOException | ClassNotFoundException e) {
+                // closed
+            }
+        }
+
+        void send(Payload payload) throws IOException {
+            out.writeObject(payload);
+            out.flush();
+        }
+
+        void sendRoom(PayloadType type, String room) throws IOException {
+            Payload payload = new Payload();
+            payload.setPayloadType(type);
+            payload.setMessage(room);
+            send(payload);
+        }
+
+        void sendTurn(String text) throws IOException {
+            ReadyPayload payload = new ReadyPayload();
+            payload.setPayloadType(PayloadType.TURN);
+            payload.setReady(true);
+            payload.setMessage(text);
+            send(payload);
+        }
+
+        boolean saw(Predicate<Payload> match) {
+            return received.stream().anyMatch(match);
+        }
+
+        boolean await(Predicate<Payload> match) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + WAIT_MS;
+            while (!saw(match)) {
+                if (System.currentTimeMillis() > deadline) {
+                    return false;
+                }
+                Thread.sleep(20);
+            }
+            return true;
+        }
+
+        void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    private static boolean roundEnded(Payload payload) {
+        return payload.getPayloadType() == PayloadType.MESSAGE && payload.getMessage() != null
+                && payload.getMessage().contains("The word was");
+    }
+
+    private static boolean joined(Payload payload, long clientId) {
+        // the lobby's joins come through as well, so match on the room
+        return payload.getPayloadType() == PayloadType.ROOM_JOIN && payload.getClientId() == clientId
+                && ROOM.equals(payload.getMessage());
+    }
+
+    private static boolean inProgress(Payload payload) {
+        return payload.getPayloadType() == PayloadType.PHASE && Phase.IN_PROGRESS.name().equals(payload.getMessage());
+    }
+
+    private static Process startServer(int port, String engine) throws IOException, InterruptedException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        File workDir = Files.createTempDirectory("unframed-" + engine).toFile(); // keeps server logs out of the repo
+        Process process = new ProcessBuilder(java, "-Dgame.ready.seconds=1", "-Dserver.journal=false", "-cp",
+                System.getProperty("java.class.path"), "Project.Server.Server", String.valueOf(port), engine)
+                .directory(workDir)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        // wait for the port to open
+        for (int i = 0; i < 100; i++) {
+            try {
+                new Socket("localhost", port).close();
+                return process;
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+        process.destroyForcibly();
+        throw new IOException("Server didn't start");
+    }
+
+    /**
+     * @return what went wrong, null if the round was played
+     */
+    private static String play(int port, String engine) throws Exception {
+        Process server = startServer(port, engine);
+        UnframedClient host = null;
+        UnframedClient guest = null;
+        try {
+            host = new UnframedClient(port, "host");
+            guest = new UnframedClient(port, "guest");
+            if (!host.await(p -> p.getPayloadType() == PayloadType.CLIENT_ID)
+                    || !guest.await(p -> p.getPayloadType() == PayloadType.CLIENT_ID)) {
+                return "no client id";
+            }
+            host.sendRoom(PayloadType.ROOM_CREATE, ROOM);
+            long hostId = host.clientId;
+            if (!host.await(p -> joined(p, hostId))) {
+                return "host didn't get into the room";
+            }
+            guest.sendRoom(PayloadType.ROOM_JOIN, ROOM);
+            long guestId = guest.clientId;
+            if (!host.await(p -> joined(p, guestId))) {
+                return "guest didn't get into the room";
+            }
+            host.send(new ReadyPayload());
+            guest.send(new ReadyPayload());
+            if (!host.await(UnframedClientCheck::inProgress) || !guest.await(UnframedClientCheck::inProgress)) {
+                return "the game didn't start";
+            }
+            // whoever's turn it isn't gets told so; letters they already tried
+            // are rejected too, so just keep cycling
+            String letters = "ETAOINSHRDLUCMFWYPVBGKQJXZ";
+            long deadline = System.currentTimeMillis() + WAIT_MS;
+            for (int i = 0; !(host.saw(UnframedClientCheck::roundEnded) && guest.saw(UnframedClientCheck::roundEnded)); i++) {
+                if (System.currentTimeMillis() > deadline) {
+                    return "the round didn't end";
+                }
+                host.sendTurn("letter " + letters.charAt(i % letters.length()));
+                guest.sendTurn("letter " + letters.charAt((i + 13) % letters.length()));
+                Thread.sleep(50);
+            }
+            if (!host.unknown.isEmpty() || !guest.unknown.isEmpty()) {
+                return "got payloads the original client doesn't know: " + host.unknown + guest.unknown;
+            }
+            return null;
+        } finally {
+            if (host != null) {
+                host.close();
+            }
+            if (guest != null) {
+                guest.close();
+            }
+            server.destroy();
+            server.waitFor();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 3470;
+        List<String> engines = args.length > 1 ? List.of(args).subList(1, args.length)
+                : List.of("nio", "virtual", "blocking");
+        int failed = 0;
+        for (String engine : engines) {
+            String problem = play(port, engine);
+            System.out.println(String.format("%-8s %s", engine, problem == null ? "played a round" : problem));
+            if (problem != null) {
+                failed++;
+            }
+        }
+        System.out.println(failed == 0 ? "PASS" : "FAIL");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,111 @@
+package Project.Server;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+
+import Project.Common.LoggerUtil;
+
+/**
+ * Check for WordWatcher's reloads.
+ * <p>
+ * Starts the watcher on a words file in a temp directory, then atomically
+ * moves new lists onto it, edits it in place, deletes it and touches other
+ * files next to it. Every replace or edit has to show up in WordCorpus.get()
+ * within a few seconds; the delete and the unrelated files must leave the
+ * current corpus alone.
+ * </p>
+ * Passes when every step behaved as expected.
+ * Usage: java Project.Server.WordWatcherCheck
+ */
+public class WordWatcherCheck {
+    private static final long WAIT_MS = 5000;
+    // longer than WordWatcher's debounce, for the steps that must not reload
+    private static final long QUIET_MS = 1500;
+
+    private static int failures = 0;
+
+    private static void check(String step, boolean ok) {
+        System.out.println((ok ? "ok   " : "FAIL ") + step);
+        if (!ok) {
+            failures++;
+        }
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+        return true;
+    }
+
+    private static boolean hasWords(String... words) {
+        WordCorpus corpus = WordCorpus.get();
+        if (corpus.size() != words.length) {
+            return false;
+        }
+        for (int i = 0; i < words.length; i++) {
+            if (!corpus.word(i).equals(words[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes a list next to the words file and renames it over the top
+     */
+    private static void replace(Path file, String... words) throws Exception {
+        Path next = file.resolveSibling(file.getFileName() + ".next");
+        Files.write(next, List.of(words));
+        Files.move(next, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("word-watcher");
+        Path file = dir.resolve("words.txt");
+        Files.write(file, List.of("ALPHA", "BRAVO"));
+        // must happen before WordCorpus is loaded
+        System.setProperty("game.words", file.toString());
+
+        LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
+        config.setLogLocation(dir.resolve("watcher.log").toString());
+        config.setFileLogLevel(Level.OFF);
+        config.setConsoleLogLevel(Level.OFF);
+        LoggerUtil.INSTANCE.setConfig(config);
+
+        WordWatcher.INSTANCE.start();
+        check("initial load", hasWords("ALPHA", "BRAVO"));
+
+        replace(file, "CHARLIE", "DELTA", "ECHO");
+        check("atomic replace reloads", waitFor(() -> hasWords("CHARLIE", "DELTA", "ECHO")));
+
+        Files.write(file, List.of("FOXTROT", "GOLF"));
+        check("in place edit reloads", waitFor(() -> hasWords("FOXTROT", "GOLF")));
+
+        Thread.sleep(QUIET_MS); // let the edit's last events settle
+        WordCorpus before = WordCorpus.get();
+        Files.write(dir.resolve("notes.txt"), List.of("NOT", "WORDS"));
+        replace(dir.resolve("other.txt"), "ALSO", "NOT", "WORDS");
+        Thread.sleep(QUIET_MS);
+        check("other files are ignored", WordCorpus.get() == before);
+
+        Files.delete(file);
+        Thread.sleep(QUIET_MS);
+        check("delete keeps the current words", WordCorpus.get() == before && hasWords("FOXTROT", "GOLF"));
+
+        replace(file, "HOTEL", "INDIA", "JULIET", "KILO");
+        check("renaming a list into place reloads", waitFor(() -> hasWords("HOTEL", "INDIA", "JULIET", "KILO")));
+
+        WordWatcher.INSTANCE.stop();
+        System.out.println(failures == 0 ? "PASS" : "FAIL");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+}